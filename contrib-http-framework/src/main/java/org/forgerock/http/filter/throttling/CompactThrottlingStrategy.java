@@ -0,0 +1,370 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.http.filter.throttling;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.forgerock.util.Reject.checkNotNull;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Ticker;
+import org.forgerock.util.Reject;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A throttling strategy keeping the state of all the partitions in a fixed-capacity table of primitive longs, so
+ * that millions of partitions (client IP addresses, API keys...) neither allocate objects nor need to be swept.
+ * <p>
+ * Each slot of the table holds two longs: a 64-bit hash of the partition key and of its rate, and the theoretical
+ * arrival time of the Generic Cell Rate Algorithm (GCRA), which is equivalent to a token bucket refilled
+ * continuously. Both are updated with compare-and-set operations, without any lock. A partition is looked up by
+ * probing a few consecutive slots: an empty slot, or a slot whose partition has fully recovered its rate (it is then
+ * expired), is reclaimed in place by the next partition probing it, so the expiry cost is amortized over the
+ * requests and there is no cleaning task. When all the probed slots are in use, the partition closest to its
+ * expiration is evicted: the table never grows beyond its capacity.
+ * <p>
+ * A slot is reclaimed in three steps: its key is replaced by a transient marker, its arrival time is reset with a
+ * compare-and-set that fails if the previous partition has consumed a token since it was probed (the slot is then
+ * given back), and the new key is published. The reset value differs from the arrival times of the previous
+ * partition, and the consumers check the key of the slot between reading its arrival time and updating it, so a token
+ * is never charged to another partition than the one it was consumed from.
+ * <p>
+ * A change of the rate of a partition starts a new partition, like the {@link TokenBucketThrottlingStrategy} does.
+ * Two partition keys whose hashes collide share the same rate limit, which is unlikely enough with 64-bit hashes.
+ * <p>
+ * The table can be allocated off-heap, where it is only accounted against the maximum direct memory.
+ */
+public class CompactThrottlingStrategy implements ThrottlingStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompactThrottlingStrategy.class);
+
+    /** The number of consecutive slots probed when looking up a partition. */
+    static final int PROBE_LENGTH = 8;
+
+    /** The upper bound of the capacity, that uses 1 GiB of memory. */
+    static final int MAX_PARTITIONS = 1 << 26;
+
+    /** The key of an empty slot, no partition hash is ever equal to it. */
+    private static final long EMPTY = 0L;
+
+    /** The key of a slot being reclaimed, no partition hash is ever equal to it. */
+    private static final long CLAIMING = -1L;
+
+    private final Ticker ticker;
+    private final long origin;
+    private final int mask;
+    private final Slots slots;
+
+    /**
+     * Constructs a new {@link CompactThrottlingStrategy}.
+     *
+     * @param ticker the {@link Ticker} to use to follow the timeline.
+     * @param maxPartitions the maximum number of partitions kept at the same time, rounded down to a power of two:
+     *                      the table uses 16 bytes per partition.
+     * @param offHeap whether the table is allocated off-heap.
+     */
+    public CompactThrottlingStrategy(Ticker ticker, int maxPartitions, boolean offHeap) {
+        this.ticker = checkNotNull(ticker);
+        Reject.ifTrue(maxPartitions < PROBE_LENGTH || maxPartitions > MAX_PARTITIONS,
+                      "Invalid value for maxPartitions : it has to be in the range [" + PROBE_LENGTH + ", "
+                              + MAX_PARTITIONS + "]");
+        int capacity = Integer.highestOneBit(maxPartitions);
+        this.mask = capacity - 1;
+        this.slots = offHeap ? new DirectSlots(capacity * 2) : new HeapSlots(capacity * 2);
+        // The theoretical arrival times are relative to that origin, so that an empty slot (0) is always in the past
+        this.origin = ticker.read() - 1;
+    }
+
+    @Override
+    public Promise<Long, NeverThrowsException> throttle(String partitionKey, ThrottlingRate throttlingRate) {
+        return newResultPromise(tryConsume(hash(partitionKey, throttlingRate), throttlingRate));
+    }
+
+    /**
+     * Consumes a token of the given partition.
+     *
+     * @param key the hash of the partition, as returned by {@link #hash(String, ThrottlingRate)}.
+     * @param rate the rate of the partition.
+     * @return 0 if a token has been consumed, or the delay to wait for the next token, in nanoseconds
+     */
+    long tryConsume(long key, ThrottlingRate rate) {
+        final long duration = rate.getDuration().to(NANOSECONDS);
+        final long emissionInterval = emissionInterval(rate);
+        int slot = lookup(key, now());
+        do {
+            final long now = now();
+            final long current = slots.get(tatIndex(slot));
+            if (slots.get(keyIndex(slot)) != key) {
+                // The slot has been reclaimed by another partition since looked up
+                slot = lookup(key, now);
+                continue;
+            }
+            final long next = Math.max(current, now) + emissionInterval;
+            final long delay = next - now - duration;
+            if (delay > 0) {
+                // Not enough tokens accumulated since the previous accepted request
+                return delay;
+            }
+            if (slots.compareAndSet(tatIndex(slot), current, next)) {
+                return 0;
+            }
+            // Someone else consumed a token of that partition (or reclaimed its slot) before us, let's try again.
+        } while (true);
+    }
+
+    /**
+     * Unconditionally consumes the given amount of time of the given partition, that has been consumed elsewhere.
+     * The partition is never pushed further than fully consumed.
+     *
+     * @param key the hash of the partition, as returned by {@link #hash(String, ThrottlingRate)}.
+     * @param consumed the consumed time, in nanoseconds: a token is worth {@link #emissionInterval(ThrottlingRate)}.
+     * @param duration the duration of the rate of the partition, in nanoseconds.
+     */
+    void consume(long key, long consumed, long duration) {
+        if (key == EMPTY || key == CLAIMING) {
+            // Not a partition hash
+            return;
+        }
+        int slot = lookup(key, now());
+        do {
+            final long now = now();
+            final long current = slots.get(tatIndex(slot));
+            if (slots.get(keyIndex(slot)) != key) {
+                slot = lookup(key, now);
+                continue;
+            }
+            final long next = Math.min(Math.max(current, now) + consumed, now + duration);
+            if (next <= current || slots.compareAndSet(tatIndex(slot), current, next)) {
+                return;
+            }
+        } while (true);
+    }
+
+    /**
+     * Returns the time a token is worth for the given rate.
+     *
+     * @param rate the rate.
+     * @return the time a token is worth, in nanoseconds
+     */
+    static long emissionInterval(ThrottlingRate rate) {
+        return (long) Math.ceil(rate.getDuration().to(NANOSECONDS) / (double) rate.getNumberOfRequests());
+    }
+
+    /**
+     * Returns the slot of the given partition, reclaiming an expired slot or evicting the partition closest to its
+     * expiration when the partition is not in the table yet.
+     */
+    private int lookup(long key, long now) {
+        final int start = (int) key & mask;
+        do {
+            int reclaimed = -1;
+            long reclaimedKey = EMPTY;
+            long reclaimedTat = Long.MAX_VALUE;
+            boolean claiming = false;
+            for (int i = 0; i < PROBE_LENGTH; i++) {
+                final int slot = (start + i) & mask;
+                final long current = slots.get(keyIndex(slot));
+                if (current == key) {
+                    return slot;
+                }
+                if (current == CLAIMING) {
+                    // That slot may be about to hold the partition
+                    claiming = true;
+                    continue;
+                }
+                if (reclaimedTat <= now) {
+                    // An expired slot has already been found, just keep looking for the partition
+                    continue;
+                }
+                final long tat = current == EMPTY ? 0L : slots.get(tatIndex(slot));
+                if (tat < reclaimedTat) {
+                    reclaimed = slot;
+                    reclaimedKey = current;
+                    reclaimedTat = tat;
+                }
+            }
+            if (claiming) {
+                // Wait for the reclaim in progress, that is only a few instructions long
+                Thread.onSpinWait();
+                continue;
+            }
+            if (reclaimedTat > now) {
+                logger.trace("No free slot for the partition {}, evicting the slot {}", key, reclaimed);
+            }
+            if (claim(reclaimed, reclaimedKey, reclaimedTat, key)) {
+                return reclaimed;
+            }
+            // Another partition claimed that slot, or consumed from it, before us: let's probe once more.
+        } while (true);
+    }
+
+    /**
+     * Reclaims the given slot for the given partition, unless its key or arrival time has changed since probed.
+     */
+    private boolean claim(int slot, long expectedKey, long expectedTat, long key) {
+        if (!slots.compareAndSet(keyIndex(slot), expectedKey, CLAIMING)) {
+            return false;
+        }
+        // A negative value is in the past, like an empty slot. It differs from the arrival times of the previous
+        // partition, so that its consumers fail their compare-and-set: they are positive once a token is consumed,
+        // and the previous reset value otherwise
+        final long reset = expectedTat > 0 ? -expectedTat : expectedTat - 1;
+        if (slots.compareAndSet(tatIndex(slot), expectedTat, reset)) {
+            slots.set(keyIndex(slot), key);
+            return true;
+        }
+        // The previous partition is in use again
+        slots.set(keyIndex(slot), expectedKey);
+        return false;
+    }
+
+    private long now() {
+        return ticker.read() - origin;
+    }
+
+    /**
+     * Returns the number of partitions the table can hold.
+     *
+     * @return the number of partitions the table can hold
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    private static int keyIndex(int slot) {
+        return slot << 1;
+    }
+
+    private static int tatIndex(int slot) {
+        return (slot << 1) + 1;
+    }
+
+    /**
+     * Hashes the partition key (FNV-1a) together with its rate, and mixes the result (MurmurHash3 finalizer) so that
+     * the low bits used to index the table are evenly distributed.
+     */
+    static long hash(String partitionKey, ThrottlingRate rate) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < partitionKey.length(); i++) {
+            hash = (hash ^ partitionKey.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= rate.getNumberOfRequests() * 0x9e3779b97f4a7c15L;
+        hash = (hash ^ rate.getDuration().to(NANOSECONDS)) * 0x100000001b3L;
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY || hash == CLAIMING ? 1L : hash;
+    }
+
+    @Override
+    public void stop() {
+        slots.clear();
+    }
+
+    /**
+     * The storage of the table, accessed with volatile semantics.
+     */
+    private abstract static class Slots {
+
+        abstract long get(int index);
+
+        abstract void set(int index, long value);
+
+        abstract boolean compareAndSet(int index, long expected, long value);
+
+        abstract void clear();
+    }
+
+    private static final class HeapSlots extends Slots {
+
+        private final AtomicLongArray longs;
+
+        HeapSlots(int length) {
+            this.longs = new AtomicLongArray(length);
+        }
+
+        @Override
+        long get(int index) {
+            return longs.get(index);
+        }
+
+        @Override
+        void set(int index, long value) {
+            longs.set(index, value);
+        }
+
+        @Override
+        boolean compareAndSet(int index, long expected, long value) {
+            return longs.compareAndSet(index, expected, value);
+        }
+
+        @Override
+        void clear() {
+            for (int i = 0; i < longs.length(); i++) {
+                longs.set(i, EMPTY);
+            }
+        }
+    }
+
+    private static final class DirectSlots extends Slots {
+
+        private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+                                                                                     ByteOrder.nativeOrder());
+
+        private final ByteBuffer buffer;
+
+        DirectSlots(int length) {
+            // Atomic accesses require the longs to be aligned
+            this.buffer = ByteBuffer.allocateDirect(length * Long.BYTES + Long.BYTES - 1)
+                                    .alignedSlice(Long.BYTES)
+                                    .order(ByteOrder.nativeOrder());
+        }
+
+        @Override
+        long get(int index) {
+            return (long) LONGS.getVolatile(buffer, index * Long.BYTES);
+        }
+
+        @Override
+        void set(int index, long value) {
+            LONGS.setVolatile(buffer, index * Long.BYTES, value);
+        }
+
+        @Override
+        boolean compareAndSet(int index, long expected, long value) {
+            return LONGS.compareAndSet(buffer, index * Long.BYTES, expected, value);
+        }
+
+        @Override
+        void clear() {
+            for (int i = 0; i < buffer.capacity(); i += Long.BYTES) {
+                LONGS.setVolatile(buffer, i, EMPTY);
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.http.filter.throttling;
+
+import static org.forgerock.util.Reject.checkNotNull;
+import static org.forgerock.util.Utils.closeSilently;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * The UDP channel receiving the gossip frames on a local address, shared by all the {@link GossipThrottlingStrategy}
+ * bound to that address.
+ * <p>
+ * Each frame received is only applied to the strategies registered with the ID it carries. A route replacing
+ * another one creates its strategy while the replaced route still uses the address: both then share the channel and
+ * the ID, and each frame sent by that strategy of the peers is applied to both. The channel is closed once the last
+ * strategy has released it. The strategies sharing a channel also share its node ID, so that none of them applies
+ * the frames sent by the others to this instance.
+ */
+final class GossipChannel {
+
+    private static final int RECEIVE_BUFFER_SIZE = 1024 * 1024;
+
+    /** The channels bound to a fixed address, guarded by itself. */
+    private static final Map<InetSocketAddress, GossipChannel> CHANNELS = new HashMap<>();
+
+    private final InetSocketAddress address;
+    private final DatagramChannel channel;
+    private final long nodeId = new SecureRandom().nextLong();
+    /** The registered strategies, by ID. */
+    private final ConcurrentMap<Long, Set<GossipThrottlingStrategy>> strategies = new ConcurrentHashMap<>();
+    /** Guarded by this. */
+    private final ByteBuffer incoming = ByteBuffer.allocate(GossipThrottlingStrategy.MAX_FRAME_SIZE);
+    /** Guarded by {@link #CHANNELS}. */
+    private int references = 1;
+
+    /**
+     * Wraps an already bound channel, that is not shared.
+     *
+     * @param channel the bound, non-blocking, channel.
+     */
+    GossipChannel(DatagramChannel channel) {
+        this(null, channel);
+    }
+
+    private GossipChannel(InetSocketAddress address, DatagramChannel channel) {
+        this.address = address;
+        this.channel = checkNotNull(channel);
+    }
+
+    /**
+     * Returns the channel bound to the given address, binding it if no strategy uses it yet. The channel has to be
+     * released once not used anymore.
+     *
+     * @param address the local address to receive the frames of the peers on.
+     * @return the channel bound to the address.
+     * @throws IOException if the address cannot be bound.
+     */
+    static GossipChannel acquire(InetSocketAddress address) throws IOException {
+        if (address.getPort() == 0) {
+            // Any free port: nothing to share
+            return new GossipChannel(bind(address));
+        }
+        synchronized (CHANNELS) {
+            GossipChannel shared = CHANNELS.get(address);
+            if (shared != null) {
+                shared.references++;
+                return shared;
+            }
+            shared = new GossipChannel(address, bind(address));
+            CHANNELS.put(address, shared);
+            return shared;
+        }
+    }
+
+    private static DatagramChannel bind(InetSocketAddress address) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER_SIZE);
+            channel.bind(address);
+            channel.configureBlocking(false);
+            return channel;
+        } catch (IOException e) {
+            closeSilently(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Releases the channel, and closes it if it is not used anymore.
+     */
+    void release() {
+        synchronized (CHANNELS) {
+            if (--references > 0) {
+                return;
+            }
+            if (address != null) {
+                CHANNELS.remove(address);
+            }
+            // Before the address can be bound again
+            closeSilently(channel);
+        }
+    }
+
+    long getNodeId() {
+        return nodeId;
+    }
+
+    void register(GossipThrottlingStrategy strategy) {
+        strategies.computeIfAbsent(strategy.getId(), id -> new CopyOnWriteArraySet<>()).add(strategy);
+    }
+
+    void unregister(GossipThrottlingStrategy strategy) {
+        strategies.computeIfPresent(strategy.getId(), (id, registered) -> {
+            registered.remove(strategy);
+            return registered.isEmpty() ? null : registered;
+        });
+    }
+
+    /**
+     * Applies all the frames received so far to the strategies registered with the ID they carry.
+     *
+     * @return the number of frames received, including the ignored ones
+     * @throws IOException if the frames cannot be received
+     */
+    synchronized int receive() throws IOException {
+        int frames = 0;
+        SocketAddress sender;
+        incoming.clear();
+        while ((sender = channel.receive(incoming)) != null) {
+            frames++;
+            incoming.flip();
+            Set<GossipThrottlingStrategy> recipients = incoming.remaining() < GossipThrottlingStrategy.HEADER_SIZE
+                    ? null
+                    : strategies.get(incoming.getLong(GossipThrottlingStrategy.ID_OFFSET));
+            if (recipients != null) {
+                for (GossipThrottlingStrategy strategy : recipients) {
+                    strategy.apply(incoming.duplicate(), sender);
+                }
+            }
+            incoming.clear();
+        }
+        return frames;
+    }
+
+    void send(ByteBuffer frame, InetSocketAddress peer) throws IOException {
+        channel.send(frame, peer);
+    }
+}
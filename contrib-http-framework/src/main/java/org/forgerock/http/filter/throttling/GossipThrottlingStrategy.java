@@ -0,0 +1,323 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.http.filter.throttling;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.forgerock.util.Reject.checkNotNull;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+import static org.forgerock.util.time.Duration.duration;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Ticker;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A throttling strategy sharing the rate of each partition between several gateway instances, without any central
+ * store.
+ * <p>
+ * Each instance throttles the requests locally with a {@link CompactThrottlingStrategy}, and records the tokens it
+ * has consumed. Every gossip interval, it sends the consumption of each partition since the previous interval to all
+ * its peers, in compact UDP frames, and applies the consumption received from its peers to its own partitions. Every
+ * instance then counts the requests accepted by all the instances against the same rate: the cluster converges on
+ * the configured rate, overshooting it by at most what can be accepted in one gossip interval.
+ * <p>
+ * Nothing has to be done when a peer disappears or cannot be reached: its consumption is simply not received
+ * anymore, and the instances degrade to throttling their own requests with the configured rate.
+ * <p>
+ * The same list of peers can be given to all the instances: an instance ignores the frames it sent to itself. Only
+ * the frames coming from the IP addresses of the peers are applied, but they are not authenticated: the gossip port
+ * must only be reachable from the private network of the instances.
+ * <p>
+ * Each strategy is identified by a name, for example the name of its filter, that has to be the same on all the
+ * instances: the frames carry the ID of the strategy that sent them, and are only applied to the strategies of the
+ * peers with the same ID. The strategies bound to the same local address share its {@link GossipChannel}, so that
+ * several filters can use the same address, and a route can be replaced by a new version of itself.
+ */
+public class GossipThrottlingStrategy implements ThrottlingStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(GossipThrottlingStrategy.class);
+
+    /** Identifies the gossip frames ("OIGT"). */
+    static final int MAGIC = 0x4f494754;
+
+    /** The maximum size of a frame, to avoid IP fragmentation on usual networks. */
+    static final int MAX_FRAME_SIZE = 1400;
+
+    /** Magic, node ID, strategy ID and number of entries. */
+    static final int HEADER_SIZE = 4 + 8 + 8 + 2;
+
+    /** The position of the strategy ID in a frame. */
+    static final int ID_OFFSET = 4 + 8;
+
+    /** Partition hash, consumed nanoseconds and duration of the rate. */
+    private static final int ENTRY_SIZE = 8 + 8 + 8;
+
+    static final int MAX_ENTRIES = (MAX_FRAME_SIZE - HEADER_SIZE) / ENTRY_SIZE;
+
+    /** The consumption of a partition that has not been gossiped yet. */
+    private static final class Delta {
+        private final long duration;
+        private final AtomicLong consumed = new AtomicLong();
+
+        Delta(long duration) {
+            this.duration = duration;
+        }
+    }
+
+    private final long id;
+    private final CompactThrottlingStrategy local;
+    private final GossipChannel channel;
+    private final List<InetSocketAddress> peers;
+    private final Set<InetAddress> peerAddresses = new HashSet<>();
+    private final ConcurrentMap<Long, Delta> pending = new ConcurrentHashMap<>();
+    // Only used by the gossip task
+    private final ByteBuffer outgoing = ByteBuffer.allocate(MAX_FRAME_SIZE);
+    private final ScheduledFuture<?> gossipFuture;
+
+    /**
+     * Constructs a new {@link GossipThrottlingStrategy}.
+     *
+     * @param name the name identifying this strategy, the same on all the instances.
+     * @param ticker the {@link Ticker} to use to follow the timeline.
+     * @param maxPartitions the maximum number of partitions kept at the same time by this instance.
+     * @param address the local address to receive the frames of the peers on, shared with the other strategies
+     *                bound to it.
+     * @param peers the addresses of the peers.
+     * @param scheduledExecutor the {@link ScheduledExecutorService} used to schedule the gossip task.
+     * @param gossipInterval the interval between 2 exchanges with the peers.
+     * @throws IOException if the local address cannot be bound.
+     */
+    public GossipThrottlingStrategy(String name,
+                                    Ticker ticker,
+                                    int maxPartitions,
+                                    InetSocketAddress address,
+                                    Collection<InetSocketAddress> peers,
+                                    ScheduledExecutorService scheduledExecutor,
+                                    Duration gossipInterval) throws IOException {
+        this(id(name),
+             new CompactThrottlingStrategy(ticker, maxPartitions, false),
+             GossipChannel.acquire(address),
+             peers,
+             scheduledExecutor,
+             gossipInterval);
+    }
+
+    GossipThrottlingStrategy(long id,
+                             CompactThrottlingStrategy local,
+                             GossipChannel channel,
+                             Collection<InetSocketAddress> peers,
+                             ScheduledExecutorService scheduledExecutor,
+                             Duration gossipInterval) {
+        this.id = id;
+        this.local = checkNotNull(local);
+        this.channel = checkNotNull(channel);
+        this.peers = new ArrayList<>(peers);
+        for (InetSocketAddress peer : this.peers) {
+            if (peer.isUnresolved()) {
+                logger.warn("Cannot resolve the throttling peer {}, its frames will be ignored", peer);
+            } else {
+                peerAddresses.add(peer.getAddress());
+            }
+        }
+        if (gossipInterval.isZero() || gossipInterval.compareTo(duration(1, MINUTES)) > 0) {
+            channel.release();
+            throw new IllegalArgumentException("Invalid value for gossipInterval : "
+                                                       + "it has to be in the range ]0, 1 minute]");
+        }
+        this.gossipFuture = scheduledExecutor.scheduleWithFixedDelay(new Runnable() {
+                                                                         @Override
+                                                                         public void run() {
+                                                                             gossip();
+                                                                         }
+                                                                     },
+                                                                     gossipInterval.getValue(),
+                                                                     gossipInterval.getValue(),
+                                                                     gossipInterval.getUnit());
+        channel.register(this);
+    }
+
+    /**
+     * Hashes (FNV-1a) the name of a strategy into the ID carried by its frames.
+     *
+     * @param name the name of the strategy.
+     * @return the ID of the strategy.
+     */
+    static long id(String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash = (hash ^ name.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    @Override
+    public Promise<Long, NeverThrowsException> throttle(String partitionKey, ThrottlingRate throttlingRate) {
+        long key = CompactThrottlingStrategy.hash(partitionKey, throttlingRate);
+        long delay = local.tryConsume(key, throttlingRate);
+        if (delay == 0) {
+            Delta delta = pending.get(key);
+            if (delta == null) {
+                Delta created = new Delta(throttlingRate.getDuration().to(NANOSECONDS));
+                delta = pending.putIfAbsent(key, created);
+                if (delta == null) {
+                    delta = created;
+                }
+            }
+            delta.consumed.addAndGet(CompactThrottlingStrategy.emissionInterval(throttlingRate));
+        }
+        return newResultPromise(delay);
+    }
+
+    /**
+     * Applies the frames received from the peers, then sends them the consumption recorded since the previous call.
+     */
+    void gossip() {
+        try {
+            receive();
+        } catch (IOException e) {
+            logger.warn("Cannot receive the throttling frames of the peers", e);
+        }
+        send();
+    }
+
+    /**
+     * Applies all the frames received from the peers so far, to the strategies sharing the channel.
+     *
+     * @return the number of frames received, including the ignored ones
+     * @throws IOException if the frames cannot be received
+     */
+    int receive() throws IOException {
+        return channel.receive();
+    }
+
+    /**
+     * Applies a frame received by the channel.
+     *
+     * @param frame the frame.
+     * @param sender the address of the sender.
+     */
+    void apply(ByteBuffer frame, SocketAddress sender) {
+        if (!(sender instanceof InetSocketAddress)
+                || !peerAddresses.contains(((InetSocketAddress) sender).getAddress())) {
+            logger.debug("Ignored a throttling frame from the unknown peer {}", sender);
+            return;
+        }
+        if (frame.remaining() < HEADER_SIZE || frame.getInt() != MAGIC) {
+            logger.debug("Ignored a malformed throttling frame from {}", sender);
+            return;
+        }
+        if (frame.getLong() == channel.getNodeId()) {
+            // Sent to ourselves, that consumption has already been applied
+            return;
+        }
+        if (frame.getLong() != id) {
+            // Sent by another strategy of the peer
+            return;
+        }
+        int entries = frame.getShort();
+        if (entries < 0 || frame.remaining() != entries * ENTRY_SIZE) {
+            logger.debug("Ignored a malformed throttling frame from {}", sender);
+            return;
+        }
+        for (int i = 0; i < entries; i++) {
+            long key = frame.getLong();
+            long consumed = frame.getLong();
+            long duration = frame.getLong();
+            if (consumed > 0 && duration > 0) {
+                local.consume(key, consumed, duration);
+            }
+        }
+    }
+
+    /**
+     * Sends the consumption recorded since the previous call to all the peers, in as many frames as needed.
+     */
+    void send() {
+        int entries = 0;
+        for (Map.Entry<Long, Delta> entry : pending.entrySet()) {
+            Delta delta = entry.getValue();
+            long consumed = delta.consumed.getAndSet(0);
+            if (consumed == 0) {
+                // Idle since the previous gossip
+                pending.remove(entry.getKey(), delta);
+                continue;
+            }
+            if (entries == 0) {
+                clear(outgoing).putInt(MAGIC).putLong(channel.getNodeId()).putLong(id).putShort((short) 0);
+            }
+            outgoing.putLong(entry.getKey()).putLong(consumed).putLong(delta.duration);
+            if (++entries == MAX_ENTRIES) {
+                sendFrame(entries);
+                entries = 0;
+            }
+        }
+        if (entries > 0) {
+            sendFrame(entries);
+        }
+    }
+
+    private void sendFrame(int entries) {
+        outgoing.putShort(HEADER_SIZE - 2, (short) entries).flip();
+        for (InetSocketAddress peer : peers) {
+            try {
+                channel.send(outgoing.duplicate(), peer);
+            } catch (IOException e) {
+                // The peer may be down: it will miss that consumption
+                logger.debug("Cannot send a throttling frame to the peer {}", peer, e);
+            }
+        }
+    }
+
+    private static ByteBuffer clear(ByteBuffer buffer) {
+        buffer.clear();
+        return buffer;
+    }
+
+    @Override
+    public void stop() {
+        gossipFuture.cancel(false);
+        channel.unregister(this);
+        channel.release();
+        pending.clear();
+        local.stop();
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.http.filter.throttling;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.http.filter.throttling.ThrottlingAssertions.assertAccepted;
+import static org.forgerock.http.filter.throttling.ThrottlingAssertions.assertRejected;
+import static org.forgerock.util.time.Duration.duration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class CompactThrottlingStrategyTest {
+
+    private static final ThrottlingRate THROTTLING_RATE_5_PER_SEC = new ThrottlingRate(5, duration(1, SECONDS));
+    private static final ThrottlingRate THROTTLING_RATE_6_PER_SEC = new ThrottlingRate(6, duration(1, SECONDS));
+    private static final ThrottlingRate THROTTLING_RATE_1_PER_HOUR = new ThrottlingRate(1, duration("1 hour"));
+    private static final String FOO = "foo";
+    private static final String BAR = "bar";
+
+    @DataProvider
+    public static Object[][] storages() {
+        //@Checkstyle:off
+        return new Object[][]{
+                { false },
+                { true },
+                };
+        //@Checkstyle:on
+    }
+
+    @DataProvider
+    public static Object[][] incorrectMaxPartitions() {
+        //@Checkstyle:off
+        return new Object[][]{
+                { 0 },
+                { CompactThrottlingStrategy.PROBE_LENGTH - 1 },
+                { CompactThrottlingStrategy.MAX_PARTITIONS + 1 },
+                };
+        //@Checkstyle:on
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, dataProvider = "incorrectMaxPartitions")
+    public void shouldRefuseIncorrectMaxPartitions(int maxPartitions) throws Exception {
+        new CompactThrottlingStrategy(new FakeTicker(), maxPartitions, false);
+    }
+
+    @Test
+    public void shouldRoundDownTheCapacity() throws Exception {
+        assertThat(new CompactThrottlingStrategy(new FakeTicker(), 1000, false).capacity()).isEqualTo(512);
+    }
+
+    @Test(dataProvider = "storages")
+    public void shouldReturnTheDelayToWaitForTheNextAcceptedTry(boolean offHeap) throws Exception {
+        // A negative tick must not be mistaken for an empty slot
+        FakeTicker ticker = new FakeTicker(-42_000_000_000L);
+        CompactThrottlingStrategy strategy = new CompactThrottlingStrategy(ticker, 1024, offHeap);
+        ThrottlingRate throttlingRate = new ThrottlingRate(1, duration(1, SECONDS));
+
+        assertThat(strategy.throttle(FOO, throttlingRate).get()).isEqualTo(0);
+        assertThat(strategy.throttle(FOO, throttlingRate).get()).isEqualTo(1_000_000_000);
+
+        ticker.advance(50, MILLISECONDS);
+        long delay = strategy.throttle(FOO, throttlingRate).get();
+        assertThat(delay).isEqualTo(950_000_000);
+
+        ticker.advance(delay, NANOSECONDS);
+        assertThat(strategy.throttle(FOO, throttlingRate).get()).isEqualTo(0);
+    }
+
+    @Test(dataProvider = "storages")
+    public void shouldIsolateThePartitions(boolean offHeap) throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        CompactThrottlingStrategy strategy = new CompactThrottlingStrategy(ticker, 1024, offHeap);
+
+        for (int i = 0; i < 5; i++) {
+            assertAccepted(strategy.throttle(FOO, THROTTLING_RATE_5_PER_SEC).get());
+            assertAccepted(strategy.throttle(BAR, THROTTLING_RATE_6_PER_SEC).get());
+        }
+
+        // Only the partition "bar" can accept a request after 170 ms (a bit more than 1/6)
+        ticker.advance(170, MILLISECONDS);
+        assertRejected(strategy.throttle(FOO, THROTTLING_RATE_5_PER_SEC).get());
+        assertAccepted(strategy.throttle(BAR, THROTTLING_RATE_6_PER_SEC).get());
+
+        // Both partitions can accept some requests after 470 ms (a bit more than 2*1/6)
+        ticker.advance(300, MILLISECONDS);
+        assertAccepted(strategy.throttle(FOO, THROTTLING_RATE_5_PER_SEC).get());
+        assertAccepted(strategy.throttle(BAR, THROTTLING_RATE_6_PER_SEC).get());
+    }
+
+    @Test
+    public void shouldStartANewPartitionWhenAnotherRateIsSpecified() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        CompactThrottlingStrategy strategy = new CompactThrottlingStrategy(ticker, 1024, false);
+
+        assertAccepted(strategy.throttle(FOO, new ThrottlingRate(1, duration("3 seconds"))).get());
+        assertAccepted(strategy.throttle(FOO, new ThrottlingRate(1, duration("10 seconds"))).get());
+
+        ticker.advance(3, SECONDS);
+        assertRejected(strategy.throttle(FOO, new ThrottlingRate(1, duration("10 seconds"))).get());
+    }
+
+    @Test(dataProvider = "storages")
+    public void shouldReclaimTheExpiredPartitions(boolean offHeap) throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        CompactThrottlingStrategy strategy = new CompactThrottlingStrategy(ticker, 8, offHeap);
+        ThrottlingRate throttlingRate = new ThrottlingRate(1, duration(1, SECONDS));
+
+        for (int i = 0; i < 8; i++) {
+            assertAccepted(strategy.throttle("old-" + i, throttlingRate).get());
+        }
+
+        // All the partitions have recovered their rate: their slots are reused, nothing is evicted
+        ticker.advance(1, SECONDS);
+        for (int i = 0; i < 8; i++) {
+            assertAccepted(strategy.throttle("new-" + i, throttlingRate).get());
+        }
+        for (int i = 0; i < 8; i++) {
+            assertRejected(strategy.throttle("new-" + i, throttlingRate).get());
+        }
+    }
+
+    @Test
+    public void shouldEvictThePartitionClosestToItsExpirationWhenFull() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        CompactThrottlingStrategy strategy = new CompactThrottlingStrategy(ticker, 8, false);
+
+        for (int i = 0; i < 8; i++) {
+            assertAccepted(strategy.throttle("client-" + i, THROTTLING_RATE_1_PER_HOUR).get());
+            ticker.advance(1, MILLISECONDS);
+        }
+
+        // The table is full: the oldest partition is evicted to make room for the new one
+        assertAccepted(strategy.throttle("client-8", THROTTLING_RATE_1_PER_HOUR).get());
+        for (int i = 1; i <= 8; i++) {
+            assertRejected(strategy.throttle("client-" + i, THROTTLING_RATE_1_PER_HOUR).get());
+        }
+        assertAccepted(strategy.throttle("client-0", THROTTLING_RATE_1_PER_HOUR).get());
+    }
+
+    @Test
+    public void shouldNotConsumeMoreThanTheWholeRate() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        CompactThrottlingStrategy strategy = new CompactThrottlingStrategy(ticker, 1024, false);
+        long key = CompactThrottlingStrategy.hash(FOO, THROTTLING_RATE_5_PER_SEC);
+        long token = CompactThrottlingStrategy.emissionInterval(THROTTLING_RATE_5_PER_SEC);
+
+        // Consumed elsewhere, far more than the rate allows
+        strategy.consume(key, 100 * token, SECONDS.toNanos(1));
+        assertThat(strategy.tryConsume(key, THROTTLING_RATE_5_PER_SEC)).isEqualTo(token);
+
+        ticker.advance(token, NANOSECONDS);
+        assertAccepted(strategy.throttle(FOO, THROTTLING_RATE_5_PER_SEC).get());
+    }
+
+    @Test(dataProvider = "storages")
+    public void shouldChargeEachTokenToItsPartitionWhileReclaiming(boolean offHeap) throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        final CompactThrottlingStrategy strategy = new CompactThrottlingStrategy(ticker, 8, offHeap);
+        final ThrottlingRate throttlingRate = new ThrottlingRate(100, duration("1 hour"));
+        for (int i = 0; i < 8; i++) {
+            assertAccepted(strategy.throttle("old-" + i, new ThrottlingRate(1, duration(1, SECONDS))).get());
+        }
+        // All the slots are expired: the new partitions reclaim them concurrently
+        ticker.advance(1, SECONDS);
+
+        final int partitions = 4;
+        final AtomicInteger[] accepted = new AtomicInteger[partitions];
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < partitions; p++) {
+            final int partition = p;
+            accepted[partition] = new AtomicInteger();
+            for (int t = 0; t < 4; t++) {
+                threads.add(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < 100; i++) {
+                            if (strategy.tryConsume(CompactThrottlingStrategy.hash("new-" + partition, throttlingRate),
+                                                    throttlingRate) == 0) {
+                                accepted[partition].incrementAndGet();
+                            }
+                        }
+                    }
+                }));
+            }
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int p = 0; p < partitions; p++) {
+            assertThat(accepted[p].get()).isEqualTo(100);
+        }
+    }
+
+    @Test
+    public void shouldForgetThePartitionsWhenStopped() throws Exception {
+        CompactThrottlingStrategy strategy = new CompactThrottlingStrategy(new FakeTicker(), 8, true);
+        ThrottlingRate throttlingRate = new ThrottlingRate(1, duration(1, SECONDS));
+        assertAccepted(strategy.throttle(FOO, throttlingRate).get());
+
+        strategy.stop();
+
+        assertAccepted(strategy.throttle(FOO, throttlingRate).get());
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.http.filter.throttling;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.http.filter.throttling.ThrottlingAssertions.assertAccepted;
+import static org.forgerock.http.filter.throttling.ThrottlingAssertions.assertRejected;
+import static org.forgerock.util.time.Duration.duration;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Runs several gateway instances on localhost, sharing the same injected clock. The gossip tasks are triggered by
+ * the tests instead of the (mocked) scheduled executor.
+ */
+@SuppressWarnings("javadoc")
+public class GossipThrottlingStrategyTest {
+
+    private static final ThrottlingRate THROTTLING_RATE_4_PER_SEC = new ThrottlingRate(4, duration(1, SECONDS));
+    private static final Duration GOSSIP_INTERVAL = duration("100 milliseconds");
+    private static final String NAME = "route+ThrottlingFilter";
+
+    private FakeTicker ticker;
+    private ScheduledExecutorService scheduledExecutor;
+    private final List<GossipThrottlingStrategy> nodes = new ArrayList<>();
+
+    @BeforeMethod
+    @SuppressWarnings("unchecked")
+    public void beforeMethod() {
+        ticker = new FakeTicker();
+        scheduledExecutor = mock(ScheduledExecutorService.class);
+        when(scheduledExecutor.scheduleWithFixedDelay(any(Runnable.class), anyLong(), anyLong(), any(TimeUnit.class)))
+                .thenReturn(mock(ScheduledFuture.class));
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        for (GossipThrottlingStrategy node : nodes) {
+            node.stop();
+        }
+        nodes.clear();
+    }
+
+    @Test
+    public void shouldShareTheRateBetweenTheNodes() throws Exception {
+        List<DatagramChannel> channels = channels(2);
+        GossipThrottlingStrategy a = node(channels.get(0), addresses(channels));
+        GossipThrottlingStrategy b = node(channels.get(1), addresses(channels));
+
+        for (int i = 0; i < 3; i++) {
+            assertAccepted(a.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+        }
+        a.send();
+        awaitFrames(b, 1);
+
+        // Only one request left for the whole cluster
+        assertAccepted(b.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+        assertRejected(b.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+        // The other partitions are not affected
+        assertAccepted(b.throttle("other", THROTTLING_RATE_4_PER_SEC).get());
+
+        b.send();
+        awaitFrames(a, 2);
+        assertRejected(a.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+
+        // The rate is recovered everywhere
+        ticker.advance(1, SECONDS);
+        assertAccepted(a.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+        assertAccepted(b.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+    }
+
+    @Test
+    public void shouldIgnoreItsOwnFrames() throws Exception {
+        List<DatagramChannel> channels = channels(1);
+        GossipThrottlingStrategy a = node(channels.get(0), addresses(channels));
+
+        for (int i = 0; i < 2; i++) {
+            assertAccepted(a.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+        }
+        a.send();
+        awaitFrames(a, 1);
+
+        for (int i = 0; i < 2; i++) {
+            assertAccepted(a.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+        }
+        assertRejected(a.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+    }
+
+    @Test
+    public void shouldSplitTheConsumptionInSeveralFrames() throws Exception {
+        List<DatagramChannel> channels = channels(2);
+        GossipThrottlingStrategy a = node(channels.get(0), addresses(channels));
+        GossipThrottlingStrategy b = node(channels.get(1), addresses(channels));
+        ThrottlingRate oncePerHour = new ThrottlingRate(1, duration("1 hour"));
+
+        int partitions = GossipThrottlingStrategy.MAX_ENTRIES + 10;
+        for (int i = 0; i < partitions; i++) {
+            assertAccepted(a.throttle("client-" + i, oncePerHour).get());
+        }
+        a.send();
+        awaitFrames(b, 2);
+
+        for (int i = 0; i < partitions; i++) {
+            assertRejected(b.throttle("client-" + i, oncePerHour).get());
+        }
+    }
+
+    @Test
+    public void shouldDegradeToLocalThrottlingWhenThePeersAreGone() throws Exception {
+        List<DatagramChannel> channels = channels(2);
+        List<InetSocketAddress> peers = addresses(channels);
+        GossipThrottlingStrategy a = node(channels.get(0), peers);
+        // The second node is gone
+        channels.get(1).close();
+
+        for (int i = 0; i < 4; i++) {
+            assertAccepted(a.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+            a.gossip();
+        }
+        assertRejected(a.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+    }
+
+    @Test
+    public void shouldShareTheChannelOfTheSameAddress() throws Exception {
+        InetSocketAddress address = freeAddress();
+        List<DatagramChannel> channels = channels(1);
+        List<InetSocketAddress> peers = new ArrayList<>(addresses(channels));
+        peers.add(address);
+        GossipThrottlingStrategy peer = node(channels.get(0), peers);
+        GossipThrottlingStrategy replaced = bound(address, peers);
+        // As a route replacing another one
+        GossipThrottlingStrategy replacing = bound(address, peers);
+
+        for (int i = 0; i < 3; i++) {
+            assertAccepted(peer.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+        }
+        peer.send();
+        awaitFrames(replacing, 1);
+        // Applied to both
+        assertAccepted(replaced.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+        assertRejected(replaced.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+        assertAccepted(replacing.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+        assertRejected(replacing.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+
+        // Still bound once the replaced strategy is stopped, and released by the last one
+        replaced.stop();
+        nodes.remove(replaced);
+        assertThat(replacing.receive()).isEqualTo(0);
+        replacing.stop();
+        nodes.remove(replacing);
+        bound(address, peers);
+    }
+
+    @Test
+    public void shouldOnlyApplyTheFramesOfTheSameStrategy() throws Exception {
+        InetSocketAddress address = freeAddress();
+        List<DatagramChannel> channels = channels(1);
+        List<InetSocketAddress> peers = new ArrayList<>(addresses(channels));
+        peers.add(address);
+        GossipThrottlingStrategy peer = node(channels.get(0), peers);
+        GossipThrottlingStrategy same = bound(address, peers, NAME);
+        // Another filter using the same address
+        GossipThrottlingStrategy other = bound(address, peers, "other+ThrottlingFilter");
+
+        for (int i = 0; i < 3; i++) {
+            assertAccepted(peer.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+        }
+        peer.send();
+        awaitFrames(same, 1);
+        assertAccepted(same.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+        assertRejected(same.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+        for (int i = 0; i < 4; i++) {
+            assertAccepted(other.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+        }
+        assertRejected(other.throttle("client", THROTTLING_RATE_4_PER_SEC).get());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRefuseAnIncorrectGossipInterval() throws Exception {
+        node(channels(1).get(0), new ArrayList<InetSocketAddress>(), duration(2, TimeUnit.MINUTES));
+    }
+
+    private GossipThrottlingStrategy node(DatagramChannel channel, List<InetSocketAddress> peers) {
+        return node(channel, peers, GOSSIP_INTERVAL);
+    }
+
+    private GossipThrottlingStrategy node(DatagramChannel channel,
+                                         List<InetSocketAddress> peers,
+                                         Duration gossipInterval) {
+        GossipThrottlingStrategy node = new GossipThrottlingStrategy(GossipThrottlingStrategy.id(NAME),
+                                                                     new CompactThrottlingStrategy(ticker, 1024, false),
+                                                                     new GossipChannel(channel),
+                                                                     peers,
+                                                                     scheduledExecutor,
+                                                                     gossipInterval);
+        nodes.add(node);
+        return node;
+    }
+
+    private GossipThrottlingStrategy bound(InetSocketAddress address, List<InetSocketAddress> peers)
+            throws Exception {
+        return bound(address, peers, NAME);
+    }
+
+    private GossipThrottlingStrategy bound(InetSocketAddress address, List<InetSocketAddress> peers, String name)
+            throws Exception {
+        GossipThrottlingStrategy node = new GossipThrottlingStrategy(name,
+                                                                     ticker,
+                                                                     1024,
+                                                                     address,
+                                                                     peers,
+                                                                     scheduledExecutor,
+                                                                     GOSSIP_INTERVAL);
+        nodes.add(node);
+        return node;
+    }
+
+    private static InetSocketAddress freeAddress() throws Exception {
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            return (InetSocketAddress) channel.getLocalAddress();
+        }
+    }
+
+    private static List<DatagramChannel> channels(int count) throws Exception {
+        List<DatagramChannel> channels = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            DatagramChannel channel = DatagramChannel.open();
+            channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            channel.configureBlocking(false);
+            channels.add(channel);
+        }
+        return channels;
+    }
+
+    private static List<InetSocketAddress> addresses(List<DatagramChannel> channels) throws Exception {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (DatagramChannel channel : channels) {
+            addresses.add((InetSocketAddress) channel.getLocalAddress());
+        }
+        return addresses;
+    }
+
+    private static void awaitFrames(GossipThrottlingStrategy node, int expected) throws Exception {
+        int frames = 0;
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (frames < expected && System.currentTimeMillis() < deadline) {
+            frames += node.receive();
+            if (frames < expected) {
+                Thread.sleep(10L);
+            }
+        }
+        assertThat(frames).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.http.filter.throttling;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Ticker;
+import org.forgerock.util.time.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the token bucket ({@literal bursty}) and the compact throttling strategies, with requests spread over a
+ * growing number of partitions, as when they are grouped by client IP address. Run it with the gc profiler to compare
+ * the allocation rates as well.
+ * <p>
+ * Run it from the test classpath:
+ * <pre>
+ *     {@code java -cp <test classpath> org.forgerock.http.filter.throttling.ThrottlingStrategyBenchmark}
+ * </pre>
+ */
+@SuppressWarnings("javadoc")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ThrottlingStrategyBenchmark {
+
+    private static final ThrottlingRate RATE = new ThrottlingRate(100, "1 second");
+
+    @Param({ "bursty", "compact", "compact-offheap" })
+    public String strategyName;
+
+    @Param({ "1000", "1000000" })
+    public int partitions;
+
+    private String[] keys;
+    private ScheduledExecutorService executor;
+    private ThrottlingStrategy strategy;
+
+    @Setup
+    public void setUp() {
+        keys = new String[partitions];
+        for (int i = 0; i < partitions; i++) {
+            keys[i] = "10." + (i >>> 16 & 0xff) + "." + (i >>> 8 & 0xff) + "." + (i & 0xff);
+        }
+        executor = Executors.newSingleThreadScheduledExecutor();
+        switch (strategyName) {
+        case "compact":
+            strategy = new CompactThrottlingStrategy(Ticker.systemTicker(), 2 * partitions, false);
+            break;
+        case "compact-offheap":
+            strategy = new CompactThrottlingStrategy(Ticker.systemTicker(), 2 * partitions, true);
+            break;
+        default:
+            strategy = new TokenBucketThrottlingStrategy(Ticker.systemTicker(),
+                                                         executor,
+                                                         Duration.duration("5 seconds"));
+            break;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        strategy.stop();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public Long throttle() throws Exception {
+        String key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+        return strategy.throttle(key, RATE).get();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ThrottlingStrategyBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -18,6 +18,7 @@ package org.openidentityplatform.openig.ai;
 
 import org.forgerock.openig.alias.ClassAliasResolver;
 import org.openidentityplatform.openig.ai.filter.LLMProxyFilter;
+import org.openidentityplatform.openig.ai.filter.LLMResponseCacheFilter;
 import org.openidentityplatform.openig.ai.filter.MCPServerFeaturesFilter;
 import org.openidentityplatform.openig.ai.filter.LLMPromptGuardFilter;
 
@@ -33,6 +34,7 @@ public class AiClassAliasResolver implements ClassAliasResolver {
     static {
         ALIASES.put("LLMPromptGuardFilter", LLMPromptGuardFilter.class);
         ALIASES.put("LLMProxyFilter", LLMProxyFilter.class);
+        ALIASES.put("LLMResponseCacheFilter", LLMResponseCacheFilter.class);
         ALIASES.put("MCPServerFeaturesFilter", MCPServerFeaturesFilter.class);
     }
 
@@ -0,0 +1,311 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.ai.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Size and TTL bounded store of LLM completions, keyed by the hash of the canonical request.
+ *
+ * <p>The completions are kept in memory, up to {@code maxMemorySize} bytes. When a directory is given, the
+ * completions evicted from memory because of its size are spilled to a file of that directory, up to
+ * {@code maxDiskSize} bytes, instead of being dropped. A completion expires {@code ttl} after it has been
+ * stored, wherever it is.
+ */
+final class CompletionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompletionCache.class);
+
+    static final String FILE_EXTENSION = ".completion";
+
+    /** Rough overhead of an entry, on top of its content. */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    /**
+     * A cached completion: the status, the content headers and the raw content of a successful response.
+     */
+    static final class CachedCompletion {
+        private final int status;
+        private final List<Map.Entry<String, String>> headers;
+        private final byte[] content;
+        private final long expiresAt;
+
+        CachedCompletion(int status, List<Map.Entry<String, String>> headers, byte[] content, long expiresAt) {
+            this.status = status;
+            this.headers = Collections.unmodifiableList(new ArrayList<>(headers));
+            this.content = content;
+            this.expiresAt = expiresAt;
+        }
+
+        byte[] getContent() {
+            return content;
+        }
+
+        /**
+         * Builds a new response replaying that completion: an event stream is replayed as it was recorded.
+         */
+        Response toResponse() {
+            Response response = new Response(Status.valueOf(status));
+            for (Map.Entry<String, String> header : headers) {
+                response.getHeaders().add(header.getKey(), header.getValue());
+            }
+            response.setEntity(content);
+            return response;
+        }
+
+        private int weight() {
+            int weight = ENTRY_OVERHEAD + content.length;
+            for (Map.Entry<String, String> header : headers) {
+                weight += header.getKey().length() + header.getValue().length();
+            }
+            return weight;
+        }
+    }
+
+    /** A completion spilled to disk. */
+    private static final class SpilledCompletion {
+        private final Path file;
+        private final int size;
+        private final long expiresAt;
+
+        SpilledCompletion(Path file, int size, long expiresAt) {
+            this.file = file;
+            this.size = size;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final long ttl;
+    private final Ticker ticker;
+    private final Path directory;
+    private final Cache<String, CachedCompletion> memory;
+    private final Cache<String, SpilledCompletion> disk;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxMemorySize  maximum size of the completions kept in memory, in bytes
+     * @param ttl            time to live of a completion
+     * @param ticker         time source of the expiration
+     * @param directory      the directory to spill the completions to, or {@code null} to keep them in memory only
+     * @param maxDiskSize    maximum size of the completions spilled to disk, in bytes
+     * @throws IOException if the directory cannot be created or cleaned up
+     */
+    CompletionCache(long maxMemorySize, Duration ttl, Ticker ticker, Path directory, long maxDiskSize)
+            throws IOException {
+        if (maxMemorySize <= 0) {
+            throw new IllegalArgumentException("maxMemorySize must be > 0, got: " + maxMemorySize);
+        }
+        if (ttl == null || ttl.isUnlimited() || ttl.to(TimeUnit.NANOSECONDS) <= 0) {
+            throw new IllegalArgumentException("ttl must be a finite positive value");
+        }
+        this.ttl = ttl.to(TimeUnit.NANOSECONDS);
+        this.ticker = ticker;
+        this.directory = directory;
+
+        if (directory != null) {
+            if (maxDiskSize <= 0) {
+                throw new IllegalArgumentException("maxDiskSize must be > 0, got: " + maxDiskSize);
+            }
+            Files.createDirectories(directory);
+            // The index of the spilled completions is not persisted: the previous files are unreachable
+            deleteSpilledFiles();
+            disk = Caffeine.newBuilder()
+                    .maximumWeight(maxDiskSize)
+                    .<String, SpilledCompletion>weigher((key, spilled) -> spilled.size)
+                    .expireAfter(expiry(spilled -> spilled.expiresAt))
+                    .ticker(ticker)
+                    .executor(Runnable::run)
+                    .removalListener((String key, SpilledCompletion spilled, RemovalCause cause) -> {
+                        // A replaced completion has been overwritten in the same file
+                        if (spilled != null && cause != RemovalCause.REPLACED) {
+                            delete(spilled.file);
+                        }
+                    })
+                    .build();
+        } else {
+            disk = null;
+        }
+
+        memory = Caffeine.newBuilder()
+                .maximumWeight(maxMemorySize)
+                .<String, CachedCompletion>weigher((key, completion) -> completion.weight())
+                .expireAfter(expiry(completion -> completion.expiresAt))
+                .ticker(ticker)
+                .executor(Runnable::run)
+                .evictionListener((String key, CachedCompletion completion, RemovalCause cause) -> {
+                    if (disk != null && key != null && completion != null && cause == RemovalCause.SIZE) {
+                        spill(key, completion);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Returns the completion stored for that key, or {@code null} if none is stored or it has expired.
+     */
+    CachedCompletion get(String key) {
+        CachedCompletion completion = memory.getIfPresent(key);
+        if (completion != null || disk == null) {
+            return completion;
+        }
+        SpilledCompletion spilled = disk.getIfPresent(key);
+        if (spilled == null) {
+            return null;
+        }
+        try {
+            return read(spilled);
+        } catch (IOException e) {
+            logger.warn("CompletionCache: cannot read the spilled completion {}", spilled.file, e);
+            disk.invalidate(key);
+            return null;
+        }
+    }
+
+    /**
+     * Stores a completion, it expires after the TTL of the cache.
+     *
+     * @return the stored completion
+     */
+    CachedCompletion put(String key, int status, List<Map.Entry<String, String>> headers, byte[] content) {
+        CachedCompletion completion = new CachedCompletion(status, headers, content, ticker.read() + ttl);
+        if (disk != null) {
+            disk.invalidate(key);
+        }
+        memory.put(key, completion);
+        return completion;
+    }
+
+    /**
+     * Removes all the completions, including the spilled ones.
+     */
+    void clear() {
+        memory.invalidateAll();
+        if (disk != null) {
+            disk.invalidateAll();
+        }
+    }
+
+    long memoryEntries() {
+        memory.cleanUp();
+        return memory.estimatedSize();
+    }
+
+    long diskEntries() {
+        if (disk == null) {
+            return 0L;
+        }
+        disk.cleanUp();
+        return disk.estimatedSize();
+    }
+
+    private void spill(String key, CachedCompletion completion) {
+        // The key is an URL-safe hash, it can be used as a file name
+        Path file = directory.resolve(key + FILE_EXTENSION);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(completion.status);
+            out.writeShort(completion.headers.size());
+            for (Map.Entry<String, String> header : completion.headers) {
+                out.writeUTF(header.getKey());
+                out.writeUTF(header.getValue());
+            }
+            out.writeInt(completion.content.length);
+            out.write(completion.content);
+            out.flush();
+            disk.put(key, new SpilledCompletion(file, completion.weight(), completion.expiresAt));
+        } catch (IOException e) {
+            logger.warn("CompletionCache: cannot spill the completion to {}, dropping it", file, e);
+            delete(file);
+        }
+    }
+
+    private static CachedCompletion read(SpilledCompletion spilled) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(spilled.file)))) {
+            int status = in.readInt();
+            int count = in.readUnsignedShort();
+            List<Map.Entry<String, String>> headers = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                headers.add(Map.entry(in.readUTF(), in.readUTF()));
+            }
+            byte[] content = new byte[in.readInt()];
+            in.readFully(content);
+            return new CachedCompletion(status, headers, content, spilled.expiresAt);
+        }
+    }
+
+    private void deleteSpilledFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION)) {
+            for (Path file : files) {
+                delete(file);
+            }
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.debug("CompletionCache: cannot delete {}", file, e);
+        }
+    }
+
+    /**
+     * Expires the entries at their own deadline, whatever the time they have been (re)inserted at.
+     */
+    private static <V> Expiry<String, V> expiry(ToLongFunction<V> expiresAt) {
+        return new Expiry<String, V>() {
+            @Override
+            public long expireAfterCreate(String key, V value, long currentTime) {
+                return Math.max(0L, expiresAt.applyAsLong(value) - currentTime);
+            }
+
+            @Override
+            public long expireAfterUpdate(String key, V value, long currentTime, long currentDuration) {
+                return expireAfterCreate(key, value, currentTime);
+            }
+
+            @Override
+            public long expireAfterRead(String key, V value, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+        };
+    }
+}
@@ -16,9 +16,13 @@
 
 package org.openidentityplatform.openig.ai.filter;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.github.benmanes.caffeine.cache.Ticker;
 import org.forgerock.http.Filter;
 import org.forgerock.http.Handler;
+import org.forgerock.http.io.Buffer;
 import org.forgerock.http.protocol.Request;
 import org.forgerock.http.protocol.Response;
 import org.forgerock.http.protocol.Status;
@@ -26,7 +30,9 @@ import org.forgerock.json.JsonValue;
 import org.forgerock.openig.el.Expression;
 import org.forgerock.openig.heap.GenericHeaplet;
 import org.forgerock.openig.heap.HeapException;
+import org.forgerock.services.context.AttributesContext;
 import org.forgerock.services.context.Context;
+import org.forgerock.util.Factory;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
 import org.forgerock.util.promise.Promises;
@@ -36,11 +42,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
-import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.http.io.IO.newBranchingInputStream;
+import static org.forgerock.http.io.IO.newTemporaryStorage;
 import static org.forgerock.json.JsonValueFunctions.duration;
 import static org.forgerock.openig.el.Bindings.bindings;
 
@@ -56,7 +65,9 @@ import static org.forgerock.openig.el.Bindings.bindings;
  *   <li><strong>Token-based rate limiting</strong> – estimates the prompt-token cost of each
  *       request and enforces per-identity limits via {@link TokenRateLimiter}.
  *       Returns {@code 429 Too Many Requests} (with an exact {@code Retry-After} header)
- *       when the bucket is exhausted.</li>
+ *       when the bucket is exhausted. The estimate is pre-charged, then reconciled with the
+ *       {@code usage} reported by the provider, including in streamed ({@code stream: true})
+ *       responses.</li>
  *   <li><strong>Response enrichment</strong> – adds {@code X-LLM-*} observability headers.</li>
  * </ol>
  *
@@ -102,6 +113,10 @@ public class LLMProxyFilter implements Filter {
 
     static final long CHARS_PER_TOKEN = 4L;
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final Factory<Buffer> storage = newTemporaryStorage();
+
     private final LLMProvider provider;
     private final String baseUrl;
     private final String apiKey;
@@ -130,9 +145,9 @@ public class LLMProxyFilter implements Filter {
     public Promise<Response, NeverThrowsException> filter(Context context, Request request, Handler next) {
         String identity = getIdentity(context, request);
 
-        if (rateLimitEnabled) {
+        final long tokenCost = rateLimitEnabled ? estimateTokenCost(request) : 0L;
 
-            long tokenCost = estimateTokenCost(request);
+        if (rateLimitEnabled) {
 
             long waitNs = rateLimiter.tryConsume(identity, tokenCost);
 
@@ -147,7 +162,13 @@ public class LLMProxyFilter implements Filter {
         rewriteRequest(request);
 
         return next.handle(context, request)
-                .thenOnResult(response -> enrichResponse(response, identity));
+                .then(response -> {
+                    Response result = rateLimitEnabled
+                            ? reconcileUsage(response, identity, tokenCost, isCacheHit(context))
+                            : response;
+                    enrichResponse(result, identity);
+                    return result;
+                });
     }
 
     private String getIdentity(Context context, Request request) {
@@ -162,36 +183,29 @@ public class LLMProxyFilter implements Filter {
     /**
      * Estimates prompt-token cost: sums {@code content} lengths across all
      * {@code messages} entries and divides by 4 (chars-per-token rule of thumb).
-     * Falls back to 500 if the body is absent or unparseable.
+     * The body is scanned in a single pass with a streaming parser, no JSON tree is built.
+     * Falls back to the body length divided by 4 if there are no {@code messages},
+     * and to 500 if the body is absent or unparseable.
      */
-
     long estimateTokenCost(Request request) {
-        try {
-            JsonValue jsonEntity;
-            byte[] body;
-            try {
-                body = request.getEntity().getBytes();
-                jsonEntity = json(request.getEntity().getJson());
-            } catch (IOException e) {
-                logger.debug("Error parsing JSON request body", e);
-                throw e;
+        try (InputStream body = request.getEntity().newDecodedContentInputStream();
+             JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expecting a JSON object");
             }
-            JsonValue messages = jsonEntity.get("messages");
-            if (messages.isNull() || !messages.isList()) {
-                return Math.max(1L, body.length / CHARS_PER_TOKEN);
-            }
-            long charCount = 0;
-            for (Object msg : messages.asList()) {
-                JsonValue content = json(msg).get("content");
-                if (content.isString()) {
-                    charCount += content.asString().length();
-                } else if (content.isList()) {
-                    for (Object block : content.asList()) {
-                        JsonValue text = json(block).get("text");
-                        if (text.isString()) charCount += text.asString().length();
-                    }
+            long charCount = -1;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("messages".equals(field) && value == JsonToken.START_ARRAY) {
+                    charCount = countMessagesCharacters(parser);
+                } else {
+                    parser.skipChildren();
                 }
             }
+            if (charCount < 0) {
+                return Math.max(1L, parser.getCurrentLocation().getByteOffset() / CHARS_PER_TOKEN);
+            }
             return Math.max(1L, charCount / CHARS_PER_TOKEN);
         } catch (Exception e) {
             logger.debug("LLMProxyFilter: token cost estimation failed — using 500", e);
@@ -199,6 +213,107 @@ public class LLMProxyFilter implements Filter {
         }
     }
 
+    /**
+     * Counts the characters of the {@code content} of the messages: either a string, or an array of
+     * blocks with a {@code text}. The parser is positioned on the start of the {@code messages} array.
+     */
+    private static long countMessagesCharacters(JsonParser parser) throws IOException {
+        long charCount = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (!"content".equals(field)) {
+                    parser.skipChildren();
+                } else if (value == JsonToken.VALUE_STRING) {
+                    charCount += parser.getTextLength();
+                } else if (value == JsonToken.START_ARRAY) {
+                    charCount += countBlocksCharacters(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return charCount;
+    }
+
+    private static long countBlocksCharacters(JsonParser parser) throws IOException {
+        long charCount = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.VALUE_STRING && "text".equals(field)) {
+                    charCount += parser.getTextLength();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return charCount;
+    }
+
+    /**
+     * Corrects the pre-charged estimate with the tokens actually consumed by the call: a failed call is
+     * refunded, and a successful one is reconciled with the {@code usage} reported by the provider, once
+     * the response has been entirely read (see {@link UsageInputStream}). The estimate is kept when the
+     * provider does not report any usage, or when the response is compressed. A completion served by a
+     * {@link LLMResponseCacheFilter} placed after this filter ({@code cacheHit}) is not counted.
+     */
+    Response reconcileUsage(Response response, String identity, long estimatedCost, boolean cacheHit) {
+        if (!response.getStatus().isSuccessful() || cacheHit) {
+            rateLimiter.reconcile(identity, estimatedCost, 0L);
+            return response;
+        }
+        String contentType = response.getHeaders().getFirst("Content-Type");
+        String contentEncoding = response.getHeaders().getFirst("Content-Encoding");
+        if (contentType == null
+                || response.getEntity().isRawContentEmpty()
+                || (contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding))) {
+            return response;
+        }
+        String mediaType = contentType.toLowerCase(Locale.ROOT);
+        boolean eventStream = mediaType.startsWith("text/event-stream");
+        if (!eventStream && !mediaType.contains("json")) {
+            return response;
+        }
+
+        // The original entity is not closed: it is now owned by the copy
+        Response reconciled = new Response(response.getStatus());
+        reconciled.setVersion(response.getVersion());
+        reconciled.setCause(response.getCause());
+        reconciled.getHeaders().putAll(response.getHeaders());
+        InputStream content = new UsageInputStream(response.getEntity().getRawContentInputStream(),
+                eventStream,
+                actualCost -> {
+                    if (actualCost >= 0) {
+                        logger.debug("LLMProxyFilter: reconciling identity={} estimated={} actual={}",
+                                identity, estimatedCost, actualCost);
+                        rateLimiter.reconcile(identity, estimatedCost, actualCost);
+                    }
+                });
+        reconciled.getEntity().setRawContentInputStream(newBranchingInputStream(content, storage));
+        return reconciled;
+    }
+
+    /**
+     * Returns whether the completion has been served by a {@link LLMResponseCacheFilter}, as told by the request
+     * attribute it sets: the {@code X-LLM-Cache} response header could be set by the upstream server.
+     */
+    private static boolean isCacheHit(Context context) {
+        return context.containsContext(AttributesContext.class)
+                && context.asContext(AttributesContext.class).getAttributes()
+                        .remove(LLMResponseCacheFilter.CACHE_HIT_ATTRIBUTE) != null;
+    }
 
     /**
      * Rewrites the upstream request:
@@ -0,0 +1,481 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.ai.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.forgerock.http.Filter;
+import org.forgerock.http.Handler;
+import org.forgerock.http.io.Buffer;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.json.JsonValue;
+import org.forgerock.openig.heap.GenericHeaplet;
+import org.forgerock.openig.heap.HeapException;
+import org.forgerock.services.context.AttributesContext;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.Factory;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.time.Duration;
+import org.openidentityplatform.openig.ai.filter.CompletionCache.CachedCompletion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.forgerock.http.io.IO.newBranchingInputStream;
+import static org.forgerock.http.io.IO.newTemporaryStorage;
+import static org.forgerock.json.JsonValueFunctions.duration;
+import static org.forgerock.openig.heap.Keys.SCHEDULED_EXECUTOR_SERVICE_HEAP_KEY;
+import static org.forgerock.openig.util.JsonValues.requiredHeapObject;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+/**
+ * Serves the completions of byte-identical deterministic LLM requests from a cache, instead of sending each of them
+ * upstream.
+ *
+ * <ol>
+ *   <li><strong>Canonicalization</strong> – the JSON request body is parsed, the {@code ignoredFields}
+ *       (e.g. {@code user}) are removed from the top-level object, and it is written back with its keys
+ *       sorted. The cache key is the SHA-256 hash of the request path and of that canonical body.</li>
+ *   <li><strong>Determinism</strong> – by default, only the requests with a {@code temperature} of 0 are
+ *       cached. Requests with a {@code Cache-Control: no-cache} or {@code no-store} header always go
+ *       upstream.</li>
+ *   <li><strong>Coalescing</strong> – concurrent identical requests are sent upstream once: the other ones
+ *       wait for the completion and are served from it. They stop waiting and go upstream themselves after the
+ *       {@code coalescingTimeout}, or when the completion is not cached.</li>
+ *   <li><strong>Streaming</strong> – a streamed ({@code text/event-stream}) completion is recorded as it is
+ *       relayed, and the recorded events are replayed on the next hits.</li>
+ * </ol>
+ *
+ * Only successful responses no larger than {@code maxEntrySize} are cached. The store is bounded by
+ * {@code maxMemorySize}, and optionally spills to a local directory (see {@link CompletionCache}).
+ *
+ * <p>Place this filter <em>before</em> {@link LLMProxyFilter} in the chain, so that the cache hits are not
+ * counted by its {@link TokenRateLimiter}; when placed after, the proxy refunds the estimated cost of the hits.
+ *
+ * <h2>Heap configuration</h2>
+ * <pre>{@code
+ * {
+ *   "type": "LLMResponseCacheFilter",
+ *   "config": {
+ *     "ttl"               : "1 hour",          // optional
+ *     "coalescingTimeout" : "1 minute",        // optional
+ *     "executor"          : "ScheduledExecutorService", // optional
+ *     "maxMemorySize"     : 67108864,          // optional, bytes
+ *     "maxEntrySize"      : 1048576,           // optional, bytes
+ *     "ignoredFields"     : [ "user" ],        // optional
+ *     "deterministicOnly" : true,              // optional
+ *     "disk": {                                // optional, spill to disk
+ *       "directory"       : "/var/cache/openig/llm",
+ *       "maxSize"         : 1073741824         // optional, bytes
+ *     }
+ *   }
+ * }
+ * }</pre>
+ *
+ * <h2>Response headers</h2>
+ * <ul>
+ *   <li>{@code X-LLM-Cache} — {@code HIT} when served from the cache, {@code MISS} when sent upstream</li>
+ * </ul>
+ */
+public class LLMResponseCacheFilter implements Filter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LLMResponseCacheFilter.class);
+
+    public static final String HEADER_LLM_CACHE = "X-LLM-Cache";
+    public static final String CACHE_HIT = "HIT";
+    public static final String CACHE_MISS = "MISS";
+
+    /**
+     * The request attribute set on a cache hit, so that a {@link LLMProxyFilter} placed before this filter does not
+     * count the completion: unlike the {@code X-LLM-Cache} header, it cannot be set by the upstream server.
+     */
+    static final String CACHE_HIT_ATTRIBUTE = LLMResponseCacheFilter.class.getName() + ".hit";
+
+    static final String DEFAULT_TTL = "1 hour";
+    static final String DEFAULT_COALESCING_TIMEOUT = "1 minute";
+    static final long DEFAULT_MAX_MEMORY_SIZE = 64L * 1024 * 1024;
+    static final int DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
+    static final long DEFAULT_MAX_DISK_SIZE = 1024L * 1024 * 1024;
+    static final List<String> DEFAULT_IGNORED_FIELDS = List.of("user");
+
+    /** The response headers kept with a completion, the other ones are specific to a call. */
+    private static final List<String> CACHED_HEADERS = List.of("Content-Type", "Content-Encoding", "Content-Language");
+
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private final CompletionCache cache;
+    private final Set<String> ignoredFields;
+    private final boolean deterministicOnly;
+    private final int maxEntrySize;
+    private final ScheduledExecutorService scheduler;
+    private final long coalescingTimeout;
+
+    private final Factory<Buffer> storage = newTemporaryStorage();
+
+    /** The completions being received from upstream, by cache key. */
+    private final ConcurrentMap<String, PromiseImpl<CachedCompletion, NeverThrowsException>> inFlight =
+            new ConcurrentHashMap<>();
+
+    LLMResponseCacheFilter(CompletionCache cache,
+                           List<String> ignoredFields,
+                           boolean deterministicOnly,
+                           int maxEntrySize,
+                           ScheduledExecutorService scheduler,
+                           Duration coalescingTimeout) {
+        this.cache = cache;
+        this.ignoredFields = new HashSet<>(ignoredFields);
+        this.deterministicOnly = deterministicOnly;
+        this.maxEntrySize = maxEntrySize;
+        this.scheduler = scheduler;
+        this.coalescingTimeout = coalescingTimeout.to(TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Promise<Response, NeverThrowsException> filter(Context context, Request request, Handler next) {
+        String key = cacheKey(request);
+        if (key == null) {
+            return next.handle(context, request);
+        }
+
+        CachedCompletion cached = cache.get(key);
+        if (cached != null) {
+            logger.debug("LLMResponseCacheFilter: cache hit key={}", key);
+            return newResultPromise(hit(context, cached));
+        }
+
+        PromiseImpl<CachedCompletion, NeverThrowsException> received = PromiseImpl.create();
+        PromiseImpl<CachedCompletion, NeverThrowsException> leader = inFlight.putIfAbsent(key, received);
+        if (leader != null) {
+            logger.debug("LLMResponseCacheFilter: waiting for the identical call in flight key={}", key);
+            return follow(key, leader).thenAsync(completion -> completion != null
+                    ? newResultPromise(hit(context, completion))
+                    : next.handle(context, request));
+        }
+
+        // The previous leader may have completed between the lookup and the registration
+        cached = cache.get(key);
+        if (cached != null) {
+            complete(key, received, cached);
+            return newResultPromise(hit(context, cached));
+        }
+
+        // The waiting calls must be released whatever happens upstream
+        Promise<Response, NeverThrowsException> response;
+        try {
+            response = next.handle(context, request);
+        } catch (RuntimeException e) {
+            complete(key, received, null);
+            throw e;
+        }
+        return response.then(upstream -> record(key, upstream, received))
+                .thenOnRuntimeException(e -> complete(key, received, null));
+    }
+
+    /**
+     * Waits for the completion of the identical call in flight, for at most the coalescing timeout: the returned
+     * promise is completed with {@code null} when it is over.
+     */
+    private Promise<CachedCompletion, NeverThrowsException> follow(
+            String key, Promise<CachedCompletion, NeverThrowsException> leader) {
+        PromiseImpl<CachedCompletion, NeverThrowsException> bounded = PromiseImpl.create();
+        AtomicBoolean settled = new AtomicBoolean();
+        ScheduledFuture<?> timeout;
+        try {
+            timeout = scheduler.schedule(() -> {
+                if (settled.compareAndSet(false, true)) {
+                    logger.debug("LLMResponseCacheFilter: the identical call is too long, going upstream key={}", key);
+                    bounded.handleResult(null);
+                }
+            }, coalescingTimeout, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down: do not wait without a bound
+            return newResultPromise(null);
+        }
+        leader.thenOnResult(completion -> {
+            if (settled.compareAndSet(false, true)) {
+                timeout.cancel(false);
+                bounded.handleResult(completion);
+            }
+        });
+        return bounded;
+    }
+
+    /**
+     * Computes the cache key of the request, or returns {@code null} if it must not be cached.
+     */
+    String cacheKey(Request request) {
+        if (!"POST".equalsIgnoreCase(request.getMethod()) || request.getEntity().isRawContentEmpty()) {
+            return null;
+        }
+        String cacheControl = request.getHeaders().getFirst("Cache-Control");
+        if (cacheControl != null && (cacheControl.contains("no-cache") || cacheControl.contains("no-store"))) {
+            return null;
+        }
+
+        Map<String, Object> body;
+        try (InputStream in = request.getEntity().newDecodedContentInputStream()) {
+            body = CANONICAL_MAPPER.readValue(in, CANONICAL_MAPPER.getTypeFactory()
+                    .constructMapType(Map.class, String.class, Object.class));
+        } catch (IOException e) {
+            logger.debug("LLMResponseCacheFilter: not a JSON object, not cached", e);
+            return null;
+        }
+        if (deterministicOnly && !isZero(body.get("temperature"))) {
+            return null;
+        }
+        body.keySet().removeAll(ignoredFields);
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.getUri().getRawPath().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            String acceptEncoding = request.getHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null) {
+                digest.update(acceptEncoding.getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) '\n');
+            try (OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+                CANONICAL_MAPPER.writeValue(out, body);
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            logger.warn("LLMResponseCacheFilter: cannot hash the request, not cached", e);
+            return null;
+        }
+    }
+
+    private static boolean isZero(Object temperature) {
+        return temperature instanceof Number && ((Number) temperature).doubleValue() == 0d;
+    }
+
+    /**
+     * Relays the upstream response, recording its content to cache it once it has been entirely read.
+     */
+    private Response record(String key,
+                            Response response,
+                            PromiseImpl<CachedCompletion, NeverThrowsException> received) {
+        response.getHeaders().put(HEADER_LLM_CACHE, CACHE_MISS);
+        String contentLength = response.getHeaders().getFirst("Content-Length");
+        if (!response.getStatus().isSuccessful()
+                || (contentLength != null && isLargerThan(contentLength, maxEntrySize))) {
+            complete(key, received, null);
+            return response;
+        }
+
+        int status = response.getStatus().getCode();
+        List<Map.Entry<String, String>> headers = new ArrayList<>();
+        for (String name : CACHED_HEADERS) {
+            for (String value : response.getHeaders().getAll(name)) {
+                headers.add(Map.entry(name, value));
+            }
+        }
+
+        // The original entity is not closed: it is now owned by the copy
+        Response recorded = new Response(response.getStatus());
+        recorded.setVersion(response.getVersion());
+        recorded.setCause(response.getCause());
+        recorded.getHeaders().putAll(response.getHeaders());
+        InputStream content = new RecordingInputStream(response.getEntity().getRawContentInputStream(),
+                maxEntrySize,
+                bytes -> complete(key, received, bytes == null ? null : cache.put(key, status, headers, bytes)));
+        recorded.getEntity().setRawContentInputStream(newBranchingInputStream(content, storage));
+        return recorded;
+    }
+
+    private static boolean isLargerThan(String contentLength, int size) {
+        try {
+            return Long.parseLong(contentLength.trim()) > size;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private void complete(String key,
+                          PromiseImpl<CachedCompletion, NeverThrowsException> received,
+                          CachedCompletion completion) {
+        if (inFlight.remove(key, received)) {
+            received.handleResult(completion);
+        }
+    }
+
+    private static Response hit(Context context, CachedCompletion completion) {
+        if (context.containsContext(AttributesContext.class)) {
+            context.asContext(AttributesContext.class).getAttributes().put(CACHE_HIT_ATTRIBUTE, Boolean.TRUE);
+        }
+        Response response = completion.toResponse();
+        response.getHeaders().put(HEADER_LLM_CACHE, CACHE_HIT);
+        return response;
+    }
+
+    void stop() {
+        cache.clear();
+    }
+
+    /**
+     * Passes the content through, while keeping a copy of it. Once the end of the content is reached, the listener
+     * is notified with that copy; it is notified with {@code null} if the content is larger than the maximum size,
+     * or if it is closed before the end.
+     */
+    static final class RecordingInputStream extends FilterInputStream {
+
+        private final int maxSize;
+        private final Consumer<byte[]> listener;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        RecordingInputStream(InputStream in, int maxSize, Consumer<byte[]> listener) {
+            super(in);
+            this.maxSize = maxSize;
+            this.listener = listener;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read == -1) {
+                complete(true);
+            } else {
+                record(new byte[] {(byte) read}, 0, 1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read == -1) {
+                complete(true);
+            } else {
+                record(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                complete(false);
+            }
+        }
+
+        private void record(byte[] b, int off, int len) {
+            if (copy == null) {
+                return;
+            }
+            if (copy.size() + len > maxSize) {
+                // Too large to be cached: release the waiting calls now
+                copy = null;
+                complete(false);
+                return;
+            }
+            copy.write(b, off, len);
+        }
+
+        private void complete(boolean endOfStream) {
+            if (completed.compareAndSet(false, true)) {
+                listener.accept(endOfStream && copy != null ? copy.toByteArray() : null);
+                copy = null;
+            }
+        }
+    }
+
+    public static class Heaplet extends GenericHeaplet {
+
+        private LLMResponseCacheFilter filter;
+
+        @Override
+        public Object create() throws HeapException {
+            JsonValue evaluatedConfig = config.as(evaluatedWithHeapProperties());
+
+            Duration ttl = evaluatedConfig.get("ttl").defaultTo(DEFAULT_TTL).as(duration());
+            Duration coalescingTimeout = evaluatedConfig.get("coalescingTimeout")
+                    .defaultTo(DEFAULT_COALESCING_TIMEOUT).as(duration());
+            ScheduledExecutorService scheduler = config.get("executor")
+                    .defaultTo(SCHEDULED_EXECUTOR_SERVICE_HEAP_KEY)
+                    .as(requiredHeapObject(heap, ScheduledExecutorService.class));
+            long maxMemorySize = evaluatedConfig.get("maxMemorySize").defaultTo(DEFAULT_MAX_MEMORY_SIZE).asLong();
+            int maxEntrySize = evaluatedConfig.get("maxEntrySize").defaultTo(DEFAULT_MAX_ENTRY_SIZE).asInteger();
+            List<String> ignoredFields = evaluatedConfig.get("ignoredFields")
+                    .defaultTo(DEFAULT_IGNORED_FIELDS).asList(String.class);
+            boolean deterministicOnly = evaluatedConfig.get("deterministicOnly").defaultTo(true).asBoolean();
+
+            Path directory = null;
+            long maxDiskSize = DEFAULT_MAX_DISK_SIZE;
+            JsonValue disk = evaluatedConfig.get("disk");
+            if (disk.isNotNull()) {
+                directory = Paths.get(disk.get("directory").required().asString());
+                maxDiskSize = disk.get("maxSize").defaultTo(DEFAULT_MAX_DISK_SIZE).asLong();
+            }
+
+            if (maxEntrySize <= 0) {
+                throw new HeapException("LLMResponseCacheFilter: maxEntrySize must be > 0");
+            }
+            if (coalescingTimeout.isZero() || coalescingTimeout.isUnlimited()) {
+                throw new HeapException("LLMResponseCacheFilter: coalescingTimeout must be > 0 and limited");
+            }
+            try {
+                CompletionCache cache = new CompletionCache(maxMemorySize, ttl, Ticker.systemTicker(),
+                        directory, maxDiskSize);
+                filter = new LLMResponseCacheFilter(cache, ignoredFields, deterministicOnly, maxEntrySize,
+                        scheduler, coalescingTimeout);
+                return filter;
+            } catch (IllegalArgumentException | IOException e) {
+                throw new HeapException("LLMResponseCacheFilter: invalid cache configuration", e);
+            }
+        }
+
+        @Override
+        public void destroy() {
+            super.destroy();
+            if (filter != null) {
+                filter.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,659 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.ai.filter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Aho-Corasick automaton finding, in a single linear pass over a text, which of a list of case-insensitive regular
+ * expressions may match it.
+ *
+ * <p>A set of literals is extracted from each expression, such that any match of the expression contains at least
+ * one of them (e.g. {@code ignore} for {@code ignore\s+(all\s+)?(previous|prior)}, or {@code {previous, prior}}
+ * when the choice is more selective). All the literals are compiled into a single deterministic automaton over
+ * case-folded ASCII: an expression is a candidate when one of its literals is found in the text, and only the
+ * candidates have to be confirmed with their {@link java.util.regex.Pattern}.
+ *
+ * <p>The extraction is conservative: an expression using a construct it does not understand (back-references,
+ * comments mode, ...) or without a literal of at least {@value #MIN_LITERAL_LENGTH} characters is always a
+ * candidate.
+ */
+final class PatternAutomaton {
+
+    static final int MIN_LITERAL_LENGTH = 2;
+
+    /** Bounds of the finite sets of strings followed by the extraction. */
+    private static final int MAX_STRINGS = 64;
+    private static final int MAX_STRING_LENGTH = 64;
+    private static final int MAX_LITERALS = 256;
+
+    private static final int ALPHABET = 128;
+
+    /** Transitions of the automaton, {@code ALPHABET} per state: the failure links are already followed. */
+    private final int[] transitions;
+
+    /** The expressions recognized in each state, or {@code null}. */
+    private final int[][] outputs;
+
+    /** The expressions without literals, always candidates. */
+    private final BitSet alwaysCandidates = new BitSet();
+
+    private final int size;
+
+    /**
+     * Compiles the automaton of the regular expressions.
+     *
+     * @param regexes the regular expressions, in the order of their indexes
+     */
+    PatternAutomaton(List<String> regexes) {
+        this.size = regexes.size();
+        List<int[]> goTo = new ArrayList<>();
+        List<Set<Integer>> recognized = new ArrayList<>();
+        goTo.add(newState());
+        recognized.add(null);
+
+        for (int index = 0; index < regexes.size(); index++) {
+            Set<String> literals = requiredLiterals(regexes.get(index));
+            if (literals == null) {
+                alwaysCandidates.set(index);
+                continue;
+            }
+            for (String literal : literals) {
+                int state = 0;
+                for (int i = 0; i < literal.length(); i++) {
+                    int c = literal.charAt(i);
+                    if (goTo.get(state)[c] <= 0) {
+                        goTo.get(state)[c] = goTo.size();
+                        goTo.add(newState());
+                        recognized.add(null);
+                    }
+                    state = goTo.get(state)[c];
+                }
+                if (recognized.get(state) == null) {
+                    recognized.set(state, new HashSet<>());
+                }
+                recognized.get(state).add(index);
+            }
+        }
+
+        // Breadth-first, so that the failure state of each state is complete when it is visited
+        int states = goTo.size();
+        transitions = new int[states * ALPHABET];
+        outputs = new int[states][];
+        int[] failure = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = goTo.get(0)[c];
+            if (next > 0) {
+                transitions[c] = next;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            Set<Integer> output = recognized.get(state);
+            int[] inherited = outputs[failure[state]];
+            if (inherited != null) {
+                if (output == null) {
+                    output = new HashSet<>();
+                }
+                for (int index : inherited) {
+                    output.add(index);
+                }
+            }
+            if (output != null) {
+                outputs[state] = output.stream().mapToInt(Integer::intValue).sorted().toArray();
+            }
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = goTo.get(state)[c];
+                if (next > 0) {
+                    failure[next] = transitions[failure[state] * ALPHABET + c];
+                    transitions[state * ALPHABET + c] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * ALPHABET + c] = transitions[failure[state] * ALPHABET + c];
+                }
+            }
+        }
+    }
+
+    private static int[] newState() {
+        return new int[ALPHABET];
+    }
+
+    /**
+     * Returns the indexes of the expressions that may match the text: the ones with a literal found in the text,
+     * and the ones without literals.
+     */
+    BitSet candidates(CharSequence text) {
+        BitSet candidates = (BitSet) alwaysCandidates.clone();
+        int state = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            int c = fold(text.charAt(i));
+            state = c < ALPHABET ? transitions[state * ALPHABET + c] : 0;
+            int[] output = outputs[state];
+            if (output != null) {
+                for (int index : output) {
+                    candidates.set(index);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /** The number of expressions that are always candidates. */
+    int alwaysCandidates() {
+        return alwaysCandidates.cardinality();
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Folds a character the way {@code CASE_INSENSITIVE | UNICODE_CASE} matching does against ASCII: a character
+     * is mapped to the lower-case ASCII character it matches, if any (e.g. the Kelvin sign to {@code k}).
+     */
+    static int fold(char c) {
+        if (c < ALPHABET) {
+            return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+        }
+        char upper = Character.toUpperCase(c);
+        if (upper < ALPHABET) {
+            return Character.toLowerCase(upper);
+        }
+        char lower = Character.toLowerCase(c);
+        return lower < ALPHABET ? lower : c;
+    }
+
+    /**
+     * Returns literals, case-folded, such that any match of the expression contains at least one of them, or
+     * {@code null} when there is no such literal (or it cannot be determined).
+     */
+    static Set<String> requiredLiterals(String regex) {
+        Fragment fragment;
+        try {
+            fragment = new Parser(regex).parse();
+        } catch (UnsupportedOperationException e) {
+            return null;
+        }
+        Set<String> literals = fragment.required;
+        if (literals == null || minLength(literals) < MIN_LITERAL_LENGTH) {
+            return null;
+        }
+        return literals;
+    }
+
+    /**
+     * Whether the expression nests unbounded quantifiers, like {@code (a+)+}: it may then backtrack exponentially
+     * on some texts.
+     */
+    static boolean hasNestedQuantifiers(String regex) {
+        try {
+            return new Parser(regex).parse().nested;
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Literals extraction
+    // -------------------------------------------------------------------------
+
+    /** What is known of the strings matched by a part of an expression. */
+    private static final class Fragment {
+
+        static final Fragment EMPTY = new Fragment(Collections.singleton(""), null, false, false);
+        static final Fragment ANY = new Fragment(null, null, false, false);
+
+        /** The finite set of strings it matches, or {@code null}. */
+        final Set<String> exact;
+        /** Literals one of which is contained in each string it matches, or {@code null}. */
+        final Set<String> required;
+        /** Whether it contains an unbounded quantifier. */
+        final boolean unbounded;
+        /** Whether it contains nested unbounded quantifiers. */
+        final boolean nested;
+
+        Fragment(Set<String> exact, Set<String> required, boolean unbounded, boolean nested) {
+            this.exact = exact;
+            this.required = exact != null && !exact.contains("") ? best(required, exact) : required;
+            this.unbounded = unbounded;
+            this.nested = nested;
+        }
+
+        static Fragment literal(char c) {
+            return c < ALPHABET
+                    ? new Fragment(Collections.singleton(String.valueOf((char) fold(c))), null, false, false)
+                    : ANY;
+        }
+    }
+
+    private static final class Parser {
+
+        private final String regex;
+        private int pos;
+
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        Fragment parse() {
+            Fragment fragment = alternation();
+            if (pos != regex.length()) {
+                throw unsupported();
+            }
+            return fragment;
+        }
+
+        private Fragment alternation() {
+            List<Fragment> branches = new ArrayList<>();
+            branches.add(concatenation());
+            while (pos < regex.length() && regex.charAt(pos) == '|') {
+                pos++;
+                branches.add(concatenation());
+            }
+            if (branches.size() == 1) {
+                return branches.get(0);
+            }
+            Set<String> exact = new LinkedHashSet<>();
+            Set<String> required = new LinkedHashSet<>();
+            boolean unbounded = false;
+            boolean nested = false;
+            for (Fragment branch : branches) {
+                exact = union(exact, branch.exact, MAX_STRINGS);
+                required = union(required, branch.required, MAX_LITERALS);
+                unbounded |= branch.unbounded;
+                nested |= branch.nested;
+            }
+            return new Fragment(exact, required, unbounded, nested);
+        }
+
+        private Fragment concatenation() {
+            Set<String> run = Collections.singleton("");
+            boolean exactSoFar = true;
+            Set<String> required = null;
+            boolean unbounded = false;
+            boolean nested = false;
+            while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+                Fragment item = quantified();
+                unbounded |= item.unbounded;
+                nested |= item.nested;
+                Set<String> product = item.exact != null ? product(run, item.exact) : null;
+                if (product != null) {
+                    run = product;
+                    continue;
+                }
+                // The strings matched so far are complete: they are required
+                required = best(required, withoutEmpty(run));
+                required = best(required, item.required);
+                exactSoFar = false;
+                run = item.exact != null ? item.exact : Collections.singleton("");
+            }
+            required = best(required, withoutEmpty(run));
+            return new Fragment(exactSoFar ? run : null, required, unbounded, nested);
+        }
+
+        private Fragment quantified() {
+            Fragment atom = atom();
+            if (pos >= regex.length()) {
+                return atom;
+            }
+            int min;
+            int max;
+            char c = regex.charAt(pos);
+            if (c == '?') {
+                min = 0;
+                max = 1;
+                pos++;
+            } else if (c == '*') {
+                min = 0;
+                max = Integer.MAX_VALUE;
+                pos++;
+            } else if (c == '+') {
+                min = 1;
+                max = Integer.MAX_VALUE;
+                pos++;
+            } else if (c == '{') {
+                int close = regex.indexOf('}', pos);
+                if (close < 0) {
+                    throw unsupported();
+                }
+                String[] bounds = regex.substring(pos + 1, close).split(",", -1);
+                try {
+                    min = Integer.parseInt(bounds[0].trim());
+                    max = bounds.length == 1 ? min
+                            : bounds[1].trim().isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(bounds[1].trim());
+                } catch (NumberFormatException e) {
+                    throw unsupported();
+                }
+                if (bounds.length > 2 || min > max) {
+                    throw unsupported();
+                }
+                pos = close + 1;
+            } else {
+                return atom;
+            }
+            // Lazy or possessive
+            if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+                pos++;
+            }
+            return quantify(atom, min, max);
+        }
+
+        private static Fragment quantify(Fragment atom, int min, int max) {
+            if (max == 0) {
+                return Fragment.EMPTY;
+            }
+            boolean unbounded = max == Integer.MAX_VALUE;
+            Set<String> exact = null;
+            if (atom.exact != null) {
+                if (min == 0 && max == 1) {
+                    exact = union(new LinkedHashSet<>(atom.exact), Collections.singleton(""), MAX_STRINGS);
+                } else if (min == max && min <= 4) {
+                    exact = Collections.singleton("");
+                    for (int i = 0; i < min && exact != null; i++) {
+                        exact = product(exact, atom.exact);
+                    }
+                }
+            }
+            return new Fragment(exact,
+                                min > 0 ? atom.required : null,
+                                unbounded || atom.unbounded,
+                                atom.nested || (unbounded && atom.unbounded));
+        }
+
+        private Fragment atom() {
+            char c = regex.charAt(pos++);
+            switch (c) {
+            case '(':
+                return group();
+            case '[':
+                return characterClass();
+            case '\\':
+                return escape();
+            case '.':
+                return Fragment.ANY;
+            case '^':
+            case '$':
+                return Fragment.EMPTY;
+            case ')':
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                throw unsupported();
+            default:
+                return Fragment.literal(c);
+            }
+        }
+
+        private Fragment group() {
+            boolean lookaround = false;
+            if (regex.startsWith("?", pos)) {
+                pos++;
+                if (regex.startsWith(":", pos) || regex.startsWith(">", pos)) {
+                    pos++;
+                } else if (regex.startsWith("=", pos) || regex.startsWith("!", pos)) {
+                    pos++;
+                    lookaround = true;
+                } else if (regex.startsWith("<=", pos) || regex.startsWith("<!", pos)) {
+                    pos += 2;
+                    lookaround = true;
+                } else if (regex.startsWith("<", pos)) {
+                    int close = regex.indexOf('>', pos);
+                    if (close < 0) {
+                        throw unsupported();
+                    }
+                    pos = close + 1;
+                } else {
+                    // Inline flags: only the comments mode changes the syntax
+                    for (; pos < regex.length(); pos++) {
+                        char flag = regex.charAt(pos);
+                        if (flag == 'x') {
+                            throw unsupported();
+                        } else if (!Character.isLetter(flag) && flag != '-') {
+                            break;
+                        }
+                    }
+                    if (regex.startsWith(")", pos)) {
+                        pos++;
+                        return Fragment.EMPTY;
+                    }
+                    if (!regex.startsWith(":", pos)) {
+                        throw unsupported();
+                    }
+                    pos++;
+                }
+            }
+            Fragment inner = alternation();
+            if (!regex.startsWith(")", pos)) {
+                throw unsupported();
+            }
+            pos++;
+            // A lookaround does not consume anything: ignoring it only makes the literals less selective
+            return lookaround ? Fragment.EMPTY : inner;
+        }
+
+        private Fragment escape() {
+            if (pos >= regex.length()) {
+                throw unsupported();
+            }
+            char c = regex.charAt(pos++);
+            switch (c) {
+            case 's': case 'S': case 'w': case 'W': case 'd': case 'D':
+            case 'h': case 'H': case 'v': case 'V': case 'R': case 'X':
+                return Fragment.ANY;
+            case 'p': case 'P':
+                skipProperty();
+                return Fragment.ANY;
+            case 'b': case 'B': case 'A': case 'z': case 'Z': case 'G':
+                if (regex.startsWith("{", pos)) {
+                    throw unsupported();
+                }
+                return Fragment.EMPTY;
+            case 't':
+                return Fragment.literal('\t');
+            case 'n':
+                return Fragment.literal('\n');
+            case 'r':
+                return Fragment.literal('\r');
+            case 'f':
+                return Fragment.literal('\f');
+            case 'a':
+                return Fragment.literal('\u0007');
+            case 'e':
+                return Fragment.literal('\u001B');
+            case 'Q':
+                return quotation();
+            default:
+                if (Character.isLetterOrDigit(c)) {
+                    // Back-references, code points, control characters...
+                    throw unsupported();
+                }
+                return Fragment.literal(c);
+            }
+        }
+
+        private void skipProperty() {
+            if (regex.startsWith("{", pos)) {
+                int close = regex.indexOf('}', pos);
+                if (close < 0) {
+                    throw unsupported();
+                }
+                pos = close + 1;
+            } else {
+                pos++;
+            }
+        }
+
+        private Fragment quotation() {
+            int end = regex.indexOf("\\E", pos);
+            String quoted = regex.substring(pos, end < 0 ? regex.length() : end);
+            pos = end < 0 ? regex.length() : end + 2;
+            Set<String> run = Collections.singleton("");
+            Set<String> required = null;
+            for (int i = 0; i < quoted.length(); i++) {
+                Fragment literal = Fragment.literal(quoted.charAt(i));
+                Set<String> product = literal.exact != null ? product(run, literal.exact) : null;
+                if (product == null) {
+                    required = best(required, withoutEmpty(run));
+                    run = literal.exact != null ? literal.exact : Collections.singleton("");
+                } else {
+                    run = product;
+                }
+            }
+            return new Fragment(required == null ? run : null, best(required, withoutEmpty(run)), false, false);
+        }
+
+        /**
+         * A class only made of a few literal characters is exact, like {@code [:;]}; any other class (negation,
+         * ranges, predefined classes, intersections) matches an unknown character.
+         */
+        private Fragment characterClass() {
+            boolean simple = true;
+            Set<String> characters = new LinkedHashSet<>();
+            if (regex.startsWith("^", pos)) {
+                simple = false;
+                pos++;
+            }
+            if (regex.startsWith("]", pos)) {
+                throw unsupported();
+            }
+            int depth = 1;
+            while (depth > 0) {
+                if (pos >= regex.length()) {
+                    throw unsupported();
+                }
+                char c = regex.charAt(pos++);
+                if (c == '[') {
+                    simple = false;
+                    depth++;
+                } else if (c == ']') {
+                    depth--;
+                } else if (c == '&' && regex.startsWith("&", pos)) {
+                    simple = false;
+                    pos++;
+                } else if (c == '\\') {
+                    if (pos >= regex.length()) {
+                        throw unsupported();
+                    }
+                    char escaped = regex.charAt(pos++);
+                    if (escaped == 'Q') {
+                        throw unsupported();
+                    } else if (escaped == 'p' || escaped == 'P') {
+                        skipProperty();
+                        simple = false;
+                    } else if (Character.isLetterOrDigit(escaped)) {
+                        simple = false;
+                    } else {
+                        characters.add(String.valueOf(escaped));
+                    }
+                } else if (c == '-' && !characters.isEmpty() && !regex.startsWith("]", pos)) {
+                    // A range
+                    simple = false;
+                } else {
+                    characters.add(String.valueOf(c));
+                }
+            }
+            if (!simple || characters.size() > 8) {
+                return Fragment.ANY;
+            }
+            Set<String> exact = new LinkedHashSet<>();
+            for (String character : characters) {
+                Fragment literal = Fragment.literal(character.charAt(0));
+                if (literal.exact == null) {
+                    return Fragment.ANY;
+                }
+                exact.addAll(literal.exact);
+            }
+            return new Fragment(exact, null, false, false);
+        }
+
+        private UnsupportedOperationException unsupported() {
+            return new UnsupportedOperationException("Unsupported construct at " + pos + " in " + regex);
+        }
+    }
+
+    /** All the concatenations of a string of each set, or {@code null} if there would be too many. */
+    private static Set<String> product(Set<String> prefixes, Set<String> suffixes) {
+        if ((long) prefixes.size() * suffixes.size() > MAX_STRINGS) {
+            return null;
+        }
+        Set<String> product = new LinkedHashSet<>();
+        for (String prefix : prefixes) {
+            for (String suffix : suffixes) {
+                if (prefix.length() + suffix.length() > MAX_STRING_LENGTH) {
+                    return null;
+                }
+                product.add(prefix + suffix);
+            }
+        }
+        return product;
+    }
+
+    private static Set<String> union(Set<String> set, Set<String> other, int maxSize) {
+        if (set == null || other == null) {
+            return null;
+        }
+        set.addAll(other);
+        return set.size() <= maxSize ? set : null;
+    }
+
+    private static Set<String> withoutEmpty(Set<String> strings) {
+        return strings.contains("") ? null : strings;
+    }
+
+    /** The most selective of 2 sets of required literals: the one with the longest shortest literal. */
+    private static Set<String> best(Set<String> first, Set<String> second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        int firstLength = minLength(first);
+        int secondLength = minLength(second);
+        if (firstLength != secondLength) {
+            return firstLength > secondLength ? first : second;
+        }
+        return first.size() <= second.size() ? first : second;
+    }
+
+    private static int minLength(Set<String> strings) {
+        int min = Integer.MAX_VALUE;
+        for (String string : strings) {
+            min = Math.min(min, string.length());
+        }
+        return min;
+    }
+
+    @Override
+    public String toString() {
+        return "PatternAutomaton{patterns=" + size + ", states=" + outputs.length
+                + ", alwaysCandidates=" + Arrays.toString(alwaysCandidates.stream().toArray()) + "}";
+    }
+}
@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 
 import java.text.Normalizer;
 import java.util.Base64;
+import java.util.BitSet;
 import java.util.List;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -38,9 +39,17 @@ import java.util.stream.Collectors;
  *       payloads embedded as Base64 strings.</li>
  *   <li><strong>Pattern matching</strong> – applies a compiled set of
  *       case-insensitive patterns covering all categories from the architecture:
- *       override instructions, role-play bypass, prompt exfiltration, etc.</li>
+ *       override instructions, role-play bypass, prompt exfiltration, etc.
+ *       The literals required by the patterns are compiled into a single
+ *       {@link PatternAutomaton}: the text is scanned once, and only the patterns
+ *       whose literals were found are confirmed with their regex.</li>
  * </ol>
  *
+ * <p>The confirmation of a pattern is bounded to {@code maxStepsPerChar} character
+ * reads per character of the text, so that a pattern backtracking catastrophically
+ * cannot stall the gateway: a text exhausting that budget is reported as an
+ * injection ({@code regex_backtracking_limit}).
+ *
  * <p>Patterns are compiled once at construction time and are immutable,
  * making this class fully thread-safe without synchronization.
  */
@@ -67,14 +76,39 @@ public final class RegexDetector implements InjectionDetector {
             "(?:[A-Za-z0-9+/]{4}){4,}(?:[A-Za-z0-9+/]{2}==|[A-Za-z0-9+/]{3}=)?");
 
 
+    /** Default bound of the character reads of a regex, per character of the text. */
+    static final int DEFAULT_MAX_STEPS_PER_CHAR = 1_000;
+
+    /** Reads always allowed, whatever the length of the text. */
+    private static final long MIN_STEPS = 100_000L;
+
+    static final String BACKTRACKING_LIMIT_REASON = "regex_backtracking_limit";
+
     private final List<CompiledPattern> compiledPatterns;
 
+    private final PatternAutomaton automaton;
+
+    private final int maxStepsPerChar;
+
     public RegexDetector(List<PatternEntry> patterns) {
+        this(patterns, DEFAULT_MAX_STEPS_PER_CHAR);
+    }
+
+    RegexDetector(List<PatternEntry> patterns, int maxStepsPerChar) {
         this.compiledPatterns = patterns.stream()
                 .map(p -> new CompiledPattern(p.reason,
                         Pattern.compile(p.regex, Pattern.UNICODE_CASE | Pattern.CASE_INSENSITIVE)))
                 .collect(Collectors.toList());
-        logger.info("RegexDetector initialized with {} patterns", compiledPatterns.size());
+        this.automaton = new PatternAutomaton(patterns.stream().map(p -> p.regex).collect(Collectors.toList()));
+        this.maxStepsPerChar = maxStepsPerChar;
+        for (PatternEntry pattern : patterns) {
+            if (PatternAutomaton.hasNestedQuantifiers(pattern.regex)) {
+                logger.warn("RegexDetector: pattern '{}' ({}) nests unbounded quantifiers and may backtrack "
+                        + "catastrophically", pattern.regex, pattern.reason);
+            }
+        }
+        logger.info("RegexDetector initialized with {} patterns, {} without literals",
+                compiledPatterns.size(), automaton.alwaysCandidates());
     }
     @Override
     public DetectionResult scan(String prompt) {
@@ -107,15 +141,31 @@ public final class RegexDetector implements InjectionDetector {
         return stripped.replaceAll("\\s{2,}", " ").trim();
     }
 
+    /**
+     * Confirms, in the order of the patterns, the candidates found by the automaton:
+     * the first matching pattern gives the reason.
+     */
     private DetectionResult scanText(String text) {
-        for (CompiledPattern cp : compiledPatterns) {
-            if (cp.pattern.matcher(text).find()) {
-                return DetectionResult.injection(1.0, cp.reason, "regex");
+        BitSet candidates = automaton.candidates(text);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            CompiledPattern cp = compiledPatterns.get(i);
+            try {
+                if (cp.pattern.matcher(new BoundedCharSequence(text, maxSteps(text))).find()) {
+                    return DetectionResult.injection(1.0, cp.reason, "regex");
+                }
+            } catch (BacktrackingLimitException e) {
+                logger.warn("RegexDetector: pattern ({}) exceeded its backtracking budget on a {} characters text",
+                        cp.reason, text.length());
+                return DetectionResult.injection(1.0, BACKTRACKING_LIMIT_REASON, "regex");
             }
         }
         return DetectionResult.clean();
     }
 
+    private long maxSteps(String text) {
+        return Math.max(MIN_STEPS, (long) maxStepsPerChar * text.length());
+    }
+
     /**
      * Find all Base64-looking segments in the prompt, decode them, and scan
      * the decoded text. Ignore segments that fail to decode (not valid Base64).
@@ -168,6 +218,53 @@ public final class RegexDetector implements InjectionDetector {
         }
     }
 
+    /** Thrown when a regex reads a text more than its budget allows. */
+    private static final class BacktrackingLimitException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BacktrackingLimitException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Counts the characters read by a {@link java.util.regex.Matcher}: its backtracking
+     * is bounded by the number of reads, and not by time.
+     */
+    private static final class BoundedCharSequence implements CharSequence {
+        private final String text;
+        private final long maxSteps;
+        private long steps;
+
+        BoundedCharSequence(String text, long maxSteps) {
+            this.text = text;
+            this.maxSteps = maxSteps;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (++steps > maxSteps) {
+                throw new BacktrackingLimitException();
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
     private static class CompiledPattern {
         final String reason;
 
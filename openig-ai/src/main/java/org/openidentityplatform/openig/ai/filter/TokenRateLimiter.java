@@ -143,6 +143,28 @@ public class TokenRateLimiter {
     }
 
 
+    /**
+     * Corrects the tokens consumed by {@code sub} once the actual cost of a request is known:
+     * the difference with the pre-charged estimate is consumed (even if it puts the bucket in debt,
+     * delaying the next requests) or given back (never beyond the capacity).
+     *
+     * @param sub        identity
+     * @param estimated  tokens charged by {@link #tryConsume(String, long)}
+     * @param actual     tokens actually consumed
+     */
+    public void reconcile(String sub, long estimated, long actual) {
+        long delta = actual - estimated;
+        if (delta == 0) {
+            return;
+        }
+        Bucket bucket = rateLimiters.get(sub);
+        if (delta > 0) {
+            bucket.consumeIgnoringRateLimits(delta);
+        } else {
+            bucket.addTokens(-delta);
+        }
+    }
+
     public long availableTokens(String sub) {
         Bucket bucket = rateLimiters.get(sub);
         if (bucket == null) return numberOfTokens;
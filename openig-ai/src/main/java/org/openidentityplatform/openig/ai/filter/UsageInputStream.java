@@ -0,0 +1,308 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.ai.filter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+
+/**
+ * Passes an LLM provider response through, while looking for the {@code usage} block reporting the tokens
+ * actually consumed by the call.
+ *
+ * <ul>
+ *   <li>A JSON response is fed to a non-blocking parser as it is read, it is never buffered.</li>
+ *   <li>A {@code text/event-stream} (SSE) response is split in lines, and only the {@code data:} lines
+ *       mentioning {@code usage} are parsed: OpenAI sends it in the final chunk, Anthropic sends the input
+ *       tokens in {@code message_start} and the output tokens in {@code message_delta}.</li>
+ * </ul>
+ *
+ * Once the end of the response is reached, or when it is closed, the listener is notified once with the total
+ * number of tokens ({@code total_tokens}, or the sum of the input and output tokens), or {@code -1} when the
+ * response did not report any usage.
+ */
+final class UsageInputStream extends FilterInputStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsageInputStream.class);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final byte[] DATA_PREFIX = "data:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] USAGE = "\"usage\"".getBytes(StandardCharsets.US_ASCII);
+
+    /** SSE events longer than that are not inspected. */
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final boolean eventStream;
+    private final LongConsumer listener;
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    private final UsageScanner usage = new UsageScanner();
+
+    /** The non-blocking parser of a JSON response. */
+    private JsonParser parser;
+
+    /** The current line of an SSE response. */
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    private boolean lineTooLong;
+
+    /** Whether the response is still scanned, it is not after a parsing error. */
+    private boolean scanning = true;
+
+    UsageInputStream(InputStream in, boolean eventStream, LongConsumer listener) {
+        super(in);
+        this.eventStream = eventStream;
+        this.listener = listener;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = super.read();
+        if (read == -1) {
+            complete();
+        } else {
+            scan(new byte[] {(byte) read}, 0, 1);
+        }
+        return read;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read == -1) {
+            complete();
+        } else {
+            scan(b, off, read);
+        }
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            complete();
+        }
+    }
+
+    private void scan(byte[] b, int off, int len) {
+        if (!scanning || len == 0) {
+            return;
+        }
+        try {
+            if (eventStream) {
+                scanLines(b, off, len);
+            } else {
+                scanJson(b, off, len);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("UsageInputStream: cannot scan the response for usage, giving up", e);
+            scanning = false;
+        }
+    }
+
+    private void scanJson(byte[] b, int off, int len) throws IOException {
+        if (parser == null) {
+            parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        }
+        ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(b, off, off + len);
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            usage.accept(token, parser);
+        }
+    }
+
+    private void scanLines(byte[] b, int off, int len) throws IOException {
+        int start = off;
+        for (int i = off; i < off + len; i++) {
+            if (b[i] == '\n') {
+                append(b, start, i - start);
+                endOfLine();
+                start = i + 1;
+            }
+        }
+        append(b, start, off + len - start);
+    }
+
+    private void append(byte[] b, int off, int len) {
+        if (lineTooLong || len == 0) {
+            return;
+        }
+        if (line.size() + len > MAX_LINE_LENGTH) {
+            lineTooLong = true;
+            line.reset();
+            return;
+        }
+        line.write(b, off, len);
+    }
+
+    private void endOfLine() throws IOException {
+        byte[] event = line.toByteArray();
+        line.reset();
+        lineTooLong = false;
+        if (startsWith(event, DATA_PREFIX) && contains(event, USAGE)) {
+            try (JsonParser eventParser = JSON_FACTORY.createParser(event,
+                                                                    DATA_PREFIX.length,
+                                                                    event.length - DATA_PREFIX.length)) {
+                usage.reset();
+                JsonToken token;
+                while ((token = eventParser.nextToken()) != null) {
+                    usage.accept(token, eventParser);
+                }
+            }
+        }
+    }
+
+    private void complete() {
+        if (completed.compareAndSet(false, true)) {
+            if (eventStream && line.size() > 0) {
+                try {
+                    endOfLine();
+                } catch (IOException | RuntimeException e) {
+                    logger.debug("UsageInputStream: cannot scan the last event for usage", e);
+                }
+            }
+            listener.accept(usage.totalTokens());
+        }
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(byte[] bytes, byte[] part) {
+        outer:
+        for (int i = 0; i <= bytes.length - part.length; i++) {
+            for (int j = 0; j < part.length; j++) {
+                if (bytes[i + j] != part[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Follows a stream of JSON tokens, and records the token counts of the {@code usage} objects found in the
+     * top-level object or one level below (like Anthropic's {@code message_start} event).
+     */
+    static final class UsageScanner {
+
+        private int depth;
+        private int usageDepth = -1;
+        private boolean usageNext;
+        private String field;
+
+        private long promptTokens = -1;
+        private long completionTokens = -1;
+        private long totalTokens = -1;
+
+        void reset() {
+            depth = 0;
+            usageDepth = -1;
+            usageNext = false;
+            field = null;
+        }
+
+        void accept(JsonToken token, JsonParser parser) throws IOException {
+            switch (token) {
+            case START_OBJECT:
+                depth++;
+                if (usageNext) {
+                    usageDepth = depth;
+                }
+                usageNext = false;
+                break;
+            case END_OBJECT:
+                if (depth == usageDepth) {
+                    usageDepth = -1;
+                }
+                depth--;
+                break;
+            case START_ARRAY:
+                depth++;
+                usageNext = false;
+                break;
+            case END_ARRAY:
+                depth--;
+                break;
+            case FIELD_NAME:
+                field = parser.getCurrentName();
+                usageNext = depth <= 2 && usageDepth == -1 && "usage".equals(field);
+                break;
+            case VALUE_NUMBER_INT:
+                if (depth == usageDepth) {
+                    record(field, parser.getLongValue());
+                }
+                usageNext = false;
+                break;
+            default:
+                usageNext = false;
+                break;
+            }
+        }
+
+        private void record(String name, long value) {
+            switch (name) {
+            case "prompt_tokens":
+            case "input_tokens":
+                promptTokens = value;
+                break;
+            case "completion_tokens":
+            case "output_tokens":
+                completionTokens = value;
+                break;
+            case "total_tokens":
+                totalTokens = value;
+                break;
+            default:
+                break;
+            }
+        }
+
+        long totalTokens() {
+            if (totalTokens >= 0) {
+                return totalTokens;
+            }
+            if (promptTokens < 0 && completionTokens < 0) {
+                return -1L;
+            }
+            return Math.max(0L, promptTokens) + Math.max(0L, completionTokens);
+        }
+    }
+}
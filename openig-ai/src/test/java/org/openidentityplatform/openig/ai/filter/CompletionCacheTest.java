@@ -0,0 +1,142 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.ai.filter;
+
+import com.google.common.testing.FakeTicker;
+import org.forgerock.http.protocol.Response;
+import org.openidentityplatform.openig.ai.filter.CompletionCache.CachedCompletion;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.util.time.Duration.duration;
+
+public class CompletionCacheTest {
+
+    private static final List<Map.Entry<String, String>> HEADERS =
+            List.of(Map.entry("Content-Type", "application/json"));
+
+    private FakeTicker ticker;
+    private Path directory;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        ticker = new FakeTicker();
+        directory = Files.createTempDirectory("completions");
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void shouldSpillTheEvictedCompletionsToDisk() throws Exception {
+        // Room for about 2 completions in memory
+        CompletionCache cache = new CompletionCache(2_500, duration("1 hour"), ticker::read, directory, 1_000_000);
+        for (int i = 0; i < 10; i++) {
+            cache.put("key-" + i, 200, HEADERS, content(i));
+        }
+
+        assertThat(cache.memoryEntries()).isLessThanOrEqualTo(2L);
+        assertThat(cache.diskEntries()).isEqualTo(10L - cache.memoryEntries());
+        assertThat(spilledFiles()).isEqualTo(cache.diskEntries());
+        for (int i = 0; i < 10; i++) {
+            CachedCompletion completion = cache.get("key-" + i);
+            assertThat(completion).isNotNull();
+            Response response = completion.toResponse();
+            assertThat(response.getStatus().getCode()).isEqualTo(200);
+            assertThat(response.getHeaders().getFirst("Content-Type")).isEqualTo("application/json");
+            assertThat(response.getEntity().getBytes()).isEqualTo(content(i));
+        }
+    }
+
+    @Test
+    public void shouldBoundTheSpilledCompletions() throws Exception {
+        CompletionCache cache = new CompletionCache(1_200, duration("1 hour"), ticker::read, directory, 5_000);
+        for (int i = 0; i < 20; i++) {
+            cache.put("key-" + i, 200, HEADERS, content(i));
+        }
+
+        assertThat(cache.diskEntries()).isLessThanOrEqualTo(4L);
+        assertThat(spilledFiles()).isEqualTo(cache.diskEntries());
+    }
+
+    @Test
+    public void shouldExpireTheSpilledCompletions() throws Exception {
+        CompletionCache cache = new CompletionCache(1_200, duration("1 hour"), ticker::read, directory, 1_000_000);
+        cache.put("key-0", 200, HEADERS, content(0));
+        ticker.advance(30, TimeUnit.MINUTES);
+        // One of them is evicted to disk, where it keeps its own deadline
+        cache.put("key-1", 200, HEADERS, content(1));
+        assertThat(cache.diskEntries()).isEqualTo(1L);
+
+        ticker.advance(31, TimeUnit.MINUTES);
+        assertThat(cache.get("key-0")).isNull();
+        assertThat(cache.get("key-1")).isNotNull();
+
+        ticker.advance(30, TimeUnit.MINUTES);
+        assertThat(cache.get("key-1")).isNull();
+        assertThat(cache.diskEntries()).isEqualTo(0L);
+        assertThat(spilledFiles()).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldDeleteThePreviouslySpilledFiles() throws Exception {
+        Files.write(directory.resolve("stale" + CompletionCache.FILE_EXTENSION), new byte[] {1, 2, 3});
+
+        CompletionCache cache = new CompletionCache(1_000, duration("1 hour"), ticker::read, directory, 1_000);
+
+        assertThat(spilledFiles()).isEqualTo(0L);
+        assertThat(cache.get("stale")).isNull();
+    }
+
+    @Test
+    public void shouldKeepTheCompletionsInMemoryWithoutDirectory() throws Exception {
+        CompletionCache cache = new CompletionCache(2_500, duration("1 hour"), ticker::read, null, 0L);
+        for (int i = 0; i < 10; i++) {
+            cache.put("key-" + i, 200, HEADERS, content(i));
+        }
+
+        assertThat(cache.memoryEntries()).isLessThanOrEqualTo(2L);
+        assertThat(cache.diskEntries()).isEqualTo(0L);
+    }
+
+    private static byte[] content(int i) {
+        byte[] content = new byte[1_000];
+        content[0] = (byte) i;
+        return content;
+    }
+
+    private long spilledFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(CompletionCache.FILE_EXTENSION)).count();
+        }
+    }
+}
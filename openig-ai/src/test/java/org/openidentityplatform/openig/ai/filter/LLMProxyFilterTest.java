@@ -16,11 +16,13 @@
 
 package org.openidentityplatform.openig.ai.filter;
 
+import com.google.common.testing.FakeTicker;
 import org.forgerock.http.Handler;
 import org.forgerock.http.protocol.Request;
 import org.forgerock.http.protocol.Response;
 import org.forgerock.http.protocol.Status;
 import org.forgerock.services.context.AttributesContext;
+import org.forgerock.services.context.Context;
 import org.forgerock.services.context.RootContext;
 import org.forgerock.util.promise.Promises;
 import org.openidentityplatform.openig.ai.filter.llm.LLMProvider;
@@ -196,6 +198,136 @@ public class LLMProxyFilterTest {
         assertThat(response.getStatus()).isEqualTo(Status.OK);
     }
 
+    @Test
+    public void shouldEstimateTheContentBlocksOfTheMessages() throws Exception {
+        LLMProxyFilter filter = buildFilter(LLMProvider.ANTHROPIC, true);
+        Request request = chatRequest();
+        request.setEntity("{\"model\":\"claude\",\"messages\":["
+                + "{\"role\":\"user\",\"content\":[{\"type\":\"text\",\"text\":\"" + "a".repeat(40) + "\"},"
+                + "{\"type\":\"image\",\"source\":{\"data\":\"" + "z".repeat(4000) + "\"}}]},"
+                + "{\"role\":\"assistant\",\"content\":\"" + "b".repeat(40) + "\"}]}");
+
+        assertThat(filter.estimateTokenCost(request)).isEqualTo(20L);
+        // The request can still be sent upstream
+        assertThat(request.getEntity().getJson()).isNotNull();
+    }
+
+    @Test
+    public void shouldReconcileTheEstimateWithTheReportedUsage() throws Exception {
+        TokenRateLimiter limiter = new TokenRateLimiter(10_000, duration("1 hour"), new FakeTicker()::read, null);
+        LLMProxyFilter filter = rateLimitedFilter(limiter);
+        upstreamResponds("application/json", "{\"choices\":[],"
+                + "\"usage\":{\"prompt_tokens\":600,\"completion_tokens\":400,\"total_tokens\":1000}}");
+
+        Response response = filter.filter(contextWithSubject("alice"), chatRequest(), mockNextHandler).get();
+        // Pre-charged with the estimate until the response is read
+        assertThat(limiter.availableTokens("alice")).isEqualTo(10_000 - 4);
+
+        response.getEntity().getString();
+        assertThat(limiter.availableTokens("alice")).isEqualTo(9_000);
+    }
+
+    @Test
+    public void shouldReconcileTheEstimateWithTheUsageOfAStreamedResponse() throws Exception {
+        TokenRateLimiter limiter = new TokenRateLimiter(10_000, duration("1 hour"), new FakeTicker()::read, null);
+        LLMProxyFilter filter = rateLimitedFilter(limiter);
+        upstreamResponds("text/event-stream; charset=utf-8", ""
+                + "event: message_start\n"
+                + "data: {\"type\":\"message_start\",\"message\":{\"usage\":{\"input_tokens\":300,"
+                + "\"output_tokens\":1}}}\n\n"
+                + "event: content_block_delta\n"
+                + "data: {\"type\":\"content_block_delta\",\"delta\":{\"type\":\"text_delta\",\"text\":\"Hi\"}}\n\n"
+                + "event: message_delta\n"
+                + "data: {\"type\":\"message_delta\",\"usage\":{\"output_tokens\":200}}\n\n"
+                + "event: message_stop\n"
+                + "data: {\"type\":\"message_stop\"}\n\n");
+
+        Response response = filter.filter(contextWithSubject("alice"), chatRequest(), mockNextHandler).get();
+        response.getEntity().getString();
+
+        assertThat(limiter.availableTokens("alice")).isEqualTo(9_500);
+    }
+
+    @Test
+    public void shouldKeepTheEstimateWhenNoUsageIsReported() throws Exception {
+        TokenRateLimiter limiter = new TokenRateLimiter(10_000, duration("1 hour"), new FakeTicker()::read, null);
+        LLMProxyFilter filter = rateLimitedFilter(limiter);
+        upstreamResponds("application/json", "{\"choices\":[]}");
+
+        Response response = filter.filter(contextWithSubject("alice"), chatRequest(), mockNextHandler).get();
+        response.getEntity().getString();
+
+        assertThat(limiter.availableTokens("alice")).isEqualTo(10_000 - 4);
+    }
+
+    @Test
+    public void shouldRefundTheEstimateOfAFailedCall() throws Exception {
+        TokenRateLimiter limiter = new TokenRateLimiter(10_000, duration("1 hour"), new FakeTicker()::read, null);
+        LLMProxyFilter filter = rateLimitedFilter(limiter);
+        Response upstreamResponse = new Response(Status.BAD_GATEWAY);
+        when(mockNextHandler.handle(any(), any())).thenReturn(Promises.newResultPromise(upstreamResponse));
+
+        filter.filter(contextWithSubject("alice"), chatRequest(), mockNextHandler).get();
+
+        assertThat(limiter.availableTokens("alice")).isEqualTo(10_000);
+    }
+
+    @Test
+    public void shouldNotCountTheCachedCompletions() throws Exception {
+        TokenRateLimiter limiter = new TokenRateLimiter(10_000, duration("1 hour"), new FakeTicker()::read, null);
+        LLMProxyFilter filter = rateLimitedFilter(limiter);
+        Response cached = new Response(Status.OK);
+        cached.getHeaders().put("Content-Type", "application/json");
+        cached.getHeaders().put(LLMResponseCacheFilter.HEADER_LLM_CACHE, LLMResponseCacheFilter.CACHE_HIT);
+        cached.setEntity("{\"choices\":[],\"usage\":{\"total_tokens\":1000}}");
+        // As a LLMResponseCacheFilter placed after the proxy
+        when(mockNextHandler.handle(any(), any())).thenAnswer(invocation -> {
+            Context context = invocation.getArgument(0);
+            context.asContext(AttributesContext.class).getAttributes()
+                    .put(LLMResponseCacheFilter.CACHE_HIT_ATTRIBUTE, Boolean.TRUE);
+            return Promises.newResultPromise(cached);
+        });
+
+        AttributesContext context = contextWithSubject("alice");
+        Response response = filter.filter(context, chatRequest(), mockNextHandler).get();
+        response.getEntity().getString();
+
+        assertThat(limiter.availableTokens("alice")).isEqualTo(10_000);
+        assertThat(context.getAttributes()).doesNotContainKey(LLMResponseCacheFilter.CACHE_HIT_ATTRIBUTE);
+    }
+
+    @Test
+    public void shouldCountTheCompletionsClaimedCachedByTheUpstreamServer() throws Exception {
+        TokenRateLimiter limiter = new TokenRateLimiter(10_000, duration("1 hour"), new FakeTicker()::read, null);
+        LLMProxyFilter filter = rateLimitedFilter(limiter);
+        Response upstreamResponse = new Response(Status.OK);
+        upstreamResponse.getHeaders().put("Content-Type", "application/json");
+        upstreamResponse.getHeaders().put(LLMResponseCacheFilter.HEADER_LLM_CACHE, LLMResponseCacheFilter.CACHE_HIT);
+        upstreamResponse.setEntity("{\"choices\":[],\"usage\":{\"total_tokens\":1000}}");
+        when(mockNextHandler.handle(any(), any())).thenReturn(Promises.newResultPromise(upstreamResponse));
+
+        Response response = filter.filter(contextWithSubject("alice"), chatRequest(), mockNextHandler).get();
+        response.getEntity().getString();
+
+        assertThat(limiter.availableTokens("alice")).isEqualTo(9_000);
+    }
+
+    private LLMProxyFilter rateLimitedFilter(TokenRateLimiter limiter) {
+        return new LLMProxyFilter(LLMProvider.OPENAI,
+                LLMProvider.OPENAI.getDefaultBaseUrl(),
+                "test-api-key",
+                json("${attributes.sub}").as(expression(String.class)),
+                true,
+                limiter);
+    }
+
+    private void upstreamResponds(String contentType, String content) {
+        Response upstreamResponse = new Response(Status.OK);
+        upstreamResponse.getHeaders().put("Content-Type", contentType);
+        upstreamResponse.setEntity(content);
+        when(mockNextHandler.handle(any(), any())).thenReturn(Promises.newResultPromise(upstreamResponse));
+    }
+
     private LLMProxyFilter buildFilter(LLMProvider provider,
                                        boolean rateLimitEnabled) {
         TokenRateLimiter limiter = rateLimitEnabled
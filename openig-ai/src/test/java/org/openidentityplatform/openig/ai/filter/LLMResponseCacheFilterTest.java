@@ -0,0 +1,297 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.ai.filter;
+
+import com.google.common.testing.FakeTicker;
+import org.forgerock.http.Handler;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.services.context.AttributesContext;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.promise.Promises;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.util.time.Duration.duration;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LLMResponseCacheFilterTest {
+
+    private static final String CHAT_BODY = "{"
+            + "\"model\":\"gpt-5.2\",\"temperature\":0,\"user\":\"alice\","
+            + "\"messages\":[{\"role\":\"user\",\"content\":\"Hello, how are you?\"}]"
+            + "}";
+
+    /** The same request, with other keys order, spacing and user. */
+    private static final String SAME_CHAT_BODY = "{ "
+            + "\"messages\": [ {\"content\":\"Hello, how are you?\", \"role\":\"user\"} ], "
+            + "\"user\": \"bob\", \"temperature\": 0, \"model\": \"gpt-5.2\""
+            + " }";
+
+    private static final String COMPLETION = "{\"choices\":[{\"message\":{\"content\":\"Fine.\"}}]}";
+
+    private static final String STREAMED_COMPLETION = ""
+            + "data: {\"choices\":[{\"delta\":{\"content\":\"Fine\"}}]}\n\n"
+            + "data: {\"choices\":[{\"delta\":{\"content\":\".\"}}]}\n\n"
+            + "data: [DONE]\n\n";
+
+    private FakeTicker ticker;
+    private Handler next;
+    private ScheduledExecutorService scheduler;
+    private LLMResponseCacheFilter filter;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        ticker = new FakeTicker();
+        next = mock(Handler.class);
+        when(next.handle(any(), any()))
+                .thenAnswer(invocation -> Promises.newResultPromise(completion("application/json", COMPLETION)));
+        CompletionCache cache = new CompletionCache(1024 * 1024, duration("1 hour"), ticker::read, null, 0L);
+        scheduler = mock(ScheduledExecutorService.class);
+        doReturn(mock(ScheduledFuture.class)).when(scheduler).schedule(any(Runnable.class), anyLong(), any());
+        filter = new LLMResponseCacheFilter(cache, LLMResponseCacheFilter.DEFAULT_IGNORED_FIELDS, true, 64 * 1024,
+                scheduler, duration("1 minute"));
+    }
+
+    @Test
+    public void shouldServeIdenticalRequestsFromTheCache() throws Exception {
+        Response first = filter.filter(new RootContext(), chatRequest(CHAT_BODY), next).get();
+        assertThat(first.getHeaders().getFirst(LLMResponseCacheFilter.HEADER_LLM_CACHE))
+                .isEqualTo(LLMResponseCacheFilter.CACHE_MISS);
+        assertThat(first.getEntity().getString()).isEqualTo(COMPLETION);
+
+        Response second = filter.filter(new RootContext(), chatRequest(SAME_CHAT_BODY), next).get();
+
+        verify(next, times(1)).handle(any(), any());
+        assertThat(second.getHeaders().getFirst(LLMResponseCacheFilter.HEADER_LLM_CACHE))
+                .isEqualTo(LLMResponseCacheFilter.CACHE_HIT);
+        assertThat(second.getHeaders().getFirst("Content-Type")).isEqualTo("application/json");
+        // The headers specific to the first call are not replayed
+        assertThat(second.getHeaders().containsKey("X-Request-Id")).isFalse();
+        assertThat(second.getEntity().getString()).isEqualTo(COMPLETION);
+    }
+
+    @Test
+    public void shouldMarkTheCacheHitsInTheAttributes() throws Exception {
+        AttributesContext missed = new AttributesContext(new RootContext());
+        filter.filter(missed, chatRequest(CHAT_BODY), next).get().getEntity().getString();
+        assertThat(missed.getAttributes()).doesNotContainKey(LLMResponseCacheFilter.CACHE_HIT_ATTRIBUTE);
+
+        AttributesContext hit = new AttributesContext(new RootContext());
+        filter.filter(hit, chatRequest(CHAT_BODY), next).get();
+        assertThat(hit.getAttributes()).containsEntry(LLMResponseCacheFilter.CACHE_HIT_ATTRIBUTE, Boolean.TRUE);
+    }
+
+    @Test
+    public void shouldReplayStreamedCompletions() throws Exception {
+        when(next.handle(any(), any())).thenAnswer(invocation ->
+                Promises.newResultPromise(completion("text/event-stream", STREAMED_COMPLETION)));
+        String body = "{\"model\":\"gpt-5.2\",\"temperature\":0,\"stream\":true,\"messages\":[]}";
+
+        filter.filter(new RootContext(), chatRequest(body), next).get().getEntity().getString();
+        Response replayed = filter.filter(new RootContext(), chatRequest(body), next).get();
+
+        verify(next, times(1)).handle(any(), any());
+        assertThat(replayed.getHeaders().getFirst("Content-Type")).isEqualTo("text/event-stream");
+        assertThat(replayed.getEntity().getString()).isEqualTo(STREAMED_COMPLETION);
+    }
+
+    @Test
+    public void shouldCoalesceConcurrentIdenticalRequests() throws Exception {
+        PromiseImpl<Response, NeverThrowsException> upstream = PromiseImpl.create();
+        when(next.handle(any(), any())).thenReturn(upstream);
+
+        Promise<Response, NeverThrowsException> leader =
+                filter.filter(new RootContext(), chatRequest(CHAT_BODY), next);
+        Promise<Response, NeverThrowsException> follower =
+                filter.filter(new RootContext(), chatRequest(SAME_CHAT_BODY), next);
+        assertThat(follower.isDone()).isFalse();
+
+        upstream.handleResult(completion("application/json", COMPLETION));
+        // The follower is served once the leader's completion has been entirely received
+        assertThat(follower.isDone()).isFalse();
+        assertThat(leader.get().getEntity().getString()).isEqualTo(COMPLETION);
+
+        verify(next, times(1)).handle(any(), any());
+        assertThat(follower.get().getHeaders().getFirst(LLMResponseCacheFilter.HEADER_LLM_CACHE))
+                .isEqualTo(LLMResponseCacheFilter.CACHE_HIT);
+        assertThat(follower.get().getEntity().getString()).isEqualTo(COMPLETION);
+    }
+
+    @Test
+    public void shouldSendTheWaitingRequestsUpstreamWhenTheCompletionIsNotCached() throws Exception {
+        PromiseImpl<Response, NeverThrowsException> upstream = PromiseImpl.create();
+        when(next.handle(any(), any())).thenReturn(upstream);
+
+        filter.filter(new RootContext(), chatRequest(CHAT_BODY), next);
+        Promise<Response, NeverThrowsException> follower =
+                filter.filter(new RootContext(), chatRequest(CHAT_BODY), next);
+
+        when(next.handle(any(), any())).thenAnswer(invocation ->
+                Promises.newResultPromise(completion("application/json", COMPLETION)));
+        upstream.handleResult(new Response(Status.BAD_GATEWAY));
+
+        assertThat(follower.get().getStatus()).isEqualTo(Status.OK);
+        verify(next, times(2)).handle(any(), any());
+    }
+
+    @Test
+    public void shouldReleaseTheWaitingRequestsWhenTheUpstreamCallThrows() throws Exception {
+        AtomicReference<Promise<Response, NeverThrowsException>> follower = new AtomicReference<>();
+        when(next.handle(any(), any()))
+                .thenAnswer(invocation -> {
+                    follower.set(filter.filter(new RootContext(), chatRequest(CHAT_BODY), next));
+                    throw new IllegalStateException("boom");
+                })
+                .thenAnswer(invocation -> Promises.newResultPromise(completion("application/json", COMPLETION)));
+
+        try {
+            filter.filter(new RootContext(), chatRequest(CHAT_BODY), next);
+            throw new AssertionError("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage()).isEqualTo("boom");
+        }
+
+        assertThat(follower.get().isDone()).isTrue();
+        assertThat(follower.get().get().getStatus()).isEqualTo(Status.OK);
+        verify(next, times(2)).handle(any(), any());
+    }
+
+    @Test
+    public void shouldStopWaitingForTheIdenticalCallAfterTheTimeout() throws Exception {
+        PromiseImpl<Response, NeverThrowsException> upstream = PromiseImpl.create();
+        when(next.handle(any(), any()))
+                .thenReturn(upstream)
+                .thenAnswer(invocation -> Promises.newResultPromise(completion("application/json", COMPLETION)));
+
+        filter.filter(new RootContext(), chatRequest(CHAT_BODY), next);
+        Promise<Response, NeverThrowsException> follower =
+                filter.filter(new RootContext(), chatRequest(CHAT_BODY), next);
+        assertThat(follower.isDone()).isFalse();
+
+        ArgumentCaptor<Runnable> timeout = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(timeout.capture(), eq(TimeUnit.MINUTES.toMillis(1)), eq(TimeUnit.MILLISECONDS));
+        timeout.getValue().run();
+
+        assertThat(follower.get().getEntity().getString()).isEqualTo(COMPLETION);
+        verify(next, times(2)).handle(any(), any());
+        // The late completion of the identical call is ignored by the follower
+        upstream.handleResult(new Response(Status.BAD_GATEWAY));
+        verify(next, times(2)).handle(any(), any());
+    }
+
+    @Test
+    public void shouldNotCacheNonDeterministicRequests() throws Exception {
+        String body = "{\"model\":\"gpt-5.2\",\"temperature\":0.7,\"messages\":[]}";
+
+        filter.filter(new RootContext(), chatRequest(body), next).get().getEntity().getString();
+        filter.filter(new RootContext(), chatRequest(body), next).get().getEntity().getString();
+
+        verify(next, times(2)).handle(any(), any());
+    }
+
+    @Test
+    public void shouldNotCacheWhenRequested() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            Request request = chatRequest(CHAT_BODY);
+            request.getHeaders().put("Cache-Control", "no-cache");
+            filter.filter(new RootContext(), request, next).get().getEntity().getString();
+        }
+
+        verify(next, times(2)).handle(any(), any());
+    }
+
+    @Test
+    public void shouldNotCacheFailedCalls() throws Exception {
+        when(next.handle(any(), any())).thenAnswer(invocation ->
+                Promises.newResultPromise(new Response(Status.INTERNAL_SERVER_ERROR)));
+
+        filter.filter(new RootContext(), chatRequest(CHAT_BODY), next).get();
+        Response response = filter.filter(new RootContext(), chatRequest(CHAT_BODY), next).get();
+
+        verify(next, times(2)).handle(any(), any());
+        assertThat(response.getStatus()).isEqualTo(Status.INTERNAL_SERVER_ERROR);
+    }
+
+    @Test
+    public void shouldNotCacheCompletionsLargerThanTheMaximumEntrySize() throws Exception {
+        String large = "{\"choices\":[{\"message\":{\"content\":\"" + "a".repeat(128 * 1024) + "\"}}]}";
+        when(next.handle(any(), any())).thenAnswer(invocation ->
+                Promises.newResultPromise(completion("application/json", large)));
+
+        assertThat(filter.filter(new RootContext(), chatRequest(CHAT_BODY), next).get().getEntity().getString())
+                .isEqualTo(large);
+        filter.filter(new RootContext(), chatRequest(CHAT_BODY), next).get().getEntity().getString();
+
+        verify(next, times(2)).handle(any(), any());
+    }
+
+    @Test
+    public void shouldExpireTheCompletions() throws Exception {
+        filter.filter(new RootContext(), chatRequest(CHAT_BODY), next).get().getEntity().getString();
+        ticker.advance(61, TimeUnit.MINUTES);
+        filter.filter(new RootContext(), chatRequest(CHAT_BODY), next).get().getEntity().getString();
+
+        verify(next, times(2)).handle(any(), any());
+    }
+
+    @Test
+    public void shouldDistinguishTheEndpoints() throws Exception {
+        filter.filter(new RootContext(), chatRequest(CHAT_BODY), next).get().getEntity().getString();
+        Request request = chatRequest(CHAT_BODY);
+        request.setUri(new URI("http://openig.local/v1/responses"));
+        filter.filter(new RootContext(), request, next).get().getEntity().getString();
+
+        verify(next, times(2)).handle(any(), any());
+    }
+
+    private static Response completion(String contentType, String content) {
+        Response response = new Response(Status.OK);
+        response.getHeaders().put("Content-Type", contentType);
+        response.getHeaders().put("X-Request-Id", "req-1");
+        response.setEntity(content);
+        return response;
+    }
+
+    private static Request chatRequest(String body) throws Exception {
+        Request request = new Request();
+        request.setMethod("POST");
+        request.setUri(new URI("http://openig.local/v1/chat/completions"));
+        request.getHeaders().put("Content-Type", "application/json");
+        request.setEntity(body);
+        return request;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.ai.filter;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PatternAutomatonTest {
+
+    @DataProvider
+    public static Object[][] literals() {
+        return new Object[][] {
+                { "(?i)ignore\\s+(all\\s+)?(previous|prior|above|earlier|your)\\s+(instructions?|prompts?)",
+                  Set.of("ignore") },
+                { "(?i)(you\\s+must\\s+now|from\\s+now\\s+on)\\s+(ignore|disregard|override)",
+                  Set.of("ignore", "disregard", "override") },
+                { "(?i)\\bjailbreak\\b", Set.of("jailbreak") },
+                { "(?i)\\bROT[0-9]{1,2}\\b", Set.of("rot") },
+                { "(?i)(hex|octal)\\s+(encoded?|representation)", Set.of("encode", "encoded", "representation") },
+                { "(?i)(---|###|\\[INST\\]|<<SYS>>)", Set.of("---", "###", "[inst]", "<<sys>>") },
+                { "</?(s|user)>", Set.of("<s>", "</s>", "<user>", "</user>") },
+                { "don[''']t", Set.of("don't") },
+                { "colou?r", Set.of("color", "colour") },
+                { "\\Qa.b\\E", Set.of("a.b") },
+                { "(?:ab){2}", Set.of("abab") },
+                { "foo\\d+bar|baz", Set.of("foo", "baz") },
+        };
+    }
+
+    @Test(dataProvider = "literals")
+    public void shouldExtractTheRequiredLiterals(String regex, Set<String> expected) {
+        assertThat(PatternAutomaton.requiredLiterals(regex)).isEqualTo(expected);
+    }
+
+    @DataProvider
+    public static Object[][] withoutLiterals() {
+        return new Object[][] {
+                { "\\w+@\\w+" },        // only classes
+                { "(a+)+b" },           // too short
+                { "(ab)\\1" },          // back-reference
+                { "(?x) a b c" },       // comments mode
+                { "foo|\\d+" },         // an alternative without literal
+                { "(abc)?d" },          // too short when optional
+        };
+    }
+
+    @Test(dataProvider = "withoutLiterals")
+    public void shouldNotExtractLiterals(String regex) {
+        assertThat(PatternAutomaton.requiredLiterals(regex)).isNull();
+    }
+
+    @Test
+    public void shouldFindTheCandidatesInOnePass() {
+        PatternAutomaton automaton = new PatternAutomaton(List.of("he", "she", "his", "hers", "\\d+"));
+
+        BitSet candidates = automaton.candidates("USHERS");
+
+        // "she", "he" and "hers" overlap; the last pattern has no literal
+        assertThat(candidates.stream().toArray()).containsExactly(0, 1, 3, 4);
+    }
+
+    @Test
+    public void shouldFoldTheCaseLikeTheRegexEngine() {
+        PatternAutomaton automaton = new PatternAutomaton(List.of("(?i)kelvin", "(?i)system"));
+
+        // Kelvin sign and long s
+        assertThat(automaton.candidates("\u212Aelvin").get(0)).isTrue();
+        assertThat(automaton.candidates("\u017Fystem").get(1)).isTrue();
+        assertThat(automaton.candidates("SYST\u00C9M").get(1)).isFalse();
+    }
+
+    @Test
+    public void shouldNeverMissAMatch() {
+        List<String> regexes = List.of(
+                "(?i)ignore\\s+(all\\s+)?(previous|prior)\\s+(instructions?|rules?)",
+                "(?i)\\bact\\s+as\\s+(if\\s+you\\s+(are|were)\\s+(an?\\s+)?|a\\s+)?\\b(DAN|evil)",
+                "(?i)(print|show|tell\\s+me)(\\s+\\w+){0,2}\\s+(your\\s+)?(system\\s+prompt|hidden\\s+rules?)",
+                "(?i)(</?(s|system)>|\\{\\{\\s*(system|user)\\s*\\}\\})",
+                "(?i)new\\s+(prime\\s+)?directive[:\\s]");
+        List<Pattern> patterns = new ArrayList<>();
+        for (String regex : regexes) {
+            patterns.add(Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+        }
+        PatternAutomaton automaton = new PatternAutomaton(regexes);
+        String[] words = ("ignore all previous PRIOR instructions rules act as if you were an evil DAN a print show "
+                + "tell me your system prompt hidden rule <s> </SYSTEM> {{ user }} new prime directive: hello").split(" ");
+
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = random.nextInt(8); j >= 0; j--) {
+                text.append(words[random.nextInt(words.length)]).append(random.nextBoolean() ? " " : "  ");
+            }
+            BitSet candidates = automaton.candidates(text);
+            for (int p = 0; p < patterns.size(); p++) {
+                if (patterns.get(p).matcher(text).find()) {
+                    assertThat(candidates.get(p)).as("%s in '%s'", regexes.get(p), text).isTrue();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldDetectNestedQuantifiers() {
+        assertThat(PatternAutomaton.hasNestedQuantifiers("(a+)+b")).isTrue();
+        assertThat(PatternAutomaton.hasNestedQuantifiers("(?:\\w*\\s)*$")).isTrue();
+        assertThat(PatternAutomaton.hasNestedQuantifiers("(\\s+\\w+){0,2}")).isFalse();
+    }
+}
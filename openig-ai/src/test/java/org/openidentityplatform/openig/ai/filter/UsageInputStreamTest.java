@@ -0,0 +1,120 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.ai.filter;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UsageInputStreamTest {
+
+    private static final String OPENAI_RESPONSE = "{"
+            + "\"id\":\"chatcmpl-1\","
+            + "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"Hi!\"}}],"
+            + "\"usage\":{\"prompt_tokens\":19,\"completion_tokens\":10,\"total_tokens\":29,"
+            + "\"prompt_tokens_details\":{\"cached_tokens\":0}}"
+            + "}";
+
+    private static final String ANTHROPIC_RESPONSE = "{"
+            + "\"id\":\"msg_1\",\"type\":\"message\","
+            + "\"content\":[{\"type\":\"text\",\"text\":\"Hi!\"}],"
+            + "\"usage\":{\"input_tokens\":12,\"output_tokens\":6}"
+            + "}";
+
+    private static final String OPENAI_STREAM = ""
+            + "data: {\"id\":\"chatcmpl-1\",\"choices\":[{\"delta\":{\"content\":\"Hi\"}}],\"usage\":null}\n\n"
+            + "data: {\"id\":\"chatcmpl-1\",\"choices\":[{\"delta\":{\"content\":\"!\"}}],\"usage\":null}\n\n"
+            + "data: {\"id\":\"chatcmpl-1\",\"choices\":[],"
+            + "\"usage\":{\"prompt_tokens\":19,\"completion_tokens\":2,\"total_tokens\":21}}\n\n"
+            + "data: [DONE]\n\n";
+
+    private static final String ANTHROPIC_STREAM = ""
+            + "event: message_start\r\n"
+            + "data: {\"type\":\"message_start\",\"message\":{\"id\":\"msg_1\","
+            + "\"usage\":{\"input_tokens\":25,\"output_tokens\":1}}}\r\n\r\n"
+            + "event: content_block_delta\r\n"
+            + "data: {\"type\":\"content_block_delta\",\"index\":0,"
+            + "\"delta\":{\"type\":\"text_delta\",\"text\":\"Hi\"}}\r\n\r\n"
+            + "event: message_delta\r\n"
+            + "data: {\"type\":\"message_delta\",\"delta\":{\"stop_reason\":\"end_turn\"},"
+            + "\"usage\":{\"output_tokens\":15}}\r\n\r\n"
+            + "event: message_stop\r\n"
+            + "data: {\"type\":\"message_stop\"}";
+
+    @DataProvider
+    public static Object[][] responses() {
+        return new Object[][] {
+                { OPENAI_RESPONSE, false, 29L },
+                { ANTHROPIC_RESPONSE, false, 18L },
+                { OPENAI_STREAM, true, 21L },
+                { ANTHROPIC_STREAM, true, 40L },
+                { "{\"choices\":[]}", false, -1L },
+                { "data: {\"choices\":[]}\n\ndata: [DONE]\n\n", true, -1L },
+                { "{\"usage\":", false, -1L },
+        };
+    }
+
+    @Test(dataProvider = "responses")
+    public void shouldReportTheUsage(String response, boolean eventStream, long expected) throws Exception {
+        for (int chunkSize : new int[] {1, 7, 4096}) {
+            AtomicLong usage = new AtomicLong(Long.MIN_VALUE);
+            byte[] content = read(new UsageInputStream(stream(response), eventStream, usage::set), chunkSize);
+
+            assertThat(new String(content, StandardCharsets.UTF_8)).isEqualTo(response);
+            assertThat(usage.get()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void shouldNotifyOnceWhenClosedBeforeTheEnd() throws Exception {
+        AtomicInteger notifications = new AtomicInteger();
+        AtomicLong usage = new AtomicLong();
+        InputStream in = new UsageInputStream(stream(OPENAI_STREAM), true, tokens -> {
+            notifications.incrementAndGet();
+            usage.set(tokens);
+        });
+
+        in.read(new byte[10]);
+        in.close();
+        in.close();
+
+        assertThat(notifications.get()).isEqualTo(1);
+        assertThat(usage.get()).isEqualTo(-1L);
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] read(InputStream in, int chunkSize) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[chunkSize];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -62,6 +62,8 @@ import org.forgerock.openig.security.KeyManagerHeaplet;
 import org.forgerock.openig.security.KeyStoreHeaplet;
 import org.forgerock.openig.security.TrustAllManager;
 import org.forgerock.openig.security.TrustManagerHeaplet;
+import org.forgerock.openig.session.InMemorySessionStore;
+import org.forgerock.openig.session.StoreSessionManager;
 import org.forgerock.openig.thread.ScheduledExecutorServiceHeaplet;
 import org.openidentityplatform.openig.filter.ICAPFilter;
 import org.openidentityplatform.openig.filter.JwtBuilderFilter;
@@ -96,6 +98,7 @@ public class CoreClassAliasResolver implements ClassAliasResolver {
         ALIASES.put("FileAttributesFilter", FileAttributesFilter.class);
         ALIASES.put("HeaderFilter", HeaderFilter.class);
         ALIASES.put("HttpBasicAuthFilter", HttpBasicAuthFilter.class);
+        ALIASES.put("InMemorySessionStore", InMemorySessionStore.class);
         ALIASES.put("JwtBuilderFilter", JwtBuilderFilter.class);
         ALIASES.put("JwtSessionFactory", JwtSessionManager.class);
         ALIASES.put("JwtSession", JwtSessionManager.class);
@@ -116,6 +119,7 @@ public class CoreClassAliasResolver implements ClassAliasResolver {
         ALIASES.put("SqlAttributesFilter", SqlAttributesFilter.class);
         ALIASES.put("StaticRequestFilter", StaticRequestFilter.class);
         ALIASES.put("StaticResponseHandler", StaticResponseHandler.class);
+        ALIASES.put("StoreSession", StoreSessionManager.class);
         ALIASES.put("SwitchFilter", SwitchFilter.class);
         ALIASES.put("TemporaryStorage", TemporaryStorageHeaplet.class);
         ALIASES.put("ThrottlingFilter", ThrottlingFilterHeaplet.class);
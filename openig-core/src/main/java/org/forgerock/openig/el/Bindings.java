@@ -12,16 +12,20 @@
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
- *
+ * Portions copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.el;
 
 import static java.util.Collections.unmodifiableMap;
 
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.forgerock.http.protocol.Request;
 import org.forgerock.http.protocol.Response;
@@ -32,11 +36,23 @@ import org.forgerock.util.Reject;
 
 /**
  * Bindings represents the Expression bindings used during evaluation and assignation.
+ * <p>
+ * The {@code contexts}, {@code attributes} and {@code session} bindings derived from a {@link Context} are only
+ * resolved when they are first accessed. Once resolved, they are weakly memoized and shared by all the bindings
+ * created for the same context, so the filters of a chain that successively create bindings for a request do not
+ * flatten the context chain again.
  */
 public class Bindings {
 
+    /** The bindings explicitly bound, they shadow the context bindings. */
     private final Map<String, Object> map = new LinkedHashMap<>();
 
+    /** The lazily resolved bindings derived from the context, or {@code null}. */
+    private ContextBindings contextBindings;
+
+    /** A read-only view of all the bindings, explicit and derived from the context. */
+    private final Map<String, Object> view = new View();
+
     /**
      * Returns an empty {@link Bindings} instance (mutable).
      *
@@ -63,13 +79,7 @@ public class Bindings {
     public static Bindings bindings(Context context) {
         Bindings bindings = bindings("context", context);
         if (context != null) {
-            bindings.bind("contexts", flatten(context));
-            if (context.containsContext(AttributesContext.class)) {
-                bindings.bind("attributes", context.asContext(AttributesContext.class).getAttributes());
-            }
-            if (context.containsContext(SessionContext.class)) {
-                bindings.bind("session", context.asContext(SessionContext.class).getSession());
-            }
+            bindings.contextBindings = new ContextBindings(context);
         }
         return bindings;
     }
@@ -141,6 +151,15 @@ public class Bindings {
      */
     public Bindings bind(Bindings source) {
         Reject.ifNull(source);
+        if (source.contextBindings != null
+                && (contextBindings == null || source.contextBindings.context != contextBindings.context)) {
+            if (contextBindings == null && !source.contextBindings.shadows(map)) {
+                contextBindings = source.contextBindings;
+            } else {
+                // The source context bindings take precedence over the ones already bound: resolve them now
+                source.contextBindings.copyTo(map);
+            }
+        }
         map.putAll(source.map);
         return this;
     }
@@ -154,7 +173,16 @@ public class Bindings {
      * @return an unmodifiable {@code Map} view of this instance (never {@code null}).
      */
     public Map<String, Object> asMap() {
-        return unmodifiableMap(map);
+        return unmodifiableMap(view);
+    }
+
+    /**
+     * Returns a read-only view of this instance, to be read without any copy during expression evaluation.
+     *
+     * @return a read-only view of this instance
+     */
+    Map<String, Object> map() {
+        return view;
     }
 
     /**
@@ -192,7 +220,198 @@ public class Bindings {
 
     @Override
     public String toString() {
-        return map.toString();
+        return view.toString();
+    }
+
+    /**
+     * Read-only view of the explicit bindings on top of the context bindings.
+     */
+    private final class View extends AbstractMap<String, Object> {
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return map.containsKey(key) || (contextBindings != null && contextBindings.containsKey(key));
+        }
+
+        @Override
+        public Object get(final Object key) {
+            if (map.containsKey(key) || contextBindings == null) {
+                return map.get(key);
+            }
+            return contextBindings.get(key);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            if (contextBindings == null) {
+                return map.entrySet();
+            }
+            Map<String, Object> all = new LinkedHashMap<>();
+            contextBindings.copyTo(all);
+            all.putAll(map);
+            return all.entrySet();
+        }
+    }
+
+    /**
+     * The bindings derived from a context: {@code contexts}, {@code attributes} and {@code session}.
+     * <p>
+     * They are resolved on first access. The resolved state is weakly memoized, so it only lives as long as the
+     * bindings using it, and is reused by the successive bindings created for the same context meanwhile.
+     */
+    static final class ContextBindings {
+
+        private final Context context;
+
+        /** The state shared by the bindings of the same context, {@code null} until accessed. */
+        private volatile Resolved resolved;
+
+        ContextBindings(final Context context) {
+            this.context = context;
+        }
+
+        boolean containsKey(final Object key) {
+            if ("contexts".equals(key)) {
+                return true;
+            } else if ("attributes".equals(key)) {
+                return chain().attributes != null;
+            } else if ("session".equals(key)) {
+                return chain().session != null;
+            }
+            return false;
+        }
+
+        Object get(final Object key) {
+            if ("contexts".equals(key)) {
+                return contexts();
+            } else if ("attributes".equals(key)) {
+                AttributesContext attributes = chain().attributes;
+                return (attributes != null) ? attributes.getAttributes() : null;
+            } else if ("session".equals(key)) {
+                SessionContext session = chain().session;
+                return (session != null) ? session.getSession() : null;
+            }
+            return null;
+        }
+
+        /**
+         * Returns {@code true} if any of the given bindings would be shadowed by these context bindings.
+         *
+         * @param bindings
+         *         the explicit bindings to check
+         * @return {@code true} if any of the given bindings would be shadowed by these context bindings
+         */
+        boolean shadows(final Map<String, Object> bindings) {
+            return bindings.containsKey("contexts")
+                    || (bindings.containsKey("attributes") && containsKey("attributes"))
+                    || (bindings.containsKey("session") && containsKey("session"));
+        }
+
+        void copyTo(final Map<String, Object> bindings) {
+            bindings.put("contexts", contexts());
+            Chain chain = chain();
+            if (chain.attributes != null) {
+                bindings.put("attributes", chain.attributes.getAttributes());
+            }
+            if (chain.session != null) {
+                bindings.put("session", chain.session.getSession());
+            }
+        }
+
+        private Map<String, Context> contexts() {
+            return resolved().contexts();
+        }
+
+        private Chain chain() {
+            return resolved().chain();
+        }
+
+        private Resolved resolved() {
+            Resolved state = resolved;
+            if (state == null) {
+                state = Resolved.of(context);
+                resolved = state;
+            }
+            return state;
+        }
+    }
+
+    /**
+     * The context bindings resolved for a context, weakly memoized by context.
+     */
+    private static final class Resolved {
+
+        /**
+         * The last resolved state of the contexts hashed to each slot. The memo is only weakly referenced, so it is
+         * neither visible to nor retained beyond the bindings of a request.
+         */
+        private static final AtomicReferenceArray<WeakReference<Resolved>> MEMO = new AtomicReferenceArray<>(256);
+
+        private final Context context;
+
+        /** The flattened context chain, {@code null} until accessed. */
+        private volatile Map<String, Context> contexts;
+
+        /** The nearest attributes and session contexts, {@code null} until accessed. */
+        private volatile Chain chain;
+
+        private Resolved(final Context context) {
+            this.context = context;
+        }
+
+        static Resolved of(final Context context) {
+            int slot = System.identityHashCode(context) & (MEMO.length() - 1);
+            WeakReference<Resolved> reference = MEMO.get(slot);
+            Resolved last = (reference != null) ? reference.get() : null;
+            if (last != null && last.context == context) {
+                return last;
+            }
+            // Only the last resolved context of a slot is remembered: the filters of a chain share the same one
+            Resolved resolved = new Resolved(context);
+            MEMO.set(slot, new WeakReference<>(resolved));
+            return resolved;
+        }
+
+        Map<String, Context> contexts() {
+            Map<String, Context> flattened = contexts;
+            if (flattened == null) {
+                flattened = unmodifiableMap(flatten(context));
+                contexts = flattened;
+            }
+            return flattened;
+        }
+
+        Chain chain() {
+            Chain resolved = chain;
+            if (resolved == null) {
+                resolved = new Chain(context);
+                chain = resolved;
+            }
+            return resolved;
+        }
+    }
+
+    /**
+     * The nearest attributes and session contexts of a context chain, found in a single walk.
+     */
+    private static final class Chain {
+        private final AttributesContext attributes;
+        private final SessionContext session;
+
+        Chain(final Context leaf) {
+            AttributesContext attributes = null;
+            SessionContext session = null;
+            for (Context context = leaf; context != null; context = context.getParent()) {
+                if (attributes == null && context instanceof AttributesContext) {
+                    attributes = (AttributesContext) context;
+                }
+                if (session == null && context instanceof SessionContext) {
+                    session = (SessionContext) context;
+                }
+            }
+            this.attributes = attributes;
+            this.session = session;
+        }
     }
 
 }
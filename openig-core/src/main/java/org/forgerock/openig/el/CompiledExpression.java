@@ -0,0 +1,479 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.el;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.el.ELException;
+
+import org.forgerock.openig.resolver.Resolver;
+import org.forgerock.openig.resolver.Resolvers;
+
+import de.odysseus.el.misc.BooleanOperations;
+import de.odysseus.el.misc.TypeConverter;
+
+/**
+ * An expression compiled into a tree of Java nodes, evaluated without the JUEL interpreter.
+ * <p>
+ * Only a subset of the expression language is supported: a single {@code ${...}} expression made of literals,
+ * property paths ({@code request.uri.path}, {@code request.headers['Host'][0]}), comparisons ({@code ==},
+ * {@code !=}, {@code <}, {@code <=}, {@code >}, {@code >=} and their textual forms), boolean operators
+ * ({@code and}, {@code or}, {@code not}, {@code empty}), the {@code startsWith} and {@code endsWith} methods on
+ * strings and calls to the functions exposed by {@link Functions} (bound to {@link MethodHandle}s). The operators
+ * and coercions are the ones of JUEL, so a compiled expression evaluates to the same value as the interpreted one.
+ * <p>
+ * {@link #compile(String)} returns {@code null} for any other expression. At evaluation time, a node facing a
+ * situation it does not handle (a method call on something that is not a string, for instance) throws
+ * {@link Unsupported}: the caller is then expected to evaluate the expression with JUEL.
+ */
+final class CompiledExpression {
+
+    private static final TypeConverter CONVERTER = TypeConverter.DEFAULT;
+
+    private static final Set<String> RESERVED = new HashSet<>(Arrays.asList(
+            "and", "or", "not", "eq", "ne", "lt", "gt", "le", "ge", "true", "false", "null", "empty", "div", "mod",
+            "instanceof"));
+
+    private final Node root;
+
+    private CompiledExpression(final Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Compiles the given expression.
+     *
+     * @param expression
+     *         the expression to compile, already known to be syntactically valid
+     * @return the compiled expression, or {@code null} if the expression uses unsupported constructs
+     */
+    static CompiledExpression compile(final String expression) {
+        if (expression == null || !expression.startsWith("${") || !expression.endsWith("}")) {
+            return null;
+        }
+        try {
+            Parser parser = new Parser(expression.substring(2, expression.length() - 1));
+            Node root = parser.expression();
+            if (!parser.atEnd()) {
+                return null;
+            }
+            return new CompiledExpression(root);
+        } catch (Unsupported e) {
+            return null;
+        }
+    }
+
+    /**
+     * Evaluates this expression.
+     *
+     * @param bindings
+     *         the top-level bindings of the evaluation
+     * @param initialBindings
+     *         the bindings captured when the expression has been created, shadowed by {@code bindings}
+     * @return the value of the expression
+     * @throws Unsupported
+     *         if the expression has to be evaluated by the interpreter
+     * @throws ELException
+     *         if the evaluation failed, as it would have with the interpreter
+     */
+    Object eval(final Map<String, Object> bindings, final Map<String, Object> initialBindings) {
+        return root.eval(new Scope(bindings, initialBindings));
+    }
+
+    /**
+     * Signals that an expression (or one of its evaluations) is not supported by the compiled form.
+     */
+    static final class Unsupported extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        /** Thrown at evaluation time: no stack trace is needed. */
+        static final Unsupported INSTANCE = new Unsupported();
+
+        private Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class Scope {
+        private final Map<String, Object> bindings;
+        private final Map<String, Object> initialBindings;
+
+        Scope(final Map<String, Object> bindings, final Map<String, Object> initialBindings) {
+            this.bindings = bindings;
+            this.initialBindings = initialBindings;
+        }
+
+        Object resolve(final String name) {
+            if (bindings.containsKey(name)) {
+                return bindings.get(name);
+            }
+            return initialBindings.get(name);
+        }
+    }
+
+    private interface Node {
+        Object eval(Scope scope);
+    }
+
+    private static boolean toBoolean(final Object value) {
+        return CONVERTER.convert(value, Boolean.class);
+    }
+
+    private static Object property(final Object base, final Object property) {
+        if (base == null) {
+            return null;
+        }
+        Object value = Resolvers.get(base, property);
+        return (value != Resolver.UNRESOLVED) ? value : null;
+    }
+
+    private static Node function(final String name, final List<Node> arguments) {
+        Method method = MethodsMapper.INSTANCE.resolveFunction("", name);
+        if (method == null || method.isVarArgs() || method.getParameterCount() != arguments.size()) {
+            throw Unsupported.INSTANCE;
+        }
+        final Class<?>[] types = method.getParameterTypes();
+        final Node[] nodes = arguments.toArray(new Node[0]);
+        final MethodHandle handle;
+        try {
+            handle = MethodHandles.publicLookup()
+                                  .unreflect(method)
+                                  .asSpreader(Object[].class, types.length)
+                                  .asType(methodType(Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            throw Unsupported.INSTANCE;
+        }
+        return scope -> {
+            Object[] params = new Object[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                params[i] = CONVERTER.convert(nodes[i].eval(scope), types[i]);
+            }
+            try {
+                return (Object) handle.invokeExact(params);
+            } catch (RuntimeException e) {
+                throw new ELException("Error invoking function " + name, e);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new ELException("Error invoking function " + name, e);
+            }
+        };
+    }
+
+    private static Node method(final Node base, final String name, final List<Node> arguments) {
+        if (arguments.size() != 1 || !("startsWith".equals(name) || "endsWith".equals(name))) {
+            throw Unsupported.INSTANCE;
+        }
+        final boolean startsWith = "startsWith".equals(name);
+        final Node argument = arguments.get(0);
+        return scope -> {
+            Object value = base.eval(scope);
+            if (!(value instanceof String)) {
+                // Let the interpreter report a null base or find the method of another type
+                throw Unsupported.INSTANCE;
+            }
+            String affix = CONVERTER.convert(argument.eval(scope), String.class);
+            return startsWith ? ((String) value).startsWith(affix) : ((String) value).endsWith(affix);
+        };
+    }
+
+    private static Node identifier(final String name) {
+        final ExpressionPlugin plugin = Expression.PLUGINS.get(name);
+        if (plugin != null) {
+            return scope -> plugin.getObject();
+        }
+        return scope -> scope.resolve(name);
+    }
+
+    /**
+     * Recursive descent parser of the supported subset, following the EL operators precedence.
+     */
+    private static final class Parser {
+        private final String text;
+        private int position;
+
+        Parser(final String text) {
+            this.text = text;
+        }
+
+        boolean atEnd() {
+            skipWhitespaces();
+            return position == text.length();
+        }
+
+        Node expression() {
+            Node node = and();
+            while (accept("||") || acceptWord("or")) {
+                final Node left = node;
+                final Node right = and();
+                node = scope -> toBoolean(left.eval(scope)) || toBoolean(right.eval(scope));
+            }
+            return node;
+        }
+
+        private Node and() {
+            Node node = equality();
+            while (accept("&&") || acceptWord("and")) {
+                final Node left = node;
+                final Node right = equality();
+                node = scope -> toBoolean(left.eval(scope)) && toBoolean(right.eval(scope));
+            }
+            return node;
+        }
+
+        private Node equality() {
+            Node node = relational();
+            while (true) {
+                final Node left = node;
+                if (accept("==") || acceptWord("eq")) {
+                    final Node right = relational();
+                    node = scope -> BooleanOperations.eq(CONVERTER, left.eval(scope), right.eval(scope));
+                } else if (accept("!=") || acceptWord("ne")) {
+                    final Node right = relational();
+                    node = scope -> BooleanOperations.ne(CONVERTER, left.eval(scope), right.eval(scope));
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node relational() {
+            Node node = unary();
+            while (true) {
+                final Node left = node;
+                if (accept("<=") || acceptWord("le")) {
+                    final Node right = unary();
+                    node = scope -> BooleanOperations.le(CONVERTER, left.eval(scope), right.eval(scope));
+                } else if (accept(">=") || acceptWord("ge")) {
+                    final Node right = unary();
+                    node = scope -> BooleanOperations.ge(CONVERTER, left.eval(scope), right.eval(scope));
+                } else if (accept("<") || acceptWord("lt")) {
+                    final Node right = unary();
+                    node = scope -> BooleanOperations.lt(CONVERTER, left.eval(scope), right.eval(scope));
+                } else if (accept(">") || acceptWord("gt")) {
+                    final Node right = unary();
+                    node = scope -> BooleanOperations.gt(CONVERTER, left.eval(scope), right.eval(scope));
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node unary() {
+            if (peek("!=")) {
+                throw Unsupported.INSTANCE;
+            }
+            if (accept("!") || acceptWord("not")) {
+                final Node operand = unary();
+                return scope -> !toBoolean(operand.eval(scope));
+            }
+            if (acceptWord("empty")) {
+                final Node operand = unary();
+                return scope -> BooleanOperations.empty(CONVERTER, operand.eval(scope));
+            }
+            return suffixes(primary());
+        }
+
+        private Node primary() {
+            skipWhitespaces();
+            if (accept("(")) {
+                Node node = expression();
+                expect(")");
+                return node;
+            }
+            if (position >= text.length()) {
+                throw Unsupported.INSTANCE;
+            }
+            char c = text.charAt(position);
+            if (c == '\'' || c == '"') {
+                final String value = string(c);
+                return scope -> value;
+            }
+            if (Character.isDigit(c)) {
+                final Object value = number();
+                return scope -> value;
+            }
+            String name = identifier();
+            switch (name) {
+            case "true":
+                return scope -> Boolean.TRUE;
+            case "false":
+                return scope -> Boolean.FALSE;
+            case "null":
+                return scope -> null;
+            default:
+                break;
+            }
+            if (RESERVED.contains(name)) {
+                throw Unsupported.INSTANCE;
+            }
+            if (accept(":")) {
+                // Prefixed functions are not mapped
+                throw Unsupported.INSTANCE;
+            }
+            if (accept("(")) {
+                return function(name, arguments());
+            }
+            return identifier(name);
+        }
+
+        private Node suffixes(final Node primary) {
+            Node node = primary;
+            while (true) {
+                final Node base = node;
+                if (accept(".")) {
+                    final String name = identifier();
+                    if (accept("(")) {
+                        node = method(base, name, arguments());
+                    } else {
+                        node = scope -> property(base.eval(scope), name);
+                    }
+                } else if (accept("[")) {
+                    skipWhitespaces();
+                    char c = (position < text.length()) ? text.charAt(position) : 0;
+                    final Object key;
+                    if (c == '\'' || c == '"') {
+                        key = string(c);
+                    } else if (Character.isDigit(c)) {
+                        key = number();
+                    } else {
+                        // Only literal keys are supported
+                        throw Unsupported.INSTANCE;
+                    }
+                    expect("]");
+                    node = scope -> property(base.eval(scope), key);
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private List<Node> arguments() {
+            List<Node> arguments = new ArrayList<>();
+            if (accept(")")) {
+                return arguments;
+            }
+            do {
+                arguments.add(expression());
+            } while (accept(","));
+            expect(")");
+            return arguments;
+        }
+
+        private String identifier() {
+            skipWhitespaces();
+            int start = position;
+            if (position < text.length() && Character.isJavaIdentifierStart(text.charAt(position))) {
+                position++;
+                while (position < text.length() && Character.isJavaIdentifierPart(text.charAt(position))) {
+                    position++;
+                }
+            }
+            if (start == position) {
+                throw Unsupported.INSTANCE;
+            }
+            return text.substring(start, position);
+        }
+
+        private String string(final char quote) {
+            StringBuilder builder = new StringBuilder();
+            position++;
+            while (position < text.length()) {
+                char c = text.charAt(position++);
+                if (c == quote) {
+                    return builder.toString();
+                }
+                if (c == '\\') {
+                    if (position >= text.length()) {
+                        break;
+                    }
+                    char escaped = text.charAt(position++);
+                    if (escaped != '\\' && escaped != '\'' && escaped != '"') {
+                        throw Unsupported.INSTANCE;
+                    }
+                    builder.append(escaped);
+                } else {
+                    builder.append(c);
+                }
+            }
+            throw Unsupported.INSTANCE;
+        }
+
+        private Object number() {
+            int start = position;
+            while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                position++;
+            }
+            if (position < text.length()
+                    && (text.charAt(position) == '.' || Character.isJavaIdentifierPart(text.charAt(position)))) {
+                // Floating point literals are left to the interpreter
+                throw Unsupported.INSTANCE;
+            }
+            String digits = text.substring(start, position);
+            if (digits.length() > 18) {
+                throw Unsupported.INSTANCE;
+            }
+            return Long.valueOf(digits);
+        }
+
+        private boolean peek(final String token) {
+            skipWhitespaces();
+            return text.startsWith(token, position);
+        }
+
+        private boolean accept(final String token) {
+            if (peek(token)) {
+                position += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private boolean acceptWord(final String word) {
+            skipWhitespaces();
+            int end = position + word.length();
+            if (text.startsWith(word, position)
+                    && (end == text.length() || !Character.isJavaIdentifierPart(text.charAt(end)))) {
+                position = end;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(final String token) {
+            if (!accept(token)) {
+                throw Unsupported.INSTANCE;
+            }
+        }
+
+        private void skipWhitespaces() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+    }
+}
@@ -13,6 +13,7 @@
  *
  * Copyright 2010-2011 ApexIdentity Inc.
  * Portions Copyright 2011-2016 ForgeRock AS.
+ * Portions Copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.el;
@@ -23,6 +24,7 @@ import java.beans.FeatureDescriptor;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Objects;
 import javax.el.BeanELResolver;
 import javax.el.ELContext;
 import javax.el.ELException;
@@ -37,12 +39,24 @@ import org.forgerock.openig.resolver.Resolvers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import de.odysseus.el.ExpressionFactoryImpl;
 
 /**
  * An Unified Expression Language expression. Creating an expression is the equivalent to
  * compiling it. Once created, an expression can be evaluated within a supplied scope. An
  * expression can safely be evaluated concurrently in multiple threads.
+ * <p>
+ * Parsed expressions are shared: all the expressions created from the same string and expected type reuse the
+ * same parsed tree, kept in a bounded cache (its size can be set with the
+ * {@value #CACHE_SIZE_PROPERTY} system property, it defaults to {@value #DEFAULT_CACHE_SIZE}).
+ * <p>
+ * When the {@value #COMPILE_PROPERTY} system property is set to {@code true}, the boolean expressions written with
+ * the subset of the language supported by {@link CompiledExpression} (property paths, comparisons, boolean
+ * operators, {@code startsWith} and function calls) are compiled and evaluated without the JUEL interpreter. The
+ * other expressions are interpreted, as usual.
  *
  * @param <T> expected result type
  */
@@ -50,6 +64,36 @@ public class Expression<T> {
 
     private static final Logger logger = LoggerFactory.getLogger(Expression.class);
 
+    /** The system property that defines the maximum number of parsed expressions kept in the cache. */
+    public static final String CACHE_SIZE_PROPERTY = "org.forgerock.openig.el.cacheSize";
+
+    /** The default maximum number of parsed expressions kept in the cache. */
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    /**
+     * The system property that enables the compilation of the boolean expressions (conditions) into Java nodes
+     * evaluated without the JUEL interpreter. Disabled by default.
+     */
+    public static final String COMPILE_PROPERTY = "org.forgerock.openig.el.compile";
+
+    private static final boolean COMPILE = Boolean.getBoolean(COMPILE_PROPERTY);
+
+    /** The factory is thread-safe: a single instance is shared by all the expressions. */
+    private static final ExpressionFactoryImpl FACTORY = new ExpressionFactoryImpl();
+
+    /** Parsed expressions, keyed by expression string and expected type. */
+    private static final Cache<CacheKey, ValueExpression> VALUE_EXPRESSIONS =
+            CacheBuilder.newBuilder()
+                        .maximumSize(Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE))
+                        .build();
+
+    /**
+     * Evaluation contexts are reused by the threads evaluating expressions. An expression evaluation may trigger
+     * another evaluation on the same thread (lazily computed bindings, for instance): in that case, the nested
+     * evaluation uses its own context.
+     */
+    private static final ThreadLocal<XLContext> CONTEXTS = ThreadLocal.withInitial(XLContext::new);
+
     /** The underlying EL expression that this object represents. */
     protected final ValueExpression valueExpression;
 
@@ -62,8 +106,11 @@ public class Expression<T> {
     /** the initial bindings captured when creating this expression. */
     private final Bindings initialBindings;
 
+    /** The compiled form of this expression, or {@code null} if it is interpreted. */
+    private final CompiledExpression compiled;
+
     /** The expression plugins configured in META-INF/services. */
-    private static final Map<String, ExpressionPlugin> PLUGINS =
+    static final Map<String, ExpressionPlugin> PLUGINS =
             Collections.unmodifiableMap(Loader.loadMap(String.class, ExpressionPlugin.class));
 
     /**
@@ -106,11 +153,44 @@ public class Expression<T> {
      */
     protected Expression(String expression, Class<T> expectedType, Bindings initialBindings)
             throws ExpressionException {
+        this(expression, expectedType, initialBindings, COMPILE);
+    }
+
+    /**
+     * Constructs an expression for later evaluation, possibly compiled.
+     *
+     * @param expression the expression to parse.
+     * @param expectedType The expected result type of the expression.
+     * @param initialBindings The initial bindings used when evaluated this expression
+     * @param compile {@code true} to compile the expression if it is a supported boolean expression
+     * @throws ExpressionException if the expression was not syntactically correct.
+     */
+    Expression(String expression, Class<T> expectedType, Bindings initialBindings, boolean compile)
+            throws ExpressionException {
         original = expression;
         this.expectedType = expectedType;
         this.initialBindings = initialBindings;
+        valueExpression = parse(expression, expectedType);
+        compiled = (compile && expectedType == Boolean.class) ? CompiledExpression.compile(expression) : null;
+    }
+
+    /**
+     * Returns {@code true} if this expression is evaluated in its compiled form.
+     *
+     * @return {@code true} if this expression is evaluated in its compiled form
+     */
+    boolean isCompiled() {
+        return compiled != null;
+    }
+
+    private static ValueExpression parse(final String expression, final Class<?> expectedType)
+            throws ExpressionException {
+        CacheKey key = new CacheKey(expression, expectedType);
+        ValueExpression parsed = VALUE_EXPRESSIONS.getIfPresent(key);
+        if (parsed != null) {
+            return parsed;
+        }
         try {
-            ExpressionFactoryImpl exprFactory = new ExpressionFactoryImpl();
             /*
              * We still use Object.class but use the expectedType in the evaluation. If we use the expectedType instead
              * of Object.class at the creation, then we had some breaking changes :
@@ -120,10 +200,13 @@ public class Expression<T> {
              *
              * But note that by still using Object.class prevents from using our own TypeConverter.
              */
-            valueExpression = exprFactory.createValueExpression(new XLContext(null), expression, Object.class);
+            parsed = FACTORY.createValueExpression(new XLContext(null), expression, Object.class);
         } catch (ELException ele) {
             throw new ExpressionException(ele);
         }
+        // Intern the parsed expression: concurrent creations of the same expression end up sharing the same tree
+        ValueExpression previous = VALUE_EXPRESSIONS.asMap().putIfAbsent(key, parsed);
+        return (previous != null) ? previous : parsed;
     }
 
     /**
@@ -137,8 +220,7 @@ public class Expression<T> {
     public T eval(final Bindings bindings) {
         Object value;
         try {
-            Bindings evaluationBindings = bindings().bind(initialBindings).bind(bindings);
-            value = valueExpression.getValue(new XLContext(evaluationBindings.asMap()));
+            value = evaluate(bindings);
         } catch (ELException ele) {
             logger.warn("An error occurred while evaluating the expression {}",
                          valueExpression.getExpressionString(),
@@ -162,6 +244,31 @@ public class Expression<T> {
         return expectedType.cast(value);
     }
 
+    private Object evaluate(final Bindings bindings) {
+        if (compiled != null) {
+            try {
+                return compiled.eval(bindings.map(), initialBindings.map());
+            } catch (CompiledExpression.Unsupported e) {
+                // This evaluation is beyond the compiled form capabilities
+            }
+        }
+        return interpret(bindings);
+    }
+
+    private Object interpret(final Bindings bindings) {
+        XLContext context = CONTEXTS.get();
+        if (context.isInUse()) {
+            context = new XLContext();
+        }
+        try {
+            // Bindings have precedence over the initial bindings: no need to merge them into a new map
+            context.enter(bindings.map(), initialBindings.map());
+            return valueExpression.getValue(context);
+        } finally {
+            context.exit();
+        }
+    }
+
     /**
      * Convenient method to eval an Expression that does not need a scope.
      * @return the result of the expression evaluation, or {@code null} if it does not resolve or match the type.
@@ -171,12 +278,30 @@ public class Expression<T> {
     }
 
     static class XLContext extends ELContext {
-        private final ELResolver elResolver;
+        private final XLResolver elResolver;
+
+        XLContext() {
+            elResolver = new XLResolver(null);
+        }
 
         XLContext(Object scope) {
             elResolver = new XLResolver(scope);
         }
 
+        boolean isInUse() {
+            return elResolver.bindings != null;
+        }
+
+        void enter(final Map<String, Object> bindings, final Map<String, Object> initialBindings) {
+            elResolver.bindings = bindings;
+            elResolver.initialBindings = initialBindings;
+        }
+
+        void exit() {
+            elResolver.bindings = null;
+            elResolver.initialBindings = null;
+        }
+
         @Override
         public ELResolver getELResolver() {
             return elResolver;
@@ -197,11 +322,24 @@ public class Expression<T> {
         private static final BeanELResolver RESOLVER = new BeanELResolver(true);
         private final Object scope;
 
+        /** Top-level bindings of the evaluation in progress, when evaluated through a reused context. */
+        private Map<String, Object> bindings;
+
+        /** Initial bindings of the evaluation in progress, shadowed by {@link #bindings}. */
+        private Map<String, Object> initialBindings;
+
         XLResolver(final Object scope) {
             // Resolvers.get() don't support null value
             this.scope = (scope == null) ? new Object() : scope;
         }
 
+        private Object resolve(final Object property) {
+            if (bindings.containsKey(property)) {
+                return bindings.get(property);
+            }
+            return initialBindings.get(property);
+        }
+
         @Override
         public Object getValue(ELContext context, Object base, Object property) {
             context.setPropertyResolved(true);
@@ -214,6 +352,10 @@ public class Expression<T> {
                 }
             }
 
+            if (base == null && bindings != null) {
+                return resolve(property);
+            }
+
             Object value = Resolvers.get((base == null ? scope : base), property);
             return (value != Resolver.UNRESOLVED ? value : null);
         }
@@ -257,6 +399,38 @@ public class Expression<T> {
         }
     }
 
+    /**
+     * Key of the parsed expressions cache.
+     */
+    private static final class CacheKey {
+        private final String expression;
+        private final Class<?> expectedType;
+        private final int hashCode;
+
+        CacheKey(final String expression, final Class<?> expectedType) {
+            this.expression = expression;
+            this.expectedType = expectedType;
+            this.hashCode = Objects.hash(expression, expectedType);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return expression.equals(other.expression) && Objects.equals(expectedType, other.expectedType);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
     /**
      * Returns the original string used to create this expression, unmodified.
      * <p>
@@ -13,36 +13,54 @@
  *
  * Copyright 2010-2011 ApexIdentity Inc.
  * Portions Copyright 2011-2016 ForgeRock AS.
+ * Portions copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.filter;
 
+import static java.util.Collections.singletonList;
 import static org.forgerock.json.JsonValueFunctions.charset;
+import static org.forgerock.json.JsonValueFunctions.duration;
 import static org.forgerock.json.JsonValueFunctions.enumConstant;
 import static org.forgerock.json.JsonValueFunctions.file;
 import static org.forgerock.openig.el.Bindings.bindings;
+import static org.forgerock.openig.heap.Keys.ENDPOINT_REGISTRY_HEAP_KEY;
+import static org.forgerock.openig.heap.Keys.SCHEDULED_EXECUTOR_SERVICE_HEAP_KEY;
+import static org.forgerock.openig.http.MetricRegistryHandler.METRICS_ENDPOINT;
 import static org.forgerock.openig.util.JsonValues.leftValueExpression;
+import static org.forgerock.openig.util.JsonValues.requiredHeapObject;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.forgerock.http.Filter;
 import org.forgerock.http.Handler;
 import org.forgerock.http.protocol.Request;
 import org.forgerock.http.protocol.Response;
+import org.forgerock.json.JsonValue;
 import org.forgerock.openig.el.Bindings;
 import org.forgerock.openig.el.Expression;
 import org.forgerock.openig.el.LeftValueExpression;
 import org.forgerock.openig.heap.GenericHeaplet;
 import org.forgerock.openig.heap.HeapException;
+import org.forgerock.openig.http.EndpointRegistry;
+import org.forgerock.openig.http.MetricRegistryHandler;
+import org.forgerock.openig.text.IndexedSeparatedValuesFile;
 import org.forgerock.openig.text.SeparatedValuesFile;
+import org.forgerock.openig.text.Separator;
 import org.forgerock.openig.text.Separators;
 import org.forgerock.services.context.Context;
 import org.forgerock.util.Factory;
 import org.forgerock.util.LazyMap;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,6 +75,20 @@ import org.slf4j.LoggerFactory;
  * to access a value in the target. This defers the overhead of file operations and text
  * processing until a value is first required. This also means that the {@code value}
  * expression will not be evaluated until the map is first accessed.
+ * <p>
+ * When the {@code index} attribute is set, the file is loaded once in memory and indexed (see
+ * {@link IndexedSeparatedValuesFile}), instead of being read for every lookup:
+ * <pre>
+ *     {@code
+ *     "index": {
+ *         "fields": [ "username" ],          // defaults to the key
+ *         "memoryLimit": 268435456,          // bytes
+ *         "checkInterval": "5 seconds",      // file modification checks
+ *         "executor": "ScheduledExecutorService"
+ *     }
+ *     }
+ * </pre>
+ * The lookup statistics of the indexed file are then exposed at the {@literal metrics} endpoint of the filter.
  *
  * @see SeparatedValuesFile
  */
@@ -130,23 +162,59 @@ public class FileAttributesFilter implements Filter {
     public static class Heaplet extends GenericHeaplet {
         @Override
         public Object create() throws HeapException {
-            SeparatedValuesFile sources =
-                    new SeparatedValuesFile(config.get("file")
-                                                  .as(evaluatedWithHeapProperties())
-                                                  .required()
-                                                  .as(file()),
-                                            config.get("charset")
-                                                  .as(evaluatedWithHeapProperties())
-                                                  .defaultTo("UTF-8").as(charset()),
-                                            config.get("separator")
-                                                  .as(evaluatedWithHeapProperties())
-                                                  .defaultTo("COMMA")
-                                                  .as(enumConstant(Separators.class))
-                                                  .getSeparator(),
-                                            config.get("header")
-                                                  .as(evaluatedWithHeapProperties())
-                                                  .defaultTo(true)
-                                                  .asBoolean());
+            File file = config.get("file")
+                              .as(evaluatedWithHeapProperties())
+                              .required()
+                              .as(file());
+            Charset charset = config.get("charset")
+                                    .as(evaluatedWithHeapProperties())
+                                    .defaultTo("UTF-8").as(charset());
+            Separator separator = config.get("separator")
+                                        .as(evaluatedWithHeapProperties())
+                                        .defaultTo("COMMA")
+                                        .as(enumConstant(Separators.class))
+                                        .getSeparator();
+            boolean header = config.get("header")
+                                   .as(evaluatedWithHeapProperties())
+                                   .defaultTo(true)
+                                   .asBoolean();
+            String key = config.get("key")
+                               .as(evaluatedWithHeapProperties())
+                               .required()
+                               .asString();
+
+            SeparatedValuesFile sources;
+            JsonValue index = config.get("index");
+            if (index.isNotNull()) {
+                JsonValue evaluated = index.as(evaluatedWithHeapProperties());
+                List<String> indexedFields = evaluated.get("fields")
+                                                      .defaultTo(singletonList(key))
+                                                      .asList(String.class);
+                long memoryLimit = evaluated.get("memoryLimit")
+                                            .defaultTo(IndexedSeparatedValuesFile.DEFAULT_MEMORY_LIMIT)
+                                            .asLong();
+                Duration checkInterval = evaluated.get("checkInterval")
+                                                  .defaultTo(IndexedSeparatedValuesFile.DEFAULT_CHECK_INTERVAL)
+                                                  .as(duration());
+                Executor executor = index.get("executor")
+                                         .defaultTo(SCHEDULED_EXECUTOR_SERVICE_HEAP_KEY)
+                                         .as(requiredHeapObject(heap, ScheduledExecutorService.class));
+                IndexedSeparatedValuesFile indexed = new IndexedSeparatedValuesFile(file,
+                                                                                    charset,
+                                                                                    separator,
+                                                                                    header,
+                                                                                    indexedFields,
+                                                                                    memoryLimit,
+                                                                                    checkInterval,
+                                                                                    executor);
+                if (heap.get(ENDPOINT_REGISTRY_HEAP_KEY, EndpointRegistry.class) != null) {
+                    // Only the gateway heaps expose endpoints
+                    endpointRegistry().register(METRICS_ENDPOINT, new MetricRegistryHandler(indexed.getMetrics()));
+                }
+                sources = indexed;
+            } else {
+                sources = new SeparatedValuesFile(file, charset, separator, header);
+            }
 
             if (config.isDefined("fields")) {
                 sources.getFields().addAll(config.get("fields")
@@ -154,10 +222,7 @@ public class FileAttributesFilter implements Filter {
                                                  .asList(String.class));
             }
             return new FileAttributesFilter(sources,
-                                            config.get("key")
-                                                  .as(evaluatedWithHeapProperties())
-                                                  .required()
-                                                  .asString(),
+                                            key,
                                             config.get("value")
                                                   .required()
                                                   .as(expression(String.class)),
@@ -13,13 +13,20 @@
  *
  * Copyright 2010-2011 ApexIdentity Inc.
  * Portions Copyright 2011-2016 ForgeRock AS.
+ * Portions copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.filter;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.forgerock.json.JsonValueFunctions.duration;
 import static org.forgerock.json.JsonValueFunctions.listOf;
+import static org.forgerock.http.protocol.Response.newResponsePromise;
 import static org.forgerock.openig.el.Bindings.bindings;
+import static org.forgerock.openig.heap.Keys.ENDPOINT_REGISTRY_HEAP_KEY;
+import static org.forgerock.openig.http.MetricRegistryHandler.METRICS_ENDPOINT;
 import static org.forgerock.openig.util.JsonValues.leftValueExpression;
+import static org.forgerock.util.promise.Promises.newResultPromise;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -27,10 +34,17 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
@@ -39,6 +53,7 @@ import org.forgerock.http.Filter;
 import org.forgerock.http.Handler;
 import org.forgerock.http.protocol.Request;
 import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
 import org.forgerock.json.JsonValue;
 import org.forgerock.json.JsonValueException;
 import org.forgerock.openig.el.Bindings;
@@ -46,14 +61,26 @@ import org.forgerock.openig.el.Expression;
 import org.forgerock.openig.el.LeftValueExpression;
 import org.forgerock.openig.heap.GenericHeaplet;
 import org.forgerock.openig.heap.HeapException;
+import org.forgerock.openig.http.EndpointRegistry;
+import org.forgerock.openig.http.MetricRegistryHandler;
 import org.forgerock.services.context.Context;
 import org.forgerock.util.Factory;
 import org.forgerock.util.LazyMap;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * Executes a SQL query through a prepared statement and exposes its first result. Parameters
  * in the prepared statement are derived from expressions. The query result is
@@ -64,6 +91,19 @@ import org.slf4j.LoggerFactory;
  * to access a value in the target. This defers the overhead of connection pool, network
  * and database query processing until a value is first required. This also means that the
  * {@code parameters} expressions will not be evaluated until the map is first accessed.
+ * <p>
+ * When an {@link Executor} is provided, the query is instead executed by this executor as soon as the
+ * request goes through the filter, and the request is only handed to the next handler once the result is known:
+ * the thread processing the request is never blocked by the database. When the executor rejects the query, the
+ * request fails with a {@literal 503 Service Unavailable} response, unless the filter is configured to hand the
+ * request to the next handler with an empty result.
+ * <p>
+ * The results can be cached, keyed by the evaluated values of the parameters: the non-empty results in the
+ * {@code cache}, the empty ones in the {@code negativeCache}. Failed queries are never cached. In any case,
+ * concurrent lookups with the same parameter values share a single execution of the query.
+ * <p>
+ * The filter statistics are available in its {@linkplain #getMetrics() metric registry}, which is also exposed at
+ * the {@literal metrics} endpoint of the heap object.
  *
  * @see PreparedStatement
  */
@@ -71,6 +111,26 @@ public class SqlAttributesFilter implements Filter {
 
     private static final Logger logger = LoggerFactory.getLogger(SqlAttributesFilter.class);
 
+    /** Default maximum number of cached results. */
+    public static final int DEFAULT_CACHE_MAXIMUM_SIZE = 10000;
+
+    /** Default time to live of the cached non-empty results. */
+    public static final String DEFAULT_CACHE_TIME_TO_LIVE = "1 minute";
+
+    /** Default time to live of the cached empty results. */
+    public static final String DEFAULT_NEGATIVE_TIME_TO_LIVE = "10 seconds";
+
+    /** Default number of threads executing the queries. */
+    public static final int DEFAULT_THREAD_POOL_SIZE = 4;
+
+    /** Default maximum number of queries waiting for a thread. */
+    public static final int DEFAULT_THREAD_POOL_QUEUE_SIZE = 1000;
+
+    /**
+     * Result of the queries rejected by the executor, only compared by identity: distinct from the empty results.
+     */
+    private static final Map<String, Object> REJECTED = Collections.unmodifiableMap(new HashMap<String, Object>());
+
     /** Expression that yields the target object that will contain the mapped results. */
     @SuppressWarnings("rawtypes")
     private final LeftValueExpression<Map> target;
@@ -84,6 +144,31 @@ public class SqlAttributesFilter implements Filter {
     /** The list of parameters to evaluate and include in the execution of the prepared statement. */
     private final List<Expression<?>> parameters = new ArrayList<>();
 
+    /** The cached non-empty results, or {@code null}. */
+    private final Cache<List<Object>, Map<String, Object>> cache;
+
+    /** The cached empty results, or {@code null}. */
+    private final Cache<List<Object>, Map<String, Object>> negativeCache;
+
+    /** The executor of the queries, or {@code null} to execute them lazily, on the thread reading the target. */
+    private final Executor executor;
+
+    /** Whether the requests fail when the executor rejects their query, or continue with an empty result. */
+    private final boolean failOnRejection;
+
+    /** The queries being executed, per parameter values. */
+    private final ConcurrentMap<List<Object>, Promise<Map<String, Object>, NeverThrowsException>> pending =
+            new ConcurrentHashMap<>();
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final Counter cacheHits = metrics.counter("cache.hits");
+    private final Counter cacheMisses = metrics.counter("cache.misses");
+    private final Counter coalescedLookups = metrics.counter("lookups.coalesced");
+    private final Timer queries = metrics.timer("queries");
+    private final Counter activeQueries = metrics.counter("queries.active");
+    private final Counter failedQueries = metrics.counter("queries.failed");
+    private final Counter rejectedQueries = metrics.counter("queries.rejected");
+
     /**
      * Builds a new SqlAttributesFilter that will execute the given SQL statement on the given {@link DataSource},
      * placing the results in a {@link Map} in the specified target.
@@ -98,9 +183,85 @@ public class SqlAttributesFilter implements Filter {
     public SqlAttributesFilter(final DataSource dataSource,
                                @SuppressWarnings("rawtypes") final LeftValueExpression<Map> target,
                                final String preparedStatement) {
+        this(dataSource, target, preparedStatement, null, null, null);
+    }
+
+    /**
+     * Builds a new SqlAttributesFilter that will execute the given SQL statement on the given {@link DataSource},
+     * placing the results in a {@link Map} in the specified target.
+     *
+     * @param dataSource
+     *         JDBC data source
+     * @param target
+     *         Expression that yields the target object that will contain the mapped results
+     * @param preparedStatement
+     *         The parameterized SQL query to execute, with ? parameter placeholders
+     * @param cache
+     *         The cache of the non-empty results, keyed by the parameter values (can be {@code null})
+     * @param negativeCache
+     *         The cache of the empty results, keyed by the parameter values (can be {@code null})
+     * @param executor
+     *         The executor of the queries (can be {@code null}, the queries are then executed lazily)
+     */
+    public SqlAttributesFilter(final DataSource dataSource,
+                               @SuppressWarnings("rawtypes") final LeftValueExpression<Map> target,
+                               final String preparedStatement,
+                               final Cache<List<Object>, Map<String, Object>> cache,
+                               final Cache<List<Object>, Map<String, Object>> negativeCache,
+                               final Executor executor) {
+        this(dataSource, target, preparedStatement, cache, negativeCache, executor, true);
+    }
+
+    /**
+     * Builds a new SqlAttributesFilter that will execute the given SQL statement on the given {@link DataSource},
+     * placing the results in a {@link Map} in the specified target.
+     *
+     * @param dataSource
+     *         JDBC data source
+     * @param target
+     *         Expression that yields the target object that will contain the mapped results
+     * @param preparedStatement
+     *         The parameterized SQL query to execute, with ? parameter placeholders
+     * @param cache
+     *         The cache of the non-empty results, keyed by the parameter values (can be {@code null})
+     * @param negativeCache
+     *         The cache of the empty results, keyed by the parameter values (can be {@code null})
+     * @param executor
+     *         The executor of the queries (can be {@code null}, the queries are then executed lazily)
+     * @param failOnRejection
+     *         {@code true} to fail the requests whose query is rejected by the executor with a
+     *         {@literal 503 Service Unavailable} response, {@code false} to hand them to the next handler with an
+     *         empty result
+     */
+    public SqlAttributesFilter(final DataSource dataSource,
+                               @SuppressWarnings("rawtypes") final LeftValueExpression<Map> target,
+                               final String preparedStatement,
+                               final Cache<List<Object>, Map<String, Object>> cache,
+                               final Cache<List<Object>, Map<String, Object>> negativeCache,
+                               final Executor executor,
+                               final boolean failOnRejection) {
         this.dataSource = dataSource;
         this.target = target;
         this.preparedStatement = preparedStatement;
+        this.cache = cache;
+        this.negativeCache = negativeCache;
+        this.executor = executor;
+        this.failOnRejection = failOnRejection;
+        if (executor instanceof ThreadPoolExecutor) {
+            final ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            metrics.register("pool.active", new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return pool.getActiveCount();
+                }
+            });
+            metrics.register("pool.queued", new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return pool.getQueue().size();
+                }
+            });
+        }
     }
 
     /**
@@ -111,6 +272,16 @@ public class SqlAttributesFilter implements Filter {
         return parameters;
     }
 
+    /**
+     * Returns the statistics of this filter: cache hits and misses, coalesced lookups, query timings, failures and
+     * rejections, and the thread pool usage when the executor is a {@link ThreadPoolExecutor}.
+     *
+     * @return the statistics of this filter
+     */
+    public MetricRegistry getMetrics() {
+        return metrics;
+    }
+
     @Override
     public Promise<Response, NeverThrowsException> filter(final Context context,
                                                           final Request request,
@@ -118,68 +289,181 @@ public class SqlAttributesFilter implements Filter {
 
         final Bindings bindings = bindings(context, request);
 
-        target.set(bindings, new LazyMap<>(new Factory<Map<String, Object>>() {
-            @Override
-            public Map<String, Object> newInstance() {
-                Map<String, Object> result = new HashMap<>();
-                try (Connection c = dataSource.getConnection()) {
-                    try (PreparedStatement ps = createPreparedStatement(c)) {
-                        try (ResultSet rs = ps.executeQuery()) {
-                            if (rs.next()) {
-                                ResultSetMetaData rsmd = rs.getMetaData();
-                                int columns = rsmd.getColumnCount();
-                                for (int n = 1; n <= columns; n++) {
-                                    result.put(rsmd.getColumnLabel(n), rs.getObject(n));
-                                }
-                            }
-                            logger.debug("Result: {}", result);
+        if (executor == null) {
+            target.set(bindings, new LazyMap<>(new Factory<Map<String, Object>>() {
+                @Override
+                public Map<String, Object> newInstance() {
+                    return lookup(evaluateParameters(bindings)).getOrThrowUninterruptibly();
+                }
+            }));
+            return next.handle(context, request);
+        }
+
+        return lookup(evaluateParameters(bindings))
+                .thenAsync(result -> {
+                    if (result == REJECTED) {
+                        if (failOnRejection) {
+                            return newResponsePromise(new Response(Status.SERVICE_UNAVAILABLE));
                         }
+                        target.set(bindings, new HashMap<String, Object>());
+                    } else {
+                        target.set(bindings, result);
                     }
-                } catch (SQLException sqle) {
-                    logger.error("Configuration issue", sqle);
-                }
-                return result;
-            }
+                    return next.handle(context, request);
+                });
+    }
 
-            private PreparedStatement createPreparedStatement(final Connection connection) throws SQLException {
-                logger.debug("PreparedStatement {}", preparedStatement);
+    private List<Object> evaluateParameters(final Bindings bindings) {
+        List<Object> values = new ArrayList<>(parameters.size());
+        for (Expression<?> parameter : parameters) {
+            values.add(parameter.eval(bindings));
+        }
+        return values;
+    }
 
-                // probably cached in connection pool
-                PreparedStatement ps = connection.prepareStatement(preparedStatement);
+    /**
+     * Returns the result of the query for the given parameter values, from the cache, from a pending execution of
+     * the query, or from a new execution.
+     */
+    private Promise<Map<String, Object>, NeverThrowsException> lookup(final List<Object> values) {
+        Map<String, Object> cached = cached(values);
+        if (cached != null) {
+            cacheHits.inc();
+            return newResultPromise(copy(cached));
+        }
+        cacheMisses.inc();
 
-                // probably unnecessary but a safety precaution
-                ps.clearParameters();
+        PromiseImpl<Map<String, Object>, NeverThrowsException> promise = PromiseImpl.create();
+        Promise<Map<String, Object>, NeverThrowsException> inFlight = pending.putIfAbsent(values, promise);
+        if (inFlight != null) {
+            coalescedLookups.inc();
+            return inFlight.then(SqlAttributesFilter::copy);
+        }
+        execute(values, promise);
+        return promise.then(SqlAttributesFilter::copy);
+    }
 
-                // Inject evaluated expression values into statement's placeholders
-                Iterator<Expression<?>> expressions = parameters.iterator();
-                int count = ps.getParameterMetaData().getParameterCount();
-                for (int i = 0; i < count; i++) {
-                    if (!expressions.hasNext()) {
-                        // Got a statement parameter, but no expression to evaluate
-                        logger.warn(" Placeholder {} has no provided value as parameter", i + 1);
-                        continue;
-                    }
-                    Object eval = expressions.next().eval(bindings);
-                    ps.setObject(i + 1, eval);
-                    logger.debug(" Placeholder {} -> {}", i + 1, eval);
-                }
+    private Map<String, Object> cached(final List<Object> values) {
+        Map<String, Object> cached = (cache != null) ? cache.getIfPresent(values) : null;
+        if (cached == null && negativeCache != null) {
+            cached = negativeCache.getIfPresent(values);
+        }
+        return cached;
+    }
+
+    private void execute(final List<Object> values,
+                         final PromiseImpl<Map<String, Object>, NeverThrowsException> promise) {
+        Runnable query = () -> complete(values, promise, query(values));
+        if (executor == null) {
+            query.run();
+            return;
+        }
+        try {
+            executor.execute(query);
+        } catch (RejectedExecutionException e) {
+            rejectedQueries.inc();
+            logger.warn("Too many pending queries, the query is not executed", e);
+            // The lookups sharing this query are rejected as well
+            pending.remove(values, promise);
+            promise.handleResult(REJECTED);
+        }
+    }
 
-                // Output a warning if there are too many expressions compared to the number
-                // of parameters/placeholders in the prepared statement
-                if (expressions.hasNext()) {
-                    logger.warn(" All parameters with index >= {} are ignored because there are no placeholders for "
-                                        + "them in the configured prepared statement ({})",
-                                count,
-                                preparedStatement);
+    private void complete(final List<Object> values,
+                          final PromiseImpl<Map<String, Object>, NeverThrowsException> promise,
+                          final Map<String, Object> result) {
+        if (result != null) {
+            Cache<List<Object>, Map<String, Object>> results = result.isEmpty() ? negativeCache : cache;
+            if (results != null) {
+                results.put(values, result);
+            }
+        }
+        // Cache first: a lookup that misses the pending query will find the cached result
+        pending.remove(values, promise);
+        promise.handleResult(result != null ? result : Collections.<String, Object>emptyMap());
+    }
+
+    /**
+     * Executes the query, and returns its first result (empty if there is none), or {@code null} if the query has
+     * failed.
+     */
+    private Map<String, Object> query(final List<Object> values) {
+        Map<String, Object> result = new HashMap<>();
+        activeQueries.inc();
+        try (Timer.Context ignored = queries.time();
+             Connection c = dataSource.getConnection();
+             PreparedStatement ps = createPreparedStatement(c, values);
+             ResultSet rs = ps.executeQuery()) {
+            if (rs.next()) {
+                ResultSetMetaData rsmd = rs.getMetaData();
+                int columns = rsmd.getColumnCount();
+                for (int n = 1; n <= columns; n++) {
+                    result.put(rsmd.getColumnLabel(n), rs.getObject(n));
                 }
-                return ps;
             }
-        }));
-        return next.handle(context, request);
+            logger.debug("Result: {}", result);
+            return Collections.unmodifiableMap(result);
+        } catch (SQLException sqle) {
+            failedQueries.inc();
+            logger.error("Configuration issue", sqle);
+            return null;
+        } catch (RuntimeException e) {
+            failedQueries.inc();
+            logger.error("Cannot execute the query {}", preparedStatement, e);
+            return null;
+        } finally {
+            activeQueries.dec();
+        }
+    }
+
+    private PreparedStatement createPreparedStatement(final Connection connection,
+                                                      final List<Object> values) throws SQLException {
+        logger.debug("PreparedStatement {}", preparedStatement);
+
+        // probably cached in connection pool
+        PreparedStatement ps = connection.prepareStatement(preparedStatement);
+
+        // probably unnecessary but a safety precaution
+        ps.clearParameters();
+
+        // Inject evaluated expression values into statement's placeholders
+        Iterator<Object> evaluated = values.iterator();
+        int count = ps.getParameterMetaData().getParameterCount();
+        for (int i = 0; i < count; i++) {
+            if (!evaluated.hasNext()) {
+                // Got a statement parameter, but no expression to evaluate
+                logger.warn(" Placeholder {} has no provided value as parameter", i + 1);
+                continue;
+            }
+            Object eval = evaluated.next();
+            ps.setObject(i + 1, eval);
+            logger.debug(" Placeholder {} -> {}", i + 1, eval);
+        }
+
+        // Output a warning if there are too many expressions compared to the number
+        // of parameters/placeholders in the prepared statement
+        if (evaluated.hasNext()) {
+            logger.warn(" All parameters with index >= {} are ignored because there are no placeholders for "
+                                + "them in the configured prepared statement ({})",
+                        count,
+                        preparedStatement);
+        }
+        return ps;
+    }
+
+    private static Map<String, Object> copy(final Map<String, Object> result) {
+        if (result == REJECTED) {
+            return REJECTED;
+        }
+        // The target map can be modified by the request processing: never expose a shared result
+        return new HashMap<>(result);
     }
 
     /** Creates and initializes a static attribute provider in a heap environment. */
     public static class Heaplet extends GenericHeaplet {
+
+        private ThreadPoolExecutor threadPool;
+
         @Override
         public Object create() throws HeapException {
             InitialContext ctx;
@@ -198,6 +482,46 @@ public class SqlAttributesFilter implements Filter {
                 throw new JsonValueException(dataSource, "expecting " + DataSource.class.getName() + " type", cce);
             }
 
+            Cache<List<Object>, Map<String, Object>> cache = null;
+            Cache<List<Object>, Map<String, Object>> negativeCache = null;
+            JsonValue cacheConfig = config.get("cache").as(evaluatedWithHeapProperties());
+            if (cacheConfig.isNotNull()) {
+                int maximumSize = cacheConfig.get("maximumSize").defaultTo(DEFAULT_CACHE_MAXIMUM_SIZE).asInteger();
+                Duration timeToLive = cacheConfig.get("timeToLive")
+                                                 .defaultTo(DEFAULT_CACHE_TIME_TO_LIVE)
+                                                 .as(duration());
+                Duration negativeTimeToLive = cacheConfig.get("negativeTimeToLive")
+                                                         .defaultTo(DEFAULT_NEGATIVE_TIME_TO_LIVE)
+                                                         .as(duration());
+                if (maximumSize <= 0 || timeToLive.isUnlimited() || negativeTimeToLive.isUnlimited()) {
+                    throw new HeapException("The cache maximumSize must be greater than 0, and its timeToLive and "
+                                                    + "negativeTimeToLive must be bounded");
+                }
+                cache = newCache(maximumSize, timeToLive);
+                negativeCache = newCache(maximumSize, negativeTimeToLive);
+            }
+
+            boolean failOnRejection = true;
+            JsonValue threadPoolConfig = config.get("threadPool").as(evaluatedWithHeapProperties());
+            if (threadPoolConfig.isNotNull()) {
+                int size = threadPoolConfig.get("size").defaultTo(DEFAULT_THREAD_POOL_SIZE).asInteger();
+                int queueSize = threadPoolConfig.get("queueSize")
+                                                .defaultTo(DEFAULT_THREAD_POOL_QUEUE_SIZE)
+                                                .asInteger();
+                if (size <= 0 || queueSize <= 0) {
+                    throw new HeapException("The threadPool size and queueSize must be greater than 0");
+                }
+                failOnRejection = threadPoolConfig.get("failOnRejection").defaultTo(true).asBoolean();
+                threadPool = new ThreadPoolExecutor(size,
+                                                    size,
+                                                    0L,
+                                                    MILLISECONDS,
+                                                    new ArrayBlockingQueue<Runnable>(queueSize),
+                                                    new ThreadFactoryBuilder().setNameFormat(name + "-sql-%d")
+                                                                              .setDaemon(true)
+                                                                              .build());
+            }
+
             @SuppressWarnings("rawtypes")
             LeftValueExpression<Map> targetExpr = config.get("target").required().as(leftValueExpression(Map.class));
             SqlAttributesFilter filter = new SqlAttributesFilter(source,
@@ -205,11 +529,39 @@ public class SqlAttributesFilter implements Filter {
                                                                  config.get("preparedStatement")
                                                                        .as(evaluatedWithHeapProperties())
                                                                        .required()
-                                                                       .asString());
+                                                                       .asString(),
+                                                                 cache,
+                                                                 negativeCache,
+                                                                 threadPool,
+                                                                 failOnRejection);
             if (config.isDefined("parameters")) {
                 filter.parameters.addAll(config.get("parameters").as(listOf(expression(String.class))));
             }
+            if (heap.get(ENDPOINT_REGISTRY_HEAP_KEY, EndpointRegistry.class) != null) {
+                // Only the gateway heaps expose endpoints
+                endpointRegistry().register(METRICS_ENDPOINT, new MetricRegistryHandler(filter.getMetrics()));
+            }
             return filter;
         }
+
+        @Override
+        public void destroy() {
+            super.destroy();
+            if (threadPool != null) {
+                // Queued queries are still executed, their requests are waiting for them
+                threadPool.shutdown();
+            }
+        }
+
+        private static Cache<List<Object>, Map<String, Object>> newCache(final int maximumSize,
+                                                                       final Duration timeToLive) {
+            if (timeToLive.isZero()) {
+                return null;
+            }
+            return CacheBuilder.newBuilder()
+                               .maximumSize(maximumSize)
+                               .expireAfterWrite(timeToLive.to(MILLISECONDS), MILLISECONDS)
+                               .build();
+        }
     }
 }
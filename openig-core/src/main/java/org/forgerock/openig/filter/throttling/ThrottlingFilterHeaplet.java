@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.filter.throttling;
@@ -21,11 +22,18 @@ import static org.forgerock.openig.heap.Keys.SCHEDULED_EXECUTOR_SERVICE_HEAP_KEY
 import static org.forgerock.openig.util.JsonValues.evaluated;
 import static org.forgerock.openig.util.JsonValues.requiredHeapObject;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.ScheduledExecutorService;
 
 import com.google.common.base.Ticker;
+import org.forgerock.http.filter.throttling.CompactThrottlingStrategy;
 import org.forgerock.http.filter.throttling.FixedRateThrottlingPolicy;
+import org.forgerock.http.filter.throttling.GossipThrottlingStrategy;
 import org.forgerock.http.filter.throttling.ThrottlingFilter;
 import org.forgerock.http.filter.throttling.ThrottlingPolicy;
 import org.forgerock.http.filter.throttling.ThrottlingRate;
@@ -58,6 +66,24 @@ import org.slf4j.LoggerFactory;
  *         "cleaningInterval"             : duration            [OPTIONAL - The interval to wait for cleaning outdated
  *                                                                          buckets. Cannot be neither zero nor
  *                                                                          unlimited.
+ *         "strategy"                     : string              [OPTIONAL - "bursty" (default) keeps a token bucket per
+ *                                                                          partition, "compact" keeps all the
+ *                                                                          partitions in a fixed-size table,
+ *                                                                          "gossip" shares the rates with the other
+ *                                                                          instances of the "cluster".]
+ *         "maxPartitions"                : integer             [OPTIONAL - The maximum number of partitions of the
+ *                                                                          "compact" and "gossip" strategies,
+ *                                                                          default to 1048576 (16 MiB).]
+ *         "offHeap"                      : boolean             [OPTIONAL - Whether the "compact" strategy allocates
+ *                                                                          its table off-heap, default to false.]
+ *         "cluster": {                                         [REQUIRED by the "gossip" strategy]
+ *            "address"                   : string              [REQUIRED - The local host:port receiving the
+ *                                                                          consumption of the peers (UDP).]
+ *            "peers"                     : array of strings    [REQUIRED - The host:port of all the instances, this
+ *                                                                          one can be included.]
+ *            "gossipInterval"            : duration            [OPTIONAL - The interval between 2 exchanges with the
+ *                                                                          peers, default to 100 milliseconds.]
+ *         }
  *         "requestGroupingPolicy"        : expression<String>  [REQUIRED - Expression to evaluate whether a request
  *                                                                          matches when calculating a rate for a group
  *                                                                          of requests.]
@@ -79,6 +105,8 @@ public class ThrottlingFilterHeaplet extends GenericHeaplet {
 
     private static final Logger logger = LoggerFactory.getLogger(ThrottlingFilterHeaplet.class);
 
+    private static final int DEFAULT_MAX_PARTITIONS = 1 << 20;
+
     static Function<JsonValue, ThrottlingRate, JsonValueException> throttlingRate(final Bindings bindings) {
         return new Function<JsonValue, ThrottlingRate, JsonValueException>() {
 
@@ -95,14 +123,62 @@ public class ThrottlingFilterHeaplet extends GenericHeaplet {
     private ThrottlingStrategy throttlingStrategy(String throttlingStrategy,
                                                   Ticker ticker,
                                                   ScheduledExecutorService scheduledExecutor,
-                                                  Duration cleaningInterval) {
+                                                  Duration cleaningInterval) throws HeapException {
         switch (throttlingStrategy) {
+        case "compact":
+            return new CompactThrottlingStrategy(ticker,
+                                                 config.get("maxPartitions")
+                                                       .as(evaluatedWithHeapProperties())
+                                                       .defaultTo(DEFAULT_MAX_PARTITIONS)
+                                                       .asInteger(),
+                                                 config.get("offHeap")
+                                                       .as(evaluatedWithHeapProperties())
+                                                       .defaultTo(false)
+                                                       .asBoolean());
+        case "gossip":
+            JsonValue cluster = config.get("cluster").as(evaluatedWithHeapProperties()).required();
+            List<InetSocketAddress> peers = new ArrayList<>();
+            for (JsonValue peer : cluster.get("peers").required().expect(List.class)) {
+                peers.add(peer.as(socketAddress()));
+            }
+            try {
+                // Identifies the frames of this filter among the ones of the other filters of the peers
+                return new GossipThrottlingStrategy(qualified.getFullyQualifiedName(),
+                                                    ticker,
+                                                    config.get("maxPartitions")
+                                                          .as(evaluatedWithHeapProperties())
+                                                          .defaultTo(DEFAULT_MAX_PARTITIONS)
+                                                          .asInteger(),
+                                                    cluster.get("address").required().as(socketAddress()),
+                                                    peers,
+                                                    scheduledExecutor,
+                                                    cluster.get("gossipInterval")
+                                                           .defaultTo("100 milliseconds")
+                                                           .as(duration()));
+            } catch (IOException e) {
+                throw new HeapException("Cannot bind the gossip address of the throttling strategy", e);
+            }
         case "bursty":
         default:
             return new TokenBucketThrottlingStrategy(ticker, scheduledExecutor, cleaningInterval);
         }
     }
 
+    private static Function<JsonValue, InetSocketAddress, JsonValueException> socketAddress() {
+        return new Function<JsonValue, InetSocketAddress, JsonValueException>() {
+
+            @Override
+            public InetSocketAddress apply(JsonValue value) {
+                // host:port, with IPv6 addresses in brackets
+                URI uri = URI.create("udp://" + value.asString());
+                if (uri.getHost() == null || uri.getPort() < 0) {
+                    throw new JsonValueException(value, "Expecting a host:port address");
+                }
+                return new InetSocketAddress(uri.getHost(), uri.getPort());
+            }
+        };
+    }
+
     private ThrottlingFilter filter;
 
     @Override
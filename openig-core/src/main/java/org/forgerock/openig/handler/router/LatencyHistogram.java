@@ -0,0 +1,162 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.handler.router;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.forgerock.util.time.TimeService;
+
+/**
+ * Records latencies (in microseconds) in a High Dynamic Range histogram.
+ * <p>
+ * Recording is wait-free: values are recorded in an interval {@link Recorder}, which is only drained when a snapshot
+ * is taken. Unlike a sampling reservoir, all the recorded values are accounted for, with a bounded relative error,
+ * so that the highest percentiles remain meaningful.
+ * <p>
+ * Snapshots only cover the recent values: the drained values are kept in the histogram of the current period, and
+ * the histogram of the previous period is dropped when a new one starts. A snapshot thus holds the values of the
+ * last one to two periods. The count and the sum of all the values recorded since the creation of the histogram are
+ * kept aside, as exact cumulative totals.
+ */
+class LatencyHistogram {
+
+    /**
+     * Default duration of a period, in milliseconds.
+     */
+    static final long DEFAULT_PERIOD = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Values are kept with a relative error of 0.1%.
+     */
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final TimeService time;
+    private final long period;
+
+    /**
+     * Values drained during the current period, guarded by this.
+     */
+    private Histogram current = new Histogram(SIGNIFICANT_DIGITS);
+
+    /**
+     * Values drained during the previous period, guarded by this.
+     */
+    private Histogram previous = new Histogram(SIGNIFICANT_DIGITS);
+
+    /**
+     * Start of the current period, in milliseconds, guarded by this.
+     */
+    private long periodStart;
+
+    /**
+     * Recycled interval histogram, guarded by this.
+     */
+    private Histogram interval;
+
+    /**
+     * Builds a histogram whose snapshots cover the last {@link #DEFAULT_PERIOD} to twice that duration.
+     */
+    LatencyHistogram() {
+        this(TimeService.SYSTEM, DEFAULT_PERIOD);
+    }
+
+    /**
+     * Builds a histogram whose snapshots cover the last {@code period} to twice that duration.
+     *
+     * @param time
+     *         the time service used to delimit the periods
+     * @param period
+     *         the duration of a period, in milliseconds
+     */
+    LatencyHistogram(final TimeService time, final long period) {
+        this.time = time;
+        this.period = period;
+        this.periodStart = time.now();
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param micros
+     *         the latency, in microseconds
+     */
+    void record(final long micros) {
+        long value = Math.max(micros, 0L);
+        recorder.recordValue(value);
+        count.increment();
+        sum.add(value);
+    }
+
+    /**
+     * Returns the number of values recorded since this histogram was created.
+     *
+     * @return the number of values recorded since this histogram was created
+     */
+    long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the sum of the values recorded since this histogram was created, in microseconds.
+     *
+     * @return the sum of the values recorded since this histogram was created, in microseconds
+     */
+    long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Returns a copy of the values recorded during the current and the previous periods.
+     *
+     * @return a copy of the values recorded during the current and the previous periods
+     */
+    synchronized Histogram snapshot() {
+        rotate();
+        interval = recorder.getIntervalHistogram(interval);
+        current.add(interval);
+        Histogram snapshot = current.copy();
+        snapshot.add(previous);
+        return snapshot;
+    }
+
+    private void rotate() {
+        long now = time.now();
+        long elapsed = now - periodStart;
+        if (elapsed < period) {
+            return;
+        }
+        previous.reset();
+        if (elapsed < 2 * period) {
+            // The values recorded since the last snapshot are accounted to the period that ends
+            interval = recorder.getIntervalHistogram(interval);
+            current.add(interval);
+            Histogram recycled = previous;
+            previous = current;
+            current = recycled;
+        } else {
+            // No snapshot was taken during the last period: the drained values are stale
+            current.reset();
+        }
+        periodStart = now - elapsed % period;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.handler.router;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Route} managed by a {@link RouterHandler}, with a reference count of the requests it is processing.
+ * <p>
+ * The route table holds one reference for as long as the route is published. Each dispatched request
+ * {@linkplain #acquire() acquires} another one and {@linkplain #release() releases} it once its response is
+ * available. When the route is {@linkplain #retire() retired} from the table, it is unhooked from the system
+ * immediately, but only destroyed once the last in-flight request has released it.
+ */
+final class ManagedRoute {
+
+    private static final Logger logger = LoggerFactory.getLogger(ManagedRoute.class);
+
+    private final Route route;
+
+    /** Starts at 1: the reference held by the route table. */
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private final AtomicBoolean retired = new AtomicBoolean();
+
+    ManagedRoute(final Route route) {
+        this.route = route;
+    }
+
+    /**
+     * Returns the managed route.
+     * @return the managed route
+     */
+    Route getRoute() {
+        return route;
+    }
+
+    /**
+     * Acquires a reference on the route before dispatching a request to it.
+     *
+     * @return {@literal false} if the route has already been destroyed and cannot process any new request
+     */
+    boolean acquire() {
+        for (;;) {
+            int count = references.get();
+            if (count <= 0) {
+                return false;
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a reference previously acquired, destroying the route if it was the last one.
+     */
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            try {
+                route.destroy();
+            } catch (RuntimeException e) {
+                logger.error("An error occurred while destroying the route with id '{}'", route.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * Unhooks the route from the system and releases the reference held by the route table: the route is destroyed
+     * as soon as its in-flight requests have completed. Subsequent invocations have no effect.
+     */
+    void retire() {
+        if (retired.compareAndSet(false, true)) {
+            route.stop();
+            release();
+        }
+    }
+}
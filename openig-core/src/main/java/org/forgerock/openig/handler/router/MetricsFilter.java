@@ -12,30 +12,53 @@
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.handler.router;
 
+import static org.forgerock.http.io.IO.newBranchingInputStream;
+import static org.forgerock.http.io.IO.newTemporaryStorage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.forgerock.http.Filter;
 import org.forgerock.http.Handler;
+import org.forgerock.http.io.Buffer;
 import org.forgerock.http.protocol.Request;
 import org.forgerock.http.protocol.Response;
 import org.forgerock.http.protocol.Status;
+import org.forgerock.http.protocol.Status.Family;
 import org.forgerock.services.context.Context;
+import org.forgerock.util.Factory;
+import org.forgerock.util.Function;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
-import org.forgerock.util.promise.ResultHandler;
 
 import com.codahale.metrics.MetricRegistry;
 
 /**
  * Collect request processing metrics.
+ * <p>
+ * The time to first byte is measured when the response is returned by the next handler. By default, the response
+ * time is measured at the same time. When the time to last byte is measured, the response time is measured once the
+ * response entity has been entirely read (or closed) by the caller, that is when the response has been sent to the
+ * user-agent: as the content of an entity cannot be replaced without closing it, the response is then copied, with
+ * its status, version, cause and headers, around a timed entity.
  */
 class MetricsFilter implements Filter {
 
     private final MonitoringMetrics metrics;
+    private final boolean timeToLastByte;
+
+    /**
+     * Buffers of the (rarely) branched timed response entities.
+     */
+    private final Factory<Buffer> storage = newTemporaryStorage();
 
     /**
      * Constructs a MetricsFilter, filling the provided {@linkplain MetricRegistry registry} with metrics.
@@ -44,7 +67,21 @@ class MetricsFilter implements Filter {
      *         monitoring metrics registry
      */
     MetricsFilter(final MonitoringMetrics metrics) {
+        this(metrics, false);
+    }
+
+    /**
+     * Constructs a MetricsFilter, filling the provided {@linkplain MetricRegistry registry} with metrics.
+     *
+     * @param metrics
+     *         monitoring metrics registry
+     * @param timeToLastByte
+     *         {@code true} to measure the response time once the response entity has been entirely sent,
+     *         {@code false} to measure it when the response is returned by the next handler
+     */
+    MetricsFilter(final MonitoringMetrics metrics, final boolean timeToLastByte) {
         this.metrics = metrics;
+        this.timeToLastByte = timeToLastByte;
     }
 
     @Override
@@ -56,18 +93,16 @@ class MetricsFilter implements Filter {
         final long start = System.nanoTime();
 
         return next.handle(context, request)
-                       .thenOnResult(new ResultHandler<Response>() {
+                       .then(new Function<Response, Response, NeverThrowsException>() {
                            @Override
-                           public void handleResult(final Response result) {
+                           public Response apply(final Response result) {
                                // Elapsed time is computed in microseconds
-                               long elapsed = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
-                               metrics.getAccumulatedResponseTime().inc(elapsed==0?1:elapsed);
-                               metrics.getResponseTime().update(elapsed);
-
+                               long elapsed = elapsedSince(start);
                                metrics.getThroughput().mark();
 
                                metrics.getTotalResponseCount().inc();
                                metrics.getActiveRequestCount().dec();
+                               Family family = null;
                                if (result != null) {
                                    if (result.getCause() != null) {
                                        metrics.getErrorsResponseCount().inc();
@@ -75,7 +110,8 @@ class MetricsFilter implements Filter {
                                    Status status = result.getStatus();
                                    if (status != null) {
                                        // Response doesn't mandate a Status in constructor :'(
-                                       switch (status.getFamily()) {
+                                       family = status.getFamily();
+                                       switch (family) {
                                        case INFORMATIONAL:
                                            metrics.getInformativeResponseCount().inc();
                                            break;
@@ -99,7 +135,101 @@ class MetricsFilter implements Filter {
                                } else {
                                    metrics.getNullResponseCount().inc();
                                }
+
+                               if (family != null) {
+                                   metrics.getTimeToFirstByte(family).record(elapsed);
+                               }
+
+                               // Either the time to last byte is not measured, or there is nothing more to send
+                               // Switching protocols responses are not wrapped, the connection is taken over
+                               if (!timeToLastByte
+                                       || result == null
+                                       || family == Family.INFORMATIONAL
+                                       || result.getEntity().isRawContentEmpty()) {
+                                   recordResponseTime(family, elapsed);
+                                   return result;
+                               }
+                               return timed(result, family, start);
                            }
                        });
     }
+
+    private void recordResponseTime(final Family family, final long elapsed) {
+        metrics.getAccumulatedResponseTime().inc(elapsed == 0 ? 1 : elapsed);
+        metrics.getResponseTime().record(elapsed);
+        if (family != null) {
+            metrics.getResponseTime(family).record(elapsed);
+        }
+    }
+
+    /**
+     * Returns a copy of the given response whose entity records the response time once entirely read.
+     * The original entity is not closed: it is now owned by the copy.
+     */
+    private Response timed(final Response response, final Family family, final long start) {
+        Response timed = new Response(response.getStatus());
+        timed.setVersion(response.getVersion());
+        timed.setCause(response.getCause());
+        timed.getHeaders().putAll(response.getHeaders());
+        InputStream content = new CompletionInputStream(response.getEntity().getRawContentInputStream(),
+                                                        new Runnable() {
+                                                            @Override
+                                                            public void run() {
+                                                                recordResponseTime(family, elapsedSince(start));
+                                                            }
+                                                        });
+        timed.getEntity().setRawContentInputStream(newBranchingInputStream(content, storage));
+        return timed;
+    }
+
+    private static long elapsedSince(final long start) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+    }
+
+    /**
+     * Notifies once when the end of the stream has been reached, or when the stream is closed.
+     */
+    private static final class CompletionInputStream extends FilterInputStream {
+
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final Runnable onCompletion;
+
+        CompletionInputStream(final InputStream in, final Runnable onCompletion) {
+            super(in);
+            this.onCompletion = onCompletion;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read == -1) {
+                complete();
+            }
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read == -1) {
+                complete();
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                complete();
+            }
+        }
+
+        private void complete() {
+            if (completed.compareAndSet(false, true)) {
+                onCompletion.run();
+            }
+        }
+    }
 }
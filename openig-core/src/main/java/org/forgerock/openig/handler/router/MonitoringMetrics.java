@@ -12,17 +12,25 @@
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.handler.router;
 
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.forgerock.http.protocol.Status.Family;
+
 import com.codahale.metrics.Counter;
-import com.codahale.metrics.ExponentiallyDecayingReservoir;
-import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 
 /**
  * Holds the set of metrics needed for monitoring.
+ * <p>
+ * Latencies are recorded twice: the time to first byte is the time taken to get the response status and headers,
+ * the response time is the time taken until the response has been entirely sent. The response time is recorded for
+ * the whole route and per status family, the time to first byte only per status family.
  */
 class MonitoringMetrics {
     private final Counter totalResponseCount;
@@ -37,7 +45,9 @@ class MonitoringMetrics {
     private final Counter totalRequestCount;
     private final Counter activeRequestCount;
     private final Meter throughput;
-    private final Histogram responseTime;
+    private final LatencyHistogram responseTime;
+    private final Map<Family, LatencyHistogram> responseTimeByFamily;
+    private final Map<Family, LatencyHistogram> timeToFirstByteByFamily;
     private final Counter accumulatedResponseTime;
 
     public MonitoringMetrics() {
@@ -55,7 +65,13 @@ class MonitoringMetrics {
         this.activeRequestCount = new Counter();
 
         this.throughput = new Meter();
-        this.responseTime = new Histogram(new ExponentiallyDecayingReservoir());
+        this.responseTime = new LatencyHistogram();
+        this.responseTimeByFamily = new EnumMap<>(Family.class);
+        this.timeToFirstByteByFamily = new EnumMap<>(Family.class);
+        for (Family family : Family.values()) {
+            responseTimeByFamily.put(family, new LatencyHistogram());
+            timeToFirstByteByFamily.put(family, new LatencyHistogram());
+        }
         this.accumulatedResponseTime = new Counter();
     }
 
@@ -107,10 +123,18 @@ class MonitoringMetrics {
         return throughput;
     }
 
-    public Histogram getResponseTime() {
+    public LatencyHistogram getResponseTime() {
         return responseTime;
     }
 
+    public LatencyHistogram getResponseTime(Family family) {
+        return responseTimeByFamily.get(family);
+    }
+
+    public LatencyHistogram getTimeToFirstByte(Family family) {
+        return timeToFirstByteByFamily.get(family);
+    }
+
     public Counter getAccumulatedResponseTime() {
         return accumulatedResponseTime;
     }
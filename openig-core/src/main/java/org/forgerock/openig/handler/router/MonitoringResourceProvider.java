@@ -12,6 +12,7 @@
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.handler.router;
@@ -28,6 +29,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.HdrHistogram.Histogram;
 import org.forgerock.api.annotations.Handler;
 import org.forgerock.api.annotations.Operation;
 import org.forgerock.api.annotations.Read;
@@ -48,7 +50,6 @@ import org.forgerock.services.context.Context;
 import org.forgerock.util.promise.Promise;
 
 import com.codahale.metrics.Meter;
-import com.codahale.metrics.Snapshot;
 
 /**
  * Expose monitoring information provided by the given {@link MonitoringMetrics} as a REST resource.
@@ -109,21 +110,22 @@ class MonitoringResourceProvider implements SingletonResourceProvider {
 
         // responseTime (milliseconds), with 3 decimal point (ex: 92.908 ms)
         // total is the accumulated response time: long only
-        Snapshot snapshot = metrics.getResponseTime().getSnapshot();
+        Histogram snapshot = metrics.getResponseTime().snapshot();
         long accumulatedMillis = MICROSECONDS.toMillis(metrics.getAccumulatedResponseTime().getCount());
         data.put("responseTime", object(field("mean", toMilliseconds(snapshot.getMean())),
-                                        field("median", toMilliseconds(snapshot.getMedian())),
-                                        field("standardDeviation", toMilliseconds(snapshot.getStdDev())),
+                                        field("median", toMilliseconds(snapshot.getValueAtPercentile(50))),
+                                        field("standardDeviation", toMilliseconds(snapshot.getStdDeviation())),
                                         field("total", accumulatedMillis),
                                         field("percentiles", percentilesValues(snapshot))));
 
         return Responses.newResourceResponse(null, null, data).asPromise();
     }
 
-    private Map<String, BigDecimal> percentilesValues(Snapshot snapshot) {
+    private Map<String, BigDecimal> percentilesValues(Histogram snapshot) {
         Map<String, BigDecimal> map = new LinkedHashMap<>();
         for (Double percentile : percentiles) {
-            map.put(String.valueOf(percentile), toMilliseconds(snapshot.getValue(percentile)));
+            // HdrHistogram percentiles are expressed in the [0, 100] range
+            map.put(String.valueOf(percentile), toMilliseconds(snapshot.getValueAtPercentile(percentile * 100)));
         }
         return map;
     }
@@ -0,0 +1,192 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.handler.router;
+
+import static org.forgerock.http.protocol.Response.newResponsePromise;
+import static org.forgerock.http.protocol.Status.METHOD_NOT_ALLOWED;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+import org.HdrHistogram.Histogram;
+import org.forgerock.http.Handler;
+import org.forgerock.http.header.ContentTypeHeader;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.http.protocol.Status.Family;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+
+import com.codahale.metrics.Counter;
+
+/**
+ * Exposes the {@link MonitoringMetrics} of a route in the Prometheus text exposition format.
+ * <p>
+ * Every sample is labelled with the route identifier, and the latencies (in seconds) are exposed as summaries,
+ * per status family. The quantiles cover the recent latencies only (see {@link LatencyHistogram}), while the sums
+ * and counts are cumulative, as Prometheus expects. Only GET requests are supported.
+ */
+class PrometheusMetricsHandler implements Handler {
+
+    /**
+     * Media type of the Prometheus text exposition format.
+     */
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double MICROS_PER_SECOND = 1_000_000d;
+
+    private final String routeLabel;
+    private final MonitoringMetrics metrics;
+    private final TreeSet<Double> quantiles;
+
+    /**
+     * Builds a new handler.
+     *
+     * @param routeId
+     *         the identifier of the monitored route
+     * @param metrics
+     *         the metrics of the route
+     * @param percentiles
+     *         the exposed quantiles of the latencies, in addition to the median
+     */
+    PrometheusMetricsHandler(final String routeId, final MonitoringMetrics metrics, final List<Double> percentiles) {
+        this.routeLabel = "route=\"" + escape(routeId) + "\"";
+        this.metrics = metrics;
+        this.quantiles = new TreeSet<>(percentiles);
+        this.quantiles.add(0.5);
+    }
+
+    @Override
+    public Promise<Response, NeverThrowsException> handle(final Context context, final Request request) {
+        if (!"GET".equals(request.getMethod())) {
+            return newResponsePromise(new Response(METHOD_NOT_ALLOWED));
+        }
+        Response response = new Response(Status.OK);
+        response.getHeaders().put(ContentTypeHeader.NAME, CONTENT_TYPE);
+        response.setEntity(scrape());
+        return newResponsePromise(response);
+    }
+
+    /**
+     * Returns the current state of the metrics, in the Prometheus text exposition format.
+     *
+     * @return the current state of the metrics, in the Prometheus text exposition format
+     */
+    String scrape() {
+        StringBuilder sb = new StringBuilder();
+
+        family(sb, "openig_route_requests_total", "counter", "Total number of requests received by the route.");
+        sample(sb, "openig_route_requests_total", routeLabel, metrics.getTotalRequestCount().getCount());
+
+        family(sb, "openig_route_active_requests", "gauge", "Number of requests being processed by the route.");
+        sample(sb, "openig_route_active_requests", routeLabel, metrics.getActiveRequestCount().getCount());
+
+        family(sb, "openig_route_responses_total", "counter", "Total number of responses, per status family.");
+        responses(sb, Family.INFORMATIONAL, metrics.getInformativeResponseCount());
+        responses(sb, Family.SUCCESSFUL, metrics.getSuccessResponseCount());
+        responses(sb, Family.REDIRECTION, metrics.getRedirectResponseCount());
+        responses(sb, Family.CLIENT_ERROR, metrics.getClientErrorResponseCount());
+        responses(sb, Family.SERVER_ERROR, metrics.getServerErrorResponseCount());
+        responses(sb, Family.UNKNOWN, metrics.getOtherResponseCount());
+
+        family(sb, "openig_route_errors_total", "counter", "Total number of responses carrying an exception.");
+        sample(sb, "openig_route_errors_total", routeLabel, metrics.getErrorsResponseCount().getCount());
+
+        String ttfb = "openig_route_time_to_first_byte_seconds";
+        family(sb, ttfb, "summary", "Time taken to get the response status and headers.");
+        for (Family family : Family.values()) {
+            summary(sb, ttfb, family, metrics.getTimeToFirstByte(family));
+        }
+
+        String responseTime = "openig_route_response_time_seconds";
+        family(sb, responseTime, "summary", "Time taken to send the complete response.");
+        for (Family family : Family.values()) {
+            summary(sb, responseTime, family, metrics.getResponseTime(family));
+        }
+
+        return sb.toString();
+    }
+
+    private void responses(final StringBuilder sb, final Family family, final Counter counter) {
+        sample(sb, "openig_route_responses_total", labels(family), counter.getCount());
+    }
+
+    private void summary(final StringBuilder sb,
+                         final String name,
+                         final Family family,
+                         final LatencyHistogram latencies) {
+        long count = latencies.getCount();
+        if (count == 0) {
+            // Do not expose the families that have not been seen yet
+            return;
+        }
+        String labels = labels(family);
+        Histogram recent = latencies.snapshot();
+        if (recent.getTotalCount() != 0) {
+            // Do not expose NaN quantiles when nothing has been recorded recently
+            for (Double quantile : quantiles) {
+                sample(sb,
+                       name,
+                       labels + ",quantile=\"" + quantile + "\"",
+                       seconds(recent.getValueAtPercentile(quantile * 100)));
+            }
+        }
+        sample(sb, name + "_sum", labels, seconds(latencies.getSum()));
+        sample(sb, name + "_count", labels, count);
+    }
+
+    private String labels(final Family family) {
+        return routeLabel + ",status_family=\"" + familyLabel(family) + "\"";
+    }
+
+    private static void family(final StringBuilder sb, final String name, final String type, final String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(final StringBuilder sb, final String name, final String labels, final Object value) {
+        sb.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static double seconds(final double micros) {
+        return micros / MICROS_PER_SECOND;
+    }
+
+    private static String familyLabel(final Family family) {
+        switch (family) {
+        case INFORMATIONAL:
+            return "1xx";
+        case SUCCESSFUL:
+            return "2xx";
+        case REDIRECTION:
+            return "3xx";
+        case CLIENT_ERROR:
+            return "4xx";
+        case SERVER_ERROR:
+            return "5xx";
+        default:
+            return family.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static String escape(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -139,6 +139,14 @@ abstract class Route implements Handler {
         return config;
     }
 
+    /**
+     * Returns the route condition (may be {@code null}).
+     * @return the route condition (may be {@code null}).
+     */
+    public Expression<Boolean> getCondition() {
+        return condition;
+    }
+
     /**
      * Evaluate if this route will accept the given {@link Context} and {@link Request}.
      * @param context used to evaluate the condition against
@@ -154,6 +162,14 @@ abstract class Route implements Handler {
      */
     public abstract void start();
 
+    /**
+     * Unhook this route from the system: it is not exposed anymore, but may still complete the requests it is
+     * processing until it is {@linkplain #destroy() destroyed}.
+     */
+    public void stop() {
+        // Nothing to unhook by default
+    }
+
     /**
      * Cleanup the resources used by this route.
      */
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2016 ForgeRock AS.
+ * Portions copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.handler.router;
@@ -134,6 +135,11 @@ class RouteBuilder {
                     endpoints.attach();
                 }
 
+                @Override
+                public void stop() {
+                    endpoints.detach();
+                }
+
                 @Override
                 public void destroy() {
                     endpoints.detach();
@@ -172,12 +178,15 @@ class RouteBuilder {
         MonitorConfig mc = getMonitorConfig(config.get("monitor"));
         if (mc.isEnabled()) {
             MonitoringMetrics metrics = new MonitoringMetrics();
-            filters.add(new MetricsFilter(metrics));
+            filters.add(new MetricsFilter(metrics, mc.isTimeToLastByte()));
             RequestHandler singleton = newHandler(new MonitoringResourceProvider(metrics, mc.getPercentiles()));
             endpoints.register("monitoring",
                                newHttpHandler(newCrestApplication(singleton,
                                                                   "frapi:openig:monitoring")),
                                "Monitoring endpoint available at '{}'");
+            endpoints.register("prometheus",
+                               new PrometheusMetricsHandler(routeId, metrics, mc.getPercentiles()),
+                               "Prometheus metrics endpoint available at '{}'");
         }
 
         // Log exceptions attached to responses
@@ -215,7 +224,8 @@ class RouteBuilder {
      *     {@code
      *       "monitor": {
      *           "enabled": "${true}",
-     *           "percentiles": [ 0.1, 0.75, 0.99, 0.999 ]
+     *           "percentiles": [ 0.1, 0.75, 0.99, 0.999 ],
+     *           "timeToLastByte": true
      *       }
      *     }
      * </pre>
@@ -230,6 +240,8 @@ class RouteBuilder {
             mc.setEnabled(evaluatedConfig.get("enabled").defaultTo(false).asBoolean());
             // percentiles
             mc.setPercentiles(evaluatedConfig.get("percentiles").defaultTo(DEFAULT_PERCENTILES).asList(Double.class));
+            // time to last byte
+            mc.setTimeToLastByte(evaluatedConfig.get("timeToLastByte").defaultTo(false).asBoolean());
         } else {
             // by default monitoring is disabled
             mc.setEnabled(evaluatedConfig.defaultTo(false).asBoolean());
@@ -240,6 +252,7 @@ class RouteBuilder {
     private static class MonitorConfig {
         private boolean enabled;
         private List<Double> percentiles = DEFAULT_PERCENTILES;
+        private boolean timeToLastByte;
 
         public void setEnabled(boolean enabled) {
             this.enabled = enabled;
@@ -256,6 +269,14 @@ class RouteBuilder {
         public List<Double> getPercentiles() {
             return percentiles;
         }
+
+        public void setTimeToLastByte(boolean timeToLastByte) {
+            this.timeToLastByte = timeToLastByte;
+        }
+
+        public boolean isTimeToLastByte() {
+            return timeToLastByte;
+        }
     }
 
     private final class Endpoints {
@@ -284,6 +305,8 @@ class RouteBuilder {
             for (EndpointRegistry.Registration registration : registrations) {
                 registration.unregister();
             }
+            // Detaching twice must not unregister the endpoints of a route that replaced this one
+            registrations.clear();
         }
 
         public void register(String path, Handler handler, String message) {
@@ -0,0 +1,318 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.handler.router;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.forgerock.openig.el.Expression;
+
+/**
+ * Necessary conditions extracted from a route's {@literal condition} expression.
+ * <p>
+ * The analysis only recognizes a few common shapes, combined at the top level with {@literal and} (or
+ * {@literal &&}):
+ * <ul>
+ *     <li>{@code request.uri.path == '/literal'}</li>
+ *     <li>{@code request.uri.path.startsWith('/literal')}</li>
+ *     <li>{@code matches(request.uri.path, '^/literal...')}</li>
+ *     <li>{@code request.uri.host == 'literal'}</li>
+ *     <li>{@code request.method == 'literal'}</li>
+ * </ul>
+ * Any other conjunct is simply ignored: the extracted constraints are only used to discard routes that cannot
+ * match, the whole condition is still evaluated for the remaining candidates. When the expression cannot be
+ * safely analyzed (disjunctions, ternary operators, composite expressions, escaped literals...), no constraint
+ * is extracted and the route is always considered as a candidate.
+ */
+final class RouteConstraints {
+
+    /** Constraints of a route that has no (or no analyzable) condition. */
+    static final RouteConstraints NONE = new RouteConstraints(null, null, null, null);
+
+    private static final String LITERAL = "(?:'([^'\\\\]*)'|\"([^\"\\\\]*)\")";
+    private static final String EQUALS = "\\s*(?:==|\\beq\\b)\\s*";
+    private static final String SUBJECT = "(request\\.uri\\.path|request\\.uri\\.host|request\\.method)";
+
+    private static final Pattern SUBJECT_EQUALS_LITERAL = Pattern.compile(SUBJECT + EQUALS + LITERAL);
+    private static final Pattern LITERAL_EQUALS_SUBJECT = Pattern.compile(LITERAL + EQUALS + SUBJECT);
+    private static final Pattern PATH_STARTS_WITH =
+            Pattern.compile("request\\.uri\\.path\\.startsWith\\(\\s*" + LITERAL + "\\s*\\)");
+    private static final Pattern PATH_MATCHES =
+            Pattern.compile("matches\\(\\s*request\\.uri\\.path\\s*,\\s*" + LITERAL + "\\s*\\)");
+
+    private static final String REGEX_META_CHARACTERS = ".[]()\\|+*?{}$^";
+    private static final String REGEX_QUANTIFIERS = "*?{";
+
+    private final String path;
+    private final String pathPrefix;
+    private final String host;
+    private final String method;
+
+    private RouteConstraints(final String path, final String pathPrefix, final String host, final String method) {
+        this.path = path;
+        this.pathPrefix = pathPrefix;
+        this.host = host;
+        this.method = method;
+    }
+
+    /**
+     * Returns the exact request path a request must have to match, or {@code null}.
+     * @return the exact request path a request must have to match, or {@code null}
+     */
+    String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the prefix the request path must start with to match, or {@code null}.
+     * @return the prefix the request path must start with to match, or {@code null}
+     */
+    String getPathPrefix() {
+        return pathPrefix;
+    }
+
+    /**
+     * Returns the request host a request must have to match, or {@code null}.
+     * @return the request host a request must have to match, or {@code null}
+     */
+    String getHost() {
+        return host;
+    }
+
+    /**
+     * Returns the request method a request must have to match, or {@code null}.
+     * @return the request method a request must have to match, or {@code null}
+     */
+    String getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns {@literal true} if at least one constraint has been extracted.
+     * @return {@literal true} if at least one constraint has been extracted
+     */
+    boolean isIndexable() {
+        return path != null || pathPrefix != null || host != null || method != null;
+    }
+
+    /**
+     * Extracts the constraints of the given route condition.
+     *
+     * @param condition
+     *         the route condition (may be {@code null})
+     * @return the extracted constraints, never {@code null}
+     */
+    static RouteConstraints of(final Expression<Boolean> condition) {
+        if (condition == null || condition.toString() == null) {
+            return NONE;
+        }
+        String text = condition.toString().trim();
+        if (!text.startsWith("${") || !text.endsWith("}")) {
+            return NONE;
+        }
+        List<String> conjuncts = conjuncts(text.substring(2, text.length() - 1));
+        if (conjuncts == null) {
+            return NONE;
+        }
+
+        String path = null;
+        String pathPrefix = null;
+        String host = null;
+        String method = null;
+        for (String conjunct : conjuncts) {
+            String atom = unwrap(conjunct);
+            Matcher matcher;
+            if ((matcher = SUBJECT_EQUALS_LITERAL.matcher(atom)).matches()) {
+                String literal = literal(matcher, 2);
+                switch (matcher.group(1)) {
+                case "request.uri.path":
+                    path = (path == null) ? literal : path;
+                    break;
+                case "request.uri.host":
+                    host = (host == null) ? literal : host;
+                    break;
+                default:
+                    method = (method == null) ? literal : method;
+                    break;
+                }
+            } else if ((matcher = LITERAL_EQUALS_SUBJECT.matcher(atom)).matches()) {
+                String literal = literal(matcher, 1);
+                switch (matcher.group(3)) {
+                case "request.uri.path":
+                    path = (path == null) ? literal : path;
+                    break;
+                case "request.uri.host":
+                    host = (host == null) ? literal : host;
+                    break;
+                default:
+                    method = (method == null) ? literal : method;
+                    break;
+                }
+            } else if ((matcher = PATH_STARTS_WITH.matcher(atom)).matches()) {
+                pathPrefix = longest(pathPrefix, literal(matcher, 1));
+            } else if ((matcher = PATH_MATCHES.matcher(atom)).matches()) {
+                pathPrefix = longest(pathPrefix, regexPrefix(literal(matcher, 1)));
+            }
+        }
+        if (path != null) {
+            // An exact path supersedes any prefix
+            pathPrefix = null;
+        }
+        RouteConstraints constraints = new RouteConstraints(path, pathPrefix, host, method);
+        return constraints.isIndexable() ? constraints : NONE;
+    }
+
+    private static String literal(final Matcher matcher, final int firstGroup) {
+        String single = matcher.group(firstGroup);
+        return (single != null) ? single : matcher.group(firstGroup + 1);
+    }
+
+    private static String longest(final String first, final String second) {
+        if (first == null || (second != null && second.length() > first.length())) {
+            return second;
+        }
+        return first;
+    }
+
+    /**
+     * Returns the literal prefix that any string found by the given regular expression must start with, or
+     * {@code null} if the expression is not anchored or if the prefix cannot be safely computed.
+     */
+    static String regexPrefix(final String regex) {
+        if (!regex.startsWith("^") || regex.indexOf('|') >= 0) {
+            return null;
+        }
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 1; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (REGEX_META_CHARACTERS.indexOf(c) >= 0) {
+                if (REGEX_QUANTIFIERS.indexOf(c) >= 0 && prefix.length() > 0) {
+                    // The quantifier applies to the previous character that may then be absent
+                    prefix.setLength(prefix.length() - 1);
+                }
+                break;
+            }
+            prefix.append(c);
+        }
+        return prefix.length() == 0 ? null : prefix.toString();
+    }
+
+    /**
+     * Strips the parentheses surrounding the whole given (already trimmed) conjunct.
+     */
+    private static String unwrap(final String conjunct) {
+        String atom = conjunct;
+        while (atom.startsWith("(") && closingParenthesis(atom) == atom.length() - 1) {
+            atom = atom.substring(1, atom.length() - 1).trim();
+        }
+        return atom;
+    }
+
+    private static int closingParenthesis(final String atom) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < atom.length(); i++) {
+            char c = atom.charAt(i);
+            if (quote != 0) {
+                quote = (c == quote) ? 0 : quote;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Splits the given expression body on its top-level {@literal and} operators. Returns {@code null} if the body
+     * contains constructs that prevent considering each conjunct as a necessary condition.
+     */
+    private static List<String> conjuncts(final String body) {
+        List<String> conjuncts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        char quote = 0;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    return null;
+                }
+                if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            switch (c) {
+            case '\'':
+            case '"':
+                quote = c;
+                break;
+            case '(':
+            case '[':
+                depth++;
+                break;
+            case ')':
+            case ']':
+                if (--depth < 0) {
+                    return null;
+                }
+                break;
+            case '{':
+            case '}':
+            case '?':
+            case ';':
+                // Nested or composite expressions, ternary operator, lambdas...
+                return null;
+            default:
+                if (depth > 0) {
+                    break;
+                }
+                if (body.startsWith("||", i) || isKeyword(body, i, "or")) {
+                    return null;
+                }
+                if (body.startsWith("&&", i) || isKeyword(body, i, "and")) {
+                    conjuncts.add(body.substring(start, i).trim());
+                    i += (c == '&') ? 1 : 2;
+                    start = i + 1;
+                }
+                break;
+            }
+        }
+        if (quote != 0 || depth != 0) {
+            return null;
+        }
+        conjuncts.add(body.substring(start).trim());
+        return conjuncts;
+    }
+
+    private static boolean isKeyword(final String body, final int index, final String keyword) {
+        int end = index + keyword.length();
+        return body.startsWith(keyword, index)
+                && (index == 0 || !isIdentifierPart(body.charAt(index - 1)))
+                && (end == body.length() || !isIdentifierPart(body.charAt(end)));
+    }
+
+    private static boolean isIdentifierPart(final char c) {
+        return Character.isJavaIdentifierPart(c) || c == '.';
+    }
+}
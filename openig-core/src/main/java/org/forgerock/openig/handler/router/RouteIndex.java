@@ -0,0 +1,214 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.handler.router;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.http.MutableUri;
+import org.forgerock.http.protocol.Request;
+
+/**
+ * Immutable index of an ordered set of routes, used to narrow the routes whose condition has to be evaluated for a
+ * given request.
+ * <p>
+ * Each route is identified by its rank in the ordered set. The {@link RouteConstraints} extracted from the routes
+ * conditions are indexed into a prefix tree (request path) and hash tables (exact request path, host and method).
+ * A lookup returns the set of candidate ranks: iterating over it preserves the routes ordering (as defined by
+ * {@link LexicographicalRouteComparator}). Routes without analyzable constraints are always part of the candidates.
+ */
+final class RouteIndex {
+
+    /** An index without any route. */
+    static final RouteIndex EMPTY = new RouteIndex(Collections.<Route>emptyList());
+
+    private final Route[] routes;
+    private final int indexed;
+
+    private final PrefixNode paths = new PrefixNode();
+    private final Map<String, BitSet> exactPaths = new HashMap<>();
+    private final BitSet anyPath = new BitSet();
+
+    private final Map<String, BitSet> hosts = new HashMap<>();
+    private final BitSet anyHost = new BitSet();
+
+    private final Map<String, BitSet> methods = new HashMap<>();
+    private final BitSet anyMethod = new BitSet();
+
+    /**
+     * Builds an index of the given routes.
+     *
+     * @param orderedRoutes
+     *         the routes, in the order they have to be tried
+     */
+    RouteIndex(final Collection<Route> orderedRoutes) {
+        this.routes = orderedRoutes.toArray(new Route[0]);
+        int count = 0;
+        for (int rank = 0; rank < routes.length; rank++) {
+            RouteConstraints constraints = RouteConstraints.of(routes[rank].getCondition());
+            if (constraints.isIndexable()) {
+                count++;
+            }
+
+            if (constraints.getPath() != null) {
+                bitSet(exactPaths, constraints.getPath()).set(rank);
+            } else if (constraints.getPathPrefix() != null) {
+                paths.child(constraints.getPathPrefix()).routes.set(rank);
+            } else {
+                anyPath.set(rank);
+            }
+
+            if (constraints.getHost() != null) {
+                bitSet(hosts, constraints.getHost()).set(rank);
+            } else {
+                anyHost.set(rank);
+            }
+
+            if (constraints.getMethod() != null) {
+                bitSet(methods, constraints.getMethod()).set(rank);
+            } else {
+                anyMethod.set(rank);
+            }
+        }
+        this.indexed = count;
+    }
+
+    private static BitSet bitSet(final Map<String, BitSet> map, final String key) {
+        BitSet set = map.get(key);
+        if (set == null) {
+            set = new BitSet();
+            map.put(key, set);
+        }
+        return set;
+    }
+
+    /**
+     * Returns the ranks of the routes that may accept the given request. The returned set is owned by the caller.
+     *
+     * @param request
+     *         the request to dispatch
+     * @return the ranks of the routes that may accept the given request
+     */
+    BitSet candidates(final Request request) {
+        MutableUri uri = request.getUri();
+        String path = (uri != null) ? uri.getPath() : null;
+        String host = (uri != null) ? uri.getHost() : null;
+
+        BitSet candidates = (BitSet) anyPath.clone();
+        if (path != null) {
+            BitSet exact = exactPaths.get(path);
+            if (exact != null) {
+                candidates.or(exact);
+            }
+            paths.collect(path, candidates);
+        }
+
+        narrow(candidates, anyHost, hosts, host);
+        narrow(candidates, anyMethod, methods, request.getMethod());
+        return candidates;
+    }
+
+    private static void narrow(final BitSet candidates,
+                               final BitSet any,
+                               final Map<String, BitSet> index,
+                               final String value) {
+        if (index.isEmpty()) {
+            return;
+        }
+        BitSet matching = (value != null) ? index.get(value) : null;
+        if (matching == null) {
+            candidates.and(any);
+        } else {
+            BitSet allowed = (BitSet) any.clone();
+            allowed.or(matching);
+            candidates.and(allowed);
+        }
+    }
+
+    /**
+     * Returns the route with the given rank.
+     *
+     * @param rank
+     *         the route's rank
+     * @return the route with the given rank
+     */
+    Route route(final int rank) {
+        return routes[rank];
+    }
+
+    /**
+     * Returns the number of routes in this index.
+     * @return the number of routes in this index
+     */
+    int size() {
+        return routes.length;
+    }
+
+    /**
+     * Returns the number of routes for which at least one constraint has been extracted.
+     * @return the number of routes for which at least one constraint has been extracted
+     */
+    int indexedSize() {
+        return indexed;
+    }
+
+    /**
+     * Returns the indexed routes, in the order they are tried.
+     * @return the indexed routes, in the order they are tried
+     */
+    List<Route> routes() {
+        return Collections.unmodifiableList(Arrays.asList(routes));
+    }
+
+    /**
+     * Node of a character-based prefix tree: each node holds the ranks of the routes whose path prefix ends there.
+     */
+    private static final class PrefixNode {
+        private final Map<Character, PrefixNode> children = new HashMap<>();
+        private final BitSet routes = new BitSet();
+
+        PrefixNode child(final String prefix) {
+            PrefixNode node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                PrefixNode next = node.children.get(prefix.charAt(i));
+                if (next == null) {
+                    next = new PrefixNode();
+                    node.children.put(prefix.charAt(i), next);
+                }
+                node = next;
+            }
+            return node;
+        }
+
+        void collect(final String path, final BitSet candidates) {
+            // The root holds the routes with an empty prefix, which match any path
+            candidates.or(routes);
+            PrefixNode node = this;
+            for (int i = 0; i < path.length() && node != null; i++) {
+                node = node.children.get(path.charAt(i));
+                if (node != null) {
+                    candidates.or(node.routes);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.handler.router;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the routes managed by a {@link RouterHandler}.
+ * <p>
+ * A new table is built and published each time a route is loaded, replaced or unloaded, so that requests can be
+ * dispatched against a consistent set of routes without any locking.
+ */
+final class RouteTable {
+
+    /** A table without any route. */
+    static final RouteTable EMPTY = new RouteTable(Collections.<ManagedRoute>emptyList());
+
+    private static final Comparator<Route> COMPARATOR = new LexicographicalRouteComparator();
+
+    private final Map<String, ManagedRoute> routes = new HashMap<>();
+    private final ManagedRoute[] ranked;
+    private final RouteIndex index;
+
+    private RouteTable(final Collection<ManagedRoute> managedRoutes) {
+        List<ManagedRoute> sorted = new ArrayList<>(managedRoutes);
+        sorted.sort((first, second) -> COMPARATOR.compare(first.getRoute(), second.getRoute()));
+        List<Route> ordered = new ArrayList<>(sorted.size());
+        for (ManagedRoute managed : sorted) {
+            routes.put(managed.getRoute().getId(), managed);
+            ordered.add(managed.getRoute());
+        }
+        this.ranked = sorted.toArray(new ManagedRoute[0]);
+        this.index = new RouteIndex(ordered);
+    }
+
+    /**
+     * Returns a new table containing the routes of this table plus the given one, replacing any route with the same
+     * identifier.
+     *
+     * @param route
+     *         the route to add
+     * @return a new table
+     */
+    RouteTable with(final ManagedRoute route) {
+        Map<String, ManagedRoute> copy = new HashMap<>(routes);
+        copy.put(route.getRoute().getId(), route);
+        return new RouteTable(copy.values());
+    }
+
+    /**
+     * Returns a new table containing the routes of this table, except the one with the given identifier.
+     *
+     * @param routeId
+     *         the identifier of the route to remove
+     * @return a new table
+     */
+    RouteTable without(final String routeId) {
+        Map<String, ManagedRoute> copy = new HashMap<>(routes);
+        copy.remove(routeId);
+        return new RouteTable(copy.values());
+    }
+
+    /**
+     * Returns the route with the given identifier, or {@code null}.
+     *
+     * @param routeId
+     *         the route identifier
+     * @return the route with the given identifier, or {@code null}
+     */
+    ManagedRoute get(final String routeId) {
+        return routes.get(routeId);
+    }
+
+    /**
+     * Returns the route with the given rank in the {@linkplain #getIndex() index}.
+     *
+     * @param rank
+     *         the route's rank
+     * @return the route with the given rank
+     */
+    ManagedRoute get(final int rank) {
+        return ranked[rank];
+    }
+
+    /**
+     * Returns the routes of this table, in the order they are tried.
+     * @return the routes of this table, in the order they are tried
+     */
+    List<ManagedRoute> getRoutes() {
+        List<ManagedRoute> list = new ArrayList<>(ranked.length);
+        Collections.addAll(list, ranked);
+        return list;
+    }
+
+    /**
+     * Returns the index of the routes of this table.
+     * @return the index of the routes of this table
+     */
+    RouteIndex getIndex() {
+        return index;
+    }
+}
@@ -36,19 +36,19 @@ import static org.forgerock.openig.util.JsonValues.readJson;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import io.swagger.v3.oas.models.OpenAPI;
 import org.forgerock.http.Handler;
@@ -143,30 +143,27 @@ public class RouterHandler implements FileChangeListener, Handler {
     private final Map<File, String> openApiRouteIds = new ConcurrentHashMap<>();
 
     /**
-     * Keep track of managed routes.
+     * Immutable snapshot of the managed routes, replaced (copy-on-write) each time a route is loaded, replaced or
+     * unloaded. Requests are dispatched against the snapshot read at their arrival, without any locking.
      */
-    private final Map<String, Route> routes = new HashMap<>();
+    private volatile RouteTable table = RouteTable.EMPTY;
 
     /**
-     * Ordered set of managed routes.
+     * Dispatching statistics.
      */
-    private final SortedSet<Route> sorted = new TreeSet<>(new LexicographicalRouteComparator());
+    private final RoutingMetrics metrics = new RoutingMetrics();
 
     /**
-     * Protect routes access.
+     * Serializes the publication of new route tables. Routes are built outside of this lock, and it is never
+     * acquired when dispatching requests.
      */
-    private final Lock read;
-
-    /**
-     * Protects write access to the routes.
-     */
-    private final Lock write;
+    private final Lock write = new ReentrantLock();
 
     /**
      * The optional handler which should be invoked when no routes match the
      * request.
      */
-    private Handler defaultHandler;
+    private volatile Handler defaultHandler;
 
     /**
      * Builds a router that loads its configuration from the given directory.
@@ -182,9 +179,6 @@ public class RouterHandler implements FileChangeListener, Handler {
                             final OpenApiValidationSettings openApiValidationSettings) {
         this.builder = builder;
         this.directoryMonitor = directoryMonitor;
-        ReadWriteLock lock = new ReentrantReadWriteLock();
-        this.read = lock.readLock();
-        this.write = lock.writeLock();
 
         this.openApiSpecLoader = openApiSpecLoader;
         this.openApiRouteBuilder = openApiRouteBuilder;
@@ -200,30 +194,26 @@ public class RouterHandler implements FileChangeListener, Handler {
      *            request
      */
     void setDefaultHandler(final Handler handler) {
-        write.lock();
-        try {
-            this.defaultHandler = handler;
-        } finally {
-            write.unlock();
-        }
+        this.defaultHandler = handler;
     }
 
     /**
      * Stops this handler, shutting down and clearing all the managed routes.
      */
     public void stop() {
+        RouteTable previous;
         write.lock();
         try {
             // Un-register all the routes
-            sorted.clear();
-            // Destroy the routes
-            for (Route route : routes.values()) {
-                route.destroy();
-            }
-            routes.clear();
+            previous = table;
+            table = RouteTable.EMPTY;
         } finally {
             write.unlock();
         }
+        // Destroy the routes, once their in-flight requests have completed
+        for (ManagedRoute route : previous.getRoutes()) {
+            route.retire();
+        }
     }
 
     /**
@@ -237,15 +227,12 @@ public class RouterHandler implements FileChangeListener, Handler {
      */
     public void deploy(String routeId, String routeName, JsonValue routeConfig) throws RouterHandlerException {
         Reject.ifNull(routeName);
-        write.lock();
+        load(routeId, routeName, routeConfig.copy());
         try {
-            load(routeId, routeName, routeConfig.copy());
             directoryMonitor.store(routeId, routeConfig);
             logger.info("Deployed the route with id '{}' named '{}'", routeId, routeName);
         } catch (IOException e) {
             throw new RouterHandlerException(format("An error occurred while storing the route '%s'", routeId), e);
-        } finally {
-            write.unlock();
         }
     }
 
@@ -257,19 +244,15 @@ public class RouterHandler implements FileChangeListener, Handler {
      * @throws RouterHandlerException if the given routeId is not valid
      */
     public JsonValue undeploy(String routeId) throws RouterHandlerException {
-        write.lock();
-        try {
-            JsonValue routeConfig = unload(routeId);
-            directoryMonitor.delete(routeId);
-            logger.info("Undeployed the route with id '{}'", routeId);
-            return routeConfig;
-        } finally {
-            write.unlock();
-        }
+        JsonValue routeConfig = unload(routeId);
+        directoryMonitor.delete(routeId);
+        logger.info("Undeployed the route with id '{}'", routeId);
+        return routeConfig;
     }
 
     /**
-     * Update a route.
+     * Update a route. The new route is built while the previous one keeps processing requests, and then replaces it
+     * atomically. If the new configuration is not valid, the previous route is left untouched.
      * @param routeId the id of the route to update
      * @param routeName the name of the route to update
      * @param routeConfig the new route's configuration
@@ -277,93 +260,138 @@ public class RouterHandler implements FileChangeListener, Handler {
      * @throws RouterHandlerException if the given routeConfig is not valid
      */
     public void update(String routeId, String routeName, JsonValue routeConfig) throws RouterHandlerException {
-        write.lock();
-        Route previousRoute = routes.get(routeId);
+        Reject.ifNull(routeId, routeName);
+        if (table.get(routeId) == null) {
+            throw new RouterHandlerException(format("No route with id '%s' was loaded : unable to update it.",
+                                                    routeId));
+        }
+        replace(routeId, routeName, routeConfig);
         try {
-            Reject.ifNull(routeId, routeName);
-            write.lock();
-            try {
-                unload(routeId);
-                load(routeId, routeName, routeConfig);
-            } finally {
-                write.unlock();
-            }
             directoryMonitor.store(routeId, routeConfig);
             logger.info("Updated the route with id '{}'", routeId);
-        } catch (RouterHandlerException e) {
-            // Restore the previous route if the reload failed
-            load(previousRoute.getId(), previousRoute.getName(), previousRoute.getConfig());
-            throw e;
         } catch (IOException e) {
             throw new RouterHandlerException(format("An error occurred while storing the route '%s'", routeId), e);
+        }
+    }
+
+    void load(String routeId, String routeName, JsonValue routeConfig) throws RouterHandlerException {
+        Reject.ifNull(routeId, routeName);
+        // Fail fast, before paying for the route instantiation
+        checkNotLoaded(table, routeId, routeName);
+
+        ManagedRoute route = new ManagedRoute(build(routeId, routeName, routeConfig));
+        write.lock();
+        try {
+            // Another route may have been loaded meanwhile
+            checkNotLoaded(table, routeId, routeName);
+            // Only started routes are published
+            route.getRoute().start();
+            table = table.with(route);
+        } catch (RouterHandlerException | RuntimeException e) {
+            route.retire();
+            throw e;
         } finally {
             write.unlock();
         }
+        logger.info("Loaded the route with id '{}' registered with the name '{}'", routeId, routeName);
     }
 
-    void load(String routeId, String routeName, JsonValue routeConfig) throws RouterHandlerException {
+    /**
+     * Loads the given route, atomically replacing any route previously loaded with the same identifier: requests
+     * are never dispatched to a router missing this route. The replaced route is destroyed once its in-flight
+     * requests have completed.
+     */
+    void replace(String routeId, String routeName, JsonValue routeConfig) throws RouterHandlerException {
         Reject.ifNull(routeId, routeName);
+        ManagedRoute route = new ManagedRoute(build(routeId, routeName, routeConfig));
+        ManagedRoute previous;
         write.lock();
         try {
-            for (Route route : sorted) {
-                if (routeId.equals(route.getId())) {
-                    throw new RouterHandlerException(format("A route with the id '%s' is already loaded", routeId));
-                }
-                if (routeName.equals(route.getName())) {
+            for (ManagedRoute other : table.getRoutes()) {
+                if (!routeId.equals(other.getRoute().getId()) && routeName.equals(other.getRoute().getName())) {
+                    route.retire();
                     throw new RouterHandlerException(
                             format("A route with the id '%s' is already loaded with the name '%s'",
-                                   routeId,
+                                   other.getRoute().getId(),
                                    routeName));
                 }
             }
-            Route route;
+            previous = table.get(routeId);
+            // The previous route endpoints have to be unhooked before the new ones are registered, and the new route
+            // started before it is published
+            if (previous != null) {
+                previous.getRoute().stop();
+            }
             try {
-                route = builder.build(routeId, routeName, routeConfig);
-            } catch (HeapException e) {
-                throw new RouterHandlerException(
-                        format("An error occurred while loading the route with the '%s'", routeName), e);
+                route.getRoute().start();
+            } catch (RuntimeException e) {
+                route.retire();
+                if (previous != null) {
+                    previous.getRoute().start();
+                }
+                throw e;
+            }
+            table = table.with(route);
+            if (previous != null) {
+                previous.retire();
             }
-            route.start();
-            routes.put(routeId, route);
-            sorted.add(route);
-            logger.info("Loaded the route with id '{}' registered with the name '{}'", route.getId(), route.getName());
         } finally {
             write.unlock();
         }
+        logger.info("Loaded the route with id '{}' registered with the name '{}'", routeId, routeName);
+    }
+
+    private Route build(String routeId, String routeName, JsonValue routeConfig) throws RouterHandlerException {
+        try {
+            return builder.build(routeId, routeName, routeConfig);
+        } catch (HeapException e) {
+            throw new RouterHandlerException(
+                    format("An error occurred while loading the route with the '%s'", routeName), e);
+        }
+    }
+
+    private static void checkNotLoaded(RouteTable table, String routeId, String routeName)
+            throws RouterHandlerException {
+        for (ManagedRoute managed : table.getRoutes()) {
+            Route route = managed.getRoute();
+            if (routeId.equals(route.getId())) {
+                throw new RouterHandlerException(format("A route with the id '%s' is already loaded", routeId));
+            }
+            if (routeName.equals(route.getName())) {
+                throw new RouterHandlerException(
+                        format("A route with the id '%s' is already loaded with the name '%s'",
+                               routeId,
+                               routeName));
+            }
+        }
     }
 
     JsonValue unload(String routeId) throws RouterHandlerException {
         Reject.ifNull(routeId);
+        ManagedRoute removedRoute;
         write.lock();
         try {
-            Route removedRoute = routes.remove(routeId);
+            removedRoute = table.get(routeId);
             if (removedRoute == null) {
                 throw new RouterHandlerException(format("No route with id '%s' was loaded : unable to unload it.",
                                                         routeId));
-            } else {
-                removedRoute.destroy();
-                logger.info("Unloaded the route with id '{}'", routeId);
             }
-
-            sorted.removeIf(route -> removedRoute == route);
-            return removedRoute.getConfig();
+            table = table.without(routeId);
         } finally {
             write.unlock();
         }
+        removedRoute.retire();
+        logger.info("Unloaded the route with id '{}'", routeId);
+        return removedRoute.getRoute().getConfig();
     }
 
     JsonValue routeConfig(String routeId) throws RouterHandlerException {
         Reject.ifNull(routeId);
-        read.lock();
-        try {
-            Route route = routes.get(routeId);
-            if (route == null) {
-                throw new RouterHandlerException(format("No route with id '%s' was loaded.", routeId));
-            }
-            return route.getConfig();
-        } finally {
-            read.unlock();
+        ManagedRoute route = table.get(routeId);
+        if (route == null) {
+            throw new RouterHandlerException(format("No route with id '%s' was loaded.", routeId));
         }
+        return route.getRoute().getConfig();
     }
 
     /**
@@ -371,31 +399,75 @@ public class RouterHandler implements FileChangeListener, Handler {
      * @return a list of the currently deployed routes, in the order they are tried.
      */
     List<Route> getRoutes() {
-        read.lock();
-        try {
-            return new ArrayList<>(sorted);
-        } finally {
-            read.unlock();
-        }
+        return new ArrayList<>(table.getIndex().routes());
+    }
+
+    /**
+     * Returns the index of the currently deployed routes.
+     * @return the index of the currently deployed routes
+     */
+    RouteIndex getRouteIndex() {
+        return table.getIndex();
+    }
+
+    /**
+     * Returns the dispatching statistics of this router.
+     * @return the dispatching statistics of this router
+     */
+    RoutingMetrics getRoutingMetrics() {
+        return metrics;
     }
 
     @Override
     public Promise<Response, NeverThrowsException> handle(final Context context, final Request request) {
-        // Traverse the routes
-        read.lock();
-        try {
-            for (Route route : sorted) {
-                if (route.accept(context, request)) {
-                    return route.handle(context, request);
+        // Traverse the candidate routes of the current snapshot, in order
+        RouteTable routes = table;
+        BitSet candidates = routes.getIndex().candidates(request);
+        metrics.getLookupCount().inc();
+        metrics.getCandidates().update(candidates.cardinality());
+        Set<ManagedRoute> rejected = null;
+        int rank = candidates.nextSetBit(0);
+        while (rank >= 0) {
+            ManagedRoute route = routes.get(rank);
+            if (rejected == null || !rejected.contains(route)) {
+                metrics.getEvaluatedConditionCount().inc();
+                if (route.getRoute().accept(context, request)) {
+                    if (route.acquire()) {
+                        return dispatch(route, context, request);
+                    }
+                    // The route has been replaced and destroyed meanwhile: resume against the new snapshot, without
+                    // evaluating again the conditions of the routes that already rejected the request
+                    if (rejected == null) {
+                        rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+                    }
+                    for (int other = candidates.nextSetBit(0); other < rank; other = candidates.nextSetBit(other + 1)) {
+                        rejected.add(routes.get(other));
+                    }
+                    routes = table;
+                    candidates = routes.getIndex().candidates(request);
+                    rank = candidates.nextSetBit(0);
+                    continue;
                 }
             }
-            if (defaultHandler != null) {
-                return defaultHandler.handle(context, request);
-            }
-            logger.error("no handler to dispatch to");
-            return Promises.newResultPromise(Responses.newNotFound());
-        } finally {
-            read.unlock();
+            rank = candidates.nextSetBit(rank + 1);
+        }
+        metrics.getUnmatchedCount().inc();
+        Handler handler = defaultHandler;
+        if (handler != null) {
+            return handler.handle(context, request);
+        }
+        logger.error("no handler to dispatch to");
+        return Promises.newResultPromise(Responses.newNotFound());
+    }
+
+    private static Promise<Response, NeverThrowsException> dispatch(final ManagedRoute route,
+                                                                    final Context context,
+                                                                    final Request request) {
+        try {
+            return route.getRoute().handle(context, request).thenAlways(route::release);
+        } catch (RuntimeException e) {
+            route.release();
+            throw e;
         }
     }
 
@@ -492,8 +564,25 @@ public class RouterHandler implements FileChangeListener, Handler {
     }
 
     private void onModifiedFile(File file) {
-        onRemovedFile(file);
-        onAddedFile(file);
+        if (openApiRouteIds.containsKey(file)
+                || (openApiValidationSettings.enabled && openApiSpecLoader.isOpenApiFile(file))) {
+            onRemovedFile(file);
+            onAddedFile(file);
+            return;
+        }
+        String routeId = routeId(file);
+        try {
+            JsonValue routeConfig = readJson(file.toURI().toURL());
+            replace(routeId, routeName(routeConfig, routeId), routeConfig);
+        } catch (IOException | JsonValueException | RouterHandlerException e) {
+            logger.error("The file '{}' is not a valid route configuration: unloading the route '{}'.",
+                         file, routeId, e);
+            try {
+                unload(routeId);
+            } catch (RouterHandlerException ignored) {
+                // The route was not loaded
+            }
+        }
     }
 
     private static String routeId(File file) {
@@ -508,6 +597,7 @@ public class RouterHandler implements FileChangeListener, Handler {
     public static class Heaplet extends GenericHeaplet {
 
         private EndpointRegistry.Registration registration;
+        private EndpointRegistry.Registration routingRegistration;
         private DirectoryMonitor directoryMonitor;
         private ScheduledFuture<?> scheduledCommand;
         private Duration scanInterval;
@@ -553,6 +643,11 @@ public class RouterHandler implements FileChangeListener, Handler {
                 logger.info("Routes endpoint available at '{}'", registration.getPath());
             }
 
+            // Register the /routing endpoint
+            final RequestHandler routing = newHandler(new RoutingResourceProvider(handler));
+            routingRegistration = registry.register("routing",
+                                                    newHttpHandler(newCrestApplication(routing,
+                                                                                       "frapi:openig:routing")));
 
 
             return handler;
@@ -618,6 +713,9 @@ public class RouterHandler implements FileChangeListener, Handler {
             if (registration != null) {
                 registration.unregister();
             }
+            if (routingRegistration != null) {
+                routingRegistration.unregister();
+            }
             super.destroy();
         }
     }
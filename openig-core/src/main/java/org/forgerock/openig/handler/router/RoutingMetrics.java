@@ -0,0 +1,70 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.handler.router;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+
+/**
+ * Holds the set of metrics describing the {@link RouterHandler} dispatching.
+ */
+class RoutingMetrics {
+    private final Counter lookupCount;
+    private final Counter unmatchedCount;
+    private final Counter evaluatedConditionCount;
+    private final Histogram candidates;
+
+    public RoutingMetrics() {
+        this.lookupCount = new Counter();
+        this.unmatchedCount = new Counter();
+        this.evaluatedConditionCount = new Counter();
+        this.candidates = new Histogram(new ExponentiallyDecayingReservoir());
+    }
+
+    /**
+     * Returns the number of dispatched requests.
+     * @return the number of dispatched requests
+     */
+    public Counter getLookupCount() {
+        return lookupCount;
+    }
+
+    /**
+     * Returns the number of requests that were not accepted by any route.
+     * @return the number of requests that were not accepted by any route
+     */
+    public Counter getUnmatchedCount() {
+        return unmatchedCount;
+    }
+
+    /**
+     * Returns the number of route conditions evaluated.
+     * @return the number of route conditions evaluated
+     */
+    public Counter getEvaluatedConditionCount() {
+        return evaluatedConditionCount;
+    }
+
+    /**
+     * Returns the distribution of the number of candidate routes selected by the index per lookup.
+     * @return the distribution of the number of candidate routes selected by the index per lookup
+     */
+    public Histogram getCandidates() {
+        return candidates;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.handler.router;
+
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import org.forgerock.api.annotations.Handler;
+import org.forgerock.api.annotations.Operation;
+import org.forgerock.api.annotations.Read;
+import org.forgerock.api.annotations.Schema;
+import org.forgerock.api.annotations.SingletonProvider;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.ActionRequest;
+import org.forgerock.json.resource.ActionResponse;
+import org.forgerock.json.resource.NotSupportedException;
+import org.forgerock.json.resource.PatchRequest;
+import org.forgerock.json.resource.ReadRequest;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.json.resource.Responses;
+import org.forgerock.json.resource.SingletonResourceProvider;
+import org.forgerock.json.resource.UpdateRequest;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.promise.Promise;
+
+import com.codahale.metrics.Snapshot;
+
+/**
+ * Expose the dispatching statistics of a {@link RouterHandler} as a REST resource.
+ * This resource only supports read typed operations.
+ */
+@SingletonProvider(@Handler(
+        title = "i18n:#service.title",
+        description = "i18n:#service.desc",
+        resourceSchema = @Schema(schemaResource = "routing-resource.json", id = "routing-data"),
+        mvccSupported = false))
+class RoutingResourceProvider implements SingletonResourceProvider {
+
+    private final RouterHandler router;
+
+    RoutingResourceProvider(final RouterHandler router) {
+        this.router = router;
+    }
+
+    @Override
+    @Read(operationDescription = @Operation(description = "i18n:#read.desc"))
+    public Promise<ResourceResponse, ResourceException> readInstance(final Context context, final ReadRequest request) {
+        RoutingMetrics metrics = router.getRoutingMetrics();
+        RouteIndex index = router.getRouteIndex();
+        JsonValue data = json(object());
+
+        data.put("routes", object(field("total", index.size()),
+                                  field("indexed", index.indexedSize())));
+
+        data.put("lookups", object(field("total", metrics.getLookupCount().getCount()),
+                                   field("unmatched", metrics.getUnmatchedCount().getCount()),
+                                   field("evaluatedConditions", metrics.getEvaluatedConditionCount().getCount())));
+
+        Snapshot snapshot = metrics.getCandidates().getSnapshot();
+        data.put("candidates", object(field("mean", scale(snapshot.getMean())),
+                                      field("median", scale(snapshot.getMedian())),
+                                      field("p99", scale(snapshot.get99thPercentile())),
+                                      field("max", snapshot.getMax())));
+
+        return Responses.newResourceResponse(null, null, data).asPromise();
+    }
+
+    private static BigDecimal scale(double value) {
+        return BigDecimal.valueOf(value)
+                         .setScale(1, RoundingMode.HALF_DOWN);
+    }
+
+    @Override
+    public Promise<ActionResponse, ResourceException> actionInstance(final Context context,
+                                                                     final ActionRequest request) {
+        return new NotSupportedException("Action is not supported by this resource").asPromise();
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> patchInstance(final Context context,
+                                                                      final PatchRequest request) {
+        return new NotSupportedException("Patch is not supported by this resource").asPromise();
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> updateInstance(final Context context,
+                                                                       final UpdateRequest request) {
+        return new NotSupportedException("Update is not supported by this resource").asPromise();
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.http;
@@ -32,6 +33,7 @@ import static org.forgerock.openig.heap.Keys.TEMPORARY_STORAGE_HEAP_KEY;
 import static org.forgerock.openig.heap.Keys.TICKER_HEAP_KEY;
 import static org.forgerock.openig.heap.Keys.TIMER_HEAP_KEY;
 import static org.forgerock.openig.heap.Keys.TIME_SERVICE_HEAP_KEY;
+import static org.forgerock.openig.http.MetricRegistryHandler.METRICS_ENDPOINT;
 import static org.forgerock.openig.http.RunMode.EVALUATION;
 import static org.forgerock.openig.http.RunMode.PRODUCTION;
 import static org.forgerock.openig.util.CrestUtil.newCrestApplication;
@@ -74,6 +76,7 @@ import org.forgerock.util.Factory;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
 import org.forgerock.util.time.TimeService;
+import org.openidentityplatform.openig.websocket.ServerEndPoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -138,6 +141,12 @@ public class AdminHttpApplication implements DescribedHttpApplication {
                                                                  "frapi:openig:server-info"));
         apiRouter.addRoute(requestUriMatcher(EQUALS, "info"), infoHandler);
 
+        // Expose the WebSocket proxy statistics
+        Router websocketRouter = new Router();
+        websocketRouter.addRoute(requestUriMatcher(EQUALS, METRICS_ENDPOINT),
+                                 new MetricRegistryHandler(ServerEndPoint.getMetrics()));
+        systemRouter.addRoute(requestUriMatcher(STARTS_WITH, "websocket"), websocketRouter);
+
         this.endpointRegistry = new EndpointRegistry(systemObjectsRouter, "/" + adminPrefix + "/api/system/objects");
     }
 
@@ -0,0 +1,142 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.http;
+
+import static org.forgerock.http.protocol.Response.newResponsePromise;
+import static org.forgerock.http.protocol.Status.METHOD_NOT_ALLOWED;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.object;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.http.Handler;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+/**
+ * Exposes the current state of a {@link MetricRegistry} as a JSON object, keyed by metric name.
+ * <p>
+ * Heap objects that keep their own statistics register it in their {@linkplain EndpointRegistry endpoint registry},
+ * usually under the {@literal metrics} name, so that the statistics are available at
+ * {@literal /openig/api/system/objects/.../[heap-object-name]/metrics}. Only GET requests are supported.
+ * <p>
+ * Counters and gauges are exposed as their value, meters as their count and rates (per second), histograms as their
+ * count and distribution, and timers as their count, rates and distribution (in milliseconds).
+ */
+public class MetricRegistryHandler implements Handler {
+
+    /**
+     * Name under which the heap objects usually register this handler.
+     */
+    public static final String METRICS_ENDPOINT = "metrics";
+
+    private static final double NANOS_PER_MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final MetricRegistry metrics;
+
+    /**
+     * Builds a new handler.
+     *
+     * @param metrics
+     *         the exposed metrics
+     */
+    public MetricRegistryHandler(final MetricRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Promise<Response, NeverThrowsException> handle(final Context context, final Request request) {
+        if (!"GET".equals(request.getMethod())) {
+            return newResponsePromise(new Response(METHOD_NOT_ALLOWED));
+        }
+        Response response = new Response(Status.OK);
+        response.setEntity(toJson());
+        return newResponsePromise(response);
+    }
+
+    /**
+     * Returns the current state of the metrics, keyed by metric name.
+     *
+     * @return the current state of the metrics, keyed by metric name
+     */
+    Map<String, Object> toJson() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        for (Map.Entry<String, Metric> entry : metrics.getMetrics().entrySet()) {
+            json.put(entry.getKey(), toJson(entry.getValue()));
+        }
+        return json;
+    }
+
+    private static Object toJson(final Metric metric) {
+        if (metric instanceof Counter) {
+            return ((Counter) metric).getCount();
+        }
+        if (metric instanceof Gauge) {
+            return ((Gauge<?>) metric).getValue();
+        }
+        if (metric instanceof Timer) {
+            Timer timer = (Timer) metric;
+            Map<String, Object> json = rates(timer);
+            json.putAll(distribution(timer.getSnapshot(), NANOS_PER_MILLISECOND));
+            return json;
+        }
+        if (metric instanceof Meter) {
+            return rates((Meter) metric);
+        }
+        if (metric instanceof Histogram) {
+            Histogram histogram = (Histogram) metric;
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("count", histogram.getCount());
+            json.putAll(distribution(histogram.getSnapshot(), 1d));
+            return json;
+        }
+        return null;
+    }
+
+    private static Map<String, Object> rates(final Metered metered) {
+        return object(field("count", metered.getCount()),
+                      field("mean", metered.getMeanRate()),
+                      field("lastMinute", metered.getOneMinuteRate()),
+                      field("last5Minutes", metered.getFiveMinuteRate()),
+                      field("last15Minutes", metered.getFifteenMinuteRate()));
+    }
+
+    private static Map<String, Object> distribution(final Snapshot snapshot, final double scale) {
+        return object(field("mean", snapshot.getMean() / scale),
+                      field("median", snapshot.getMedian() / scale),
+                      field("max", snapshot.getMax() / scale),
+                      field("percentiles", object(field("0.95", snapshot.get95thPercentile() / scale),
+                                                  field("0.99", snapshot.get99thPercentile() / scale),
+                                                  field("0.999", snapshot.get999thPercentile() / scale))));
+    }
+}
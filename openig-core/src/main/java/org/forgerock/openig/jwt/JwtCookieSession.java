@@ -12,12 +12,13 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2016 ForgeRock AS.
+ * Portions copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.jwt;
 
 import static java.lang.String.format;
-import static java.util.Collections.singletonList;
+import static java.util.Collections.emptyList;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static org.forgerock.http.util.Json.checkJsonCompatibility;
@@ -25,6 +26,7 @@ import static org.forgerock.openig.jwt.JwtSessionManager.MAX_SESSION_TIMEOUT;
 
 import java.io.IOException;
 import java.security.KeyPair;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedHashMap;
@@ -37,15 +39,10 @@ import org.forgerock.http.protocol.Cookie;
 import org.forgerock.http.protocol.Request;
 import org.forgerock.http.protocol.Response;
 import org.forgerock.http.session.Session;
-import org.forgerock.json.jose.builders.JwtBuilderFactory;
-import org.forgerock.json.jose.builders.JwtClaimsSetBuilder;
 import org.forgerock.json.jose.exceptions.JweDecryptionException;
 import org.forgerock.json.jose.jwe.EncryptionMethod;
 import org.forgerock.json.jose.jwe.JweAlgorithm;
-import org.forgerock.json.jose.jws.EncryptedThenSignedJwt;
-import org.forgerock.json.jose.jws.JwsAlgorithm;
 import org.forgerock.json.jose.jws.handlers.SigningHandler;
-import org.forgerock.json.jose.jwt.JwtClaimsSet;
 import org.forgerock.openig.jwt.dirty.DirtyCollection;
 import org.forgerock.openig.jwt.dirty.DirtyListener;
 import org.forgerock.openig.jwt.dirty.DirtySet;
@@ -59,7 +56,14 @@ import org.slf4j.LoggerFactory;
 /**
  * Represents an OpenIG {@link Session} that will be stored as an encrypted JSON Web Token in a Cookie.
  * The generated JWT is encrypted with the {@link JweAlgorithm#RSAES_PKCS1_V1_5} algorithm and {@link
- * EncryptionMethod#A128CBC_HS256} method.
+ * EncryptionMethod#A128CBC_HS256} method, or directly with a shared AES key (see {@link JwtSessionManager}).
+ * <p>
+ * The session cookie is only decoded when the session is first accessed: a request that does not use its session
+ * neither decrypts nor re-issues the cookie.
+ * <p>
+ * A JWT larger than a single cookie can hold is split across several chunk cookies named {@code <cookieName>.0}
+ * to {@code <cookieName>.N-1}, the {@code <cookieName>} cookie then holding the manifest {@code chunks:N}. The
+ * manifest is only re-emitted when the number of chunks changes, and the chunks that are no longer used are expired.
  */
 public class JwtCookieSession extends MapDecorator<String, Object> implements Session, DirtyListener {
 
@@ -88,9 +92,24 @@ public class JwtCookieSession extends MapDecorator<String, Object> implements Se
     private static final Date EPOCH = new Date(0L);
 
     /**
-     * Factory for JWT.
+     * The maximum size of a JWT stored in a single cookie (Http Cookie limitation).
      */
-    private final JwtBuilderFactory factory = new JwtBuilderFactory();
+    private static final int MAX_COOKIE_SIZE = 4096;
+
+    /**
+     * The size of the chunks of a JWT too large for a single cookie, leaving room for the cookie name and attributes.
+     */
+    static final int CHUNK_SIZE = 3800;
+
+    /**
+     * The maximum number of chunks of a JWT session, browsers limit the number of cookies per domain.
+     */
+    static final int MAX_CHUNKS = 10;
+
+    /**
+     * Prefix of the manifest of a JWT session split across several cookies, followed by the number of chunks.
+     */
+    static final String CHUNKS_MANIFEST_PREFIX = "chunks:";
 
     /**
      * Marker used to detect if the session was used or not.
@@ -110,7 +129,27 @@ public class JwtCookieSession extends MapDecorator<String, Object> implements Se
     /**
      * Used for decryption/encryption of session's content.
      */
-    private final KeyPair pair;
+    private final JwtSessionCodec codec;
+
+    /**
+     * The value of the session cookie received with the request (a JWT or a chunks manifest), or {@code null}.
+     */
+    private String requestCookieValue;
+
+    /**
+     * The values of the session chunk cookies received with the request.
+     */
+    private List<String> requestChunks = emptyList();
+
+    /**
+     * The JWT received with the request (joined chunks), until the session is loaded.
+     */
+    private String cookieValue;
+
+    /**
+     * Marker used to load the session's content on first access.
+     */
+    private boolean loaded;
 
     /**
      * The TimeService to use when setting the cookie session expiry time.
@@ -122,11 +161,6 @@ public class JwtCookieSession extends MapDecorator<String, Object> implements Se
      */
     private final Duration sessionTimeout;
 
-    /**
-     * Hmac Signing Handler.
-     */
-    private final SigningHandler signingHandler;
-
     /**
      * Builds a new JwtCookieSession that will manage the given Request's session.
      *
@@ -152,12 +186,41 @@ public class JwtCookieSession extends MapDecorator<String, Object> implements Se
                             final TimeService timeService,
                             final Duration sessionTimeout,
                             final SigningHandler signingHandler) {
+        this(request,
+             JwtSessionCodec.rsa(pair, signingHandler, false, 0),
+             cookieName,
+             cookieDomain,
+             timeService,
+             sessionTimeout);
+    }
+
+    /**
+     * Builds a new JwtCookieSession that will manage the given Request's session.
+     *
+     * @param request
+     *         Request used to access {@literal Cookie} and {@literal Set-Cookie} headers.
+     * @param codec
+     *         Codec used to encrypt/decrypt and sign/verify the JWT.
+     * @param cookieName
+     *         Name to be used for the JWT Cookie.
+     * @param cookieDomain
+     *         Domain to be used for the JWT Cookie. If null, the cookie will be treated as a host-based cookie.
+     * @param timeService
+     *         TimeService to use when dealing with cookie sessions.
+     * @param sessionTimeout
+     *         The duration of the cookie session.
+     */
+    JwtCookieSession(final Request request,
+                     final JwtSessionCodec codec,
+                     final String cookieName,
+                     final String cookieDomain,
+                     final TimeService timeService,
+                     final Duration sessionTimeout) {
         super(new LinkedHashMap<String, Object>());
-        this.pair = pair;
+        this.codec = codec;
         this.cookieName = cookieName;
         this.cookieDomain = cookieDomain;
         this.timeService = timeService;
-        this.signingHandler = signingHandler;
 
         // The MAX_SESSION_TIMEOUT is more than enough to mark a session to not expire
         // so use this in place of larger values.
@@ -167,21 +230,72 @@ public class JwtCookieSession extends MapDecorator<String, Object> implements Se
             this.sessionTimeout = sessionTimeout;
         }
 
-        // TODO Make this lazy (intercept read methods)
-        loadJwtSession(request);
+        // The session's content is loaded on first access
+        Cookie cookie = findJwtSessionCookie(request, cookieName);
+        if (cookie != null) {
+            requestCookieValue = cookie.getValue();
+            cookieValue = requestCookieValue;
+            if (requestCookieValue != null && requestCookieValue.startsWith(CHUNKS_MANIFEST_PREFIX)) {
+                cookieValue = joinChunks(request, requestCookieValue);
+            }
+        }
+        loaded = (cookieValue == null);
     }
 
     /**
-     * Load the session's content from the cookie (if any).
+     * Reads the chunk cookies listed by the given manifest.
      *
-     * @param request Request used to access {@literal Cookie} and {@literal Set-Cookie} headers.
+     * @param request Request used to access {@literal Cookie} headers.
+     * @param manifest the chunks manifest
+     * @return the joined chunks, or {@code null} if they cannot be read
      */
-    private void loadJwtSession(Request request) {
-        Cookie cookie = findJwtSessionCookie(request);
-        if (cookie != null) {
+    private String joinChunks(final Request request, final String manifest) {
+        int count;
+        try {
+            count = Integer.parseInt(manifest.substring(CHUNKS_MANIFEST_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            count = -1;
+        }
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < count && count <= MAX_CHUNKS; i++) {
+            Cookie chunk = findJwtSessionCookie(request, chunkName(i));
+            if (chunk == null) {
+                break;
+            }
+            chunks.add(chunk.getValue());
+        }
+        requestChunks = chunks;
+        if (chunks.size() != count) {
+            // Force cookie expiration / overwrite.
+            dirty = true;
+            logger.warn("The session content will be discarded because OpenIG cannot read all the chunks "
+                                + "of the JWT session from Cookie '{}'", cookieName);
+            return null;
+        }
+        return String.join("", chunks);
+    }
+
+    /**
+     * Load the session's content from the cookie, if not already done.
+     */
+    private void ensureLoaded() {
+        if (!loaded) {
+            loaded = true;
+            loadJwtSession(cookieValue);
+            cookieValue = null;
+        }
+    }
+
+    /**
+     * Load the session's content from the cookie value.
+     *
+     * @param value the value of the session cookie
+     */
+    private void loadJwtSession(String value) {
+        if (value != null) {
             try {
-                EncryptedThenSignedJwt jwt = factory.reconstruct(cookie.getValue(), EncryptedThenSignedJwt.class);
-                if (!jwt.verify(signingHandler)) {
+                Map<String, Object> claims = codec.decode(value);
+                if (claims == null) {
                     // Force cookie expiration / overwrite.
                     dirty = true;
                     logger.warn("The session content will be discarded because OpenIG cannot verify "
@@ -190,12 +304,8 @@ public class JwtCookieSession extends MapDecorator<String, Object> implements Se
                     return;
                 }
 
-                jwt.decrypt(pair.getPrivate());
-                JwtClaimsSet claimsSet = jwt.getClaimsSet();
-                for (String key : claimsSet.keys()) {
-                    // directly use super to avoid session be marked as dirty
-                    super.put(key, claimsSet.getClaim(key));
-                }
+                // directly use super to avoid session be marked as dirty
+                super.putAll(claims);
                 Number expiryTime = (Number) get(IG_EXP_SESSION_KEY);
                 if (expiryTime != null) {
                     if (isExpired(expiryTime)) {
@@ -226,8 +336,33 @@ public class JwtCookieSession extends MapDecorator<String, Object> implements Se
         dirty = true;
     }
 
+    @Override
+    public int size() {
+        ensureLoaded();
+        return super.size();
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        ensureLoaded();
+        return super.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(final Object value) {
+        ensureLoaded();
+        return super.containsValue(value);
+    }
+
+    @Override
+    public Object get(final Object key) {
+        ensureLoaded();
+        return super.get(key);
+    }
+
     @Override
     public Object put(final String key, final Object value) {
+        ensureLoaded();
         // Put null into a key, results in the complete entry removal
         if (value == null) {
             return remove(key);
@@ -252,62 +387,78 @@ public class JwtCookieSession extends MapDecorator<String, Object> implements Se
 
     @Override
     public Object remove(final Object key) {
+        ensureLoaded();
         dirty = true;
         return super.remove(key);
     }
 
     @Override
     public void clear() {
+        ensureLoaded();
         dirty = true;
         super.clear();
     }
 
     @Override
     public Set<String> keySet() {
+        ensureLoaded();
         return new DirtySet<>(super.keySet(), this);
     }
 
     @Override
     public Collection<Object> values() {
+        ensureLoaded();
         return new DirtyCollection<>(super.values(), this);
     }
 
     @Override
     public Set<Entry<String, Object>> entrySet() {
+        ensureLoaded();
         return new DirtySet<>(super.entrySet(), this);
     }
 
+    @Override
+    public boolean equals(final Object o) {
+        ensureLoaded();
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        ensureLoaded();
+        return super.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        ensureLoaded();
+        return super.toString();
+    }
+
     @Override
     public void save(Response response) throws IOException {
+        // A session that has not been loaded has not been modified either: the cookie is left untouched
         // Only build the JWT session if the session is dirty
         if (dirty) {
             Reject.ifNull(response, "Cannot save session state on a null response");
             // Update the Set-Cookie header
-            final Cookie jwtCookie;
+            final List<Cookie> cookies = new ArrayList<>();
             if (isEmpty()) {
-                jwtCookie = buildExpiredJwtCookie();
+                cookies.add(buildExpiredJwtCookie(cookieName));
+                expireChunks(0, cookies);
             } else {
-                jwtCookie = buildJwtCookie();
-                String value = jwtCookie.getValue();
-                if (value.length() > 4096) {
-                    throw new IOException(
-                            format("JWT session is too large (%d chars), failing the request because "
-                                    + "session does not support serialized content that is larger than 4KB "
-                                    + "(Http Cookie limitation)", value.length()));
-                }
-                if (value.length() > 3072) {
-                    logger.warn("Current JWT session's size ({} chars) is quite close to the 4KB limit. Maybe "
-                                        + "consider using the traditional Http-based session (the default), "
-                                        + "or place less objects in the session", value.length());
-                }
+                buildJwtCookies(cookies);
+            }
+            if (!cookies.isEmpty()) {
+                response.getHeaders().add(new SetCookieHeader(cookies));
             }
-            response.getHeaders().add(new SetCookieHeader(singletonList(jwtCookie)));
         }
 
     }
 
     @Override
     public boolean isEmpty() {
+        ensureLoaded();
 
         // If the only item is the IG_EXP_SESSION_KEY then it should be considered empty
         if (!super.isEmpty()) {
@@ -317,11 +468,17 @@ public class JwtCookieSession extends MapDecorator<String, Object> implements Se
         }
     }
 
-    private Cookie buildExpiredJwtCookie() {
-        return new Cookie().setPath("/").setName(cookieName).setDomain(cookieDomain).setExpires(EPOCH);
+    private Cookie buildExpiredJwtCookie(final String name) {
+        return new Cookie().setPath("/").setName(name).setDomain(cookieDomain).setExpires(EPOCH);
+    }
+
+    private void expireChunks(final int from, final List<Cookie> cookies) {
+        for (int i = from; i < requestChunks.size(); i++) {
+            cookies.add(buildExpiredJwtCookie(chunkName(i)));
+        }
     }
 
-    private Cookie buildJwtCookie() {
+    private void buildJwtCookies(final List<Cookie> cookies) throws IOException {
         // Reuse existing expiryTime if it exists.
         // If the value fits within a Integer, then an Integer rather than a Long is returned.
         Number expiryTime = (Number) get(IG_EXP_SESSION_KEY);
@@ -329,44 +486,74 @@ public class JwtCookieSession extends MapDecorator<String, Object> implements Se
             expiryTime = getNewExpiryTime();
             super.put(IG_EXP_SESSION_KEY, expiryTime.longValue());
         }
+        Date expires = new Date(expiryTime.longValue());
+        String value = buildJwtSession();
+
+        if (value.length() <= MAX_COOKIE_SIZE) {
+            cookies.add(buildJwtCookie(cookieName, value, expires));
+            expireChunks(0, cookies);
+            return;
+        }
+
+        int count = (value.length() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (count > MAX_CHUNKS) {
+            throw new IOException(
+                    format("JWT session is too large (%d chars), failing the request because session does not "
+                                   + "support serialized content that is larger than %d cookies of %d chars "
+                                   + "(Http Cookie limitation)", value.length(), MAX_CHUNKS, CHUNK_SIZE));
+        }
+        logger.debug("Current JWT session's size ({} chars) is larger than a cookie, it is split across {} cookies",
+                     value.length(),
+                     count);
+
+        // The manifest shares the expiry time of the session: re-emit it only when the number of chunks changed. The
+        // chunks are always re-emitted, as each encryption uses a new random IV
+        String manifest = CHUNKS_MANIFEST_PREFIX + count;
+        if (!manifest.equals(requestCookieValue)) {
+            cookies.add(buildJwtCookie(cookieName, manifest, expires));
+        }
+        for (int i = 0; i < count; i++) {
+            String chunk = value.substring(i * CHUNK_SIZE, Math.min(value.length(), (i + 1) * CHUNK_SIZE));
+            cookies.add(buildJwtCookie(chunkName(i), chunk, expires));
+        }
+        expireChunks(count, cookies);
+    }
+
+    private Cookie buildJwtCookie(final String name, final String value, final Date expires) {
         return new Cookie()
                 .setPath("/")
-                .setName(cookieName)
+                .setName(name)
                 .setDomain(cookieDomain)
-                .setValue(buildJwtSession())
-                .setExpires(new Date(expiryTime.longValue()));
+                .setValue(value)
+                .setExpires(expires);
     }
 
     /**
      * Builds a JWT from the session's content.
      */
-    private String buildJwtSession() {
-        JwtClaimsSetBuilder claimsBuilder = factory.claims();
-        claimsBuilder.claims(this);
-        return factory.jwe(pair.getPublic())
-                      .headers()
-                      .alg(JweAlgorithm.RSAES_PKCS1_V1_5)
-                      .enc(EncryptionMethod.A128CBC_HS256)
-                      .done()
-                      .claims(claimsBuilder.build())
-                      .signedWith(signingHandler, JwsAlgorithm.HS256)
-                      .build();
+    private String buildJwtSession() throws IOException {
+        return codec.encode(this);
     }
 
     /**
      * Find if there is an existing cookie storing a JWT session.
      *
      * @param request Request used to access {@literal Cookie} and {@literal Set-Cookie} headers.
+     * @param name the name of the cookie
      * @return a {@link Cookie} if found, {@literal null} otherwise.
      */
-    private Cookie findJwtSessionCookie(Request request) {
-        List<Cookie> cookies = request.getCookies().get(cookieName);
+    private static Cookie findJwtSessionCookie(Request request, String name) {
+        List<Cookie> cookies = request.getCookies().get(name);
         if (cookies != null) {
             return cookies.get(0);
         }
         return null;
     }
 
+    private String chunkName(final int index) {
+        return cookieName + "." + index;
+    }
+
     private Long getNewExpiryTime() {
         return timeService.now() + sessionTimeout.to(MILLISECONDS);
     }
@@ -0,0 +1,259 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.jwt;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.crypto.SecretKey;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.jose.builders.JwtBuilderFactory;
+import org.forgerock.json.jose.jwe.EncryptionMethod;
+import org.forgerock.json.jose.jwe.JweAlgorithm;
+import org.forgerock.json.jose.jws.EncryptedThenSignedJwt;
+import org.forgerock.json.jose.jws.JwsAlgorithm;
+import org.forgerock.json.jose.jws.handlers.SigningHandler;
+import org.forgerock.json.jose.jwt.JwtClaimsSet;
+import org.forgerock.util.encode.Base64;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Encrypts then signs the content of JWT sessions, and verifies then decrypts it.
+ * <p>
+ * The content can either be encrypted with a RSA key pair ({@link JweAlgorithm#RSAES_PKCS1_V1_5} and
+ * {@link EncryptionMethod#A128CBC_HS256}), or directly with a shared AES key ({@link JweAlgorithm#DIRECT} and
+ * {@link EncryptionMethod#A256GCM}), which is much cheaper than the RSA private key operation.
+ * <p>
+ * The claims decoded from (or encoded into) a cookie value are kept in a bounded cache, keyed by the digest of the
+ * cookie value: requests carrying the same cookie skip both the signature verification and the decryption. A
+ * verified cookie value always yields the same claims, so the cache can not be poisoned by forged values. The cached
+ * claims are copied in and out of the cache, so that a session modifying a nested value does not alter them.
+ * <p>
+ * The claims can also be compressed (DEFLATE) before the encryption: they are then serialized as JSON and stored,
+ * compressed and Base 64 encoded, in a single {@value #COMPRESSED_CLAIM} claim. Both forms are always accepted when
+ * decoding, so enabling or disabling the compression does not invalidate the existing sessions.
+ */
+final class JwtSessionCodec {
+
+    /** The claim holding the compressed claims. */
+    static final String COMPRESSED_CLAIM = "_ig_zip";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final JwtBuilderFactory factory = new JwtBuilderFactory();
+
+    private final Key encryptionKey;
+    private final Key decryptionKey;
+    private final JweAlgorithm algorithm;
+    private final EncryptionMethod method;
+    private final SigningHandler signingHandler;
+    private final boolean compress;
+
+    /** The claims of the already decoded or encoded cookie values, or {@code null} if there is no cache. */
+    private final Cache<String, Map<String, Object>> claims;
+
+    private JwtSessionCodec(final Key encryptionKey,
+                            final Key decryptionKey,
+                            final JweAlgorithm algorithm,
+                            final EncryptionMethod method,
+                            final SigningHandler signingHandler,
+                            final boolean compress,
+                            final int cacheSize) {
+        this.encryptionKey = encryptionKey;
+        this.decryptionKey = decryptionKey;
+        this.algorithm = algorithm;
+        this.method = method;
+        this.signingHandler = signingHandler;
+        this.compress = compress;
+        this.claims = (cacheSize > 0) ? CacheBuilder.newBuilder().maximumSize(cacheSize).build() : null;
+    }
+
+    /**
+     * Creates a codec encrypting the sessions with a RSA key pair.
+     *
+     * @param pair
+     *         the key pair used to encrypt (public key) and decrypt (private key) the sessions
+     * @param signingHandler
+     *         the JWT signing handler
+     * @param compress
+     *         {@code true} to compress the claims before the encryption
+     * @param cacheSize
+     *         the maximum number of decoded sessions to cache, {@code 0} to disable the cache
+     * @return a new codec
+     */
+    static JwtSessionCodec rsa(final KeyPair pair,
+                               final SigningHandler signingHandler,
+                               final boolean compress,
+                               final int cacheSize) {
+        return new JwtSessionCodec((pair != null) ? pair.getPublic() : null,
+                                   (pair != null) ? pair.getPrivate() : null,
+                                   JweAlgorithm.RSAES_PKCS1_V1_5,
+                                   EncryptionMethod.A128CBC_HS256,
+                                   signingHandler,
+                                   compress,
+                                   cacheSize);
+    }
+
+    /**
+     * Creates a codec encrypting the sessions directly with a shared 256-bit AES key.
+     *
+     * @param key
+     *         the AES key used to encrypt and decrypt the sessions
+     * @param signingHandler
+     *         the JWT signing handler
+     * @param compress
+     *         {@code true} to compress the claims before the encryption
+     * @param cacheSize
+     *         the maximum number of decoded sessions to cache, {@code 0} to disable the cache
+     * @return a new codec
+     */
+    static JwtSessionCodec direct(final SecretKey key,
+                                  final SigningHandler signingHandler,
+                                  final boolean compress,
+                                  final int cacheSize) {
+        return new JwtSessionCodec(key,
+                                   key,
+                                   JweAlgorithm.DIRECT,
+                                   EncryptionMethod.A256GCM,
+                                   signingHandler,
+                                   compress,
+                                   cacheSize);
+    }
+
+    /**
+     * Verifies and decrypts the given cookie value.
+     *
+     * @param value
+     *         the cookie value
+     * @return the claims of the session (a new mutable map), or {@code null} if the signature cannot be verified
+     * @throws org.forgerock.json.jose.exceptions.JweDecryptionException
+     *         if the cookie value cannot be decrypted
+     * @throws IOException
+     *         if the compressed claims cannot be read
+     * @throws RuntimeException
+     *         if the cookie value is not a valid JWT
+     */
+    Map<String, Object> decode(final String value) throws IOException {
+        String digest = null;
+        if (claims != null) {
+            digest = digest(value);
+            Map<String, Object> cached = claims.getIfPresent(digest);
+            if (cached != null) {
+                return copy(cached);
+            }
+        }
+
+        EncryptedThenSignedJwt jwt = factory.reconstruct(value, EncryptedThenSignedJwt.class);
+        if (!jwt.verify(signingHandler)) {
+            return null;
+        }
+        jwt.decrypt(decryptionKey);
+        JwtClaimsSet claimsSet = jwt.getClaimsSet();
+        Map<String, Object> decoded = new LinkedHashMap<>();
+        for (String key : claimsSet.keys()) {
+            decoded.put(key, claimsSet.getClaim(key));
+        }
+        Object compressed = decoded.get(COMPRESSED_CLAIM);
+        if (compressed instanceof String) {
+            decoded = inflate((String) compressed);
+        }
+
+        if (claims != null) {
+            claims.put(digest, copy(decoded));
+        }
+        return decoded;
+    }
+
+    /**
+     * Encrypts then signs the given session claims.
+     *
+     * @param session
+     *         the claims of the session
+     * @return the cookie value
+     * @throws IOException
+     *         if the claims cannot be compressed
+     */
+    String encode(final Map<String, Object> session) throws IOException {
+        Map<String, Object> claimsSet = session;
+        if (compress) {
+            claimsSet = new LinkedHashMap<>();
+            claimsSet.put(COMPRESSED_CLAIM, deflate(session));
+        }
+        String value = factory.jwe(encryptionKey)
+                              .headers()
+                              .alg(algorithm)
+                              .enc(method)
+                              .done()
+                              .claims(factory.claims().claims(claimsSet).build())
+                              .signedWith(signingHandler, JwsAlgorithm.HS256)
+                              .build();
+        if (claims != null) {
+            // The next request is expected to carry that value: no need to decode it
+            claims.put(digest(value), copy(session));
+        }
+        return value;
+    }
+
+    private static String deflate(final Map<String, Object> session) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(bytes)) {
+            MAPPER.writeValue(out, session);
+        }
+        return Base64.encode(bytes.toByteArray());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> inflate(final String compressed) throws IOException {
+        byte[] bytes = Base64.decode(compressed);
+        if (bytes == null) {
+            throw new IOException("The compressed JWT session claims are not Base 64 encoded");
+        }
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(bytes))) {
+            return MAPPER.readValue(in, LinkedHashMap.class);
+        }
+    }
+
+    private static Map<String, Object> copy(final Map<String, Object> session) {
+        return new JsonValue(new LinkedHashMap<>(session)).copy().asMap();
+    }
+
+    private static String digest(final String value) {
+        try {
+            return Base64.encode(MessageDigest.getInstance("SHA-256").digest(value.getBytes(UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is always available
+            throw new IllegalStateException(e);
+        }
+    }
+}
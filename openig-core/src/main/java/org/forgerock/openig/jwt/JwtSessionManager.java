@@ -36,6 +36,9 @@ import java.security.SecureRandom;
 import java.security.cert.Certificate;
 import java.util.Arrays;
 
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
 import org.forgerock.http.protocol.Request;
 import org.forgerock.http.protocol.Response;
 import org.forgerock.http.session.Session;
@@ -67,7 +70,10 @@ import org.slf4j.LoggerFactory;
  *             "cookieName": "OpenIG",
  *             "cookieDomain": ".example.com",
  *             "sessionTimeout": "30 minutes",
- *             "sharedSecret": "hello=="
+ *             "sharedSecret": "hello==",
+ *             "encryptionSecret": "world==",
+ *             "sessionCacheSize": 1000,
+ *             "compression": true
  *         }
  *     }
  *     }
@@ -99,6 +105,20 @@ import org.slf4j.LoggerFactory;
  * <p>
  * The {@literal sharedSecret} optional string attribute, specifies the key used to sign/verify the JWTs. It is
  * expected to be Base 64 encoded. If unspecified some random data is generated as key.
+ * <p>
+ * The {@literal encryptionSecret} optional string attribute, specifies a Base 64 encoded 256-bit AES key used to
+ * directly encrypt the JWTs ({@literal dir} algorithm and {@literal A256GCM} method). This symmetric encryption is
+ * much cheaper than the RSA encryption: when it is set, the {@literal keystore}, {@literal alias} and
+ * {@literal password} attributes are ignored.
+ * <p>
+ * The {@literal sessionCacheSize} optional integer attribute, specifies the maximum number of decoded sessions kept
+ * in memory, keyed by the digest of their cookie value: the requests carrying an already seen cookie skip both the
+ * signature verification and the decryption. It defaults to {@value #DEFAULT_SESSION_CACHE_SIZE}, {@literal 0}
+ * disables the cache.
+ * <p>
+ * The {@literal compression} optional boolean attribute, specifies if the session's content is compressed (DEFLATE)
+ * before being encrypted. It defaults to {@literal false}. A session too large for a single cookie is split across
+ * several cookies (see {@link JwtCookieSession}): the compression reduces the number of cookies.
  *
  * @since 3.1
  */
@@ -116,9 +136,14 @@ public class JwtSessionManager implements SessionManager {
     public static final Duration MAX_SESSION_TIMEOUT = Duration.duration("3650 days");
 
     /**
-     * The pair of keys for JWT payload encryption/decryption.
+     * Default maximum number of decoded sessions kept in memory.
      */
-    private final KeyPair keyPair;
+    public static final int DEFAULT_SESSION_CACHE_SIZE = 1000;
+
+    /**
+     * The codec for JWT payload encryption/decryption and signature.
+     */
+    private final JwtSessionCodec codec;
 
     /**
      * The name of the cookie to be used for session's content transmission.
@@ -140,11 +165,6 @@ public class JwtSessionManager implements SessionManager {
      */
     private final Duration sessionTimeout;
 
-    /**
-     * Hmac signing handler.
-     */
-    private final SigningHandler signingHandler;
-
     /**
      * Builds a new JwtSessionManager using the given KeyPair for session encryption, storing the opaque result in a
      * cookie with the given name.
@@ -168,23 +188,44 @@ public class JwtSessionManager implements SessionManager {
                              final TimeService timeService,
                              final Duration sessionTimeout,
                              final SigningHandler handler) {
-        this.keyPair = keyPair;
+        this(JwtSessionCodec.rsa(keyPair, handler, false, 0), cookieName, cookieDomain, timeService, sessionTimeout);
+    }
+
+    /**
+     * Builds a new JwtSessionManager using the given codec for session encryption, storing the opaque result in a
+     * cookie with the given name.
+     *
+     * @param codec
+     *         Codec used for ciphering/deciphering and signing/verifying.
+     * @param cookieName
+     *         Name of the cookie.
+     * @param cookieDomain
+     *         Domain of the cookie. If null, the cookie will be treated as a host-based cookie.
+     * @param timeService
+     *         TimeService to use when dealing with cookie sessions.
+     * @param sessionTimeout
+     *         The duration of the cookie session.
+     */
+    JwtSessionManager(final JwtSessionCodec codec,
+                      final String cookieName,
+                      final String cookieDomain,
+                      final TimeService timeService,
+                      final Duration sessionTimeout) {
+        this.codec = codec;
         this.cookieName = cookieName;
         this.cookieDomain = cookieDomain;
         this.timeService = timeService;
         this.sessionTimeout = sessionTimeout;
-        this.signingHandler = handler;
     }
 
     @Override
     public Session load(final Request request) {
         return new JwtCookieSession(request,
-                                    keyPair,
+                                    codec,
                                     cookieName,
                                     cookieDomain,
                                     timeService,
-                                    sessionTimeout,
-                                    signingHandler);
+                                    sessionTimeout);
     }
 
     @Override
@@ -214,15 +255,40 @@ public class JwtSessionManager implements SessionManager {
                 throw new HeapException("sessionTimeout duration must be greater than 0");
             }
 
-            // Create the session manager with the given KeyPair, cookie name, and signing handler
-            return new JwtSessionManager(keyPair(),
+            int cacheSize = evaluated.get("sessionCacheSize").defaultTo(DEFAULT_SESSION_CACHE_SIZE).asInteger();
+            if (cacheSize < 0) {
+                throw new HeapException("sessionCacheSize must be positive or 0");
+            }
+
+            boolean compression = evaluated.get("compression").defaultTo(false).asBoolean();
+
+            // Create the session manager with the given keys, cookie name, and signing handler
+            SigningHandler signingHandler = createHmacSigningHandler(evaluated);
+            JwtSessionCodec codec;
+            if (evaluated.isDefined("encryptionSecret")) {
+                codec = JwtSessionCodec.direct(encryptionKey(evaluated), signingHandler, compression, cacheSize);
+            } else {
+                codec = JwtSessionCodec.rsa(keyPair(), signingHandler, compression, cacheSize);
+            }
+            return new JwtSessionManager(codec,
                                          evaluated.get("cookieName")
                                                   .defaultTo(OPENIG_JWT_SESSION)
                                                   .asString(),
                                          evaluated.get("cookieDomain").asString(),
                                          timeService,
-                                         sessionTimeout,
-                                         createHmacSigningHandler(evaluated));
+                                         sessionTimeout);
+        }
+
+        private SecretKey encryptionKey(final JsonValue evaluated) {
+            JsonValue encryptionSecret = evaluated.get("encryptionSecret").expect(String.class);
+            byte[] secret = Base64.decode(encryptionSecret.asString());
+            if ((secret == null) || (secret.length != 32)) {
+                throw new JsonValueException(encryptionSecret,
+                                             "Encryption secret must be a 256-bits base64 encoded AES key");
+            }
+            SecretKey key = new SecretKeySpec(secret, "AES");
+            Arrays.fill(secret, (byte) 0);
+            return key;
         }
 
         private KeyPair keyPair() throws HeapException {
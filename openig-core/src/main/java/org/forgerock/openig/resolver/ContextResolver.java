@@ -0,0 +1,98 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.resolver;
+
+import org.forgerock.http.routing.UriRouterContext;
+import org.forgerock.http.session.SessionContext;
+import org.forgerock.services.context.AttributesContext;
+import org.forgerock.services.context.ClientContext;
+import org.forgerock.services.context.Context;
+
+/**
+ * Resolves the properties of {@link Context} objects (as used in {@code ${contexts.client.remoteAddress}} for
+ * instance) without going through the (reflective) bean resolution.
+ * <p>
+ * Only the common {@link Context} properties and the ones of the most frequently used contexts are resolved here:
+ * unknown properties and all the updates are left to the {@link BeanResolver}.
+ */
+public class ContextResolver implements Resolver {
+
+    @Override
+    public Class<?> getKey() {
+        return Context.class;
+    }
+
+    @Override
+    public Object get(Object object, Object element) {
+        if (object instanceof Context && element instanceof String) {
+            final Context context = (Context) object;
+            switch ((String) element) {
+            case "id":
+                return context.getId();
+            case "contextName":
+                return context.getContextName();
+            case "parent":
+                return context.getParent();
+            case "rootContext":
+                return context.isRootContext();
+            case "attributes":
+                if (context instanceof AttributesContext) {
+                    return ((AttributesContext) context).getAttributes();
+                }
+                break;
+            case "session":
+                if (context instanceof SessionContext) {
+                    return ((SessionContext) context).getSession();
+                }
+                break;
+            case "originalUri":
+                if (context instanceof UriRouterContext) {
+                    return ((UriRouterContext) context).getOriginalUri();
+                }
+                break;
+            case "remoteAddress":
+                if (context instanceof ClientContext) {
+                    return ((ClientContext) context).getRemoteAddress();
+                }
+                break;
+            case "remoteUser":
+                if (context instanceof ClientContext) {
+                    return ((ClientContext) context).getRemoteUser();
+                }
+                break;
+            case "userAgent":
+                if (context instanceof ClientContext) {
+                    return ((ClientContext) context).getUserAgent();
+                }
+                break;
+            case "secure":
+                if (context instanceof ClientContext) {
+                    return ((ClientContext) context).isSecure();
+                }
+                break;
+            default:
+                break;
+            }
+        }
+        return Resolver.UNRESOLVED;
+    }
+
+    @Override
+    public Object put(Object object, Object element, Object value) {
+        return Resolver.UNRESOLVED;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.resolver;
+
+import org.forgerock.http.MutableUri;
+
+/**
+ * Resolves the properties of {@link MutableUri} objects (as used in {@code ${request.uri.path}} for instance)
+ * without going through the (reflective) bean resolution.
+ * <p>
+ * Unknown properties and all the updates are left to the {@link BeanResolver}.
+ */
+public class MutableUriResolver implements Resolver {
+
+    @Override
+    public Class<?> getKey() {
+        return MutableUri.class;
+    }
+
+    @Override
+    public Object get(Object object, Object element) {
+        if (object instanceof MutableUri && element instanceof String) {
+            final MutableUri uri = (MutableUri) object;
+            switch ((String) element) {
+            case "path":
+                return uri.getPath();
+            case "rawPath":
+                return uri.getRawPath();
+            case "host":
+                return uri.getHost();
+            case "port":
+                return uri.getPort();
+            case "scheme":
+                return uri.getScheme();
+            case "query":
+                return uri.getQuery();
+            case "rawQuery":
+                return uri.getRawQuery();
+            case "fragment":
+                return uri.getFragment();
+            case "rawFragment":
+                return uri.getRawFragment();
+            case "userInfo":
+                return uri.getUserInfo();
+            case "rawUserInfo":
+                return uri.getRawUserInfo();
+            case "authority":
+                return uri.getAuthority();
+            case "rawAuthority":
+                return uri.getRawAuthority();
+            default:
+                break;
+            }
+        }
+        return Resolver.UNRESOLVED;
+    }
+
+    @Override
+    public Object put(Object object, Object element, Object value) {
+        return Resolver.UNRESOLVED;
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2016 ForgeRock AS.
+ * Portions Copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.resolver;
@@ -25,6 +26,8 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Resolves {@link Request} objects.
+ * <p>
+ * The most commonly used properties are read directly, without going through the (reflective) bean resolution.
  */
 public class RequestResolver extends BeanResolver {
 
@@ -35,6 +38,32 @@ public class RequestResolver extends BeanResolver {
         return Request.class;
     }
 
+    @Override
+    public Object get(Object object, Object element) {
+        if (object instanceof Request && element instanceof String) {
+            final Request request = (Request) object;
+            switch ((String) element) {
+            case "method":
+                return request.getMethod();
+            case "uri":
+                return request.getUri();
+            case "headers":
+                return request.getHeaders();
+            case "entity":
+                return request.getEntity();
+            case "version":
+                return request.getVersion();
+            case "cookies":
+                return request.getCookies();
+            case "form":
+                return request.getForm();
+            default:
+                break;
+            }
+        }
+        return super.get(object, element);
+    }
+
     @Override
     public Object put(Object object, Object element, Object value) {
         if (object instanceof Request) {
@@ -13,6 +13,7 @@
  *
  * Copyright 2010-2011 ApexIdentity Inc.
  * Portions Copyright 2011-2016 ForgeRock AS.
+ * Portions Copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.resolver;
@@ -20,9 +21,10 @@ package org.forgerock.openig.resolver;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.forgerock.http.util.Loader;
 
@@ -37,14 +39,24 @@ public final class Resolvers {
      * Resolver that handles native arrays (not handled like the service-based
      * resolvers).
      */
-    private static final List<Resolver> ARRAY_RESOLVER = Collections.unmodifiableList(Arrays
-            .asList((Resolver) new ArrayResolver()));
+    private static final Resolver[] ARRAY_RESOLVER = new Resolver[] {new ArrayResolver()};
 
     /** Mapping of supported classes to associated resolvers. */
     @SuppressWarnings("rawtypes")
     public static final Map<Class, Resolver> SERVICES = Collections.unmodifiableMap(Loader.loadMap(
             Class.class, Resolver.class));
 
+    /**
+     * Ordered resolvers of each class: as {@link #SERVICES} never changes, the (rather costly) walk of the class
+     * and interface hierarchies only has to be done once per class.
+     */
+    private static final ClassValue<Resolver[]> CHAINS = new ClassValue<Resolver[]>() {
+        @Override
+        protected Resolver[] computeValue(final Class<?> type) {
+            return chain(type);
+        }
+    };
+
     /** Static methods only. */
     private Resolvers() {
     }
@@ -52,66 +64,15 @@ public final class Resolvers {
     /**
      * Provides an iterable object over the resolvers that are appropriate for a
      * particular object. Resolvers are provided ordered from most specific to
-     * class/interface to least. Resolvers are provided through an iterator
-     * interface to avoid the overhead of determining all resolvers in advance.
+     * class/interface to least. The ordered resolvers of a given class are
+     * computed once and shared by all the instances of that class.
      *
      * @param object the object for which a set of resolvers is being sought.
      * @return an object that returns an iterator over the set of resolvers for
      * the object.
      */
     public static Iterable<Resolver> resolvers(final Object object) {
-        return new Iterable<Resolver>() {
-            public Iterator<Resolver> iterator() {
-                return (object.getClass().isArray() ? ARRAY_RESOLVER.iterator() : new Iterator<Resolver>() {
-                    Class<?> class1 = object.getClass();
-                    Class<?> class2 = class1;
-                    Iterator<Class<?>> interfaces = null;
-                    int n = 0;
-
-                    public boolean hasNext() {
-                        // interface hierarchy not yet exhausted
-                        return (class2 != null);
-                    }
-
-                    public Resolver next() {
-                        while (class1 != null) {
-                            // class hierarchy
-                            Resolver resolver = SERVICES.get(class1);
-                            class1 = class1.getSuperclass();
-                            if (resolver != null) {
-                                return resolver;
-                            }
-                        }
-                        // exhausted class hierarchy
-                        class1 = null;
-                        while (class2 != null && class2 != Object.class) {
-                            // interface hierarchy
-                            if (interfaces != null && interfaces.hasNext()) {
-                                Resolver resolver = SERVICES.get(interfaces.next());
-                                if (resolver != null) {
-                                    return resolver;
-                                }
-                            } else {
-                                List<Class<?>> list = getInterfaces(class2, n++);
-                                if (list.size() > 0) {
-                                    interfaces = list.iterator();
-                                } else {
-                                    class2 = class2.getSuperclass();
-                                    n = 0;
-                                }
-                            }
-                        }
-                        // exhausted interface hierarchy
-                        class2 = null;
-                        return BeanResolver.INSTANCE;
-                    }
-
-                    public void remove() {
-                        throw new UnsupportedOperationException();
-                    }
-                });
-            }
-        };
+        return Collections.unmodifiableList(Arrays.asList(CHAINS.get(object.getClass())));
     }
 
     /**
@@ -124,7 +85,7 @@ public final class Resolvers {
      * @see Resolver#get(Object, Object)
      */
     public static Object get(Object object, Object element) {
-        for (Resolver resolver : resolvers(object)) {
+        for (Resolver resolver : CHAINS.get(object.getClass())) {
             Object value = resolver.get(object, element);
             if (value != Resolver.UNRESOLVED) {
                 // first hit wins
@@ -147,7 +108,7 @@ public final class Resolvers {
      * @see Resolver#put(Object, Object, Object)
      */
     public static Object put(Object object, Object element, Object value) {
-        for (Resolver resolver : resolvers(object)) {
+        for (Resolver resolver : CHAINS.get(object.getClass())) {
             Object resolved = resolver.put(object, element, value);
             if (resolved != Resolver.UNRESOLVED) {
                 // first hit wins
@@ -157,6 +118,44 @@ public final class Resolvers {
         return Resolver.UNRESOLVED;
     }
 
+    /**
+     * Computes the resolvers of the given class, from the most specific to the least: resolvers registered for the
+     * class and its superclasses, then for the interfaces they implement (breadth first, level by level), and
+     * finally the {@link BeanResolver}. A resolver reachable through several paths is only listed once, at its
+     * first (most specific) position.
+     */
+    private static Resolver[] chain(final Class<?> type) {
+        if (type.isArray()) {
+            return ARRAY_RESOLVER;
+        }
+        Set<Resolver> chain = new LinkedHashSet<>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            // class hierarchy
+            addResolver(chain, c);
+        }
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            // interface hierarchy
+            for (int level = 0;; level++) {
+                List<Class<?>> interfaces = getInterfaces(c, level);
+                if (interfaces.isEmpty()) {
+                    break;
+                }
+                for (Class<?> iface : interfaces) {
+                    addResolver(chain, iface);
+                }
+            }
+        }
+        chain.add(BeanResolver.INSTANCE);
+        return chain.toArray(new Resolver[0]);
+    }
+
+    private static void addResolver(final Set<Resolver> chain, final Class<?> type) {
+        Resolver resolver = SERVICES.get(type);
+        if (resolver != null) {
+            chain.add(resolver);
+        }
+    }
+
     private static List<Class<?>> getInterfaces(Class<?> c, int level) {
         List<Class<?>> interfaces;
         if (level == 0) {
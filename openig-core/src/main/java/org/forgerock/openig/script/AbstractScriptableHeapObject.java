@@ -12,13 +12,17 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2016 ForgeRock AS.
+ * Portions copyright 2026 3A Systems LLC.
  */
 package org.forgerock.openig.script;
 
 import static java.lang.String.format;
+import static org.forgerock.json.JsonValueFunctions.duration;
 import static org.forgerock.openig.el.Bindings.bindings;
 import static org.forgerock.openig.heap.Keys.CLIENT_HANDLER_HEAP_KEY;
+import static org.forgerock.openig.heap.Keys.ENDPOINT_REGISTRY_HEAP_KEY;
 import static org.forgerock.openig.heap.Keys.ENVIRONMENT_HEAP_KEY;
+import static org.forgerock.openig.http.MetricRegistryHandler.METRICS_ENDPOINT;
 import static org.forgerock.openig.util.JsonValues.evaluated;
 import static org.forgerock.openig.util.JsonValues.requiredHeapObject;
 import static org.forgerock.util.promise.Promises.newExceptionPromise;
@@ -27,7 +31,10 @@ import static org.forgerock.util.promise.Promises.newResultPromise;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.script.ScriptException;
 
@@ -39,12 +46,21 @@ import org.forgerock.openig.el.Bindings;
 import org.forgerock.openig.heap.GenericHeaplet;
 import org.forgerock.openig.heap.Heap;
 import org.forgerock.openig.heap.HeapException;
+import org.forgerock.openig.http.EndpointRegistry;
+import org.forgerock.openig.http.MetricRegistryHandler;
 import org.forgerock.openig.ldap.LdapClient;
 import org.forgerock.services.context.Context;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+
+import groovy.lang.Closure;
+
 /**
  * A scriptable heap object acts as a simple wrapper around the scripting engine.
  *
@@ -75,6 +91,25 @@ import org.slf4j.LoggerFactory;
  *     }}
  * </pre>
  *
+ * <p>Scripts should not block the calling thread, waiting for the result of asynchronous calls (such as
+ * {@code http.send(request).get()}): they can instead return the result as:
+ * <ul>
+ * <li>a {@link Promise}, for instance {@code http.send(request).then { response -> ... }}
+ * <li>a {@link CompletionStage}
+ * <li>a {@link Closure} continuation, called once the script has returned (its result is processed the same way)
+ * <li>the result itself
+ * </ul>
+ *
+ * <p>Executions blocking the calling thread for longer than the {@code blockingThreshold} (defaults to
+ * {@value #DEFAULT_BLOCKING_THRESHOLD}, {@literal unlimited} disables the detection) are logged and counted (see
+ * {@link #getBlockingExecutionCount()}).
+ *
+ * <pre>
+ *     {@code {
+ *         "blockingThreshold": "200 milliseconds"
+ *     }}
+ * </pre>
+ *
  * <p>
  * <b>NOTE :</b> at the moment only Groovy is supported.
  *
@@ -85,12 +120,18 @@ public class AbstractScriptableHeapObject<V> {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractScriptableHeapObject.class);
 
+    /**
+     * Default duration after which a script execution is reported as blocking the calling thread.
+     */
+    public static final String DEFAULT_BLOCKING_THRESHOLD = "200 milliseconds";
+
     /** Creates and initializes a capture filter in a heap environment. */
     protected abstract static class AbstractScriptableHeaplet extends GenericHeaplet {
         private static final String CONFIG_OPTION_FILE = "file";
         private static final String CONFIG_OPTION_SOURCE = "source";
         private static final String CONFIG_OPTION_TYPE = "type";
         private static final String CONFIG_OPTION_ARGS = "args";
+        private static final String CONFIG_OPTION_BLOCKING_THRESHOLD = "blockingThreshold";
 
         @Override
         public Object create() throws HeapException {
@@ -104,6 +145,14 @@ public class AbstractScriptableHeapObject<V> {
                 Bindings bindings = heap.getProperties().bind("heap", heap);
                 component.setArgs(config.get(CONFIG_OPTION_ARGS).as(evaluated(bindings)).asMap());
             }
+            component.setBlockingThreshold(config.get(CONFIG_OPTION_BLOCKING_THRESHOLD)
+                                                 .as(evaluatedWithHeapProperties())
+                                                 .defaultTo(DEFAULT_BLOCKING_THRESHOLD)
+                                                 .as(duration()));
+            if (heap.get(ENDPOINT_REGISTRY_HEAP_KEY, EndpointRegistry.class) != null) {
+                // Only the gateway heaps expose endpoints
+                endpointRegistry().register(METRICS_ENDPOINT, new MetricRegistryHandler(component.getMetrics()));
+            }
 
             return component;
         }
@@ -163,7 +212,6 @@ public class AbstractScriptableHeapObject<V> {
 
     }
 
-    // TODO: add support for periodically refreshing the Groovy script file.
     // TODO: json/xml/sql/crest bindings.
 
     private final Script compiledScript;
@@ -173,6 +221,9 @@ public class AbstractScriptableHeapObject<V> {
     private final LdapClient ldapClient = LdapClient.getInstance();
     private final Map<String, Object> scriptGlobals = new ConcurrentHashMap<>();
     private Map<String, Object> args;
+    private long blockingThresholdNanos = Duration.duration(DEFAULT_BLOCKING_THRESHOLD).to(TimeUnit.NANOSECONDS);
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final Counter blockingExecutions = metrics.counter("executions.blocking");
 
     /**
      * Creates a new scriptable heap object using the provided compiled script.
@@ -208,6 +259,41 @@ public class AbstractScriptableHeapObject<V> {
         this.args = args;
     }
 
+    /**
+     * Sets the duration after which a script execution is reported as blocking the calling thread.
+     *
+     * @param blockingThreshold The duration after which a script execution is reported as blocking the calling
+     * thread, {@link Duration#isUnlimited() unlimited} to disable the detection.
+     */
+    public void setBlockingThreshold(final Duration blockingThreshold) {
+        this.blockingThresholdNanos = blockingThreshold.isUnlimited()
+                ? Long.MAX_VALUE
+                : blockingThreshold.to(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of script executions that have blocked the calling thread for longer than the blocking
+     * threshold.
+     *
+     * @return the number of script executions that have blocked the calling thread for longer than the blocking
+     * threshold
+     */
+    public long getBlockingExecutionCount() {
+        return blockingExecutions.getCount();
+    }
+
+    /**
+     * Returns the metrics of this scriptable heap object: the number of script executions that have blocked the
+     * calling thread for longer than the blocking threshold ({@code executions.blocking}).
+     * <p>
+     * They are also exposed at the {@literal metrics} endpoint of the heap object.
+     *
+     * @return the metrics of this scriptable heap object
+     */
+    public MetricRegistry getMetrics() {
+        return metrics;
+    }
+
     /**
      * Runs the compiled script using the provided bindings.
      *
@@ -216,22 +302,59 @@ public class AbstractScriptableHeapObject<V> {
      * @param clazz the class representing the expected result type of the {@code Promise}
      * @return the Promise of a Response produced by the script
      */
-    @SuppressWarnings("unchecked")
     protected final Promise<V, ScriptException> runScript(final Bindings bindings,
                                                           final Context context,
                                                           final Class<V> clazz) {
-        Object o;
+        final long start = System.nanoTime();
+        Promise<V, ScriptException> result;
         try {
-            o = compiledScript.run(enrichBindings(bindings, context));
+            result = adapt(compiledScript.run(enrichBindings(bindings, context)), clazz);
         } catch (ScriptException e) {
             logger.warn("Cannot execute script from '{}'", name, e);
-            return newExceptionPromise(e);
+            result = newExceptionPromise(e);
+        }
+        // Only the synchronous part of the execution is measured: the asynchronous results do not hold the thread
+        long elapsed = System.nanoTime() - start;
+        if (elapsed > blockingThresholdNanos) {
+            blockingExecutions.inc();
+            logger.warn("Script from '{}' blocked the calling thread for {} ms, consider returning a Promise instead "
+                                + "of waiting for asynchronous results ({} blocking executions so far)",
+                        name,
+                        TimeUnit.NANOSECONDS.toMillis(elapsed),
+                        blockingExecutions.getCount());
         }
+        return result;
+    }
+
+    /**
+     * Adapts the result of the script (or of one of its continuations) into a {@link Promise} of the expected type.
+     */
+    private Promise<V, ScriptException> adapt(final Object o, final Class<V> clazz) throws ScriptException {
         if (o == null) {
             return newResultPromise(null);
         }
         if (o instanceof Promise) {
-            return ((Promise<V, ScriptException>) o);
+            return adaptPromise((Promise<?, ?>) o, clazz);
+        }
+        if (o instanceof CompletionStage) {
+            final PromiseImpl<Object, ScriptException> promise = PromiseImpl.create();
+            ((CompletionStage<?>) o).whenComplete((value, error) -> {
+                if (error != null) {
+                    promise.handleException(asScriptException(error));
+                } else {
+                    promise.handleResult(value);
+                }
+            });
+            return adaptPromise(promise, clazz);
+        }
+        if (o instanceof Closure) {
+            try {
+                return adapt(((Closure<?>) o).call(), clazz);
+            } catch (ScriptException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new ScriptException(e);
+            }
         }
         if (clazz.isInstance(o)) {
             return newResultPromise(clazz.cast(o));
@@ -240,7 +363,31 @@ public class AbstractScriptableHeapObject<V> {
                                                                   clazz.getName(),
                                                                   o.getClass().getName())));
         }
+    }
 
+    private Promise<V, ScriptException> adaptPromise(final Promise<?, ?> promise, final Class<V> clazz) {
+        return promise.<V, ScriptException>thenAsync(value -> {
+            try {
+                return adapt(value, clazz);
+            } catch (ScriptException e) {
+                return newExceptionPromise(e);
+            }
+        }, error -> newExceptionPromise(asScriptException(error)));
+    }
+
+    private static ScriptException asScriptException(final Throwable error) {
+        Throwable cause = (error instanceof CompletionException && error.getCause() != null)
+                ? error.getCause()
+                : error;
+        if (cause instanceof ScriptException) {
+            return (ScriptException) cause;
+        }
+        if (cause instanceof Exception) {
+            return new ScriptException((Exception) cause);
+        }
+        ScriptException exception = new ScriptException(cause.toString());
+        exception.initCause(cause);
+        return exception;
     }
 
     private Map<String, Object> enrichBindings(final Bindings source, final Context context) throws ScriptException {
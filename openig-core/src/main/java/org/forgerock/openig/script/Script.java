@@ -12,56 +12,154 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2016 ForgeRock AS.
+ * Portions copyright 2026 3A Systems LLC.
  */
 package org.forgerock.openig.script;
 
 import static org.forgerock.util.Utils.joinAsString;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.lang.reflect.Constructor;
 import java.net.URL;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.script.ScriptException;
 
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.control.customizers.ImportCustomizer;
+import org.codehaus.groovy.runtime.InvokerHelper;
 import org.forgerock.openig.config.Environment;
+import org.forgerock.util.time.Duration;
 
 import groovy.lang.Binding;
+import groovy.lang.GroovyCodeSource;
 import groovy.util.GroovyScriptEngine;
 
 /**
  * A compiled script.
+ * <p>
+ * Groovy scripts are compiled once into a class, that is instantiated with a fresh binding for each execution.
+ * Scripts loaded from files (and the scripts they depend on) are checked for modifications at most once per
+ * recompilation interval, set with the {@value #RECOMPILE_INTERVAL_PROPERTY} system property (defaults to
+ * {@value #DEFAULT_RECOMPILE_INTERVAL}). When set to {@literal unlimited}, the scripts are only compiled again when
+ * the route declaring them is reloaded.
  */
 public final class Script {
     /**
-     * Groovy script implementation.
+     * A compiled Groovy class, instantiated for each execution (script instances hold their binding, they cannot be
+     * shared between concurrent executions).
+     */
+    private static final class GroovyClass {
+        private final Class<?> type;
+        private final Constructor<? extends groovy.lang.Script> constructor;
+
+        private GroovyClass(final Class<?> type) throws ScriptException {
+            this.type = type;
+            try {
+                this.constructor = groovy.lang.Script.class.isAssignableFrom(type)
+                        ? type.asSubclass(groovy.lang.Script.class).getConstructor(Binding.class)
+                        : null;
+            } catch (NoSuchMethodException e) {
+                throw new ScriptException(e);
+            }
+        }
+
+        private Object run(final Map<String, Object> bindings) throws ScriptException {
+            try {
+                Binding binding = new Binding(bindings);
+                groovy.lang.Script script = (constructor != null)
+                        ? constructor.newInstance(binding)
+                        // Classes declaring a main method, for instance
+                        : InvokerHelper.createScript(type, binding);
+                return script.run();
+            } catch (final Exception e) {
+                throw new ScriptException(e);
+            }
+        }
+    }
+
+    /**
+     * Groovy script loaded from a file.
      */
     private static final class GroovyImpl implements Impl {
         private final GroovyScriptEngine engine;
         private final String fileName;
+        private final long recompileIntervalNanos;
+        private final AtomicLong nextCheck = new AtomicLong();
+        private volatile GroovyClass groovyClass;
 
         private GroovyImpl(final GroovyScriptEngine engine, final String fileName) throws ScriptException {
             this.engine = engine;
             this.fileName = fileName;
+            this.recompileIntervalNanos = RECOMPILE_INTERVAL.isUnlimited()
+                    ? -1L
+                    : RECOMPILE_INTERVAL.to(TimeUnit.NANOSECONDS);
             // Compile a class for the script, that will trigger a first set of errors for invalid scripts
+            this.groovyClass = load();
+            this.nextCheck.set(System.nanoTime() + recompileIntervalNanos);
+        }
+
+        @Override
+        public Object run(final Map<String, Object> bindings) throws ScriptException {
+            return current().run(bindings);
+        }
+
+        private GroovyClass current() throws ScriptException {
+            if (recompileIntervalNanos >= 0) {
+                long now = System.nanoTime();
+                long next = nextCheck.get();
+                // Only one thread checks the files for modifications, the others keep using the current class
+                if (now - next >= 0 && nextCheck.compareAndSet(next, now + recompileIntervalNanos)) {
+                    GroovyClass current = groovyClass;
+                    GroovyClass loaded = load();
+                    if (loaded.type != current.type) {
+                        groovyClass = loaded;
+                    }
+                }
+            }
+            return groovyClass;
+        }
+
+        private GroovyClass load() throws ScriptException {
             try {
-                engine.loadScriptByName(fileName);
+                // The engine only compiles the script again if it, or one of its dependencies, has been modified
+                return new GroovyClass(engine.loadScriptByName(fileName));
+            } catch (ScriptException e) {
+                throw e;
             } catch (Exception e) {
                 throw new ScriptException(e);
             }
         }
+    }
 
-        @Override
-        public Object run(final Map<String, Object> bindings) throws ScriptException {
+    /**
+     * Groovy script compiled from an inline source.
+     */
+    private static final class InlineGroovyImpl implements Impl {
+        private final GroovyClass groovyClass;
+
+        private InlineGroovyImpl(final GroovyScriptEngine engine, final String source) throws ScriptException {
+            String name = "Script" + INLINE_SCRIPTS.incrementAndGet() + ".groovy";
             try {
-                return engine.run(fileName, new Binding(bindings));
-            } catch (final Exception e) {
+                GroovyCodeSource codeSource = new GroovyCodeSource(source, name, INLINE_CODE_BASE);
+                // Inline sources are compiled once per route: do not keep them in the class loader cache
+                codeSource.setCachable(false);
+                // Dependencies are resolved by the engine's class loader, from the scripts directory
+                this.groovyClass = new GroovyClass(engine.getGroovyClassLoader().parseClass(codeSource));
+            } catch (ScriptException e) {
+                throw e;
+            } catch (Exception e) {
                 throw new ScriptException(e);
             }
         }
+
+        @Override
+        public Object run(final Map<String, Object> bindings) throws ScriptException {
+            return groovyClass.run(bindings);
+        }
     }
 
     private interface Impl {
@@ -78,15 +176,29 @@ public final class Script {
      */
     public static final String JS_MIME_TYPE = "text/javascript";
 
-    private static final String EOL = System.getProperty("line.separator");
+    /**
+     * The system property setting the minimum interval between two modification checks of the Groovy script files.
+     */
+    public static final String RECOMPILE_INTERVAL_PROPERTY = "org.forgerock.openig.script.recompileInterval";
 
-    private static final Object INIT_LOCK = new Object();
     /**
-     * The groovy script cache directory.
-     *
-     * @GuardedBy initializationLock
+     * Default minimum interval between two modification checks of the Groovy script files.
      */
-    private static volatile File groovyScriptCacheDir;
+    public static final String DEFAULT_RECOMPILE_INTERVAL = "1 second";
+
+    private static final Duration RECOMPILE_INTERVAL =
+            Duration.duration(System.getProperty(RECOMPILE_INTERVAL_PROPERTY, DEFAULT_RECOMPILE_INTERVAL));
+
+    /**
+     * Code base of the inline scripts, used for their protection domain.
+     */
+    private static final String INLINE_CODE_BASE = "/groovy/script";
+
+    private static final AtomicInteger INLINE_SCRIPTS = new AtomicInteger();
+
+    private static final String EOL = System.getProperty("line.separator");
+
+    private static final Object INIT_LOCK = new Object();
     /**
      * The groovy script engine.
      *
@@ -145,52 +257,14 @@ public final class Script {
                                     final String source) throws ScriptException {
         if (GROOVY_MIME_TYPE.equals(mimeType)) {
             final GroovyScriptEngine engine = getGroovyScriptEngine(environment);
-            final File groovyScriptCacheDir = getGroovyScriptCacheDir();
-            try {
-                final File cachedScript =
-                        File.createTempFile("script-", ".groovy", groovyScriptCacheDir);
-                cachedScript.deleteOnExit();
-                final FileWriter writer = new FileWriter(cachedScript);
-                writer.write(source);
-                writer.close();
-                final Impl impl = new GroovyImpl(engine, cachedScript.toURI().toURL().toString());
-                return new Script(impl);
-            } catch (final IOException e) {
-                throw new ScriptException(e);
-            }
+            final Impl impl = new InlineGroovyImpl(engine, source);
+            return new Script(impl);
         } else {
             throw new ScriptException("Invalid script mime-type '" + mimeType + "': only '"
                     + GROOVY_MIME_TYPE + "' is supported");
         }
     }
 
-    private static File getGroovyScriptCacheDir() throws ScriptException {
-        File cacheDir = groovyScriptCacheDir;
-        if (cacheDir != null) {
-            return cacheDir;
-        }
-
-        synchronized (INIT_LOCK) {
-            cacheDir = groovyScriptCacheDir;
-            if (cacheDir != null) {
-                return cacheDir;
-            }
-
-            try {
-                cacheDir = File.createTempFile("openig-groovy-script-cache-", null);
-                cacheDir.delete();
-                cacheDir.mkdir();
-                cacheDir.deleteOnExit();
-            } catch (final IOException e) {
-                throw new ScriptException(e);
-            }
-
-            // Assign only after having fully initialized the cache directory.
-            groovyScriptCacheDir = cacheDir;
-            return cacheDir;
-        }
-    }
-
     private static GroovyScriptEngine getGroovyScriptEngine(final Environment environment)
             throws ScriptException {
         GroovyScriptEngine engine = groovyScriptEngine;
@@ -0,0 +1,124 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.session;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.forgerock.json.JsonValueFunctions.duration;
+
+import java.util.Map;
+
+import org.forgerock.openig.heap.GenericHeaplet;
+import org.forgerock.openig.heap.HeapException;
+import org.forgerock.util.time.Duration;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A {@link SessionStore} keeping the sessions in memory, in a bounded cache. The sessions are expired once they have
+ * not been accessed for the session timeout.
+ * <p>
+ * The sessions are not shared with the other OpenIG instances: this store is meant for a single instance, or as a
+ * reference implementation.
+ *
+ * <pre>
+ *     {@code
+ *     {
+ *         "name": "SessionStore",
+ *         "type": "InMemorySessionStore",
+ *         "config": {
+ *             "maximumSize": 100000,
+ *             "sessionTimeout": "30 minutes"
+ *         }
+ *     }
+ *     }
+ * </pre>
+ *
+ * The {@literal maximumSize} optional integer attribute specifies the maximum number of sessions kept in memory (the
+ * least recently used sessions are evicted first). It defaults to {@value #DEFAULT_MAXIMUM_SIZE}.
+ * <p>
+ * The {@literal sessionTimeout} optional duration attribute specifies the amount of time before an inactive session
+ * expires. It defaults to {@value #DEFAULT_SESSION_TIMEOUT}.
+ */
+public class InMemorySessionStore implements SessionStore {
+
+    /** Default maximum number of sessions. */
+    public static final int DEFAULT_MAXIMUM_SIZE = 100000;
+
+    /** Default inactivity timeout. */
+    public static final String DEFAULT_SESSION_TIMEOUT = "30 minutes";
+
+    private final Cache<String, Map<String, Object>> sessions;
+
+    /**
+     * Builds a new in-memory store.
+     *
+     * @param maximumSize
+     *         the maximum number of sessions
+     * @param sessionTimeout
+     *         the amount of time before an inactive session expires
+     */
+    public InMemorySessionStore(final long maximumSize, final Duration sessionTimeout) {
+        this(maximumSize, sessionTimeout, Ticker.systemTicker());
+    }
+
+    InMemorySessionStore(final long maximumSize, final Duration sessionTimeout, final Ticker ticker) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                                                           .maximumSize(maximumSize)
+                                                           .ticker(ticker);
+        if (!sessionTimeout.isUnlimited()) {
+            builder.expireAfterAccess(sessionTimeout.to(MILLISECONDS), MILLISECONDS);
+        }
+        this.sessions = builder.build();
+    }
+
+    @Override
+    public Map<String, Object> load(final String id) {
+        return sessions.getIfPresent(id);
+    }
+
+    @Override
+    public void store(final String id, final Map<String, Object> content) {
+        sessions.put(id, content);
+    }
+
+    @Override
+    public void delete(final String id) {
+        sessions.invalidate(id);
+    }
+
+    /** Creates and initializes an in-memory session store in a heap environment. */
+    public static class Heaplet extends GenericHeaplet {
+
+        @Override
+        public Object create() throws HeapException {
+            long maximumSize = config.get("maximumSize")
+                                     .as(evaluatedWithHeapProperties())
+                                     .defaultTo(DEFAULT_MAXIMUM_SIZE)
+                                     .asLong();
+            Duration sessionTimeout = config.get("sessionTimeout")
+                                            .as(evaluatedWithHeapProperties())
+                                            .defaultTo(DEFAULT_SESSION_TIMEOUT)
+                                            .as(duration());
+            if (maximumSize <= 0 || sessionTimeout.isZero()) {
+                throw new HeapException("maximumSize and sessionTimeout must be greater than 0");
+            }
+            return new InMemorySessionStore(maximumSize, sessionTimeout);
+        }
+    }
+}
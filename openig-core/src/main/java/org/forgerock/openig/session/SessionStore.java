@@ -0,0 +1,83 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.session;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A backend keeping the content of the sessions managed by a {@link StoreSessionManager}, keyed by opaque session
+ * identifiers.
+ * <p>
+ * The session content is made of JSON compatible values only (see
+ * {@link org.forgerock.http.util.Json#checkJsonCompatibility(String, Object)}), so that it can be serialized by any
+ * implementation. The store owns the sessions lifetime: it is expected to expire the sessions that have not been
+ * accessed for a while.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface SessionStore {
+
+    /**
+     * Returns the content of the given session.
+     *
+     * @param id
+     *         the session identifier
+     * @return the content of the session, or {@code null} if there is no such session (or it has expired)
+     * @throws IOException
+     *         if the store cannot be reached
+     */
+    Map<String, Object> load(String id) throws IOException;
+
+    /**
+     * Stores the content of the given session, replacing any previous content.
+     *
+     * @param id
+     *         the session identifier
+     * @param content
+     *         the content of the session, that must not be modified by the store
+     * @throws IOException
+     *         if the store cannot be reached
+     */
+    void store(String id, Map<String, Object> content) throws IOException;
+
+    /**
+     * Deletes the given session, if it exists.
+     *
+     * @param id
+     *         the session identifier
+     * @throws IOException
+     *         if the store cannot be reached
+     */
+    void delete(String id) throws IOException;
+
+    /**
+     * Registers a listener to be notified with the identifier of the sessions that have been modified or deleted
+     * by another client of the store (another OpenIG instance, for instance). It lets the clients invalidate the
+     * copies they keep in their near cache.
+     * <p>
+     * The stores that do not support such notifications simply ignore the listener: the near caches then rely on
+     * their time to live.
+     *
+     * @param listener
+     *         the listener to notify
+     */
+    default void addInvalidationListener(Consumer<String> listener) {
+        // No notification by default
+    }
+}
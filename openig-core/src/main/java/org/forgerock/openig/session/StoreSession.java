@@ -0,0 +1,257 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.session;
+
+import static java.util.Collections.singletonList;
+import static org.forgerock.http.util.Json.checkJsonCompatibility;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.forgerock.http.header.SetCookieHeader;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.session.Session;
+import org.forgerock.openig.jwt.dirty.DirtyCollection;
+import org.forgerock.openig.jwt.dirty.DirtyListener;
+import org.forgerock.openig.jwt.dirty.DirtySet;
+import org.forgerock.util.MapDecorator;
+import org.forgerock.util.Reject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Represents an OpenIG {@link Session} whose content is kept in a {@link SessionStore}, the session cookie only
+ * holding an opaque identifier.
+ * <p>
+ * The content is loaded on first access. All the modifications done while processing a request are tracked and
+ * written to the store at once, when the session is saved: an unmodified session is never written.
+ */
+public class StoreSession extends MapDecorator<String, Object> implements Session, DirtyListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoreSession.class);
+
+    /**
+     * The manager giving access to the store.
+     */
+    private final StoreSessionManager manager;
+
+    /**
+     * The session's content.
+     */
+    private final Map<String, Object> content;
+
+    /**
+     * The identifier of the session, {@code null} if the session does not exist yet in the store.
+     */
+    private String id;
+
+    /**
+     * Marker used to load the session's content on first access.
+     */
+    private boolean loaded;
+
+    /**
+     * Marker used to detect if the session was modified or not.
+     */
+    private boolean dirty;
+
+    /**
+     * Builds a new StoreSession.
+     *
+     * @param manager
+     *         The manager giving access to the store.
+     * @param id
+     *         The identifier of the session received with the request, or {@code null}.
+     */
+    StoreSession(final StoreSessionManager manager, final String id) {
+        this(manager, id, new LinkedHashMap<String, Object>());
+    }
+
+    private StoreSession(final StoreSessionManager manager, final String id, final Map<String, Object> content) {
+        super(content);
+        this.content = content;
+        this.manager = manager;
+        this.id = id;
+        this.loaded = (id == null);
+    }
+
+    /**
+     * Load the session's content from the store, if not already done.
+     */
+    private void ensureLoaded() {
+        if (!loaded) {
+            loaded = true;
+            try {
+                Map<String, Object> stored = manager.load(id);
+                if (stored != null) {
+                    // directly use super to avoid session be marked as dirty
+                    super.putAll(stored);
+                } else {
+                    // Unknown or expired session: never reuse an identifier that has not been issued by the store
+                    id = null;
+                }
+            } catch (IOException e) {
+                // Start a new session rather than overwriting the stored one with partial content
+                id = null;
+                logger.warn("Cannot load the session from the store, a new session is started", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the identifier of this session.
+     *
+     * @return the identifier of this session, or {@code null} if it does not exist yet in the store
+     */
+    String getId() {
+        return id;
+    }
+
+    @Override
+    public void onElementsRemoved() {
+        dirty = true;
+    }
+
+    @Override
+    public int size() {
+        ensureLoaded();
+        return super.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        ensureLoaded();
+        return super.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        ensureLoaded();
+        return super.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(final Object value) {
+        ensureLoaded();
+        return super.containsValue(value);
+    }
+
+    @Override
+    public Object get(final Object key) {
+        ensureLoaded();
+        return super.get(key);
+    }
+
+    @Override
+    public Object put(final String key, final Object value) {
+        ensureLoaded();
+        // Put null into a key, results in the complete entry removal
+        if (value == null) {
+            return remove(key);
+        }
+        // The content has to be serialized by the store
+        checkJsonCompatibility(key, value);
+        dirty = true;
+        return super.put(key, value);
+    }
+
+    @Override
+    public void putAll(final Map<? extends String, ?> m) {
+        for (Entry<? extends String, ?> entry : m.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public Object remove(final Object key) {
+        ensureLoaded();
+        dirty = true;
+        return super.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        ensureLoaded();
+        dirty = true;
+        super.clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        ensureLoaded();
+        return new DirtySet<>(super.keySet(), this);
+    }
+
+    @Override
+    public Collection<Object> values() {
+        ensureLoaded();
+        return new DirtyCollection<>(super.values(), this);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        ensureLoaded();
+        return new DirtySet<>(super.entrySet(), this);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        ensureLoaded();
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        ensureLoaded();
+        return super.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        ensureLoaded();
+        return super.toString();
+    }
+
+    @Override
+    public void save(final Response response) throws IOException {
+        // Only write the session if it has been modified
+        if (!dirty) {
+            return;
+        }
+        Reject.ifNull(response, "Cannot save session state on a null response");
+        if (super.isEmpty()) {
+            if (id != null) {
+                manager.delete(id);
+                response.getHeaders().add(new SetCookieHeader(singletonList(manager.expiredCookie())));
+                id = null;
+            }
+        } else {
+            boolean created = (id == null);
+            if (created) {
+                id = manager.newSessionId();
+            }
+            manager.store(id, content);
+            if (created) {
+                response.getHeaders().add(new SetCookieHeader(singletonList(manager.cookie(id))));
+            }
+        }
+        dirty = false;
+    }
+}
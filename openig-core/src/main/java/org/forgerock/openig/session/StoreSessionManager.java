@@ -0,0 +1,292 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.session;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.forgerock.json.JsonValueFunctions.duration;
+import static org.forgerock.openig.util.JsonValues.optionalHeapObject;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.http.protocol.Cookie;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.session.Session;
+import org.forgerock.http.session.SessionManager;
+import org.forgerock.json.JsonValue;
+import org.forgerock.openig.heap.GenericHeaplet;
+import org.forgerock.openig.heap.HeapException;
+import org.forgerock.util.encode.Base64url;
+import org.forgerock.util.time.Duration;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A StoreSessionManager keeps the sessions content in a {@link SessionStore}, the session cookie only holding an
+ * opaque identifier. Several OpenIG instances sharing the same store can serve the same sessions, without sticky
+ * sessions nor cookie size limitations.
+ *
+ * <pre>
+ *     {@code
+ *     {
+ *         "name": "StoreSession",
+ *         "type": "StoreSession",
+ *         "config": {
+ *             "store": "Ref To A SessionStore",
+ *             "cookieName": "OpenIG",
+ *             "cookieDomain": ".example.com",
+ *             "nearCache": {
+ *                 "maximumSize": 1000,
+ *                 "timeToLive": "10 seconds"
+ *             }
+ *         }
+ *     }
+ *     }
+ * </pre>
+ *
+ * The {@literal store} optional attribute references the {@link SessionStore} heap object keeping the sessions. If
+ * omitted, an {@link InMemorySessionStore} with its default settings is used.
+ * <p>
+ * The {@literal cookieName} optional string attribute specifies the name of the cookie holding the session
+ * identifier. If not set, {@link #OPENIG_SESSION} is used.
+ * <p>
+ * The {@literal cookieDomain} optional string attribute specifies the domain of the cookie holding the session
+ * identifier. If not set, the cookie will be treated as a host-based cookie.
+ * <p>
+ * The {@literal nearCache} optional attribute enables a local cache of the sessions read from, or written to, the
+ * store. Its {@literal maximumSize} integer attribute (defaults to {@value #DEFAULT_NEAR_CACHE_SIZE}) bounds the
+ * number of cached sessions, and its {@literal timeToLive} duration attribute (defaults to
+ * {@value #DEFAULT_NEAR_CACHE_TTL}) bounds the time a session modified by another instance can be seen stale, when
+ * the store does not notify the modifications. If omitted, every first access to a session reads the store.
+ */
+public class StoreSessionManager implements SessionManager {
+
+    /**
+     * Default name of the cookie holding the session identifier.
+     */
+    public static final String OPENIG_SESSION = "openig-session";
+
+    /**
+     * Default maximum number of sessions in the near cache.
+     */
+    public static final int DEFAULT_NEAR_CACHE_SIZE = 1000;
+
+    /**
+     * Default time to live of the sessions in the near cache.
+     */
+    public static final String DEFAULT_NEAR_CACHE_TTL = "10 seconds";
+
+    /**
+     * Number of random bytes of the session identifiers.
+     */
+    private static final int ID_LENGTH = 32;
+
+    /**
+     * Setting the expiry date of the cookie to this date will effectively remove it from the user agent.
+     */
+    private static final Date EPOCH = new Date(0L);
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final SessionStore store;
+
+    private final String cookieName;
+
+    private final String cookieDomain;
+
+    /**
+     * Local copies of the stored sessions, or {@code null} if there is no near cache.
+     */
+    private final Cache<String, Map<String, Object>> nearCache;
+
+    /**
+     * Builds a new StoreSessionManager.
+     *
+     * @param store
+     *         The store keeping the sessions.
+     * @param cookieName
+     *         Name of the cookie holding the session identifier.
+     * @param cookieDomain
+     *         Domain of the cookie. If null, the cookie will be treated as a host-based cookie.
+     * @param nearCache
+     *         The near cache, or {@code null}.
+     */
+    public StoreSessionManager(final SessionStore store,
+                               final String cookieName,
+                               final String cookieDomain,
+                               final Cache<String, Map<String, Object>> nearCache) {
+        this.store = store;
+        this.cookieName = cookieName;
+        this.cookieDomain = cookieDomain;
+        this.nearCache = nearCache;
+        if (nearCache != null) {
+            store.addInvalidationListener(nearCache::invalidate);
+        }
+    }
+
+    @Override
+    public Session load(final Request request) {
+        List<Cookie> cookies = request.getCookies().get(cookieName);
+        String id = (cookies != null) ? cookies.get(0).getValue() : null;
+        return new StoreSession(this, id);
+    }
+
+    @Override
+    public void save(final Session session, final Response response) throws IOException {
+        if (response != null) {
+            session.save(response);
+        }
+    }
+
+    /**
+     * Returns a copy of the content of the given session, read from the near cache or from the store.
+     *
+     * @param id
+     *         the session identifier
+     * @return a copy of the content of the session, or {@code null} if there is no such session
+     * @throws IOException
+     *         if the store cannot be reached
+     */
+    Map<String, Object> load(final String id) throws IOException {
+        Map<String, Object> content = (nearCache != null) ? nearCache.getIfPresent(id) : null;
+        if (content == null) {
+            content = store.load(id);
+            if (content == null) {
+                return null;
+            }
+            if (nearCache != null) {
+                nearCache.put(id, content);
+            }
+        }
+        return copy(content);
+    }
+
+    /**
+     * Stores a copy of the content of the given session.
+     *
+     * @param id
+     *         the session identifier
+     * @param content
+     *         the content of the session
+     * @throws IOException
+     *         if the store cannot be reached
+     */
+    void store(final String id, final Map<String, Object> content) throws IOException {
+        Map<String, Object> stored = copy(content);
+        if (nearCache != null) {
+            // Do not keep a stale copy if the store fails
+            nearCache.invalidate(id);
+        }
+        store.store(id, stored);
+        if (nearCache != null) {
+            nearCache.put(id, stored);
+        }
+    }
+
+    /**
+     * Deletes the given session.
+     *
+     * @param id
+     *         the session identifier
+     * @throws IOException
+     *         if the store cannot be reached
+     */
+    void delete(final String id) throws IOException {
+        if (nearCache != null) {
+            nearCache.invalidate(id);
+        }
+        store.delete(id);
+    }
+
+    /**
+     * Returns a new random session identifier.
+     *
+     * @return a new random session identifier
+     */
+    String newSessionId() {
+        byte[] bytes = new byte[ID_LENGTH];
+        random.nextBytes(bytes);
+        return Base64url.encode(bytes);
+    }
+
+    /**
+     * Returns the cookie holding the given session identifier.
+     *
+     * @param id
+     *         the session identifier
+     * @return the cookie holding the given session identifier
+     */
+    Cookie cookie(final String id) {
+        return new Cookie().setPath("/").setName(cookieName).setDomain(cookieDomain).setValue(id).setHttpOnly(true);
+    }
+
+    /**
+     * Returns the cookie removing the session identifier from the user agent.
+     *
+     * @return the cookie removing the session identifier from the user agent
+     */
+    Cookie expiredCookie() {
+        return new Cookie().setPath("/").setName(cookieName).setDomain(cookieDomain).setExpires(EPOCH);
+    }
+
+    private static Map<String, Object> copy(final Map<String, Object> content) {
+        // Deep copy: neither the store nor the near cache must see the further modifications of a session
+        return new JsonValue(new LinkedHashMap<>(content)).copy().asMap();
+    }
+
+    /** Creates and initializes a store session manager in a heap environment. */
+    public static class Heaplet extends GenericHeaplet {
+
+        @Override
+        public Object create() throws HeapException {
+            JsonValue evaluated = config.as(evaluatedWithHeapProperties());
+            SessionStore store = config.get("store").as(optionalHeapObject(heap, SessionStore.class));
+            if (store == null) {
+                store = new InMemorySessionStore(InMemorySessionStore.DEFAULT_MAXIMUM_SIZE,
+                                                 Duration.duration(InMemorySessionStore.DEFAULT_SESSION_TIMEOUT));
+            }
+
+            Cache<String, Map<String, Object>> nearCache = null;
+            JsonValue nearCacheConfig = evaluated.get("nearCache");
+            if (nearCacheConfig.isNotNull()) {
+                int maximumSize = nearCacheConfig.get("maximumSize").defaultTo(DEFAULT_NEAR_CACHE_SIZE).asInteger();
+                Duration timeToLive = nearCacheConfig.get("timeToLive")
+                                                     .defaultTo(DEFAULT_NEAR_CACHE_TTL)
+                                                     .as(duration());
+                if (maximumSize <= 0 || timeToLive.isZero() || timeToLive.isUnlimited()) {
+                    throw new HeapException("The near cache maximumSize and timeToLive must be greater than 0 "
+                                                    + "and bounded");
+                }
+                nearCache = CacheBuilder.newBuilder()
+                                        .maximumSize(maximumSize)
+                                        .expireAfterWrite(timeToLive.to(MILLISECONDS), MILLISECONDS)
+                                        .build();
+            }
+
+            return new StoreSessionManager(store,
+                                           evaluated.get("cookieName").defaultTo(OPENIG_SESSION).asString(),
+                                           evaluated.get("cookieDomain").asString(),
+                                           nearCache);
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.text;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * A {@link SeparatedValuesFile} loaded once in memory, with hash indexes on some of its fields.
+ * <p>
+ * The file is loaded on the first lookup. Lookups on an indexed field are then resolved with a single hash lookup,
+ * lookups on the other fields scan the records in memory: none of them reads the file.
+ * <p>
+ * The file modification time is checked at most once per check interval. When it has changed, the file is loaded
+ * again in the background (by the given {@link Executor}), and the new records and indexes replace the previous ones
+ * atomically: lookups keep using the previous ones in the meantime.
+ * <p>
+ * The memory used by the records and their indexes is estimated while loading the file: when it exceeds the memory
+ * limit, the file is not kept in memory and each lookup reads the file, as a plain {@link SeparatedValuesFile} does.
+ * <p>
+ * The lookup statistics and the estimated memory are available in its {@linkplain #getMetrics() metric registry}.
+ */
+public class IndexedSeparatedValuesFile extends SeparatedValuesFile {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexedSeparatedValuesFile.class);
+
+    /** Default memory limit of the loaded records, in bytes. */
+    public static final long DEFAULT_MEMORY_LIMIT = 256L * 1024 * 1024;
+
+    /** Default minimum interval between two checks of the file modification time. */
+    public static final String DEFAULT_CHECK_INTERVAL = "5 seconds";
+
+    /** Estimated memory used by each field value, in addition to its characters (String, array, reference). */
+    private static final int FIELD_OVERHEAD = 48;
+
+    /** Estimated memory used by each index entry (hash map node, table slot and row number), the key is shared. */
+    private static final int INDEX_ENTRY_OVERHEAD = 56;
+
+    private final Set<String> indexedFields;
+    private final long memoryLimit;
+    private final long checkIntervalNanos;
+    private final Executor executor;
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final Counter hits = metrics.counter("lookups.hits");
+    private final Counter misses = metrics.counter("lookups.misses");
+
+    private final Object initLock = new Object();
+    private final AtomicLong nextCheck = new AtomicLong();
+    private final AtomicBoolean reloading = new AtomicBoolean();
+
+    /** The loaded records, {@code null} until the first lookup. */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Builds a new IndexedSeparatedValuesFile reading the given {@code file}.
+     *
+     * @param file
+     *         file to read from
+     * @param charset
+     *         {@link Charset} of the file (non-null)
+     * @param separator
+     *         separator specification
+     * @param header
+     *         does the file has a header first line ?
+     * @param indexedFields
+     *         the fields to index
+     * @param memoryLimit
+     *         the maximum estimated memory (in bytes) of the records kept in memory
+     * @param checkInterval
+     *         the minimum interval between two checks of the file modification time, {@link Duration#isUnlimited()
+     *         unlimited} to never reload the file
+     * @param executor
+     *         the executor loading the modified file in the background
+     */
+    public IndexedSeparatedValuesFile(final File file,
+                                      final Charset charset,
+                                      final Separator separator,
+                                      final boolean header,
+                                      final Collection<String> indexedFields,
+                                      final long memoryLimit,
+                                      final Duration checkInterval,
+                                      final Executor executor) {
+        super(file, charset, separator, header);
+        this.indexedFields = new LinkedHashSet<>(indexedFields);
+        this.memoryLimit = memoryLimit;
+        this.checkIntervalNanos = checkInterval.isUnlimited() ? -1L : checkInterval.to(TimeUnit.NANOSECONDS);
+        this.executor = executor;
+        metrics.register("memory.estimated", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                Snapshot current = snapshot;
+                return (current == null) ? 0L : current.size;
+            }
+        });
+    }
+
+    @Override
+    public Map<String, String> getRecord(final String key, final String value) throws IOException {
+        Snapshot current = current();
+        if (current.records == null) {
+            // Too large to be kept in memory
+            return super.getRecord(key, value);
+        }
+        Map<String, String> record = current.lookup(key, value);
+        if (record != null) {
+            hits.inc();
+        } else {
+            misses.inc();
+        }
+        return record;
+    }
+
+    /**
+     * Returns the number of lookups that have found a record in memory.
+     *
+     * @return the number of lookups that have found a record in memory
+     */
+    public long getHitCount() {
+        return hits.getCount();
+    }
+
+    /**
+     * Returns the number of lookups that have not found any record in memory.
+     *
+     * @return the number of lookups that have not found any record in memory
+     */
+    public long getMissCount() {
+        return misses.getCount();
+    }
+
+    /**
+     * Returns the metrics of this file: the lookups that have found a record in memory ({@code lookups.hits}) or not
+     * ({@code lookups.misses}), and the estimated memory of the records and indexes kept in memory, in bytes
+     * ({@code memory.estimated}).
+     *
+     * @return the metrics of this file
+     */
+    public MetricRegistry getMetrics() {
+        return metrics;
+    }
+
+    private Snapshot current() throws IOException {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (initLock) {
+                current = snapshot;
+                if (current == null) {
+                    current = load();
+                    nextCheck.set(System.nanoTime() + checkIntervalNanos);
+                    snapshot = current;
+                }
+            }
+            return current;
+        }
+        if (checkIntervalNanos >= 0) {
+            long now = System.nanoTime();
+            long next = nextCheck.get();
+            // Only one thread checks the file, and only one reload is in progress at a time
+            if (now - next >= 0
+                    && nextCheck.compareAndSet(next, now + checkIntervalNanos)
+                    && current.isStale(getFile())
+                    && reloading.compareAndSet(false, true)) {
+                try {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            reload();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    reloading.set(false);
+                    logger.warn("Cannot schedule the reload of the file {}", getFile(), e);
+                }
+            }
+        }
+        return current;
+    }
+
+    private void reload() {
+        try {
+            snapshot = load();
+            logger.debug("File {} has been reloaded", getFile());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Cannot reload the file {}, the previous content is still used", getFile(), e);
+        } finally {
+            reloading.set(false);
+        }
+    }
+
+    private Snapshot load() throws IOException {
+        File file = getFile();
+        // Read before the content: a modification while loading will trigger another reload
+        long lastModified = file.lastModified();
+        long length = file.length();
+        SeparatedValuesReader reader = newReader();
+        try {
+            List<String> fields = getFields();
+            if (hasHeader()) {
+                // first line in the file is the field header
+                List<String> record = reader.next();
+                if (record != null && fields.isEmpty()) {
+                    // use header fields
+                    fields = record;
+                }
+            }
+            fields = new ArrayList<>(fields);
+
+            Map<String, Map<String, Integer>> indexes = new HashMap<>();
+            Map<String, Integer> columns = new HashMap<>();
+            for (String field : indexedFields) {
+                int column = fields.indexOf(field);
+                if (column >= 0) {
+                    indexes.put(field, new HashMap<String, Integer>());
+                    columns.put(field, column);
+                }
+            }
+
+            List<List<String>> records = new ArrayList<>();
+            long size = 0;
+            List<String> record;
+            while ((record = reader.next()) != null) {
+                for (String value : record) {
+                    size += FIELD_OVERHEAD + 2L * value.length();
+                }
+                int row = records.size();
+                records.add(record);
+                for (Map.Entry<String, Integer> column : columns.entrySet()) {
+                    if (column.getValue() < record.size()) {
+                        // Like a file scan, the first matching record wins
+                        Integer previous = indexes.get(column.getKey()).get(record.get(column.getValue()));
+                        if (previous == null) {
+                            indexes.get(column.getKey()).put(record.get(column.getValue()), row);
+                            size += INDEX_ENTRY_OVERHEAD;
+                        }
+                    }
+                }
+                if (size > memoryLimit) {
+                    logger.warn("File {} exceeds the memory limit of {} bytes, it will be read on each lookup",
+                                file,
+                                memoryLimit);
+                    return new Snapshot(lastModified, length, fields, null, null, 0L);
+                }
+            }
+            return new Snapshot(lastModified, length, fields, records, indexes, size);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * An immutable view of the file content, at a given modification time.
+     */
+    private static final class Snapshot {
+        private final long lastModified;
+        private final long length;
+        private final List<String> fields;
+        /** {@code null} if the file is too large to be kept in memory. */
+        private final List<List<String>> records;
+        private final Map<String, Map<String, Integer>> indexes;
+        /** Estimated memory of the records and indexes, in bytes. */
+        private final long size;
+
+        private Snapshot(final long lastModified,
+                         final long length,
+                         final List<String> fields,
+                         final List<List<String>> records,
+                         final Map<String, Map<String, Integer>> indexes,
+                         final long size) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.fields = fields;
+            this.records = records;
+            this.indexes = indexes;
+            this.size = size;
+        }
+
+        private boolean isStale(final File file) {
+            return file.lastModified() != lastModified || file.length() != length;
+        }
+
+        private Map<String, String> lookup(final String key, final String value) {
+            Map<String, Integer> index = indexes.get(key);
+            if (index != null) {
+                Integer row = index.get(value);
+                return (row != null) ? toMap(fields, records.get(row)) : null;
+            }
+            int column = fields.indexOf(key);
+            if (column >= 0) {
+                for (List<String> record : records) {
+                    if (column < record.size() && record.get(column).equals(value)) {
+                        return toMap(fields, record);
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -13,6 +13,7 @@
  *
  * Copyright 2010-2011 ApexIdentity Inc.
  * Portions Copyright 2011-2015 ForgeRock AS.
+ * Portions copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.text;
@@ -148,10 +149,7 @@ public class SeparatedValuesFile {
      */
     public Map<String, String> getRecord(String key, String value) throws IOException {
         Map<String, String> map = null;
-        SeparatedValuesReader reader = new SeparatedValuesReader(
-                new InputStreamReader(new FileInputStream(file), charset),
-                separator
-        );
+        SeparatedValuesReader reader = newReader();
         try {
             List<String> fields = this.fields;
             if (header) {
@@ -169,13 +167,7 @@ public class SeparatedValuesFile {
                     List<String> record;
                     while ((record = reader.next()) != null) {
                         if (record.get(index).equals(value)) {
-                            map = new HashMap<>(fields.size());
-                            Iterator<String> fi = fields.iterator();
-                            Iterator<String> ri = record.iterator();
-                            while (fi.hasNext() && ri.hasNext()) {
-                                // assign field-value pairs in map
-                                map.put(fi.next(), ri.next());
-                            }
+                            map = toMap(fields, record);
                             break;
                         }
                     }
@@ -186,4 +178,50 @@ public class SeparatedValuesFile {
         }
         return map;
     }
+
+    /**
+     * Returns the file containing the separated values to be read.
+     *
+     * @return the file containing the separated values to be read
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns {@code true} if the first line of the file contains the set of defined field keys.
+     *
+     * @return {@code true} if the first line of the file contains the set of defined field keys
+     */
+    boolean hasHeader() {
+        return header;
+    }
+
+    /**
+     * Opens a new reader of the file, that has to be closed by the caller.
+     *
+     * @return a new reader of the file
+     * @throws IOException if the file cannot be opened
+     */
+    SeparatedValuesReader newReader() throws IOException {
+        return new SeparatedValuesReader(new InputStreamReader(new FileInputStream(file), charset), separator);
+    }
+
+    /**
+     * Assigns the field-value pairs of the given record in a new map.
+     *
+     * @param fields the field keys
+     * @param record the record values
+     * @return a new map of the field-value pairs
+     */
+    static Map<String, String> toMap(final List<String> fields, final List<String> record) {
+        Map<String, String> map = new HashMap<>(fields.size());
+        Iterator<String> fi = fields.iterator();
+        Iterator<String> ri = record.iterator();
+        while (fi.hasNext() && ri.hasNext()) {
+            // assign field-value pairs in map
+            map.put(fi.next(), ri.next());
+        }
+        return map;
+    }
 }
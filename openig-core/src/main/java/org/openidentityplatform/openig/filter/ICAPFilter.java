@@ -1,10 +1,15 @@
 package org.openidentityplatform.openig.filter;
 
+import static org.forgerock.openig.heap.Keys.SCHEDULED_EXECUTOR_SERVICE_HEAP_KEY;
+import static org.forgerock.openig.util.JsonValues.requiredHeapObject;
+
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.forgerock.http.Filter;
 import org.forgerock.http.Handler;
@@ -17,20 +22,24 @@ import org.forgerock.services.context.Context;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
 import org.forgerock.util.promise.Promises;
+import org.openidentityplatform.openig.icap.IcapClient;
+import org.openidentityplatform.openig.icap.IcapException;
+import org.openidentityplatform.openig.icap.IcapResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import net.rfc3507.client.ICAPClient;
-import net.rfc3507.client.ICAPException;
-import net.rfc3507.client.ICAPRequest;
-import net.rfc3507.client.ICAPRequest.Mode;
-import net.rfc3507.client.ICAPResponse;
-
+/**
+ * Submits the request bodies to an ICAP server (REQMOD), typically to scan the uploads for viruses.
+ * <p>
+ * The exchange with the ICAP server is asynchronous: no thread waits for the ICAP server. Only the first
+ * {@code preview} bytes of the body are sent, unless the server asks for the rest. When the server is unavailable,
+ * the requests go through unchecked.
+ */
 public class ICAPFilter implements Filter {
 
 	private static final Logger logger = LoggerFactory.getLogger(ICAPFilter.class);
 	
-	ICAPClient icap=null;
+	IcapClient icap=null;
 	String service=null;
 	Boolean rewrite=true;
 	
@@ -55,14 +64,22 @@ public class ICAPFilter implements Filter {
 			}
 			try {
 				final URI uri=new URI(server);
-				filter.icap=new ICAPClient(uri.getHost(), uri.getPort()>0?uri.getPort():1344);
-				filter.icap.setConnectTimeout(Integer.parseInt(config.get("connect_timeout").defaultTo("5000").as(expression(String.class)).eval()));
-				filter.icap.setReadTimeout(Integer.parseInt(config.get("read_timeout").defaultTo("15000").as(expression(String.class)).eval()));
+				final IcapClient.Builder builder=IcapClient.builder(uri.getHost(), uri.getPort()>0?uri.getPort():IcapClient.DEFAULT_PORT)
+						.connectTimeout(Long.parseLong(config.get("connect_timeout").defaultTo("5000").as(expression(String.class)).eval()))
+						.readTimeout(Long.parseLong(config.get("read_timeout").defaultTo("15000").as(expression(String.class)).eval()))
+						.previewSize(Integer.parseInt(config.get("preview").defaultTo(""+IcapClient.DEFAULT_PREVIEW_SIZE).as(expression(String.class)).eval()))
+						.maxConnections(Integer.parseInt(config.get("max_connections").defaultTo(""+IcapClient.DEFAULT_MAX_CONNECTIONS).as(expression(String.class)).eval()))
+						.circuitBreaker(Integer.parseInt(config.get("failure_threshold").defaultTo(""+IcapClient.DEFAULT_FAILURE_THRESHOLD).as(expression(String.class)).eval()),
+								Long.parseLong(config.get("open_duration").defaultTo(""+IcapClient.DEFAULT_OPEN_DURATION).as(expression(String.class)).eval()))
+						.scheduler(config.get("executor").defaultTo(SCHEDULED_EXECUTOR_SERVICE_HEAP_KEY).as(requiredHeapObject(heap, ScheduledExecutorService.class)));
 				filter.service=config.get("service").defaultTo("").as(expression(String.class)).eval();
 				filter.rewrite=Boolean.parseBoolean(config.get("rewrite").defaultTo("true").as(expression(String.class)).eval());
-				logger.info("start {} connect_timeout={} read_timeout={}",uri,filter.icap.getConnectTimeout(),filter.icap.getReadTimeout());
+				filter.icap=builder.build();
+				logger.info("start {}",uri);
 			} catch (URISyntaxException e) {
 				logger.warn("invalid server format: \"{}\" use icap://server:port",server);
+			} catch (IOException e) {
+				throw new HeapException(e);
 			}
 		}
 		
@@ -70,45 +87,64 @@ public class ICAPFilter implements Filter {
 		public void destroy() {
 			super.destroy();
 			if (filter.icap!=null) {
+				filter.icap.close();
 				filter.icap=null;
 			}
 		}
     }
 
 	@Override
-	public Promise<Response, NeverThrowsException> filter(Context context, Request request, Handler next) {
-		if (icap!=null && !request.getEntity().isRawContentEmpty()) {
-			final ICAPRequest req=new ICAPRequest(service, Mode.REQMOD);
-			try {
-				req.setHttpRequestBody(request.getEntity().getBytes());
-				final ICAPResponse res=icap.execute(req);
-				if (res.getStatus()==204) { //allow content
-					return next.handle(context, request);
-				}else if (res.getStatus()==200) { //modify response 
-					request.getHeaders().add("x-icap-status", ""+res.getStatus());
-					request.getHeaders().add("x-icap-message", res.getMessage());
-					for (Entry<String, List<String>> header : res.getHeaderEntries().entrySet()) {
-						request.getHeaders().add(header.getKey(), header.getValue());
-					}
-					if (rewrite) {
-						final ICAPResponse.ResponseHeader responseHeader=res.getResponseHeader();
-						final Response response = new Response(Status.valueOf(responseHeader.getStatus(), responseHeader.getMessage()));
-						for (Entry<String, List<String>> header : responseHeader.getHeaderEntries().entrySet()) {
-							response.getHeaders().add(header.getKey(), header.getValue());
-						}
-						response.setEntity(res.getHttpShrinkResponseBody());
-					    return Promises.newResultPromise(response);
+	public Promise<Response, NeverThrowsException> filter(final Context context, final Request request, final Handler next) {
+		if (icap==null || request.getEntity().isRawContentEmpty()) {
+			return next.handle(context, request);
+		}
+		final InputStream body;
+		try {
+			// A branch of the entity: the request is still forwarded with its whole body
+			body=request.getEntity().newDecodedContentInputStream();
+		} catch (IOException e) {
+			logger.warn("{}",e.toString());
+			return next.handle(context, request);
+		}
+		return icap.reqmod(service, request, body)
+				.thenAlways(() -> closeQuietly(body))
+				.thenAsync(res -> onResponse(context, request, next, res),
+						(IcapException e) -> { //ignore error
+							logger.warn("{}",e.toString());
+							return next.handle(context, request);
+						});
+	}
+
+	private Promise<Response, NeverThrowsException> onResponse(Context context, Request request, Handler next, IcapResponse res) {
+		if (res.getStatus()==204) { //allow content
+			return next.handle(context, request);
+		}else if (res.getStatus()==200) { //modify response 
+			request.getHeaders().add("x-icap-status", ""+res.getStatus());
+			request.getHeaders().add("x-icap-message", res.getMessage());
+			for (Entry<String, List<String>> header : res.getHeaders().entrySet()) {
+				request.getHeaders().add(header.getKey(), header.getValue());
+			}
+			if (rewrite && res.isHttpResponse()) {
+				final Response response = new Response(Status.valueOf(res.getHttpStatus(), res.getHttpReason()));
+				for (Entry<String, List<String>> header : res.getHttpHeaders().entrySet()) {
+					if (!"Transfer-Encoding".equalsIgnoreCase(header.getKey()) && !"Content-Length".equalsIgnoreCase(header.getKey())) { //the body is dechunked
+						response.getHeaders().add(header.getKey(), header.getValue());
 					}
-				}else { //ignore error
-					logger.error("{}",res);
 				}
-			}catch (ICAPException e) {
-				logger.error("{}",e.toString());
-			}catch (IOException e) {
-				logger.warn("{}",e.toString());
+				response.setEntity(res.getHttpBody());
+			    return Promises.newResultPromise(response);
 			}
+		}else { //ignore error
+			logger.error("{}",res);
 		}
 		return next.handle(context, request);
 	}
 
+	private static void closeQuietly(InputStream body) {
+		try {
+			body.close();
+		} catch (IOException e) {
+			logger.trace("{}",e.toString());
+		}
+	}
 }
@@ -0,0 +1,77 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.icap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.util.time.TimeService;
+
+/**
+ * Stops sending requests to a server after consecutive failures.
+ * <p>
+ * The circuit opens after {@code failureThreshold} consecutive failures: the requests are then rejected without
+ * reaching the server, until {@code openDuration} has elapsed. A single trial request is then allowed: its success
+ * closes the circuit, its failure opens it again.
+ */
+class CircuitBreaker {
+
+	private final int failureThreshold;
+	private final long openDurationMillis;
+	private final TimeService time;
+
+	private final AtomicInteger failures = new AtomicInteger();
+
+	/** The time the circuit can be tried again, 0 when the circuit is closed. */
+	private final AtomicLong retryAt = new AtomicLong();
+
+	CircuitBreaker(int failureThreshold, long openDurationMillis, TimeService time) {
+		this.failureThreshold = failureThreshold;
+		this.openDurationMillis = openDurationMillis;
+		this.time = time;
+	}
+
+	/**
+	 * Returns whether a request can be sent to the server.
+	 *
+	 * @return {@code true} if a request can be sent to the server
+	 */
+	boolean allowRequest() {
+		long retry = retryAt.get();
+		if (retry == 0L) {
+			return true;
+		}
+		long now = time.now();
+		// Only one trial request: the others are rejected until it completes
+		return now >= retry && retryAt.compareAndSet(retry, now + openDurationMillis);
+	}
+
+	void onSuccess() {
+		failures.set(0);
+		retryAt.set(0L);
+	}
+
+	void onFailure() {
+		if (failures.incrementAndGet() >= failureThreshold) {
+			retryAt.set(time.now() + openDurationMillis);
+		}
+	}
+
+	boolean isOpen() {
+		return retryAt.get() != 0L;
+	}
+}
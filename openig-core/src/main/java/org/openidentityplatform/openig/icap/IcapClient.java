@@ -0,0 +1,872 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.icap;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.forgerock.http.header.ContentLengthHeader;
+import org.forgerock.http.header.TransferEncodingHeader;
+import org.forgerock.http.protocol.Header;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.time.TimeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * An asynchronous ICAP (RFC 3507) client of a single server.
+ * <p>
+ * The exchanges are performed with non-blocking {@link AsynchronousSocketChannel}s, kept alive in a pool between
+ * exchanges. The number of concurrent exchanges is bounded by the maximum number of connections: the additional
+ * exchanges wait for a connection to be released.
+ * <p>
+ * Only the first {@code previewSize} bytes of the body are sent with the request ({@code Preview} header): the rest of
+ * the body is only read and sent if the server answers {@code 100 Continue}. The server is allowed to answer
+ * {@code 204 No Content} when the message is not modified ({@code Allow: 204} header). The rest of the body is read
+ * by the {@linkplain Builder#bodyExecutor(Executor) body executor}, as reading it may block: never by the threads
+ * processing the I/O completions.
+ * <p>
+ * After consecutive failures of the server, the exchanges fail immediately, without reaching the server, until the
+ * server is tried again (see {@link CircuitBreaker}). The failures to read the request body are not failures of the
+ * server: they do not count. The client statistics are available in its {@linkplain #getMetrics() metric
+ * registry}.
+ */
+public class IcapClient implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(IcapClient.class);
+
+	/** Default ICAP port. */
+	public static final int DEFAULT_PORT = 1344;
+
+	/** Default number of body bytes sent with the request. */
+	public static final int DEFAULT_PREVIEW_SIZE = 4096;
+
+	/** Default maximum number of connections (and concurrent exchanges). */
+	public static final int DEFAULT_MAX_CONNECTIONS = 16;
+
+	/** Default number of consecutive failures opening the circuit. */
+	public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+	/** Default time the circuit stays open, in milliseconds. */
+	public static final long DEFAULT_OPEN_DURATION = 30000L;
+
+	private static final int CHUNK_SIZE = 8192;
+	private static final int MAX_HEAD_SIZE = 64 * 1024;
+	private static final int MAX_BODY_SIZE = 8 * 1024 * 1024;
+	private static final byte[] CRLF = { '\r', '\n' };
+	private static final byte[] CRLFCRLF = { '\r', '\n', '\r', '\n' };
+
+	private final String authority;
+	private final InetSocketAddress address;
+	private final int previewSize;
+	private final long connectTimeout;
+	private final long readTimeout;
+	private final AsynchronousChannelGroup group;
+	private final ScheduledExecutorService scheduler;
+	private final Executor bodyExecutor;
+	/** The body executor created by this client, {@code null} if it has been provided. */
+	private final ExecutorService ownedBodyExecutor;
+	private final CircuitBreaker circuitBreaker;
+
+	private final Deque<AsynchronousSocketChannel> idle = new ConcurrentLinkedDeque<>();
+	private final Semaphore permits;
+	private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+	private final MetricRegistry metrics = new MetricRegistry();
+	private final Timer latency = metrics.timer("latency");
+	private final Counter errors = metrics.counter("errors");
+	private final Counter bodyErrors = metrics.counter("errors.body");
+	private final Counter shortCircuited = metrics.counter("short-circuited");
+	private final Counter connections = metrics.counter("connections.opened");
+
+	private IcapClient(Builder builder) throws IOException {
+		this.authority = builder.host + ":" + builder.port;
+		this.address = new InetSocketAddress(builder.host, builder.port);
+		this.previewSize = builder.previewSize;
+		this.connectTimeout = builder.connectTimeout;
+		this.readTimeout = builder.readTimeout;
+		this.scheduler = builder.scheduler;
+		if (builder.bodyExecutor != null) {
+			this.bodyExecutor = builder.bodyExecutor;
+			this.ownedBodyExecutor = null;
+		} else {
+			this.ownedBodyExecutor = Executors.newCachedThreadPool(
+					new ThreadFactoryBuilder().setNameFormat("icap-body-" + authority + "-%d").setDaemon(true).build());
+			this.bodyExecutor = ownedBodyExecutor;
+		}
+		this.circuitBreaker = new CircuitBreaker(builder.failureThreshold, builder.openDuration, builder.time);
+		this.permits = new Semaphore(builder.maxConnections);
+		this.group = AsynchronousChannelGroup.withFixedThreadPool(builder.ioThreads,
+				new ThreadFactoryBuilder().setNameFormat("icap-" + authority + "-%d").setDaemon(true).build());
+
+		final int maxConnections = builder.maxConnections;
+		metrics.register("connections.idle", (Gauge<Integer>) idle::size);
+		metrics.register("requests.active", (Gauge<Integer>) () -> maxConnections - permits.availablePermits());
+		metrics.register("requests.waiting", (Gauge<Integer>) waiting::size);
+		metrics.register("circuit.open", (Gauge<Boolean>) circuitBreaker::isOpen);
+	}
+
+	/**
+	 * Returns a new builder of a client of the given server.
+	 *
+	 * @param host
+	 *            the ICAP server host
+	 * @param port
+	 *            the ICAP server port
+	 * @return a new builder
+	 */
+	public static Builder builder(String host, int port) {
+		return new Builder(host, port);
+	}
+
+	/**
+	 * Returns the statistics of the exchanges with the server: latency, errors of the server, failures to read the
+	 * request bodies, requests rejected by the open circuit, connections and pending requests.
+	 *
+	 * @return the statistics of the exchanges with the server
+	 */
+	public MetricRegistry getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sends a {@code REQMOD} request, encapsulating the given HTTP request.
+	 * <p>
+	 * The first bytes of the body (the preview) are read by the calling thread, the rest is only read if the server
+	 * asks for it. The body is not closed.
+	 *
+	 * @param service
+	 *            the ICAP service name
+	 * @param request
+	 *            the HTTP request, only its method, URI and headers are used
+	 * @param body
+	 *            the (decoded) HTTP request body, or {@code null} if there is none
+	 * @return a promise of the ICAP response, failed with an {@link IcapException} if the exchange has failed
+	 */
+	public Promise<IcapResponse, IcapException> reqmod(String service, Request request, InputStream body) {
+		if (!circuitBreaker.allowRequest()) {
+			shortCircuited.inc();
+			return newExceptionPromise(new IcapException("The ICAP server " + authority + " is unavailable"));
+		}
+		try {
+			Exchange exchange = new Exchange(head(service, request, body), body);
+			acquire(exchange::start);
+			return exchange.promise;
+		} catch (IOException e) {
+			// The body cannot be read: this is not a failure of the server
+			return newExceptionPromise(new IcapException("Cannot read the request body", e));
+		}
+	}
+
+	@Override
+	public void close() {
+		AsynchronousSocketChannel channel;
+		while ((channel = idle.poll()) != null) {
+			closeQuietly(channel);
+		}
+		group.shutdown();
+		if (ownedBodyExecutor != null) {
+			ownedBodyExecutor.shutdown();
+		}
+	}
+
+	/**
+	 * Returns the ICAP request head, the encapsulated HTTP request headers and the preview.
+	 */
+	private Head head(String service, Request request, InputStream body) throws IOException {
+		ByteArrayOutputStream http = new ByteArrayOutputStream();
+		String uri = request.getUri() != null ? request.getUri().asURI().toASCIIString() : "/";
+		write(http, request.getMethod() + " " + uri + " HTTP/1.1\r\n");
+		for (Map.Entry<String, Header> header : request.getHeaders().asMapOfHeaders().entrySet()) {
+			String name = header.getKey();
+			// The encapsulated body is decoded and chunked
+			if (ContentLengthHeader.NAME.equalsIgnoreCase(name)
+					|| TransferEncodingHeader.NAME.equalsIgnoreCase(name)
+					|| "Content-Encoding".equalsIgnoreCase(name)) {
+				continue;
+			}
+			for (String value : header.getValue().getValues()) {
+				write(http, name + ": " + value + "\r\n");
+			}
+		}
+		write(http, "\r\n");
+
+		PushbackInputStream pushback = null;
+		byte[] preview = new byte[0];
+		boolean complete = true;
+		if (body != null) {
+			pushback = new PushbackInputStream(body, 1);
+			byte[] buffer = new byte[previewSize + 1];
+			int length = readFully(pushback, buffer);
+			complete = length <= previewSize;
+			if (!complete) {
+				pushback.unread(buffer[previewSize]);
+				length = previewSize;
+			}
+			preview = Arrays.copyOf(buffer, length);
+		}
+		boolean nullBody = complete && preview.length == 0;
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		write(out, "REQMOD icap://" + authority + "/" + service + " ICAP/1.0\r\n");
+		write(out, "Host: " + authority + "\r\n");
+		write(out, "Allow: 204\r\n");
+		if (!nullBody) {
+			write(out, "Preview: " + preview.length + "\r\n");
+		}
+		write(out, "Encapsulated: req-hdr=0, " + (nullBody ? "null-body=" : "req-body=") + http.size() + "\r\n");
+		write(out, "\r\n");
+		http.writeTo(out);
+		if (!nullBody) {
+			if (preview.length > 0) {
+				writeChunk(out, preview, preview.length);
+			}
+			write(out, complete ? "0; ieof\r\n\r\n" : "0\r\n\r\n");
+		}
+		return new Head(out.toByteArray(), complete ? null : pushback);
+	}
+
+	private void acquire(Runnable start) {
+		if (permits.tryAcquire()) {
+			start.run();
+			return;
+		}
+		waiting.add(start);
+		// A connection may have been released in the meantime
+		drainWaiting();
+	}
+
+	private void release() {
+		Runnable next = waiting.poll();
+		if (next != null) {
+			// Hand the permit over
+			next.run();
+			return;
+		}
+		permits.release();
+		drainWaiting();
+	}
+
+	private void drainWaiting() {
+		while (!waiting.isEmpty() && permits.tryAcquire()) {
+			Runnable next = waiting.poll();
+			if (next == null) {
+				permits.release();
+			} else {
+				next.run();
+			}
+		}
+	}
+
+	/** The ICAP request head, up to the end of the preview. */
+	private static final class Head {
+		private final byte[] bytes;
+		/** The rest of the body, sent on {@code 100 Continue}, {@code null} if the preview holds the whole body. */
+		private final InputStream remainder;
+
+		private Head(byte[] bytes, InputStream remainder) {
+			this.bytes = bytes;
+			this.remainder = remainder;
+		}
+	}
+
+	/**
+	 * The state of an exchange: a request, and the parsing of its response.
+	 */
+	private final class Exchange {
+
+		private final PromiseImpl<IcapResponse, IcapException> promise = PromiseImpl.create();
+		private final AtomicBoolean completed = new AtomicBoolean();
+		private final Head head;
+		private final InputStream body;
+		private final long startNanos = System.nanoTime();
+
+		private AsynchronousSocketChannel channel;
+		private boolean reused;
+		private boolean retried;
+		private boolean continued;
+
+		private byte[] in = new byte[CHUNK_SIZE];
+		private int length;
+		private int position;
+
+		private int status;
+		private String message;
+		private Map<String, List<String>> headers;
+		private String httpStartLine;
+		private Map<String, List<String>> httpHeaders = new LinkedHashMap<>();
+		private int bodyOffset;
+		private boolean hasBody;
+		private final ByteArrayOutputStream httpBody = new ByteArrayOutputStream();
+
+		private Exchange(Head head, InputStream body) {
+			this.head = head;
+			this.body = body;
+		}
+
+		private void start() {
+			channel = idle.pollFirst();
+			if (channel != null && channel.isOpen()) {
+				reused = true;
+				sendHead();
+			} else {
+				reused = false;
+				connect();
+			}
+		}
+
+		private void connect() {
+			final AsynchronousSocketChannel opened;
+			try {
+				opened = AsynchronousSocketChannel.open(group);
+			} catch (IOException e) {
+				fail(e);
+				return;
+			}
+			channel = opened;
+			connections.inc();
+			final ScheduledFuture<?> timeout = (scheduler != null && connectTimeout > 0)
+					? scheduler.schedule(() -> closeQuietly(opened), connectTimeout, MILLISECONDS)
+					: null;
+			opened.connect(address, null, new CompletionHandler<Void, Void>() {
+				@Override
+				public void completed(Void result, Void attachment) {
+					if (timeout != null) {
+						timeout.cancel(false);
+					}
+					sendHead();
+				}
+
+				@Override
+				public void failed(Throwable e, Void attachment) {
+					if (timeout != null) {
+						timeout.cancel(false);
+					}
+					fail(new IcapException("Cannot connect to the ICAP server " + authority, e));
+				}
+			});
+		}
+
+		private void sendHead() {
+			write(ByteBuffer.wrap(head.bytes), this::readHead);
+		}
+
+		private void sendRemainder() {
+			try {
+				// Reading the body may block: not on the I/O completion threads
+				bodyExecutor.execute(this::readRemainder);
+			} catch (RejectedExecutionException e) {
+				abort(e);
+			}
+		}
+
+		private void readRemainder() {
+			byte[] chunk = new byte[CHUNK_SIZE];
+			int read;
+			try {
+				read = head.remainder.read(chunk);
+			} catch (IOException e) {
+				abort(e);
+				return;
+			}
+			if (read < 0) {
+				write(ByteBuffer.wrap("0\r\n\r\n".getBytes(ISO_8859_1)), this::readHead);
+				return;
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream(read + 16);
+			writeChunk(out, chunk, read);
+			write(ByteBuffer.wrap(out.toByteArray()), this::sendRemainder);
+		}
+
+		private void readHead() {
+			int end = indexOf(in, position, length, CRLFCRLF);
+			if (end < 0) {
+				if (length - position > MAX_HEAD_SIZE) {
+					fail(new IcapException("ICAP response head too large"));
+				} else {
+					read(this::readHead);
+				}
+				return;
+			}
+			String[] lines = new String(in, position, end - position, ISO_8859_1).split("\r\n");
+			position = end + CRLFCRLF.length;
+			String[] statusLine = lines[0].split(" ", 3);
+			if (statusLine.length < 2 || !statusLine[0].startsWith("ICAP/")) {
+				fail(new IcapException("Invalid ICAP status line: " + lines[0]));
+				return;
+			}
+			try {
+				status = Integer.parseInt(statusLine[1]);
+			} catch (NumberFormatException e) {
+				fail(new IcapException("Invalid ICAP status line: " + lines[0]));
+				return;
+			}
+			message = statusLine.length > 2 ? statusLine[2] : "";
+			if (status == 100) {
+				if (continued || head.remainder == null) {
+					fail(new IcapException("Unexpected 100 Continue response"));
+					return;
+				}
+				continued = true;
+				sendRemainder();
+				return;
+			}
+			headers = parseHeaders(lines, true);
+			if (!parseEncapsulated()) {
+				return;
+			}
+			readEncapsulatedHeaders();
+		}
+
+		private boolean parseEncapsulated() {
+			List<String> encapsulated = headers.get("encapsulated");
+			if (encapsulated == null || encapsulated.isEmpty()) {
+				// No encapsulated message (e.g. 204)
+				bodyOffset = 0;
+				hasBody = false;
+				return true;
+			}
+			for (String entry : encapsulated.get(0).split(",")) {
+				String[] pair = entry.trim().split("=");
+				if (pair.length != 2) {
+					continue;
+				}
+				String name = pair[0].trim().toLowerCase(Locale.ROOT);
+				int offset;
+				try {
+					offset = Integer.parseInt(pair[1].trim());
+				} catch (NumberFormatException e) {
+					fail(new IcapException("Invalid Encapsulated header: " + encapsulated.get(0)));
+					return false;
+				}
+				if (name.endsWith("-body")) {
+					bodyOffset = offset;
+					hasBody = !"null-body".equals(name);
+				}
+			}
+			return true;
+		}
+
+		private void readEncapsulatedHeaders() {
+			if (length - position < bodyOffset) {
+				read(this::readEncapsulatedHeaders);
+				return;
+			}
+			if (bodyOffset > 0) {
+				// Either the modified request headers or the response replacing it
+				String[] lines = new String(in, position, bodyOffset, ISO_8859_1).split("\r\n");
+				httpStartLine = lines[0];
+				httpHeaders = parseHeaders(lines, false);
+				position += bodyOffset;
+			}
+			if (hasBody) {
+				readChunks();
+			} else {
+				complete();
+			}
+		}
+
+		private void readChunks() {
+			while (true) {
+				int end = indexOf(in, position, length, CRLF);
+				if (end < 0) {
+					read(this::readChunks);
+					return;
+				}
+				String sizeLine = new String(in, position, end - position, ISO_8859_1);
+				int separator = sizeLine.indexOf(';');
+				int size;
+				try {
+					size = Integer.parseInt((separator >= 0 ? sizeLine.substring(0, separator) : sizeLine).trim(), 16);
+				} catch (NumberFormatException e) {
+					fail(new IcapException("Invalid chunk size: " + sizeLine));
+					return;
+				}
+				if (size == 0) {
+					// Last chunk, followed by optional trailers and an empty line
+					int last = indexOf(in, position, length, CRLFCRLF);
+					if (last < 0) {
+						read(this::readChunks);
+						return;
+					}
+					position = last + CRLFCRLF.length;
+					complete();
+					return;
+				}
+				int data = end + CRLF.length;
+				if (length - data < size + CRLF.length) {
+					read(this::readChunks);
+					return;
+				}
+				httpBody.write(in, data, size);
+				if (httpBody.size() > MAX_BODY_SIZE) {
+					fail(new IcapException("ICAP response body too large"));
+					return;
+				}
+				position = data + size + CRLF.length;
+			}
+		}
+
+		private void write(final ByteBuffer buffer, final Runnable then) {
+			channel.write(buffer, readTimeout, MILLISECONDS, null, new CompletionHandler<Integer, Void>() {
+				@Override
+				public void completed(Integer written, Void attachment) {
+					if (buffer.hasRemaining()) {
+						channel.write(buffer, readTimeout, MILLISECONDS, null, this);
+					} else {
+						then.run();
+					}
+				}
+
+				@Override
+				public void failed(Throwable e, Void attachment) {
+					fail(e);
+				}
+			});
+		}
+
+		private void read(final Runnable then) {
+			if (position > 0) {
+				// Compact the consumed bytes
+				System.arraycopy(in, position, in, 0, length - position);
+				length -= position;
+				position = 0;
+			}
+			if (length == in.length) {
+				in = Arrays.copyOf(in, in.length * 2);
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(in, length, in.length - length);
+			channel.read(buffer, readTimeout, MILLISECONDS, null, new CompletionHandler<Integer, Void>() {
+				@Override
+				public void completed(Integer read, Void attachment) {
+					if (read < 0) {
+						fail(new IcapException("Connection closed by the ICAP server " + authority));
+						return;
+					}
+					length += read;
+					then.run();
+				}
+
+				@Override
+				public void failed(Throwable e, Void attachment) {
+					fail(e);
+				}
+			});
+		}
+
+		private void complete() {
+			if (!completed.compareAndSet(false, true)) {
+				return;
+			}
+			List<String> connection = headers.get("connection");
+			if (connection != null && connection.contains("close")) {
+				closeQuietly(channel);
+			} else {
+				idle.offerFirst(channel);
+			}
+			release();
+			circuitBreaker.onSuccess();
+			latency.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+			promise.handleResult(new IcapResponse(status,
+					message,
+					headers,
+					httpStartLine,
+					httpHeaders,
+					httpBody.toByteArray()));
+		}
+
+		private void fail(Throwable e) {
+			closeQuietly(channel);
+			if (reused && !retried && !continued && length == 0) {
+				// The pooled connection has probably been closed by the server: retry on a new connection,
+				// the permit is kept
+				logger.debug("Retrying on a new connection to the ICAP server {}", authority, e);
+				retried = true;
+				reused = false;
+				connect();
+				return;
+			}
+			if (!completed.compareAndSet(false, true)) {
+				return;
+			}
+			release();
+			circuitBreaker.onFailure();
+			errors.inc();
+			latency.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+			promise.handleException(e instanceof IcapException
+					? (IcapException) e
+					: new IcapException("ICAP exchange with " + authority + " has failed", e));
+		}
+
+		/**
+		 * Ends the exchange when the request body cannot be read: the server has not failed, the circuit is left
+		 * as is. The connection is closed, as the request cannot be completed.
+		 */
+		private void abort(Exception e) {
+			closeQuietly(channel);
+			if (!completed.compareAndSet(false, true)) {
+				return;
+			}
+			release();
+			bodyErrors.inc();
+			promise.handleException(new IcapException("Cannot read the request body", e));
+		}
+	}
+
+	private static Map<String, List<String>> parseHeaders(String[] lines, boolean lowerCase) {
+		Map<String, List<String>> headers = new LinkedHashMap<>();
+		for (int i = 1; i < lines.length; i++) {
+			int colon = lines[i].indexOf(':');
+			if (colon <= 0) {
+				continue;
+			}
+			String name = lines[i].substring(0, colon).trim();
+			if (lowerCase) {
+				name = name.toLowerCase(Locale.ROOT);
+			}
+			headers.computeIfAbsent(name, k -> new ArrayList<>()).add(lines[i].substring(colon + 1).trim());
+		}
+		return headers;
+	}
+
+	private static int indexOf(byte[] bytes, int from, int to, byte[] pattern) {
+		outer:
+		for (int i = from; i <= to - pattern.length; i++) {
+			for (int j = 0; j < pattern.length; j++) {
+				if (bytes[i + j] != pattern[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	private static int readFully(InputStream in, byte[] buffer) throws IOException {
+		int total = 0;
+		while (total < buffer.length) {
+			int read = in.read(buffer, total, buffer.length - total);
+			if (read < 0) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	private static void writeChunk(ByteArrayOutputStream out, byte[] data, int length) {
+		write(out, Integer.toHexString(length) + "\r\n");
+		out.write(data, 0, length);
+		write(out, "\r\n");
+	}
+
+	private static void write(ByteArrayOutputStream out, String ascii) {
+		byte[] bytes = ascii.getBytes(ISO_8859_1);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	private static void closeQuietly(AsynchronousSocketChannel channel) {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			logger.trace("Cannot close the ICAP connection", e);
+		}
+	}
+
+	/**
+	 * Builds {@link IcapClient}s.
+	 */
+	public static final class Builder {
+		private final String host;
+		private final int port;
+		private int previewSize = DEFAULT_PREVIEW_SIZE;
+		private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+		private long connectTimeout = 5000L;
+		private long readTimeout = 15000L;
+		private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+		private long openDuration = DEFAULT_OPEN_DURATION;
+		private int ioThreads = Runtime.getRuntime().availableProcessors();
+		private ScheduledExecutorService scheduler;
+		private Executor bodyExecutor;
+		private TimeService time = TimeService.SYSTEM;
+
+		private Builder(String host, int port) {
+			this.host = host;
+			this.port = port;
+		}
+
+		/**
+		 * Sets the number of body bytes sent with the request, the rest being sent only if the server asks for it.
+		 *
+		 * @param previewSize
+		 *            the number of body bytes sent with the request
+		 * @return this builder
+		 */
+		public Builder previewSize(int previewSize) {
+			this.previewSize = previewSize;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of connections, which is also the maximum number of concurrent exchanges.
+		 *
+		 * @param maxConnections
+		 *            the maximum number of connections
+		 * @return this builder
+		 */
+		public Builder maxConnections(int maxConnections) {
+			this.maxConnections = maxConnections;
+			return this;
+		}
+
+		/**
+		 * Sets the connection timeout, enforced with the {@linkplain #scheduler(ScheduledExecutorService)
+		 * scheduler}.
+		 *
+		 * @param connectTimeout
+		 *            the connection timeout in milliseconds
+		 * @return this builder
+		 */
+		public Builder connectTimeout(long connectTimeout) {
+			this.connectTimeout = connectTimeout;
+			return this;
+		}
+
+		/**
+		 * Sets the timeout of each read and write operation.
+		 *
+		 * @param readTimeout
+		 *            the timeout in milliseconds
+		 * @return this builder
+		 */
+		public Builder readTimeout(long readTimeout) {
+			this.readTimeout = readTimeout;
+			return this;
+		}
+
+		/**
+		 * Sets the circuit breaker settings.
+		 *
+		 * @param failureThreshold
+		 *            the number of consecutive failures opening the circuit
+		 * @param openDuration
+		 *            the time the circuit stays open, in milliseconds
+		 * @return this builder
+		 */
+		public Builder circuitBreaker(int failureThreshold, long openDuration) {
+			this.failureThreshold = failureThreshold;
+			this.openDuration = openDuration;
+			return this;
+		}
+
+		/**
+		 * Sets the number of threads processing the I/O completions.
+		 *
+		 * @param ioThreads
+		 *            the number of threads processing the I/O completions
+		 * @return this builder
+		 */
+		public Builder ioThreads(int ioThreads) {
+			this.ioThreads = ioThreads;
+			return this;
+		}
+
+		/**
+		 * Sets the scheduler enforcing the connection timeout.
+		 *
+		 * @param scheduler
+		 *            the scheduler enforcing the connection timeout
+		 * @return this builder
+		 */
+		public Builder scheduler(ScheduledExecutorService scheduler) {
+			this.scheduler = scheduler;
+			return this;
+		}
+
+		/**
+		 * Sets the executor reading the rest of the request bodies, once the server has asked for it. As reading a
+		 * body may block, this executor should not be shared with non-blocking tasks. By default, the client uses its
+		 * own pool of threads.
+		 *
+		 * @param bodyExecutor
+		 *            the executor reading the rest of the request bodies
+		 * @return this builder
+		 */
+		public Builder bodyExecutor(Executor bodyExecutor) {
+			this.bodyExecutor = bodyExecutor;
+			return this;
+		}
+
+		Builder time(TimeService time) {
+			this.time = time;
+			return this;
+		}
+
+		/**
+		 * Builds the client.
+		 *
+		 * @return a new client
+		 * @throws IOException
+		 *             if the I/O threads cannot be created
+		 */
+		public IcapClient build() throws IOException {
+			return new IcapClient(this);
+		}
+	}
+}
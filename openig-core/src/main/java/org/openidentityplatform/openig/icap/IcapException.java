@@ -0,0 +1,50 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.icap;
+
+import java.io.IOException;
+
+/**
+ * Signals that an ICAP exchange has failed: the server cannot be reached, does not answer in time, answers with an
+ * invalid message, or is considered unavailable by the circuit breaker.
+ */
+public class IcapException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Builds a new exception.
+	 *
+	 * @param message
+	 *            the detail message
+	 */
+	public IcapException(String message) {
+		super(message);
+	}
+
+	/**
+	 * Builds a new exception.
+	 *
+	 * @param message
+	 *            the detail message
+	 * @param cause
+	 *            the cause
+	 */
+	public IcapException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.icap;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An ICAP response, with its encapsulated HTTP message if any.
+ */
+public class IcapResponse {
+
+	private final int status;
+	private final String message;
+	private final Map<String, List<String>> headers;
+	private final String httpStartLine;
+	private final Map<String, List<String>> httpHeaders;
+	private final byte[] httpBody;
+
+	IcapResponse(int status,
+			String message,
+			Map<String, List<String>> headers,
+			String httpStartLine,
+			Map<String, List<String>> httpHeaders,
+			byte[] httpBody) {
+		this.status = status;
+		this.message = message;
+		this.headers = Collections.unmodifiableMap(headers);
+		this.httpStartLine = httpStartLine;
+		this.httpHeaders = Collections.unmodifiableMap(httpHeaders);
+		this.httpBody = httpBody;
+	}
+
+	/**
+	 * Returns the ICAP status code: 204 when the message is allowed unmodified, 200 when it is modified.
+	 *
+	 * @return the ICAP status code
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns the ICAP reason phrase.
+	 *
+	 * @return the ICAP reason phrase
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * Returns the ICAP headers, keyed by their lower case name.
+	 *
+	 * @return the ICAP headers
+	 */
+	public Map<String, List<String>> getHeaders() {
+		return headers;
+	}
+
+	/**
+	 * Returns the start line of the encapsulated HTTP message (status line of a response, request line of a
+	 * request), or {@code null} if the response does not encapsulate any HTTP header.
+	 *
+	 * @return the start line of the encapsulated HTTP message, or {@code null}
+	 */
+	public String getHttpStartLine() {
+		return httpStartLine;
+	}
+
+	/**
+	 * Returns whether the encapsulated HTTP message is a response (for example a page replacing a blocked upload).
+	 *
+	 * @return {@code true} if the encapsulated HTTP message is a response
+	 */
+	public boolean isHttpResponse() {
+		return httpStartLine != null && httpStartLine.startsWith("HTTP/");
+	}
+
+	/**
+	 * Returns the status code of the encapsulated HTTP response, or -1 if there is none.
+	 *
+	 * @return the status code of the encapsulated HTTP response, or -1
+	 */
+	public int getHttpStatus() {
+		if (!isHttpResponse()) {
+			return -1;
+		}
+		String[] parts = httpStartLine.split(" ", 3);
+		try {
+			return parts.length > 1 ? Integer.parseInt(parts[1].trim()) : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns the reason phrase of the encapsulated HTTP response, or {@code null} if there is none.
+	 *
+	 * @return the reason phrase of the encapsulated HTTP response, or {@code null}
+	 */
+	public String getHttpReason() {
+		if (!isHttpResponse()) {
+			return null;
+		}
+		String[] parts = httpStartLine.split(" ", 3);
+		return parts.length > 2 ? parts[2].trim() : "";
+	}
+
+	/**
+	 * Returns the headers of the encapsulated HTTP message, with their original names.
+	 *
+	 * @return the headers of the encapsulated HTTP message
+	 */
+	public Map<String, List<String>> getHttpHeaders() {
+		return httpHeaders;
+	}
+
+	/**
+	 * Returns the (dechunked) body of the encapsulated HTTP message, empty if there is none.
+	 *
+	 * @return the body of the encapsulated HTTP message
+	 */
+	public byte[] getHttpBody() {
+		return httpBody;
+	}
+
+	@Override
+	public String toString() {
+		return "ICAP/1.0 " + status + " " + message + (httpStartLine != null ? " [" + httpStartLine + "]" : "");
+	}
+}
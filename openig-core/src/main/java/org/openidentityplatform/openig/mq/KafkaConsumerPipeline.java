@@ -0,0 +1,332 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.mq;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.forgerock.http.Handler;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.services.context.AttributesContext;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.promise.Promises;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Consumes the records of a topic as requests to a handler, with a bounded number of records in flight.
+ * <p>
+ * A record is in flight from the time it is dispatched until the promise returned by the handler is completed. When
+ * {@code maxInFlight} records are in flight, the rest of the polled records are not dispatched (the consumer seeks
+ * back to them), and the assigned partitions are paused (the consumer keeps polling, to stay in the group) until half
+ * of the records in flight have completed.
+ * <p>
+ * The offsets are committed by the consumer thread, and only up to the first record that has not completed yet: a
+ * record is never committed before it has been processed, at the price of processing some records again after a
+ * failure. A failed commit is retried by the next one. When {@code orderByKey} is set, the records with the same key
+ * are processed one after the other, in the partition order.
+ * <p>
+ * When the executor rejects a record, the consumer stops: the offsets are committed up to that record, so that it is
+ * consumed again by the next consumer of the partition.
+ */
+class KafkaConsumerPipeline implements Runnable, Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(KafkaConsumerPipeline.class);
+
+	private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+
+	private final Consumer<String, byte[]> consumer;
+	private final Collection<String> topics;
+	private final Function<ConsumerRecord<String, byte[]>, Request> toRequest;
+	private final Supplier<Handler> handler;
+	private final Executor executor;
+	private final int maxInFlight;
+	private final boolean orderByKey;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final ConcurrentMap<TopicPartition, PartitionOffsets> offsets = new ConcurrentHashMap<>();
+	/** Completion of the last dispatched record of each key, only updated by the consumer thread. */
+	private final ConcurrentMap<String, Promise<Void, NeverThrowsException>> tails = new ConcurrentHashMap<>();
+
+	private volatile boolean running = true;
+	private boolean paused;
+
+	KafkaConsumerPipeline(Consumer<String, byte[]> consumer,
+			Collection<String> topics,
+			Function<ConsumerRecord<String, byte[]>, Request> toRequest,
+			Supplier<Handler> handler,
+			Executor executor,
+			int maxInFlight,
+			boolean orderByKey) {
+		this.consumer = consumer;
+		this.topics = topics;
+		this.toRequest = toRequest;
+		this.handler = handler;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+		this.orderByKey = orderByKey;
+	}
+
+	int getInFlight() {
+		return inFlight.get();
+	}
+
+	@Override
+	public void run() {
+		try {
+			consumer.subscribe(topics, new ConsumerRebalanceListener() {
+				@Override
+				public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+					// Last chance to commit the processed records of these partitions
+					commit(partitions, true);
+					offsets.keySet().removeAll(partitions);
+				}
+
+				@Override
+				public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+					if (paused) {
+						consumer.pause(partitions);
+					}
+				}
+			});
+			while (running) {
+				dispatch(consumer.poll(POLL_TIMEOUT));
+				applyBackpressure();
+				commit(offsets.keySet(), false);
+			}
+		} catch (WakeupException e) {
+			if (running) {
+				throw e;
+			}
+		} catch (RuntimeException e) {
+			logger.error("The consumer of {} has failed", topics, e);
+		} finally {
+			try {
+				commit(offsets.keySet(), true);
+			} catch (RuntimeException e) {
+				logger.warn("Cannot commit the offsets of {}", topics, e);
+			}
+			consumer.close();
+		}
+	}
+
+	/**
+	 * Stops consuming: the consumer thread commits the processed records and closes the consumer.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		consumer.wakeup();
+	}
+
+	private void dispatch(final ConsumerRecords<String, byte[]> records) {
+		// The first record of each partition left undispatched, once maxInFlight records are in flight
+		final Map<TopicPartition, Long> undispatched = new HashMap<>();
+		for (ConsumerRecord<String, byte[]> record : records) {
+			final TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+			if (undispatched.containsKey(partition) || inFlight.get() >= maxInFlight) {
+				undispatched.putIfAbsent(partition, record.offset());
+			} else {
+				dispatch(partition, record);
+			}
+		}
+		// Polled again once the partitions are resumed
+		undispatched.forEach(consumer::seek);
+	}
+
+	private void dispatch(final TopicPartition partition, final ConsumerRecord<String, byte[]> record) {
+		if (logger.isTraceEnabled()) {
+			logger.trace("consume {}", record);
+		}
+		final PartitionOffsets partitionOffsets = offsets.computeIfAbsent(partition, p -> new PartitionOffsets());
+		partitionOffsets.dispatched(record.offset());
+		inFlight.incrementAndGet();
+
+		final PromiseImpl<Void, NeverThrowsException> done = PromiseImpl.create();
+		done.thenOnResult(ignored -> {
+			partitionOffsets.completed(record.offset());
+			inFlight.decrementAndGet();
+		});
+		final Runnable process = () -> execute(record, partitionOffsets, done);
+
+		final String key = record.key();
+		if (!orderByKey || key == null) {
+			process.run();
+			return;
+		}
+		done.thenOnResult(ignored -> tails.remove(key, done));
+		final Promise<Void, NeverThrowsException> previous = tails.put(key, done);
+		if (previous == null) {
+			process.run();
+		} else {
+			previous.thenOnResult(ignored -> process.run());
+		}
+	}
+
+	private void execute(final ConsumerRecord<String, byte[]> record,
+			final PartitionOffsets partitionOffsets,
+			final PromiseImpl<Void, NeverThrowsException> done) {
+		try {
+			executor.execute(() -> {
+				Promise<?, NeverThrowsException> processed;
+				try {
+					final Handler root = handler.get();
+					if (root == null) {
+						logger.info("process done: no handler for the record {}", record.offset());
+						processed = Promises.newResultPromise(null);
+					} else {
+						processed = root.handle(new AttributesContext(new RootContext()), toRequest.apply(record));
+					}
+				} catch (RuntimeException e) {
+					logger.error("error process message {}", record, e);
+					processed = Promises.newResultPromise(null);
+				}
+				processed.thenAlways(() -> done.handleResult(null));
+			});
+		} catch (RejectedExecutionException e) {
+			// Never commit past this record, and stop consuming: the next consumer of the partition consumes it again
+			if (running) {
+				logger.error("The record {} of {} cannot be processed: stopping the consumer", record.offset(),
+						record.topic(), e);
+			} else {
+				logger.warn("The record {} of {} cannot be processed", record.offset(), record.topic());
+			}
+			partitionOffsets.rejected(record.offset());
+			close();
+			done.handleResult(null);
+		}
+	}
+
+	private void applyBackpressure() {
+		int current = inFlight.get();
+		if (current >= maxInFlight) {
+			if (!paused) {
+				logger.debug("{} records in flight: pausing {}", current, topics);
+			}
+			// Also pauses the partitions assigned since the last call
+			consumer.pause(consumer.assignment());
+			paused = true;
+		} else if (paused && current <= maxInFlight / 2) {
+			logger.debug("{} records in flight: resuming {}", current, topics);
+			consumer.resume(consumer.paused());
+			paused = false;
+		}
+	}
+
+	private void commit(Collection<TopicPartition> partitions, boolean sync) {
+		final Map<TopicPartition, OffsetAndMetadata> commit = new HashMap<>();
+		final Map<PartitionOffsets, Long> requested = new IdentityHashMap<>();
+		for (TopicPartition partition : partitions) {
+			PartitionOffsets partitionOffsets = offsets.get(partition);
+			if (partitionOffsets == null) {
+				continue;
+			}
+			long committable = partitionOffsets.committable();
+			// A synchronous commit also covers the asynchronous commits not acknowledged yet
+			if (committable > (sync ? partitionOffsets.committed : partitionOffsets.requested)) {
+				commit.put(partition, new OffsetAndMetadata(committable));
+				requested.put(partitionOffsets, committable);
+				partitionOffsets.requested = committable;
+			}
+		}
+		if (commit.isEmpty()) {
+			return;
+		}
+		if (sync) {
+			consumer.commitSync(commit);
+			requested.forEach(PartitionOffsets::committed);
+		} else {
+			// The callback is invoked by the consumer thread
+			consumer.commitAsync(commit, (committed, e) -> {
+				if (e == null) {
+					requested.forEach(PartitionOffsets::committed);
+				} else {
+					logger.warn("Cannot commit the offsets {}: {}", committed, e.toString());
+					requested.forEach(PartitionOffsets::failed);
+				}
+			});
+		}
+	}
+
+	/**
+	 * The offsets of the records of a partition that have been dispatched and not yet completed.
+	 */
+	private static final class PartitionOffsets {
+		/** Guarded by this. */
+		private final TreeSet<Long> pending = new TreeSet<>();
+		/** The offset following the last dispatched record, guarded by this. */
+		private long next = -1L;
+		/** The last committed offset, only used by the consumer thread. */
+		private long committed = -1L;
+		/** The last offset requested to be committed, only used by the consumer thread. */
+		private long requested = -1L;
+		/** The first rejected record, never committed past, guarded by this. */
+		private long rejected = Long.MAX_VALUE;
+
+		synchronized void dispatched(long offset) {
+			pending.add(offset);
+			next = offset + 1;
+		}
+
+		synchronized void completed(long offset) {
+			pending.remove(offset);
+		}
+
+		void committed(long offset) {
+			committed = Math.max(committed, offset);
+			requested = Math.max(requested, offset);
+		}
+
+		void failed(long offset) {
+			if (requested == offset) {
+				// No later commit includes these offsets: the next one retries them
+				requested = committed;
+			}
+		}
+
+		synchronized void rejected(long offset) {
+			rejected = Math.min(rejected, offset);
+		}
+
+		/** Returns the offset to commit: the first record that has not completed yet, or has been rejected. */
+		synchronized long committable() {
+			return Math.min(pending.isEmpty() ? next : pending.first(), rejected);
+		}
+	}
+}
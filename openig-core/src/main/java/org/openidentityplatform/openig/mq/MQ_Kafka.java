@@ -1,15 +1,22 @@
 package org.openidentityplatform.openig.mq;
 
-import java.io.UnsupportedEncodingException;
+import static org.forgerock.openig.heap.Keys.SCHEDULED_EXECUTOR_SERVICE_HEAP_KEY;
+import static org.forgerock.openig.util.JsonValues.requiredHeapObject;
+
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.Properties;
@@ -21,6 +28,8 @@ import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.header.internals.RecordHeader;
 import org.forgerock.http.Handler;
 import org.forgerock.http.protocol.Header;
 import org.forgerock.http.protocol.Request;
@@ -35,6 +44,7 @@ import org.forgerock.services.context.Context;
 import org.forgerock.services.context.RootContext;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
 import org.forgerock.util.promise.Promises;
 import org.forgerock.util.promise.ResultHandler;
 import org.forgerock.util.promise.RuntimeExceptionHandler;
@@ -43,57 +53,118 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+/**
+ * Produces the requests to a Kafka topic ({@code topic.produce}), and consumes the records of a Kafka topic
+ * ({@code topic.consume}) as requests to the root handler.
+ * <p>
+ * The records are sent asynchronously: the response promise is completed once the producer callback is invoked, the
+ * request thread never waits for the broker. The callback is invoked on the producer I/O thread, so the promise is
+ * completed on the {@code executor} (the heap {@code ScheduledExecutorService} by default, if any): the filters and
+ * handlers chained to the response must not delay the sending of the next batches. With
+ * {@code "produce.mode": "fire-and-forget"}, the response is returned as soon as the record is buffered by the
+ * producer, without waiting for the broker acknowledgement. When the producer buffer ({@code buffer.memory}) is
+ * exhausted, or the topic metadata unavailable, for more than {@code max.block.ms}, the request is rejected with a
+ * {@code 503 Service Unavailable} response. The producer properties keep the Kafka defaults (60 seconds for
+ * {@code max.block.ms}) unless the route sets them: a lower {@code max.block.ms} rejects the requests sooner instead
+ * of holding their threads.
+ * <p>
+ * With {@code "consume.mode": "pipeline"}, the consumed records are processed by a {@link KafkaConsumerPipeline}:
+ * at most {@code consume.max.in.flight} records are processed at a time, their offsets are only committed once the
+ * route has responded, and {@code "consume.ordering": "key"} processes the records with the same key in order.
+ */
 public class MQ_Kafka implements Handler{
     private static final Logger logger = LoggerFactory.getLogger(MQ_Kafka.class);
 
+    static final String MODE_ACK = "ack";
+    static final String MODE_FIRE_AND_FORGET = "fire-and-forget";
+    static final String CONSUME_MODE_EXECUTOR = "executor";
+    static final String CONSUME_MODE_PIPELINE = "pipeline";
+
     Producer<String, byte[]> producer;
     
     String name;
     String topic;
+    boolean fireAndForget=false;
+    Executor executor=Runnable::run;
     
 	@Override
 	public Promise<Response, NeverThrowsException> handle(Context context, Request request) {
+		if (producer==null) {
+			logger.warn("{}: please config \"topic.produce\" ", name);
+			Response response = new Response(Status.NOT_IMPLEMENTED);
+		    return Promises.newResultPromise(response);
+		}
+		final String key=request.getHeaders().getFirst("correlation-id")==null?UUID.randomUUID().toString():request.getHeaders().getFirst("correlation-id");
+		final PromiseImpl<Response, NeverThrowsException> promise=PromiseImpl.create();
+		final Thread caller=Thread.currentThread();
 		try {
-			if (producer==null) {
-				logger.warn("{}: please config \"topic.produce\" ", name);
-				Response response = new Response(Status.NOT_IMPLEMENTED);
-			    return Promises.newResultPromise(response);
-			}
 			final List<org.apache.kafka.common.header.Header> headers=new ArrayList<org.apache.kafka.common.header.Header>();
 			for (Entry<String, Header> entry: request.getHeaders().asMapOfHeaders().entrySet()) {
-				headers.add(new org.apache.kafka.common.header.Header() {
-					@Override
-					public byte[] value() {
-						try {
-							return entry.getValue().getFirstValue().getBytes("UTF-8");
-						} catch (UnsupportedEncodingException e) {
-							throw new RuntimeException(e);
-						}
-					}
-					
-					@Override
-					public String key() {
-						return entry.getKey();
-					}
-				});
+				headers.add(new RecordHeader(entry.getKey(), entry.getValue().getFirstValue().getBytes(StandardCharsets.UTF_8)));
 			}
-			final String key=request.getHeaders().getFirst("correlation-id")==null?UUID.randomUUID().toString():request.getHeaders().getFirst("correlation-id");
-			final RecordMetadata record=producer.send(new ProducerRecord<String, byte[]>( topic, null,key,request.getEntity().getBytes(),headers)).get();
+			producer.send(new ProducerRecord<String, byte[]>( topic, null,key,request.getEntity().getBytes(),headers), (record, e) -> {
+				final Runnable completion=() -> {
+					if (e!=null) {
+						promise.handleResult(errorResponse(e));
+					}else {
+						promise.handleResult(acceptedResponse(key, record));
+					}
+				};
+				if (Thread.currentThread()==caller) {
+					// Failed within send() (buffer exhausted, serialization): not on the producer I/O thread
+					completion.run();
+					return;
+				}
+				try {
+					executor.execute(completion);
+				} catch (RejectedExecutionException re) {
+					logger.warn("{}: cannot complete the record {} off the producer thread: {}", name, key, re.toString());
+					completion.run();
+				}
+			});
+		}catch (Exception e) {
+			promise.handleResult(errorResponse(e));
+		}
+		if (fireAndForget && !promise.isDone()) {
+			// The record is buffered: do not wait for the broker
 			final Response response = new Response(Status.ACCEPTED);
 			response.getHeaders().add("correlation-id", key);
-			response.getHeaders().add("kafka-topic", record.topic());
+			response.getHeaders().add("kafka-topic", topic);
 			response.getHeaders().add("kafka-key", key);
-			response.getHeaders().add("kafka-offset", ""+record.offset());
-			response.getHeaders().add("kafka-timestamp", ""+record.timestamp());
-			response.getHeaders().add("kafka-timestamp-date", ""+new Date(record.timestamp()));
-		    return Promises.newResultPromise(response);
-		}catch (Exception e) {
-			logger.warn("An error occurred while processing the request: {}", e.toString());
-			final Response response = new Response(Status.INTERNAL_SERVER_ERROR);
-		    return Promises.newResultPromise(response);
+			promise.thenOnResult(result -> {
+				if (result.getStatus().isServerError()) {
+					logger.warn("{}: record {} has not been produced: {}", name, key, result.getCause()!=null?result.getCause().toString():result.getStatus());
+				}
+			});
+			return Promises.newResultPromise(response);
 		}
-		
-		
+		return promise;
+	}
+
+	private Response acceptedResponse(String key, RecordMetadata record) {
+		final Response response = new Response(Status.ACCEPTED);
+		response.getHeaders().add("correlation-id", key);
+		response.getHeaders().add("kafka-topic", record.topic());
+		response.getHeaders().add("kafka-key", key);
+		response.getHeaders().add("kafka-offset", ""+record.offset());
+		response.getHeaders().add("kafka-timestamp", ""+record.timestamp());
+		response.getHeaders().add("kafka-timestamp-date", ""+new Date(record.timestamp()));
+		return response;
+	}
+
+	private Response errorResponse(Exception e) {
+		if (e instanceof TimeoutException) {
+			// buffer.memory exhausted (or no broker metadata) for more than max.block.ms: let the client retry later
+			logger.warn("{}: the producer is saturated: {}", name, e.toString());
+			final Response response = new Response(Status.SERVICE_UNAVAILABLE);
+			response.getHeaders().add("Retry-After", "1");
+			response.setCause(e);
+			return response;
+		}
+		logger.warn("An error occurred while processing the request: {}", e.toString());
+		final Response response = new Response(Status.INTERNAL_SERVER_ERROR);
+		response.setCause(e);
+		return response;
 	}
 	
 	   /** Creates and initializes a client handler in a heap environment. */
@@ -109,83 +180,34 @@ public class MQ_Kafka implements Handler{
             evaluated = config.as(evaluatedWithHeapProperties());
 
             handler=new MQ_Kafka();
+            if (config.isDefined("executor")) {
+                handler.executor=config.get("executor").as(requiredHeapObject(heap, ScheduledExecutorService.class));
+            } else {
+                final ScheduledExecutorService executor=heap.get(SCHEDULED_EXECUTOR_SERVICE_HEAP_KEY, ScheduledExecutorService.class);
+                if (executor!=null) {
+                    handler.executor=executor;
+                }
+            }
             
             return handler;
         }
 
         ExecutorService consumeService = null;
         ExecutorService produceService = null;
+        KafkaConsumerPipeline pipeline = null;
         @Override
 		public void start() throws HeapException {
 			super.start();
 			if (evaluated.get("topic.consume")!=null && evaluated.get("topic.consume").asString()!=null && !evaluated.get("topic.consume").asString().isEmpty()) {
-				final int core=evaluated.get("core").defaultTo(Runtime.getRuntime().availableProcessors()*32).asInteger();
-				
-				produceService=new ThreadPoolExecutor(core, core,0L, TimeUnit.MILLISECONDS,new LinkedBlockingQueue<Runnable>(core*32000),new ThreadFactoryBuilder().setNameFormat(name+"-producer-%d").build());
-				consumeService=Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat(name+"-consumer-%d").build());
-				consumeService.submit( 
-					() -> { 
-						logger.info("start consumer");
-						final Properties propsConsumer = new Properties();
-						propsConsumer.setProperty("bootstrap.servers", evaluated.get("bootstrap.servers").defaultTo("localhost:9092").asString());
-						propsConsumer.setProperty("group.id", evaluated.get("group.id").defaultTo(Thread.currentThread().getName()).asString());
-						propsConsumer.setProperty("enable.auto.commit", evaluated.get("enable.auto.commit").defaultTo("true").asString());
-						propsConsumer.setProperty("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
-						propsConsumer.setProperty("value.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer");
-						for (Entry<String, Object> entry: evaluated.asMap(Object.class).entrySet()) {
-							if (!propsConsumer.containsKey(entry.getKey()) && entry.getValue()!=null) {
-								propsConsumer.setProperty(entry.getKey(),entry.getValue().toString());
-							}
-						} 
-						try (KafkaConsumer<String, byte[]> consumer = new KafkaConsumer<>(propsConsumer)){
-						    consumer.subscribe(Arrays.asList(evaluated.get("topic.consume").required().asString()));
-							while (true) {
-						         for (ConsumerRecord<String, byte[]> record : consumer.poll(Duration.ofMillis(Long.MAX_VALUE))) {
-						        	 produceService.submit(() -> {
-						        		 if (logger.isTraceEnabled() ) {
-							        		 logger.trace("consume {}",record);
-							             }
-							        	 try {
-								        	 final Request request=new Request();
-								        	 request.setMethod(evaluated.get("method").defaultTo("PUT").asString());
-								        	 request.setEntity(record.value());
-								        	 request.setUri(evaluated.get("uri").defaultTo("/"+name).asString());
-								        	 request.getHeaders().add("kafka-topic", record.topic());
-								        	 request.getHeaders().add("correlation-id", record.key()==null?UUID.randomUUID().toString():record.key());
-								        	 request.getHeaders().add("kafka-key", record.key());
-								        	 request.getHeaders().add("kafka-offset", ""+record.offset());
-								        	 request.getHeaders().add("kafka-timestamp", ""+record.timestamp());
-								        	 request.getHeaders().add("kafka-timestamp-date", ""+new Date(record.timestamp()));
-								        	 for (org.apache.kafka.common.header.Header header : record.headers()) {
-								        		 request.getHeaders().add(header.key(), new String(header.value(),"UTF-8"));
-								        	 } 
-								        	 
-								        	 if (HttpFrameworkServlet.getRootHandler()!=null) {
-									        	 HttpFrameworkServlet.getRootHandler().handle(new AttributesContext(new RootContext()), request)
-						                           .thenOnResult(new ResultHandler<Response>() {
-						                               @Override
-						                               public void handleResult(Response response) {
-						                               	logger.trace("process done");
-						                               }
-						                           })
-						                           .thenOnRuntimeException(new RuntimeExceptionHandler() {
-						                               @Override
-						                               public void handleRuntimeException(RuntimeException e) {
-						                                   logger.error("RuntimeException caught", e);
-						                               }
-						                           });
-						            		 }else {
-						            			 logger.info("process done: {}",request.getEntity().toString());
-						            		 }
-							        	 }catch (Exception e) {
-							        		 logger.error("error process message {}",e);
-										}
-						        	 });
-						         }
-						     }
-						}
-					}
-				);
+				final String consumeMode=evaluated.get("consume.mode").defaultTo(CONSUME_MODE_EXECUTOR).asString();
+				if (!CONSUME_MODE_EXECUTOR.equals(consumeMode) && !CONSUME_MODE_PIPELINE.equals(consumeMode)) {
+					throw new HeapException("\"consume.mode\" must be \""+CONSUME_MODE_EXECUTOR+"\" or \""+CONSUME_MODE_PIPELINE+"\"");
+				}
+				if (CONSUME_MODE_PIPELINE.equals(consumeMode)) {
+					startPipeline();
+				} else {
+					startExecutor();
+				}
 			}else {
 				logger.warn("{} ignore \"topic.consume\"",name);
 			}
@@ -201,16 +223,144 @@ public class MQ_Kafka implements Handler{
 			} 
 			
 			handler.topic=evaluated.get("topic.produce").asString();
+			final String mode=evaluated.get("produce.mode").defaultTo(MODE_ACK).asString();
+			if (!MODE_ACK.equals(mode) && !MODE_FIRE_AND_FORGET.equals(mode)) {
+				throw new HeapException("\"produce.mode\" must be \""+MODE_ACK+"\" or \""+MODE_FIRE_AND_FORGET+"\"");
+			}
+			handler.fireAndForget=MODE_FIRE_AND_FORGET.equals(mode);
 			if (handler.topic!=null && !handler.topic.isEmpty()) {
 				handler.producer = new KafkaProducer<>(propsProducer);
 			}
 			handler.name=name;
  		}
         
+		/**
+		 * Submits each polled record to a thread pool, with auto-commit: the records can be committed before they are
+		 * processed, and a slow route lets the queued records pile up.
+		 */
+		private void startExecutor() {
+			final int core=evaluated.get("core").defaultTo(Runtime.getRuntime().availableProcessors()*32).asInteger();
+			
+			produceService=new ThreadPoolExecutor(core, core,0L, TimeUnit.MILLISECONDS,new LinkedBlockingQueue<Runnable>(core*32000),new ThreadFactoryBuilder().setNameFormat(name+"-producer-%d").build());
+			consumeService=Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat(name+"-consumer-%d").build());
+			consumeService.submit( 
+				() -> { 
+					logger.info("start consumer");
+					final Properties propsConsumer = new Properties();
+					propsConsumer.setProperty("bootstrap.servers", evaluated.get("bootstrap.servers").defaultTo("localhost:9092").asString());
+					propsConsumer.setProperty("group.id", evaluated.get("group.id").defaultTo(Thread.currentThread().getName()).asString());
+					propsConsumer.setProperty("enable.auto.commit", evaluated.get("enable.auto.commit").defaultTo("true").asString());
+					propsConsumer.setProperty("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+					propsConsumer.setProperty("value.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer");
+					for (Entry<String, Object> entry: evaluated.asMap(Object.class).entrySet()) {
+						if (!propsConsumer.containsKey(entry.getKey()) && entry.getValue()!=null) {
+							propsConsumer.setProperty(entry.getKey(),entry.getValue().toString());
+						}
+					} 
+					try (KafkaConsumer<String, byte[]> consumer = new KafkaConsumer<>(propsConsumer)){
+					    consumer.subscribe(Arrays.asList(evaluated.get("topic.consume").required().asString()));
+						while (true) {
+					         for (ConsumerRecord<String, byte[]> record : consumer.poll(Duration.ofMillis(Long.MAX_VALUE))) {
+					        	 produceService.submit(() -> {
+					        		 if (logger.isTraceEnabled() ) {
+						        		 logger.trace("consume {}",record);
+						             }
+						        	 try {
+							        	 final Request request=toRequest(record);
+							        	 
+							        	 if (HttpFrameworkServlet.getRootHandler()!=null) {
+								        	 HttpFrameworkServlet.getRootHandler().handle(new AttributesContext(new RootContext()), request)
+					                           .thenOnResult(new ResultHandler<Response>() {
+					                               @Override
+					                               public void handleResult(Response response) {
+					                               	logger.trace("process done");
+					                               }
+					                           })
+					                           .thenOnRuntimeException(new RuntimeExceptionHandler() {
+					                               @Override
+					                               public void handleRuntimeException(RuntimeException e) {
+					                                   logger.error("RuntimeException caught", e);
+					                               }
+					                           });
+					            		 }else {
+					            			 logger.info("process done: {}",request.getEntity().toString());
+					            		 }
+						        	 }catch (Exception e) {
+						        		 logger.error("error process message {}",e);
+									}
+					        	 });
+					         }
+					     }
+					}
+				}
+			);
+		}
+
+		/**
+		 * Consumes the records with a {@link KafkaConsumerPipeline}: bounded records in flight, offsets committed once
+		 * processed.
+		 */
+		private void startPipeline() {
+			final int threads=evaluated.get("core").defaultTo(Runtime.getRuntime().availableProcessors()).asInteger();
+			final int maxInFlight=evaluated.get("consume.max.in.flight").defaultTo(1000).asInteger();
+			final boolean orderByKey="key".equals(evaluated.get("consume.ordering").defaultTo("none").asString());
+
+			final Properties propsConsumer = new Properties();
+			propsConsumer.setProperty("bootstrap.servers", evaluated.get("bootstrap.servers").defaultTo("localhost:9092").asString());
+			propsConsumer.setProperty("group.id", evaluated.get("group.id").defaultTo(name+"-consumer").asString());
+			// The offsets are committed by the pipeline, once the records are processed
+			propsConsumer.setProperty("enable.auto.commit", "false");
+			propsConsumer.setProperty("max.poll.records", evaluated.get("max.poll.records").defaultTo(""+Math.min(500, maxInFlight)).asString());
+			propsConsumer.setProperty("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+			propsConsumer.setProperty("value.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer");
+			for (Entry<String, Object> entry: evaluated.asMap(Object.class).entrySet()) {
+				if (!propsConsumer.containsKey(entry.getKey()) && entry.getValue()!=null) {
+					propsConsumer.setProperty(entry.getKey(),entry.getValue().toString());
+				}
+			}
+
+			produceService=Executors.newFixedThreadPool(threads,new ThreadFactoryBuilder().setNameFormat(name+"-producer-%d").build());
+			consumeService=Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat(name+"-consumer-%d").build());
+			pipeline=new KafkaConsumerPipeline(new KafkaConsumer<>(propsConsumer),
+					Arrays.asList(evaluated.get("topic.consume").required().asString()),
+					this::toRequest,
+					HttpFrameworkServlet::getRootHandler,
+					produceService,
+					maxInFlight,
+					orderByKey);
+			logger.info("start consumer pipeline: max.in.flight={} ordering={}",maxInFlight,orderByKey?"key":"none");
+			consumeService.submit(pipeline);
+		}
+
+		Request toRequest(ConsumerRecord<String, byte[]> record) {
+			final Request request=new Request();
+			request.setMethod(evaluated.get("method").defaultTo("PUT").asString());
+			request.setEntity(record.value());
+			try {
+				request.setUri(evaluated.get("uri").defaultTo("/"+name).asString());
+			} catch (URISyntaxException e) {
+				throw new IllegalArgumentException(e);
+			}
+			request.getHeaders().add("kafka-topic", record.topic());
+			request.getHeaders().add("correlation-id", record.key()==null?UUID.randomUUID().toString():record.key());
+			request.getHeaders().add("kafka-key", record.key());
+			request.getHeaders().add("kafka-offset", ""+record.offset());
+			request.getHeaders().add("kafka-timestamp", ""+record.timestamp());
+			request.getHeaders().add("kafka-timestamp-date", ""+new Date(record.timestamp()));
+			for (org.apache.kafka.common.header.Header header : record.headers()) {
+				request.getHeaders().add(header.key(), new String(header.value(),StandardCharsets.UTF_8));
+			}
+			return request;
+		}
+
         @Override
         public void destroy() {
             super.destroy();
             
+            if (pipeline!=null) {
+            	pipeline.close();
+            	pipeline=null;
+            }
             if (consumeService!=null) {
             	consumeService.shutdown();
             	try {
@@ -0,0 +1,318 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.websocket;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.forgerock.http.Handler;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.http.servlet.HttpFrameworkServlet;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.promise.ResultHandler;
+import org.forgerock.util.promise.RuntimeExceptionHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Authorizes the WebSocket connections with the gateway route, and re-authorizes them in the background.
+ * <p>
+ * Every handshake runs the route. The connections of the same user (same URI, {@code Authorization} and
+ * {@code Cookie} headers) then share a single decision, which is refreshed once per TTL (with a jitter, so that the
+ * refreshes of the connections opened together are spread over time). A refresh keeps the last known good decision
+ * when the route fails (exception, server error, or no response within the timeout), and notifies the connections
+ * only when the route explicitly denies the access. The refreshes, denials and failures are measured in the
+ * {@linkplain ServerEndPoint#getMetrics() WebSocket proxy metrics}, under {@code websocket.authorizations.*}.
+ */
+class Authorizations {
+	static final Logger logger=LoggerFactory.getLogger(Authorizations.class);
+
+	static final String TTL_PROPERTY="org.openidentityplatform.openig.websocket.ttl";
+	static final String TIMEOUT_PROPERTY="org.openidentityplatform.openig.websocket.timeout";
+
+	/** The refreshes are scheduled between 90% and 110% of the TTL. */
+	static final double JITTER=0.1;
+
+	static final Authorizations shared=new Authorizations(
+			new Supplier<Handler>() {
+				@Override
+				public Handler get() {
+					return HttpFrameworkServlet.getGatewayHttpFrameworkServlet().handler;
+				}
+			},
+			Executors.newScheduledThreadPool(2,new ThreadFactoryBuilder().setNameFormat("websocket-authorization-%d").setDaemon(true).build()),
+			Long.parseLong(System.getProperty(TTL_PROPERTY, "180"))*1000,
+			Long.parseLong(System.getProperty(TIMEOUT_PROPERTY, "30"))*1000,
+			ServerEndPoint.metrics);
+
+	/**
+	 * Creates the {@link #shared} authorizations if needed, and so registers their metrics with the
+	 * {@linkplain ServerEndPoint#getMetrics() WebSocket proxy metrics}.
+	 */
+	static void init() {
+		// Invoking a static method initializes the class, and so creates the shared authorizations
+	}
+
+	final Supplier<Handler> handler;
+	final ScheduledExecutorService scheduler;
+	final long ttl;
+	final long timeout;
+
+	final ConcurrentMap<String, Decision> decisions=new ConcurrentHashMap<>();
+
+	final Timer refreshes;
+	final Counter denied;
+	final Counter failed;
+
+	Authorizations(Supplier<Handler> handler, ScheduledExecutorService scheduler, long ttl, long timeout,
+			MetricRegistry metrics) {
+		this.handler=handler;
+		this.scheduler=scheduler;
+		this.ttl=ttl;
+		this.timeout=timeout;
+		this.refreshes=metrics.timer("websocket.authorizations.refreshes");
+		this.denied=metrics.counter("websocket.authorizations.denied");
+		this.failed=metrics.counter("websocket.authorizations.failed");
+		metrics.register("websocket.authorizations.shared", (Gauge<Integer>) decisions::size);
+	}
+
+	/**
+	 * Returns the decision of the principal: the first call (the handshake) runs the route, the next calls return the
+	 * last decision without blocking. Only the background refresh of an authorized connection is shared.
+	 */
+	Status authorize(Principal principal) throws InterruptedException, ExecutionException {
+		Decision decision=principal.decision;
+		if (decision!=null) {
+			return decision.status;
+		}
+		final Status status=handler.get().handle(principal.context, principal.request).get().getStatus();
+		if (status.getCode()!=101) {
+			// Denials are not shared: the user may be authorized on the next attempt
+			return status;
+		}
+		decision=share(new Decision(key(principal.request), principal.context, principal.request, status));
+		principal.decision=decision;
+		return decision.status;
+	}
+
+	/**
+	 * Notifies the listener when the access of the principal is revoked, until it is unsubscribed.
+	 */
+	void subscribe(Principal principal, Consumer<Status> listener) {
+		Decision decision=principal.decision;
+		if (decision==null) {
+			return;
+		}
+		synchronized (decision) {
+			if (!decision.dropped) {
+				decision.listeners.add(listener);
+				return;
+			}
+		}
+		if (decision.status.getCode()!=101) {
+			listener.accept(decision.status);
+			return;
+		}
+		// The decision has been dropped meanwhile: share its status again
+		decision=share(new Decision(decision.key, principal.context, principal.request, decision.status));
+		principal.decision=decision;
+		subscribe(principal, listener);
+	}
+
+	void unsubscribe(Principal principal, Consumer<Status> listener) {
+		final Decision decision=principal.decision;
+		if (decision!=null) {
+			decision.listeners.remove(listener);
+		}
+	}
+
+	Decision share(Decision decision) {
+		if (decision.key!=null) {
+			final Decision existing=decisions.putIfAbsent(decision.key, decision);
+			if (existing!=null) {
+				existing.status=decision.status;
+				return existing;
+			}
+		}
+		schedule(decision);
+		return decision;
+	}
+
+	void schedule(final Decision decision) {
+		final long delay=(long) (ttl*(1-JITTER+2*JITTER*ThreadLocalRandom.current().nextDouble()));
+		try {
+			scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					refresh(decision);
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			logger.warn("cannot schedule the websocket re-authorization: {}",e.toString());
+			drop(decision);
+		}
+	}
+
+	void refresh(final Decision decision) {
+		synchronized (decision) {
+			if (decision.listeners.isEmpty()) {
+				drop(decision);
+				return;
+			}
+		}
+		final Timer.Context time=refreshes.time();
+		// The first of the response, the failure and the timeout settles the refresh, and schedules the next one
+		final AtomicBoolean settled=new AtomicBoolean();
+		final ScheduledFuture<?> expiry;
+		try {
+			expiry=scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					if (settled.compareAndSet(false, true)) {
+						time.stop();
+						failed(decision, new TimeoutException("no response within "+timeout+" ms"));
+					}
+				}
+			}, timeout, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			logger.warn("cannot schedule the websocket re-authorization: {}",e.toString());
+			drop(decision);
+			return;
+		}
+		try {
+			handler.get().handle(decision.context, decision.request)
+				.thenOnResult(new ResultHandler<Response>() {
+					@Override
+					public void handleResult(Response response) {
+						if (settle(settled, expiry, time)) {
+							refreshed(decision, response.getStatus());
+						}
+					}
+				})
+				.thenOnRuntimeException(new RuntimeExceptionHandler() {
+					@Override
+					public void handleRuntimeException(RuntimeException e) {
+						if (settle(settled, expiry, time)) {
+							failed(decision, e);
+						}
+					}
+				});
+		} catch (RuntimeException e) {
+			if (settle(settled, expiry, time)) {
+				failed(decision, e);
+			}
+		}
+	}
+
+	static boolean settle(AtomicBoolean settled, ScheduledFuture<?> expiry, Timer.Context time) {
+		if (!settled.compareAndSet(false, true)) {
+			// Already timed out: the next refresh is scheduled
+			return false;
+		}
+		expiry.cancel(false);
+		time.stop();
+		return true;
+	}
+
+	void refreshed(Decision decision, Status status) {
+		if (status.getCode()==101) {
+			decision.status=status;
+			schedule(decision);
+		} else if (Status.Family.SERVER_ERROR.equals(status.getFamily())) {
+			failed(decision, status);
+		} else {
+			logger.debug("websocket access revoked {}: {}",decision.request.getUri(),status);
+			denied.inc();
+			decision.status=status;
+			drop(decision);
+			for (Consumer<Status> listener : decision.listeners) {
+				try {
+					listener.accept(status);
+				} catch (RuntimeException e) {
+					logger.warn("websocket revocation error: {}",e.toString());
+				}
+			}
+		}
+	}
+
+	void failed(Decision decision, Object cause) {
+		// Keep the last known good decision until the next refresh
+		logger.warn("websocket re-authorization error {}: {}",decision.request.getUri(),String.valueOf(cause));
+		failed.inc();
+		schedule(decision);
+	}
+
+	void drop(Decision decision) {
+		synchronized (decision) {
+			decision.dropped=true;
+		}
+		if (decision.key!=null) {
+			decisions.remove(decision.key, decision);
+		}
+	}
+
+	static String key(Request request) {
+		final String authorization=request.getHeaders().getFirst("Authorization");
+		final String cookie=request.getHeaders().getFirst("Cookie");
+		if (authorization==null && cookie==null) {
+			// Anonymous connections may be told apart by anything else: they do not share their decision
+			return null;
+		}
+		return request.getUri()+"\n"+authorization+"\n"+cookie;
+	}
+
+	/**
+	 * The decision of the route for one or several connections of the same user.
+	 */
+	static final class Decision {
+		final String key;
+		final Context context;
+		final Request request;
+		final Set<Consumer<Status>> listeners=ConcurrentHashMap.newKeySet();
+
+		volatile Status status;
+		/** Guarded by this: once dropped, the decision is not refreshed anymore. */
+		boolean dropped=false;
+
+		Decision(String key, Context context, Request request, Status status) {
+			this.key=key;
+			this.context=context;
+			this.request=request;
+			this.status=status;
+		}
+	}
+}
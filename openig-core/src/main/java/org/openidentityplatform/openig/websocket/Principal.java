@@ -4,7 +4,6 @@ import java.util.concurrent.ExecutionException;
 
 import org.forgerock.http.protocol.Request;
 import org.forgerock.http.protocol.Status;
-import org.forgerock.http.servlet.HttpFrameworkServlet;
 import org.forgerock.services.context.Context;
 
 public class Principal implements java.security.Principal {
@@ -14,8 +13,13 @@ public class Principal implements java.security.Principal {
 	final Request request;
 	
 	public Principal(final Context context,final Request request) {
+		this(context,request,Authorizations.shared);
+	}
+
+	Principal(final Context context,final Request request,final Authorizations authorizations) {
 		this.context=context;
 		this.request=request;
+		this.authorizations=authorizations;
 	}
 	
 	@Override
@@ -23,19 +27,10 @@ public class Principal implements java.security.Principal {
 		return null;
 	}
 	
-	long lastAuthorize=0;
-	Status res=null;
+	final Authorizations authorizations;
+	volatile Authorizations.Decision decision=null;
 
 	public Status authorize() throws InterruptedException, ExecutionException {
-		final Long ttl=Long.parseLong(System.getProperty("org.openidentityplatform.openig.websocket.ttl", "180"))*1000; 
-		if (res==null || System.currentTimeMillis()-lastAuthorize>=ttl) {
-			synchronized (this) {
-				if (res==null || (System.currentTimeMillis()-lastAuthorize)>=ttl) {
-					res=HttpFrameworkServlet.getGatewayHttpFrameworkServlet().handler.handle(context, request).get().getStatus();
-					lastAuthorize=System.currentTimeMillis();
-				}
-			}
-		}
-		return res;
+		return authorizations.authorize(this);
 	}
 }
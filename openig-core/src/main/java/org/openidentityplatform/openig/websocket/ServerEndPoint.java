@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2022-2025 3A Systems LLC.
+ * Portions copyright 2026 3A Systems LLC.
  */
 
 package org.openidentityplatform.openig.websocket;
@@ -28,6 +29,7 @@ import jakarta.websocket.OnMessage;
 import jakarta.websocket.OnOpen;
 import jakarta.websocket.Session;
 import org.forgerock.http.protocol.Header;
+import org.forgerock.http.protocol.Status;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,14 +40,40 @@ import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
 
 
 @ServerEndpoint(value = "/{level1}",configurator = Configurator.class)
 public class ServerEndPoint {
 	static Logger logger=LoggerFactory.getLogger(ServerEndPoint.class); 
 	
+	static final MetricRegistry metrics=new MetricRegistry();
+	static final Counter connections=metrics.counter("websocket.connections");
+	
+	/**
+	 * Returns the metrics of the WebSocket proxy: the open connections ({@code websocket.connections}), the messages and
+	 * bytes received from the clients and from the upstreams ({@code websocket.client.*}, {@code websocket.upstream.*})
+	 * and the re-authorizations ({@code websocket.authorizations.*}). They are exposed by the administration endpoint
+	 * {@code /openig/api/system/websocket/metrics}.
+	 *
+	 * @return the metrics of the WebSocket proxy
+	 */
+	public static MetricRegistry getMetrics() {
+		// Registers the re-authorization metrics before the first connection
+		Authorizations.init();
+		return metrics;
+	}
+	
 	Principal principal=null;
-	Session session_upstream=null;
+	volatile Session session_upstream=null;
+	volatile WebSocketRelay relay_upstream=null;
+	volatile WebSocketRelay relay_client=null;
+	final AtomicBoolean open=new AtomicBoolean();
+	Consumer<Status> revocation=null;
 	
 	public void authorize() throws Exception {
 		if (principal==null || principal.authorize().getCode()!=101) {
@@ -63,6 +91,21 @@ public class ServerEndPoint {
     public void start(Session session_client, EndpointConfig config) {
     	principal=((Principal)session_client.getUserPrincipal());
     	logger.debug("client open {}: {}",session_client.getRequestURI(),session_client.getId());
+    	if (open.compareAndSet(false, true)) {
+    		connections.inc();
+    	}
+    	if (principal!=null) {
+    		revocation=new Consumer<Status>() {
+    			@Override
+    			public void accept(Status status) {
+    				logger.debug("client access revoked {} {}: {}",session_client.getRequestURI(),session_client.getId(),status);
+    				try {
+    					session_client.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY,"access revoked"));
+    				} catch (Throwable e) {}
+    			}
+    		};
+    		principal.authorizations.subscribe(principal, revocation);
+    	}
 
     	session_client.setMaxTextMessageBufferSize(1024*1024);
     	session_client.setMaxIdleTimeout(30*60*1000);
@@ -92,14 +135,15 @@ public class ServerEndPoint {
 							logger.debug("upstream open {} {}",principal.request.getUri().asURI(),session_upstream.getId());
             				session_upstream.setMaxTextMessageBufferSize(session_client.getMaxTextMessageBufferSize());
             				session_upstream.setMaxIdleTimeout(session_client.getMaxIdleTimeout());
-            				session_upstream.addMessageHandler(new MessageHandler.Whole<String>() {
-            		            public void onMessage(String message) {
+            				relay_upstream=new WebSocketRelay("upstream",session_upstream,session_client,WebSocketRelay.defaultWindow());
+            				session_upstream.addMessageHandler(new MessageHandler.Partial<String>() {
+            		            public void onMessage(String message, boolean last) {
             		            	try {
             		            		if (logger.isTraceEnabled()) {
             		            			logger.trace("->{}: {}",principal.request.getUri().asURI(),message);
             		            		}
             		            		authorize();
-           		                    	session_client.getBasicRemote().sendText(message);
+            		            		relay_upstream.onText(message, last);
             		                } catch (Throwable e) {
             		                	try {
             		                    	session_client.close(new CloseReason(CloseReason.CloseCodes.CLOSED_ABNORMALLY,"upstream message error: "+e.toString()));
@@ -112,14 +156,14 @@ public class ServerEndPoint {
             		            }
             		        });
             		    	
-            				session_upstream.addMessageHandler(new MessageHandler.Whole<ByteBuffer>() {
-            		            public void onMessage(ByteBuffer message) {
+            				session_upstream.addMessageHandler(new MessageHandler.Partial<ByteBuffer>() {
+            		            public void onMessage(ByteBuffer message, boolean last) {
             		            	try {
             		            		if (logger.isTraceEnabled()) {
-            		            			logger.trace("->{}: {}",principal.request.getUri().asURI(),message.capacity());
+            		            			logger.trace("->{}: {}",principal.request.getUri().asURI(),message.remaining());
             		            		}
             		            		authorize();
-           		                    	session_client.getBasicRemote().sendBinary(message);
+            		            		relay_upstream.onBinary(message, last);
             		                } catch (Throwable e) {
             		                	try {
             		                    	session_client.close(new CloseReason(CloseReason.CloseCodes.CLOSED_ABNORMALLY,"upstream message error: "+e.toString()));
@@ -143,6 +187,7 @@ public class ServerEndPoint {
             		configBuilder.build(),
             		principal.request.getUri().asURI()
             		);
+        	this.relay_client=new WebSocketRelay("client",session_client,session_upstream,WebSocketRelay.defaultWindow());
         } catch (Exception e) {
         	logger.error("{}: {}",principal.request.getUri().asURI(),e.toString());
         	try {
@@ -154,6 +199,7 @@ public class ServerEndPoint {
     @OnClose
     public void end(Session session_client,CloseReason reason) throws IOException {
     	logger.debug("client close {} {}: {}",session_client.getRequestURI(),session_client.getId(),reason);
+    	closeRelays(session_client);
 
 		try {
 			session_upstream.close(reason);
@@ -165,6 +211,7 @@ public class ServerEndPoint {
     
     @OnError
     public void onError(Session session_client,Throwable t) throws Throwable {
+    	closeRelays(session_client);
     	try {
        		session_client.close();
         } catch (Throwable e1) {}
@@ -176,6 +223,27 @@ public class ServerEndPoint {
 		}
     }
     
+    void closeRelays(Session session_client) {
+    	if (open.compareAndSet(true, false)) {
+    		connections.dec();
+    	}
+    	if (principal!=null && revocation!=null) {
+    		principal.authorizations.unsubscribe(principal, revocation);
+    	}
+    	final WebSocketRelay client=relay_client;
+    	final WebSocketRelay upstream=relay_upstream;
+    	if (client!=null) {
+    		client.close();
+    	}
+    	if (upstream!=null) {
+    		upstream.close();
+    	}
+    	if (client!=null && upstream!=null) {
+    		logger.debug("client {} relayed: {} messages ({} bytes) from client, {} messages ({} bytes) from upstream",
+    				session_client.getId(),client.getMessageCount(),client.getByteCount(),upstream.getMessageCount(),upstream.getByteCount());
+    	}
+    }
+    
     @OnMessage
     public void echoTextMessage(Session session_client,String msg, boolean last) {
     	if (logger.isTraceEnabled()) {
@@ -183,11 +251,11 @@ public class ServerEndPoint {
     	}
         try {
         	int ct=0;
-        	while ((ct++<5000)&&(session_upstream==null || !session_upstream.isOpen())) {
+        	while ((ct++<5000)&&(relay_client==null || !session_upstream.isOpen())) {
         		Thread.sleep(1);
         	}
         	authorize();
-           	session_upstream.getBasicRemote().sendText(msg, last);
+        	relay_client.onText(msg, last);
         } catch (Throwable e) {
         	try {
            		session_client.close(new CloseReason(CloseReason.CloseCodes.CLOSED_ABNORMALLY,"client message error: "+e.toString()));
@@ -204,15 +272,15 @@ public class ServerEndPoint {
     @OnMessage
     public void echoBinaryMessage(Session session_client,ByteBuffer bb,boolean last) {
     	if (logger.isTraceEnabled()) {
-    		logger.trace("->{}: {}",session_client.getRequestURI(),bb.capacity());
+    		logger.trace("->{}: {}",session_client.getRequestURI(),bb.remaining());
     	}
         try {
         	int ct=0;
-        	while ((ct++<5000)&&(session_upstream==null || !session_upstream.isOpen())) {
+        	while ((ct++<5000)&&(relay_client==null || !session_upstream.isOpen())) {
         		Thread.sleep(1);
         	}
         	authorize();
-            session_upstream.getBasicRemote().sendBinary(bb, last);
+        	relay_client.onBinary(bb, last);
         } catch (Throwable e) {
         	try {
            		session_client.close(new CloseReason(CloseReason.CloseCodes.CLOSED_ABNORMALLY,"client message error: "+e.toString()));
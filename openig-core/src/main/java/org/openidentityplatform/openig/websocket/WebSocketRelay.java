@@ -0,0 +1,249 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.websocket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+
+/**
+ * Relays the frames received from a source session to a target session, in order.
+ * <p>
+ * Complete messages are sent with the asynchronous remote of the target, one at a time, and queued meanwhile. The
+ * queued bytes are bounded by the window: when it is full, the thread delivering the frames of the source waits for
+ * the target, so that the container stops reading the source instead of buffering. The fragments of a message
+ * delivered in several parts are sent as they arrive, once the queued messages have been sent.
+ */
+class WebSocketRelay {
+	static final Logger logger=LoggerFactory.getLogger(WebSocketRelay.class);
+
+	static final String WINDOW_PROPERTY="org.openidentityplatform.openig.websocket.window";
+
+	static long defaultWindow() {
+		return Long.parseLong(System.getProperty(WINDOW_PROPERTY, String.valueOf(1024*1024)));
+	}
+
+	final Session source;
+	final Session target;
+	final long window;
+
+	final Counter messages=new Counter();
+	final Counter bytes=new Counter();
+	final Counter totalMessages;
+	final Counter totalBytes;
+
+	final ArrayDeque<Frame> queue=new ArrayDeque<>();
+	final SendHandler onSent=new SendHandler() {
+		@Override
+		public void onResult(SendResult result) {
+			sent(result);
+		}
+	};
+
+	long queuedBytes=0;
+	boolean sending=false;
+	boolean fragmented=false;
+	Throwable failure=null;
+
+	WebSocketRelay(String name, Session source, Session target, long window) {
+		this.source=source;
+		this.target=target;
+		this.window=window;
+		this.totalMessages=ServerEndPoint.metrics.counter(MetricRegistry.name("websocket", name, "messages"));
+		this.totalBytes=ServerEndPoint.metrics.counter(MetricRegistry.name("websocket", name, "bytes"));
+	}
+
+	void onText(String part, boolean last) throws IOException, InterruptedException {
+		final int size=utf8Length(part);
+		count(size, last);
+		if (fragmented || !last) {
+			drain();
+			target.getBasicRemote().sendText(part, last);
+			fragmented=!last;
+		} else {
+			enqueue(new Frame(part, size));
+		}
+	}
+
+	void onBinary(ByteBuffer part, boolean last) throws IOException, InterruptedException {
+		count(part.remaining(), last);
+		if (fragmented || !last) {
+			drain();
+			target.getBasicRemote().sendBinary(part, last);
+			fragmented=!last;
+		} else {
+			// The container may reuse its buffer once the frame has been delivered
+			final ByteBuffer copy=ByteBuffer.allocate(part.remaining());
+			copy.put(part.duplicate()).flip();
+			enqueue(new Frame(copy, copy.remaining()));
+		}
+	}
+
+	/**
+	 * Unblocks the threads waiting for the target: the pending frames will not be sent.
+	 */
+	synchronized void close() {
+		if (failure==null) {
+			failure=new IOException("relay closed");
+		}
+		queue.clear();
+		queuedBytes=0;
+		notifyAll();
+	}
+
+	long getMessageCount() {
+		return messages.getCount();
+	}
+
+	long getByteCount() {
+		return bytes.getCount();
+	}
+
+	synchronized long getQueuedBytes() {
+		return queuedBytes;
+	}
+
+	/**
+	 * Returns the size of the text once encoded in UTF-8, as it is sent on the wire, without encoding it.
+	 */
+	static int utf8Length(CharSequence text) {
+		int size=0;
+		for (int i=0; i<text.length(); i++) {
+			final char c=text.charAt(i);
+			if (c<0x80) {
+				size++;
+			} else if (c<0x800) {
+				size+=2;
+			} else if (Character.isHighSurrogate(c) && i+1<text.length() && Character.isLowSurrogate(text.charAt(i+1))) {
+				size+=4;
+				i++;
+			} else {
+				size+=3;
+			}
+		}
+		return size;
+	}
+
+	void count(long size, boolean last) {
+		bytes.inc(size);
+		totalBytes.inc(size);
+		if (last) {
+			messages.inc();
+			totalMessages.inc();
+		}
+	}
+
+	void enqueue(Frame frame) throws IOException, InterruptedException {
+		synchronized (this) {
+			// A message larger than the window is still sent, alone
+			while (failure==null && queuedBytes>0 && queuedBytes+frame.size>window) {
+				wait();
+			}
+			check();
+			queue.add(frame);
+			queuedBytes+=frame.size;
+			if (sending) {
+				return;
+			}
+			sending=true;
+		}
+		sendNext();
+	}
+
+	synchronized void drain() throws IOException, InterruptedException {
+		while (failure==null && sending) {
+			wait();
+		}
+		check();
+	}
+
+	void check() throws IOException {
+		if (failure!=null) {
+			throw (failure instanceof IOException) ? (IOException)failure : new IOException(failure);
+		}
+	}
+
+	void sendNext() {
+		final Frame frame;
+		synchronized (this) {
+			frame=queue.peek();
+			if (frame==null) {
+				sending=false;
+				notifyAll();
+				return;
+			}
+		}
+		try {
+			if (frame.payload instanceof String) {
+				target.getAsyncRemote().sendText((String)frame.payload, onSent);
+			} else {
+				target.getAsyncRemote().sendBinary((ByteBuffer)frame.payload, onSent);
+			}
+		} catch (Throwable e) {
+			sent(new SendResult(e));
+		}
+	}
+
+	void sent(SendResult result) {
+		synchronized (this) {
+			final Frame frame=queue.poll();
+			if (frame!=null) {
+				queuedBytes-=frame.size;
+			}
+			if (!result.isOK() && failure==null) {
+				failure=result.getException();
+			}
+			if (failure!=null) {
+				sending=false;
+			}
+			notifyAll();
+		}
+		if (result.isOK()) {
+			sendNext();
+			return;
+		}
+		logger.debug("send error {}: {}",target.getId(),String.valueOf(result.getException()));
+		final CloseReason reason=new CloseReason(CloseReason.CloseCodes.CLOSED_ABNORMALLY,"send error: "+result.getException());
+		try {
+			target.close(reason);
+		} catch (Throwable e) {}
+		try {
+			source.close(reason);
+		} catch (Throwable e) {}
+	}
+
+	static class Frame {
+		final Object payload;
+		final long size;
+
+		Frame(Object payload, long size) {
+			this.payload=payload;
+			this.size=size;
+		}
+	}
+}
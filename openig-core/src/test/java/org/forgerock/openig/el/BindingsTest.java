@@ -21,6 +21,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.entry;
 import static org.forgerock.openig.el.Bindings.bindings;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 import java.util.Map;
 
@@ -114,4 +115,44 @@ public class BindingsTest {
         Bindings target = bindings().bind("c", "d");
         assertThat(target.bind(source).asMap()).containsOnly(entry("a", "b"), entry("c", "d"));
     }
+
+    @Test
+    public void shouldResolveContextBindingsLazily() throws Exception {
+        Context context = mock(Context.class);
+        Bindings bindings = bindings(context, null);
+        verifyNoInteractions(context);
+
+        assertThat(bindings.asMap().get("attributes")).isNull();
+        assertThat(bindings.asMap()).doesNotContainKey("session");
+    }
+
+    @Test
+    public void shouldShareContextBindingsOfTheSameContext() throws Exception {
+        final Context context = new AttributesContext(new RootContext());
+        Bindings first = bindings(context);
+        Object contexts = first.asMap().get("contexts");
+        assertThat(bindings(context, new Request()).asMap().get("contexts")).isSameAs(contexts);
+        assertThat(bindings(new AttributesContext(context)).asMap().get("contexts")).isNotSameAs(contexts);
+        assertThat(first.asMap()).containsKey("attributes");
+    }
+
+    @Test
+    public void shouldNotExposeTheMemoizedContextBindings() throws Exception {
+        final AttributesContext request = new AttributesContext(new RootContext());
+        Bindings first = bindings(request);
+        Object contexts = first.asMap().get("contexts");
+
+        assertThat(bindings(request).asMap().get("contexts")).isSameAs(contexts);
+        assertThat(request.getAttributes()).isEmpty();
+        assertThat(first.asMap()).containsKey("attributes");
+    }
+
+    @Test
+    public void shouldLetExplicitBindingsShadowContextBindings() throws Exception {
+        final Context context = new AttributesContext(new RootContext());
+        Bindings bindings = bindings(context).bind("attributes", "shadowed");
+        assertThat(bindings.asMap().get("attributes")).isEqualTo("shadowed");
+        assertThat(bindings().bind("attributes", "overridden").bind(bindings(context)).asMap().get("attributes"))
+                .isSameAs(((AttributesContext) context).getAttributes());
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.el;
+
+import static org.forgerock.openig.el.Bindings.bindings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.http.protocol.Request;
+import org.forgerock.services.context.AttributesContext;
+import org.forgerock.services.context.RootContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the interpreted and the compiled evaluations of a corpus of typical route, dispatch and switch
+ * conditions. Each operation evaluates the whole corpus.
+ * <p>
+ * Run it from the test classpath:
+ * <pre>
+ *     {@code java -cp <test classpath> org.forgerock.openig.el.CompiledExpressionBenchmark}
+ * </pre>
+ */
+@SuppressWarnings("javadoc")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompiledExpressionBenchmark {
+
+    private static final String[] CONDITIONS = {
+        "${request.uri.path == '/login'}",
+        "${matches(request.uri.path, '^/api/v[12]/')}",
+        "${request.uri.path.startsWith('/static/') or request.uri.path.endsWith('.ico')}",
+        "${request.method == 'POST' and request.uri.path == '/api/v1/orders'}",
+        "${request.uri.host == 'api.example.com' and request.uri.port == 443}",
+        "${not empty request.headers['Authorization']}",
+        "${request.headers['Content-Type'][0] == 'application/json'}",
+        "${empty attributes.user or attributes.user.roles == null}",
+        "${attributes.retries < 3 && request.method != 'DELETE'}",
+        "${contains(request.uri.query, 'debug') or toLowerCase(request.method) eq 'options'}",
+    };
+
+    private final List<Expression<Boolean>> interpreted = new ArrayList<>();
+    private final List<Expression<Boolean>> compiled = new ArrayList<>();
+    private Bindings bindings;
+
+    @Setup
+    public void setUp() throws Exception {
+        for (String condition : CONDITIONS) {
+            interpreted.add(new Expression<>(condition, Boolean.class, bindings(), false));
+            compiled.add(new Expression<>(condition, Boolean.class, bindings(), true));
+        }
+
+        AttributesContext context = new AttributesContext(new RootContext());
+        context.getAttributes().put("retries", 1);
+        Request request = new Request().setMethod("POST")
+                                       .setUri("https://api.example.com/api/v1/orders?page=2");
+        request.getHeaders().put("Authorization", "Bearer token");
+        request.getHeaders().put("Content-Type", "application/json");
+        bindings = bindings(context, request);
+    }
+
+    @Benchmark
+    public void interpreted(final Blackhole blackhole) {
+        for (Expression<Boolean> expression : interpreted) {
+            blackhole.consume(expression.eval(bindings));
+        }
+    }
+
+    @Benchmark
+    public void compiled(final Blackhole blackhole) {
+        for (Expression<Boolean> expression : compiled) {
+            blackhole.consume(expression.eval(bindings));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(CompiledExpressionBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.el;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.openig.el.Bindings.bindings;
+
+import org.forgerock.http.protocol.Request;
+import org.forgerock.services.context.AttributesContext;
+import org.forgerock.services.context.RootContext;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class CompiledExpressionTest {
+
+    private Bindings bindings;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        AttributesContext context = new AttributesContext(new RootContext());
+        context.getAttributes().put("name", "value");
+        context.getAttributes().put("count", 3);
+        Request request = new Request().setMethod("POST").setUri("http://example.com:8080/api/users?page=2");
+        request.getHeaders().put("Host", "example.com");
+        bindings = bindings(context, request);
+    }
+
+    @DataProvider
+    private static Object[][] supported() {
+        return new Object[][] {
+            { "${true}" },
+            { "${request.method == 'POST'}" },
+            { "${request.method eq \"GET\"}" },
+            { "${request.method != 'GET' && request.uri.port == 8080}" },
+            { "${request.uri.host == 'example.com' or request.uri.host == 'localhost'}" },
+            { "${not (request.method == 'GET')}" },
+            { "${!empty request.headers['Host']}" },
+            { "${request.headers['Host'][0] == 'example.com'}" },
+            { "${empty request.headers['Origin']}" },
+            { "${request.uri.path.startsWith('/api/')}" },
+            { "${request.uri.path.endsWith('/users')}" },
+            { "${matches(request.uri.path, '^/api/') and contains(request.uri.query, 'page')}" },
+            { "${toUpperCase(request.method) == 'POST'}" },
+            { "${attributes.name != null and attributes.count > 2}" },
+            { "${attributes.count >= 3 and attributes.count lt 4}" },
+            { "${attributes.missing == null}" },
+            { "${attributes.missing.deeper == null}" },
+            { "${contexts.attributes.attributes.name == 'value'}" },
+            { "${env == 'test'}" },
+        };
+    }
+
+    @DataProvider
+    private static Object[][] unsupported() {
+        return new Object[][] {
+            { "${request.method}${request.method}" },
+            { "#{request.method == 'POST'}" },
+            { "prefix ${request.method == 'POST'}" },
+            { "${attributes.count + 1 > 3}" },
+            { "${attributes.count > 2.5}" },
+            { "${request.method == 'GET' ? true : false}" },
+            { "${request.headers[attributes.name] == null}" },
+            { "${request.uri.path.contains('api')}" },
+            { "${fn:matches(request.uri.path, '^/api/')}" },
+        };
+    }
+
+    @Test(dataProvider = "supported")
+    public void shouldCompileAndEvaluateAsTheInterpreter(final String expression) throws Exception {
+        Bindings initialBindings = bindings("env", "test");
+        Expression<Boolean> compiled = new Expression<>(expression, Boolean.class, initialBindings, true);
+        Expression<Boolean> interpreted = new Expression<>(expression, Boolean.class, initialBindings, false);
+
+        assertThat(compiled.isCompiled()).isTrue();
+        assertThat(interpreted.isCompiled()).isFalse();
+        assertThat(compiled.eval(bindings)).isNotNull().isEqualTo(interpreted.eval(bindings));
+    }
+
+    @Test(dataProvider = "unsupported")
+    public void shouldNotCompileUnsupportedExpressions(final String expression) throws Exception {
+        assertThat(CompiledExpression.compile(expression)).isNull();
+    }
+
+    @Test
+    public void shouldNotCompileNonBooleanExpressions() throws Exception {
+        assertThat(new Expression<>("${request.method}", String.class, bindings(), true).isCompiled()).isFalse();
+    }
+
+    @Test
+    public void shouldLeaveUnsupportedEvaluationsToTheInterpreter() throws Exception {
+        // Only startsWith() and endsWith() method calls are compiled
+        Expression<Boolean> expression =
+                new Expression<>("${request.headers['Host'].isEmpty() == false}", Boolean.class, bindings(), true);
+        assertThat(expression.isCompiled()).isFalse();
+
+        expression = new Expression<>("${attributes.count.startsWith('3')}", Boolean.class, bindings(), true);
+        assertThat(expression.isCompiled()).isTrue();
+        // Integer has no startsWith() method: the interpreter fails, as it would without compilation
+        assertThat(expression.eval(bindings)).isNull();
+    }
+
+    @Test
+    public void shouldHonourBindingsPrecedence() throws Exception {
+        Expression<Boolean> expression =
+                new Expression<>("${env == 'test'}", Boolean.class, bindings("env", "test"), true);
+        assertThat(expression.eval(bindings)).isTrue();
+        assertThat(expression.eval(bindings("env", "prod"))).isFalse();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.el;
+
+import static org.forgerock.openig.el.Bindings.bindings;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.http.protocol.Request;
+import org.forgerock.services.context.AttributesContext;
+import org.forgerock.services.context.RootContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.odysseus.el.ExpressionFactoryImpl;
+
+/**
+ * Compares the cost of creating and evaluating a typical route condition with the current {@link Expression}
+ * implementation and with the previous one (one factory per expression, bindings merged into a new map and a new
+ * evaluation context for each evaluation).
+ * <p>
+ * Run it from the test classpath with the GC profiler to compare the allocation rates
+ * ({@literal gc.alloc.rate.norm} is the number of bytes allocated per operation):
+ * <pre>
+ *     {@code java -cp <test classpath> org.forgerock.openig.el.ExpressionBenchmark}
+ * </pre>
+ */
+@SuppressWarnings("javadoc")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpressionBenchmark {
+
+    private static final String CONDITION =
+            "${request.method == 'GET' and matches(request.uri.path, '^/api/') and attributes.name != null}";
+
+    private Expression<Boolean> expression;
+    private Bindings initialBindings;
+    private Bindings bindings;
+
+    @Setup
+    public void setUp() throws Exception {
+        initialBindings = bindings().bind("env", "benchmark");
+        expression = Expression.valueOf(CONDITION, Boolean.class, initialBindings);
+
+        AttributesContext context = new AttributesContext(new RootContext());
+        context.getAttributes().put("name", "value");
+        bindings = bindings(context, new Request().setMethod("GET").setUri("http://localhost/api/users"));
+    }
+
+    @Benchmark
+    public Object create() throws Exception {
+        return Expression.valueOf(CONDITION, Boolean.class, initialBindings);
+    }
+
+    @Benchmark
+    public Object legacyCreate() throws Exception {
+        return new ExpressionFactoryImpl().createValueExpression(new Expression.XLContext(null),
+                                                                 CONDITION,
+                                                                 Object.class);
+    }
+
+    @Benchmark
+    public Object eval() {
+        return expression.eval(bindings);
+    }
+
+    @Benchmark
+    public Object legacyEval() {
+        Bindings evaluationBindings = bindings().bind(initialBindings).bind(bindings);
+        return expression.valueExpression.getValue(new Expression.XLContext(evaluationBindings.asMap()));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ExpressionBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
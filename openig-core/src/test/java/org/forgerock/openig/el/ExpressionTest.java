@@ -380,6 +380,42 @@ public class ExpressionTest {
         }
     }
 
+    @Test
+    public void shouldShareParsedExpressions() throws Exception {
+        Expression<Boolean> first = Expression.valueOf("${request.method == 'GET'}", Boolean.class);
+        Expression<Boolean> second = Expression.valueOf("${request.method == 'GET'}", Boolean.class);
+        Expression<String> third = Expression.valueOf("${request.method == 'GET'}", String.class);
+
+        assertThat(second.valueExpression).isSameAs(first.valueExpression);
+        assertThat(third.valueExpression).isNotSameAs(first.valueExpression);
+    }
+
+    @Test
+    public void bindingsShouldShadowInitialBindings() throws Exception {
+        Expression<String> expr = Expression.valueOf("${a}-${b}", String.class, bindings().bind("a", "initial")
+                                                                                          .bind("b", "initial"));
+        assertThat(expr.eval(bindings("a", "evaluation"))).isEqualTo("evaluation-initial");
+        assertThat(expr.eval(bindings("a", null))).isEqualTo("-initial");
+    }
+
+    @Test
+    public void shouldSupportNestedEvaluations() throws Exception {
+        final Expression<String> inner = Expression.valueOf("${value}", String.class);
+        Map<String, Object> lazy = new HashMap<String, Object>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public Object get(final Object key) {
+                // Evaluated on the same thread while the outer expression is being evaluated
+                return inner.eval(bindings("value", "inner-" + key));
+            }
+        };
+        Expression<String> outer = Expression.valueOf("${value} ${lazy.key} ${value}", String.class);
+
+        assertThat(outer.eval(bindings().bind("value", "outer").bind("lazy", lazy)))
+                .isEqualTo("outer inner-key outer");
+    }
+
     private static class ConcatBean {
         private String value;
 
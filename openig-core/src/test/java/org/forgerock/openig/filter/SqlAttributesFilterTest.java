@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2016 ForgeRock AS.
+ * Portions copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.filter;
@@ -20,6 +21,9 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.sql.Connection;
@@ -28,7 +32,12 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.sql.DataSource;
 
@@ -42,6 +51,7 @@ import org.forgerock.services.context.AttributesContext;
 import org.forgerock.services.context.Context;
 import org.forgerock.services.context.RootContext;
 import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
 import org.forgerock.util.promise.Promises;
 import org.mockito.InOrder;
 import org.mockito.Mock;
@@ -49,9 +59,19 @@ import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 @SuppressWarnings("javadoc")
 public class SqlAttributesFilterTest {
 
+    private static final Executor SATURATED = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            throw new RejectedExecutionException();
+        }
+    };
+
     @Mock
     private DataSource source;
 
@@ -173,6 +193,150 @@ public class SqlAttributesFilterTest {
         context.getAttributes().get("result").hashCode();
     }
 
+    @Test
+    public void shouldCacheResultsPerParameterValues() throws Exception {
+        SqlAttributesFilter filter = new SqlAttributesFilter(source,
+                LeftValueExpression.valueOf("${attributes.result}", Map.class), null, newCache(), newCache(), null);
+        filter.getParameters().add(Expression.valueOf("${attributes.user}", String.class));
+        mockDatabaseInteractions();
+        when(pmetadata.getParameterCount()).thenReturn(1);
+
+        assertThat(lookup(filter, "joe")).containsOnly(entry("password", "secret"));
+        assertThat(lookup(filter, "joe")).containsOnly(entry("password", "secret"));
+        assertThat(lookup(filter, "jane")).containsOnly(entry("password", "secret"));
+
+        verify(source, times(2)).getConnection();
+        assertThat(filter.getMetrics().counter("cache.hits").getCount()).isEqualTo(1);
+        assertThat(filter.getMetrics().counter("cache.misses").getCount()).isEqualTo(2);
+        assertThat(filter.getMetrics().timer("queries").getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldNotShareCachedResultsBetweenRequests() throws Exception {
+        SqlAttributesFilter filter = new SqlAttributesFilter(source,
+                LeftValueExpression.valueOf("${attributes.result}", Map.class), null, newCache(), null, null);
+        mockDatabaseInteractions();
+
+        lookup(filter, "joe").put("password", "modified");
+        assertThat(lookup(filter, "joe")).containsOnly(entry("password", "secret"));
+    }
+
+    @Test
+    public void shouldCacheEmptyResultsInTheNegativeCache() throws Exception {
+        Cache<List<Object>, Map<String, Object>> cache = newCache();
+        Cache<List<Object>, Map<String, Object>> negativeCache = newCache();
+        SqlAttributesFilter filter = new SqlAttributesFilter(source,
+                LeftValueExpression.valueOf("${attributes.result}", Map.class), null, cache, negativeCache, null);
+        mockDatabaseInteractions();
+        when(resultSet.next()).thenReturn(false);
+
+        assertThat(lookup(filter, "joe")).isEmpty();
+        assertThat(lookup(filter, "joe")).isEmpty();
+
+        verify(source, times(1)).getConnection();
+        assertThat(cache.size()).isEqualTo(0);
+        assertThat(negativeCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotCacheFailedQueries() throws Exception {
+        SqlAttributesFilter filter = new SqlAttributesFilter(source,
+                LeftValueExpression.valueOf("${attributes.result}", Map.class), null, newCache(), newCache(), null);
+        when(source.getConnection()).thenThrow(new SQLException("Unexpected"));
+
+        assertThat(lookup(filter, "joe")).isEmpty();
+        assertThat(lookup(filter, "joe")).isEmpty();
+
+        verify(source, times(2)).getConnection();
+        assertThat(filter.getMetrics().counter("queries.failed").getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldExecuteQueriesWithTheExecutorBeforeCallingTheNextHandler() throws Exception {
+        QueuedExecutor executor = new QueuedExecutor();
+        SqlAttributesFilter filter = new SqlAttributesFilter(source,
+                LeftValueExpression.valueOf("${attributes.result}", Map.class), null, null, null, executor);
+        mockDatabaseInteractions();
+
+        AttributesContext context = new AttributesContext(new RootContext());
+        Promise<Response, NeverThrowsException> promise = filter.filter(context, null, terminalHandler);
+        assertThat(promise.isDone()).isFalse();
+        assertThat(context.getAttributes()).doesNotContainKey("result");
+
+        executor.runAll();
+        assertThat(promise.get().getStatus()).isEqualTo(Status.OK);
+        assertThat(context.getAttributes().get("result")).isEqualTo(singletonResult());
+    }
+
+    @Test
+    public void shouldShareTheExecutionOfIdenticalConcurrentLookups() throws Exception {
+        QueuedExecutor executor = new QueuedExecutor();
+        SqlAttributesFilter filter = new SqlAttributesFilter(source,
+                LeftValueExpression.valueOf("${attributes.result}", Map.class), null, null, null, executor);
+        mockDatabaseInteractions();
+
+        AttributesContext context1 = new AttributesContext(new RootContext());
+        AttributesContext context2 = new AttributesContext(new RootContext());
+        Promise<Response, NeverThrowsException> promise1 = filter.filter(context1, null, terminalHandler);
+        Promise<Response, NeverThrowsException> promise2 = filter.filter(context2, null, terminalHandler);
+
+        assertThat(executor.runAll()).isEqualTo(1);
+        promise1.get();
+        promise2.get();
+        verify(source, times(1)).getConnection();
+        assertThat(filter.getMetrics().counter("lookups.coalesced").getCount()).isEqualTo(1);
+        assertThat(context1.getAttributes().get("result")).isEqualTo(singletonResult());
+        assertThat(context2.getAttributes().get("result")).isEqualTo(singletonResult());
+        // Each request has its own copy
+        assertThat(context1.getAttributes().get("result")).isNotSameAs(context2.getAttributes().get("result"));
+    }
+
+    @Test
+    public void shouldFailTheRequestWhenTheExecutorIsSaturated() throws Exception {
+        SqlAttributesFilter filter = new SqlAttributesFilter(source,
+                LeftValueExpression.valueOf("${attributes.result}", Map.class), null, null, null, SATURATED);
+
+        AttributesContext context = new AttributesContext(new RootContext());
+        Response response = filter.filter(context, null, terminalHandler).get();
+
+        assertThat(response.getStatus()).isEqualTo(Status.SERVICE_UNAVAILABLE);
+        assertThat(context.getAttributes()).doesNotContainKey("result");
+        verifyNoInteractions(terminalHandler);
+        assertThat(filter.getMetrics().counter("queries.rejected").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldProduceEmptyMapWhenTheExecutorIsSaturatedAndRejectionsDoNotFail() throws Exception {
+        SqlAttributesFilter filter = new SqlAttributesFilter(source,
+                LeftValueExpression.valueOf("${attributes.result}", Map.class), null, null, null, SATURATED, false);
+
+        AttributesContext context = new AttributesContext(new RootContext());
+        Response response = filter.filter(context, null, terminalHandler).get();
+
+        assertThat(response.getStatus()).isEqualTo(Status.OK);
+        assertThat((Map<?, ?>) context.getAttributes().get("result")).isEmpty();
+        assertThat(filter.getMetrics().counter("queries.rejected").getCount()).isEqualTo(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> lookup(final SqlAttributesFilter filter, final String user) throws Exception {
+        AttributesContext context = new AttributesContext(new RootContext());
+        context.getAttributes().put("user", user);
+        filter.filter(context, null, terminalHandler).get();
+        Map<String, Object> result = (Map<String, Object>) context.getAttributes().get("result");
+        // Trigger the lazy map instantiation
+        result.hashCode();
+        return result;
+    }
+
+    private static Map<String, Object> singletonResult() {
+        return Collections.<String, Object>singletonMap("password", "secret");
+    }
+
+    private static Cache<List<Object>, Map<String, Object>> newCache() {
+        return CacheBuilder.newBuilder().maximumSize(10).build();
+    }
+
     private void mockDatabaseInteractions() throws Exception {
         // Mock the database interactions
         when(source.getConnection()).thenReturn(connection);
@@ -187,4 +351,22 @@ public class SqlAttributesFilterTest {
         when(resultSet.getObject(1)).thenReturn("secret");
     }
 
+    /** Queues the tasks until they are explicitly run. */
+    private static final class QueuedExecutor implements Executor {
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(final Runnable command) {
+            tasks.add(command);
+        }
+
+        int runAll() {
+            int count = tasks.size();
+            for (Runnable task : tasks) {
+                task.run();
+            }
+            tasks.clear();
+            return count;
+        }
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.handler.router;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class LatencyHistogramTest {
+
+    private static final long PERIOD = 1000L;
+
+    private TimeService time;
+    private LatencyHistogram histogram;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        time = mock(TimeService.class);
+        when(time.now()).thenReturn(0L);
+        histogram = new LatencyHistogram(time, PERIOD);
+    }
+
+    @Test
+    public void shouldKeepTheValuesOfTheCurrentAndPreviousPeriods() throws Exception {
+        histogram.record(100L);
+        assertThat(histogram.snapshot().getTotalCount()).isEqualTo(1);
+
+        when(time.now()).thenReturn(PERIOD + 10L);
+        histogram.record(200L);
+        assertThat(histogram.snapshot().getTotalCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldForgetTheValuesOlderThanThePreviousPeriod() throws Exception {
+        histogram.record(100L);
+        histogram.snapshot();
+
+        when(time.now()).thenReturn(PERIOD + 10L);
+        histogram.record(200L);
+        histogram.snapshot();
+
+        when(time.now()).thenReturn(2 * PERIOD + 10L);
+        assertThat(histogram.snapshot().getTotalCount()).isEqualTo(1);
+        assertThat(histogram.snapshot().getMaxValue()).isEqualTo(200L);
+    }
+
+    @Test
+    public void shouldForgetAllTheDrainedValuesWhenNoSnapshotWasTakenDuringThePreviousPeriod() throws Exception {
+        histogram.record(100L);
+        histogram.snapshot();
+
+        when(time.now()).thenReturn(3 * PERIOD);
+        histogram.record(200L);
+        assertThat(histogram.snapshot().getTotalCount()).isEqualTo(1);
+        assertThat(histogram.snapshot().getMaxValue()).isEqualTo(200L);
+    }
+
+    @Test
+    public void shouldKeepCumulativeCountAndSum() throws Exception {
+        histogram.record(100L);
+        histogram.record(-1L);
+        histogram.snapshot();
+
+        when(time.now()).thenReturn(5 * PERIOD);
+        histogram.record(200L);
+        histogram.snapshot();
+
+        assertThat(histogram.getCount()).isEqualTo(3);
+        assertThat(histogram.getSum()).isEqualTo(300L);
+    }
+}
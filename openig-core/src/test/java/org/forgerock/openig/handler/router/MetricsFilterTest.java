@@ -12,18 +12,22 @@
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.handler.router;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.InputStream;
+
 import org.forgerock.http.Filter;
 import org.forgerock.http.Handler;
 import org.forgerock.http.filter.ResponseHandler;
 import org.forgerock.http.protocol.Request;
 import org.forgerock.http.protocol.Response;
 import org.forgerock.http.protocol.Status;
+import org.forgerock.http.protocol.Status.Family;
 import org.forgerock.services.context.Context;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
@@ -68,7 +72,9 @@ public class MetricsFilterTest {
         assertThat(metrics.getServerErrorResponseCount().getCount()).isEqualTo(0);
 
         assertThat(metrics.getThroughput().getMeanRate()).isNotEqualTo(0);
-        assertThat(metrics.getResponseTime().getCount()).isEqualTo(1);
+        assertThat(metrics.getResponseTime().snapshot().getTotalCount()).isEqualTo(1);
+        assertThat(metrics.getTimeToFirstByte(Family.SUCCESSFUL).snapshot().getTotalCount()).isEqualTo(1);
+        assertThat(metrics.getTimeToFirstByte(Family.SERVER_ERROR).snapshot().getTotalCount()).isEqualTo(0);
         assertThat(metrics.getAccumulatedResponseTime().getCount()).isNotEqualTo(0);
     }
 
@@ -96,6 +102,46 @@ public class MetricsFilterTest {
         assertThat(counter.getCount()).isEqualTo(0);
     }
 
+    @Test
+    public void shouldRecordResponseTimeWhenTheResponseIsReturned() throws Exception {
+        MonitoringMetrics metrics = new MonitoringMetrics();
+        Response response = new Response(Status.OK);
+        response.setEntity("Hello World");
+
+        Response filtered = new MetricsFilter(metrics).filter(null, new Request(), new ResponseHandler(response))
+                                                      .get();
+
+        assertThat(filtered).isSameAs(response);
+        assertThat(metrics.getTimeToFirstByte(Family.SUCCESSFUL).snapshot().getTotalCount()).isEqualTo(1);
+        assertThat(metrics.getResponseTime(Family.SUCCESSFUL).snapshot().getTotalCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRecordResponseTimeOnceTheEntityHasBeenRead() throws Exception {
+        MonitoringMetrics metrics = new MonitoringMetrics();
+        Response response = new Response(Status.OK);
+        response.setEntity("Hello World");
+
+        Response filtered = new MetricsFilter(metrics, true).filter(null,
+                                                                    new Request(),
+                                                                    new ResponseHandler(response))
+                                                            .get();
+
+        assertThat(metrics.getTimeToFirstByte(Family.SUCCESSFUL).snapshot().getTotalCount()).isEqualTo(1);
+        assertThat(metrics.getResponseTime().snapshot().getTotalCount()).isEqualTo(0);
+        assertThat(filtered.getStatus()).isEqualTo(Status.OK);
+
+        try (InputStream content = filtered.getEntity().getRawContentInputStream()) {
+            byte[] buffer = new byte[64];
+            while (content.read(buffer) != -1) {
+                // Consume the entity
+            }
+        }
+        assertThat(metrics.getResponseTime().snapshot().getTotalCount()).isEqualTo(1);
+        assertThat(metrics.getResponseTime(Family.SUCCESSFUL).snapshot().getTotalCount()).isEqualTo(1);
+        assertThat(metrics.getAccumulatedResponseTime().getCount()).isNotEqualTo(0);
+    }
+
     @Test
     public void shouldCountNullResponse() throws Exception {
         final MonitoringMetrics metrics = new MonitoringMetrics();
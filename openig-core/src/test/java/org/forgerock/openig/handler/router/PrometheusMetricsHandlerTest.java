@@ -0,0 +1,70 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.handler.router;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.forgerock.http.filter.ResponseHandler;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class PrometheusMetricsHandlerTest {
+
+    @Test
+    public void shouldExposeMetricsInPrometheusTextFormat() throws Exception {
+        MonitoringMetrics metrics = new MonitoringMetrics();
+        MetricsFilter filter = new MetricsFilter(metrics);
+        filter.filter(null, new Request(), new ResponseHandler(Status.OK));
+        filter.filter(null, new Request(), new ResponseHandler(Status.NOT_FOUND));
+        filter.filter(null, new Request(), new ResponseHandler(Status.OK));
+
+        Response response = new PrometheusMetricsHandler("my \"route\"", metrics, singletonList(0.99))
+                .handle(null, new Request().setMethod("GET"))
+                .get();
+
+        assertThat(response.getStatus()).isEqualTo(Status.OK);
+        assertThat(response.getHeaders().getFirst("Content-Type")).isEqualTo(PrometheusMetricsHandler.CONTENT_TYPE);
+        String route = "route=\"my \\\"route\\\"\"";
+        assertThat(response.getEntity().getString())
+                .contains("# TYPE openig_route_requests_total counter\n")
+                .contains("openig_route_requests_total{" + route + "} 3\n")
+                .contains("openig_route_active_requests{" + route + "} 0\n")
+                .contains("openig_route_responses_total{" + route + ",status_family=\"2xx\"} 2\n")
+                .contains("openig_route_responses_total{" + route + ",status_family=\"4xx\"} 1\n")
+                .contains("# TYPE openig_route_response_time_seconds summary\n")
+                .contains("openig_route_response_time_seconds{" + route + ",status_family=\"2xx\",quantile=\"0.5\"}")
+                .contains("openig_route_response_time_seconds{" + route + ",status_family=\"2xx\",quantile=\"0.99\"}")
+                .contains("openig_route_response_time_seconds_count{" + route + ",status_family=\"2xx\"} 2\n")
+                .contains("openig_route_response_time_seconds_sum{" + route + ",status_family=\"2xx\"} "
+                                  + metrics.getResponseTime(Status.Family.SUCCESSFUL).getSum() / 1_000_000d + "\n")
+                .contains("openig_route_time_to_first_byte_seconds_count{" + route + ",status_family=\"4xx\"} 1\n")
+                .doesNotContain("status_family=\"5xx\",quantile");
+    }
+
+    @Test
+    public void shouldOnlySupportGet() throws Exception {
+        Response response = new PrometheusMetricsHandler("route", new MonitoringMetrics(), singletonList(0.99))
+                .handle(null, new Request().setMethod("POST"))
+                .get();
+
+        assertThat(response.getStatus()).isEqualTo(Status.METHOD_NOT_ALLOWED);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.handler.router;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.forgerock.openig.el.Expression;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class RouteConstraintsTest {
+
+    @DataProvider
+    public Object[][] conditions() {
+        // @Checkstyle:off
+        return new Object[][] {
+                // condition, path, pathPrefix, host, method
+                { "${request.uri.path == '/login'}", "/login", null, null, null },
+                { "${'/login' eq request.uri.path}", "/login", null, null, null },
+                { "${request.uri.path.startsWith(\"/api/\")}", null, "/api/", null, null },
+                { "${matches(request.uri.path, '^/api/v[0-9]+')}", null, "/api/v", null, null },
+                { "${matches(request.uri.path, '^/apix*')}", null, "/api", null, null },
+                { "${request.method == 'POST' and request.uri.host == 'example.com'}", null, null, "example.com", "POST" },
+                { "${(request.method == 'GET') && matches(request.uri.path, '^/a') && request.headers['X'] != null}",
+                  null, "/a", null, "GET" },
+        };
+        // @Checkstyle:on
+    }
+
+    @Test(dataProvider = "conditions")
+    public void shouldExtractConstraints(final String condition,
+                                         final String path,
+                                         final String pathPrefix,
+                                         final String host,
+                                         final String method) throws Exception {
+        RouteConstraints constraints = RouteConstraints.of(Expression.valueOf(condition, Boolean.class));
+
+        assertThat(constraints.isIndexable()).isTrue();
+        assertThat(constraints.getPath()).isEqualTo(path);
+        assertThat(constraints.getPathPrefix()).isEqualTo(pathPrefix);
+        assertThat(constraints.getHost()).isEqualTo(host);
+        assertThat(constraints.getMethod()).isEqualTo(method);
+    }
+
+    @DataProvider
+    public Object[][] unanalyzableConditions() {
+        // @Checkstyle:off
+        return new Object[][] {
+                { "${true}" },
+                { "${request.uri.path == '/a' or request.uri.path == '/b'}" },
+                { "${request.uri.path == '/a' || request.method == 'GET'}" },
+                { "${not (request.uri.path == '/a')}" },
+                { "${request.uri.path == '/a' ? true : false}" },
+                { "${request.uri.path == '/a'} and ${request.method == 'GET'}" },
+                { "${request.uri.path == '/a\\'b'}" },
+                { "${matches(request.uri.path, '/a')}" },
+                { "${matches(request.uri.path, '^/a|^/b')}" },
+                { "${matches(request.uri.path, '^.*')}" },
+                { "${request.uri.path != '/a'}" },
+        };
+        // @Checkstyle:on
+    }
+
+    @Test(dataProvider = "unanalyzableConditions")
+    public void shouldNotExtractConstraints(final String condition) throws Exception {
+        assertThat(RouteConstraints.of(Expression.valueOf(condition, Boolean.class)))
+                .isSameAs(RouteConstraints.NONE);
+    }
+
+    @Test
+    public void shouldNotExtractConstraintsFromMissingCondition() throws Exception {
+        assertThat(RouteConstraints.of(null)).isSameAs(RouteConstraints.NONE);
+    }
+}
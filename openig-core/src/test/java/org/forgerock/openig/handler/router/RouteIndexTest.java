@@ -0,0 +1,114 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.handler.router;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.forgerock.http.protocol.Request;
+import org.forgerock.openig.el.Expression;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class RouteIndexTest {
+
+    private RouteIndex index;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        SortedSet<Route> sorted = new TreeSet<>(new LexicographicalRouteComparator());
+        sorted.add(route("00-login", "${request.uri.path == '/login'}"));
+        sorted.add(route("01-api-post", "${request.method == 'POST' and matches(request.uri.path, '^/api/')}"));
+        sorted.add(route("02-api", "${request.uri.path.startsWith('/api')}"));
+        sorted.add(route("03-host", "${request.uri.host == 'admin.example.com'}"));
+        sorted.add(route("04-headers", "${request.headers['X-Forward'][0] == '/endpoint'}"));
+        sorted.add(route("99-default", null));
+        index = new RouteIndex(sorted);
+    }
+
+    @Test
+    public void shouldCountIndexedRoutes() throws Exception {
+        assertThat(index.size()).isEqualTo(6);
+        assertThat(index.indexedSize()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldSelectExactPathAndUnconstrainedRoutes() throws Exception {
+        assertThat(candidates("GET", "http://www.example.com/login"))
+                .containsExactly("00-login", "04-headers", "99-default");
+    }
+
+    @Test
+    public void shouldSelectPrefixedRoutesInOrder() throws Exception {
+        assertThat(candidates("POST", "http://www.example.com/api/users"))
+                .containsExactly("01-api-post", "02-api", "04-headers", "99-default");
+        assertThat(candidates("GET", "http://www.example.com/api/users"))
+                .containsExactly("02-api", "04-headers", "99-default");
+    }
+
+    @Test
+    public void shouldSelectRoutesByHost() throws Exception {
+        assertThat(candidates("GET", "http://admin.example.com/console"))
+                .containsExactly("03-host", "04-headers", "99-default");
+    }
+
+    @Test
+    public void shouldOnlySelectUnconstrainedRoutes() throws Exception {
+        assertThat(candidates("GET", "http://www.example.com/logout"))
+                .containsExactly("04-headers", "99-default");
+    }
+
+    @Test
+    public void shouldSelectRoutesWithAnEmptyPrefix() throws Exception {
+        index = new RouteIndex(List.of(route("00-any", "${request.uri.path.startsWith('')}"),
+                                       route("01-api", "${request.uri.path.startsWith('/api')}")));
+
+        assertThat(candidates("GET", "http://www.example.com/login")).containsExactly("00-any");
+        assertThat(candidates("GET", "http://www.example.com/api")).containsExactly("00-any", "01-api");
+    }
+
+    @Test
+    public void shouldHandleEmptyIndex() throws Exception {
+        assertThat(RouteIndex.EMPTY.candidates(new Request().setMethod("GET").setUri("http://localhost/")).isEmpty())
+                .isTrue();
+    }
+
+    private List<String> candidates(final String method, final String uri) throws Exception {
+        BitSet candidates = index.candidates(new Request().setMethod(method).setUri(uri));
+        List<String> ids = new ArrayList<>();
+        for (int rank = candidates.nextSetBit(0); rank >= 0; rank = candidates.nextSetBit(rank + 1)) {
+            ids.add(index.route(rank).getId());
+        }
+        return ids;
+    }
+
+    private static Route route(final String id, final String condition) throws Exception {
+        Route route = mock(Route.class);
+        when(route.getId()).thenReturn(id);
+        when(route.getCondition())
+                .thenReturn(condition == null ? null : Expression.valueOf(condition, Boolean.class));
+        return route;
+    }
+}
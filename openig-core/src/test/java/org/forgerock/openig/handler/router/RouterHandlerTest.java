@@ -19,6 +19,8 @@ package org.forgerock.openig.handler.router;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.forgerock.json.JsonValue.array;
 import static org.forgerock.json.JsonValue.field;
 import static org.forgerock.json.JsonValue.json;
 import static org.forgerock.json.JsonValue.object;
@@ -28,16 +30,25 @@ import static org.forgerock.openig.http.RunMode.EVALUATION;
 import static org.forgerock.openig.http.RunMode.PRODUCTION;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.URISyntaxException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -46,7 +57,9 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import com.google.common.base.Ticker;
 import io.swagger.v3.oas.models.OpenAPI;
 import org.assertj.core.api.iterable.Extractor;
 import org.forgerock.http.Handler;
@@ -57,6 +70,7 @@ import org.forgerock.http.routing.Router;
 import org.forgerock.json.JsonValue;
 import org.forgerock.openig.Files;
 import org.forgerock.openig.config.env.DefaultEnvironment;
+import org.forgerock.openig.heap.HeapException;
 import org.forgerock.openig.heap.HeapImpl;
 import org.forgerock.openig.heap.Keys;
 import org.forgerock.openig.heap.Name;
@@ -366,6 +380,177 @@ public class RouterHandlerTest {
         verify(mockRoute).destroy();
     }
 
+    @Test
+    public void unload_destroysRouteOnlyOnceInFlightRequestsAreCompleted() throws Exception {
+        final Route mockRoute = mockRoute("slow");
+        final PromiseImpl<Response, NeverThrowsException> pending = PromiseImpl.create();
+        when(mockRoute.getName()).thenReturn("slow");
+        when(mockRoute.accept(any(), any())).thenReturn(true);
+        when(mockRoute.handle(any(), any())).thenReturn(pending);
+        when(mockRouteBuilder.build(any(), any(), any())).thenReturn(mockRoute);
+
+        RouterHandler handler = newHandler();
+        handler.load("slow", "slow", json(object()));
+        handler.handle(context(), new Request());
+
+        handler.unload("slow");
+        verify(mockRoute).stop();
+        verify(mockRoute, never()).destroy();
+        assertThat(handler.getRoutes()).isEmpty();
+
+        pending.handleResult(new Response(Status.OK));
+        verify(mockRoute).destroy();
+    }
+
+    @Test
+    public void replace_swapsRoutesWithoutUnloadingWindow() throws Exception {
+        final Route first = mockRoute("swapped");
+        final Route second = mockRoute("swapped");
+        when(first.getName()).thenReturn("swapped");
+        when(second.getName()).thenReturn("swapped");
+        when(mockRouteBuilder.build(any(), any(), any())).thenReturn(first, second);
+
+        RouterHandler handler = newHandler();
+        handler.load("swapped", "swapped", json(object()));
+        handler.replace("swapped", "swapped", json(object()));
+
+        assertThat(handler.getRoutes()).containsExactly(second);
+        verify(first).destroy();
+        verify(second).start();
+        verify(second, never()).destroy();
+    }
+
+    @Test
+    public void replace_keepsPreviousRoute_whenNewConfigurationIsInvalid() throws Exception {
+        final Route first = mockRoute("kept");
+        when(first.getName()).thenReturn("kept");
+        when(mockRouteBuilder.build(any(), any(), any()))
+                .thenReturn(first)
+                .thenThrow(new HeapException("invalid"));
+
+        RouterHandler handler = newHandler();
+        handler.load("kept", "kept", json(object()));
+
+        try {
+            handler.replace("kept", "kept", json(object()));
+            failBecauseExceptionWasNotThrown(RouterHandlerException.class);
+        } catch (RouterHandlerException e) {
+            // expected
+        }
+        assertThat(handler.getRoutes()).containsExactly(first);
+        verify(first, never()).destroy();
+    }
+
+    @Test
+    public void replace_sharesTheGossipAddressOfTheReplacedRoute() throws Exception {
+        heap.put(Keys.TICKER_HEAP_KEY, Ticker.systemTicker());
+        doReturn(scheduledFuture).when(scheduledExecutorService)
+                .scheduleWithFixedDelay(any(Runnable.class), anyLong(), anyLong(), any(TimeUnit.class));
+        InetSocketAddress local;
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            local = (InetSocketAddress) channel.getLocalAddress();
+        }
+        String address = local.getAddress().getHostAddress() + ":" + local.getPort();
+        JsonValue routeConfig = json(object(
+                field("handler", object(
+                        field("type", "Chain"),
+                        field("config", object(
+                                field("filters", array(object(
+                                        field("type", "ThrottlingFilter"),
+                                        field("config", object(
+                                                field("strategy", "gossip"),
+                                                field("cluster", object(field("address", address),
+                                                                        field("peers", array(address)))),
+                                                field("rate", object(field("numberOfRequests", 10),
+                                                                     field("duration", "1 second")))))))),
+                                field("handler", object(
+                                        field("type", "org.forgerock.openig.handler.router.StatusHandler"),
+                                        field("config", object(field("status", 200)))))))))));
+        RouterHandler handler = new RouterHandler(newRouteBuilder(), new DirectoryMonitor(null));
+        handler.load("gossip", "gossip", routeConfig.copy());
+
+        // The new route binds the address while the replaced one still uses it
+        handler.replace("gossip", "gossip", routeConfig.copy());
+
+        assertStatusAfterHandle(handler, "gossip", Status.OK);
+        handler.stop();
+        // Released by both routes
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.bind(local);
+        }
+    }
+
+    @Test
+    public void load_publishesRouteOnlyOnceStarted() throws Exception {
+        final Route route = mockRoute("started");
+        when(route.getName()).thenReturn("started");
+        when(mockRouteBuilder.build(any(), any(), any())).thenReturn(route);
+        final RouterHandler handler = newHandler();
+        final List<List<Route>> published = new ArrayList<>();
+        doAnswer(invocation -> published.add(handler.getRoutes())).when(route).start();
+
+        handler.load("started", "started", json(object()));
+
+        assertThat(published).containsExactly(Collections.emptyList());
+        assertThat(handler.getRoutes()).containsExactly(route);
+    }
+
+    @Test
+    public void replace_keepsPreviousRoute_whenNewRouteFailsToStart() throws Exception {
+        final Route first = mockRoute("kept");
+        final Route second = mockRoute("kept");
+        when(first.getName()).thenReturn("kept");
+        when(second.getName()).thenReturn("kept");
+        doThrow(new IllegalStateException("boom")).when(second).start();
+        when(mockRouteBuilder.build(any(), any(), any())).thenReturn(first, second);
+
+        RouterHandler handler = newHandler();
+        handler.load("kept", "kept", json(object()));
+
+        try {
+            handler.replace("kept", "kept", json(object()));
+            failBecauseExceptionWasNotThrown(IllegalStateException.class);
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertThat(handler.getRoutes()).containsExactly(first);
+        // The previous route endpoints are registered again
+        verify(first, times(2)).start();
+        verify(first, never()).destroy();
+        verify(second).destroy();
+    }
+
+    @Test
+    public void handle_resumesOnNewSnapshot_withoutEvaluatingConditionsAgain() throws Exception {
+        final Route rejecting = mockRoute("00-rejecting");
+        final Route replaced = mockRoute("01-replaced");
+        final Route replacing = mockRoute("01-replaced");
+        when(rejecting.getName()).thenReturn("00-rejecting");
+        when(replaced.getName()).thenReturn("01-replaced");
+        when(replacing.getName()).thenReturn("01-replaced");
+        when(replacing.accept(any(), any())).thenReturn(true);
+        when(replacing.handle(any(), any())).thenReturn(Response.newResponsePromise(new Response(Status.OK)));
+        when(mockRouteBuilder.build(any(), any(), any())).thenReturn(rejecting, replaced, replacing);
+        final RouterHandler handler = newHandler();
+        handler.load("00-rejecting", "00-rejecting", json(object()));
+        handler.load("01-replaced", "01-replaced", json(object()));
+        // The accepting route is replaced, and destroyed, before the request is dispatched to it
+        when(replaced.accept(any(), any())).thenAnswer(invocation -> {
+            handler.replace("01-replaced", "01-replaced", json(object()));
+            return true;
+        });
+
+        Response response = handler.handle(context(), new Request()).get();
+
+        assertThat(response.getStatus()).isEqualTo(Status.OK);
+        verify(replaced).destroy();
+        verify(replaced, never()).handle(any(), any());
+        verify(rejecting).accept(any(), any());
+        assertThat(handler.getRoutingMetrics().getLookupCount().getCount()).isEqualTo(1);
+        assertThat(handler.getRoutingMetrics().getEvaluatedConditionCount().getCount()).isEqualTo(3);
+    }
+
     @Test
     public void onChanges_ignoresOpenApiSpecFile_whenEnabledIsFalse() throws Exception {
 
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.http;
@@ -114,6 +115,22 @@ public class AdminHttpApplicationTest {
                 .isEqualTo(Status.NO_CONTENT);
     }
 
+    @Test
+    public void shouldExposeTheWebSocketMetrics() throws Exception {
+        Environment env = new DefaultEnvironment(Files.getRelative(getClass(), "ignored"));
+        AdminHttpApplication application = new AdminHttpApplication(ADMIN_PREFIX, json(object()), env, EVALUATION);
+        Handler handler = application.start();
+
+        Response response = handler.handle(buildLocalContext(), new Request().setMethod("GET")
+                                                                              .setUri("/api/system/websocket/metrics"))
+                                   .get();
+        assertThat(response.getStatus()).isEqualTo(Status.OK);
+        JsonValue metrics = json(response.getEntity().getJson());
+        assertThat(metrics.get("websocket.connections").isNumber()).isTrue();
+        assertThat(metrics.get("websocket.authorizations.failed").isNumber()).isTrue();
+        assertThat(metrics.get("websocket.authorizations.refreshes").isMap()).isTrue();
+    }
+
     private JsonValue adminConfig(Environment env) throws IOException {
         return readJson(new File(env.getConfigDirectory(), "admin.json").toURI().toURL());
     }
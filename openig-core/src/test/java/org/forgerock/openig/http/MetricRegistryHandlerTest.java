@@ -0,0 +1,66 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.json.JsonValue;
+import org.forgerock.services.context.RootContext;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+@SuppressWarnings("javadoc")
+public class MetricRegistryHandlerTest {
+
+    @Test
+    public void shouldExposeTheMetricsByName() throws Exception {
+        MetricRegistry metrics = new MetricRegistry();
+        metrics.counter("hits").inc(3);
+        metrics.register("size", (Gauge<Integer>) () -> 42);
+        metrics.meter("requests").mark();
+        metrics.timer("queries").update(2, TimeUnit.MILLISECONDS);
+
+        Response response = new MetricRegistryHandler(metrics).handle(new RootContext(),
+                                                                      new Request().setMethod("GET"))
+                                                              .get();
+
+        assertThat(response.getStatus()).isEqualTo(Status.OK);
+        JsonValue json = json(response.getEntity().getJson());
+        assertThat(json.get("hits").asLong()).isEqualTo(3L);
+        assertThat(json.get("size").asInteger()).isEqualTo(42);
+        assertThat(json.get("requests").get("count").asLong()).isEqualTo(1L);
+        assertThat(json.get("queries").get("count").asLong()).isEqualTo(1L);
+        assertThat(json.get("queries").get("max").asDouble()).isEqualTo(2d);
+    }
+
+    @Test
+    public void shouldOnlySupportGet() throws Exception {
+        Response response = new MetricRegistryHandler(new MetricRegistry()).handle(new RootContext(),
+                                                                                   new Request().setMethod("POST"))
+                                                                           .get();
+
+        assertThat(response.getStatus()).isEqualTo(Status.METHOD_NOT_ALLOWED);
+    }
+}
@@ -16,16 +16,23 @@
 
 package org.forgerock.openig.jwt;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.entry;
+import static org.forgerock.openig.jwt.JwtCookieSession.CHUNKS_MANIFEST_PREFIX;
+import static org.forgerock.openig.jwt.JwtCookieSession.CHUNK_SIZE;
+import static org.forgerock.openig.jwt.JwtCookieSession.MAX_CHUNKS;
 import static org.forgerock.openig.jwt.JwtCookieSession.OPENIG_JWT_SESSION;
+import static org.forgerock.openig.jwt.JwtSessionCodec.COMPRESSED_CLAIM;
 import static org.forgerock.openig.jwt.JwtSessionManager.DEFAULT_SESSION_TIMEOUT;
 import static org.forgerock.openig.jwt.JwtSessionManager.MAX_SESSION_TIMEOUT;
 import static org.forgerock.util.time.Duration.duration;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
@@ -37,8 +44,12 @@ import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.spec.RSAPrivateKeySpec;
 import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import javax.crypto.spec.SecretKeySpec;
+
 import org.forgerock.http.header.CookieHeader;
 import org.forgerock.http.header.SetCookieHeader;
 import org.forgerock.http.protocol.Cookie;
@@ -180,6 +191,8 @@ public class JwtCookieSessionTest {
         request = new Request();
         setRequestCookie(request, jwtCookie.getValue());
         session = newJwtSession(request, timeService, sessionTimeout);
+        // The session content is loaded (and found expired) on first access
+        assertThat(session).isEmpty();
         response = new Response(Status.OK);
         session.save(response);
         jwtCookie = SetCookieHeader.valueOf(response).getCookies().get(0);
@@ -256,6 +269,7 @@ public class JwtCookieSessionTest {
         Request request = new Request();
         setRequestCookie(request, ORIGINAL);
         JwtCookieSession session = newJwtSession(request);
+        assertThat(session.get("a-value")).isEqualTo("ForgeRock OpenIG");
         Response response = new Response(Status.OK);
         session.save(response);
 
@@ -266,6 +280,7 @@ public class JwtCookieSessionTest {
         request = new Request();
         setRequestCookie(request, jwtCookie.getValue());
         session = newJwtSession(request);
+        assertThat(session.get("a-value")).isEqualTo("ForgeRock OpenIG");
         response = new Response(Status.OK);
         session.save(response);
 
@@ -326,15 +341,188 @@ public class JwtCookieSessionTest {
         assertThat(session).contains(entry("a-value", "ForgeRock OpenIG"));
     }
 
+    @Test
+    public void shouldNotDecodeNorRewriteAnUnusedSession() throws Exception {
+        Request request = new Request();
+        // Would be discarded and overwritten if it was decoded
+        setRequestCookie(request, ALTERED);
+
+        JwtCookieSession session = newJwtSession(request);
+        Response response = new Response(Status.OK);
+        session.save(response);
+
+        assertThat(response.getHeaders().get("Set-Cookie")).isNull();
+    }
+
+    @Test
+    public void shouldStoreAndLoadDirectlyEncryptedSession() throws Exception {
+        SecretKeySpec key = new SecretKeySpec(new byte[32], "AES");
+        JwtSessionCodec codec = JwtSessionCodec.direct(key, SIGNING_HANDLER, false, 0);
+        JwtCookieSession session = newJwtSession(new Request(), codec);
+        session.put("a-value", "ForgeRock OpenIG");
+        Response response = new Response(Status.OK);
+        session.save(response);
+
+        Cookie cookie = SetCookieHeader.valueOf(response).getCookies().get(0);
+        assertThat(cookie.getValue().split("\\.")).hasSize(3);
+        Request request = new Request();
+        setRequestCookie(request, cookie.getValue());
+        assertThat(newJwtSession(request, codec)).contains(entry("a-value", "ForgeRock OpenIG"));
+
+        // Another key can't decrypt the session
+        JwtSessionCodec other = JwtSessionCodec.direct(new SecretKeySpec(new byte[] {
+            1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+            17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32 }, "AES"), SIGNING_HANDLER, false, 0);
+        assertThat(newJwtSession(request, other)).isEmpty();
+    }
+
+    @Test
+    public void shouldReuseCachedClaims() throws Exception {
+        SigningHandler signingHandler = spy(SIGNING_HANDLER);
+        JwtSessionCodec codec = JwtSessionCodec.rsa(keyPair, signingHandler, false, 10);
+        Request request = new Request();
+        setRequestCookie(request, ORIGINAL);
+
+        JwtCookieSession session = newJwtSession(request, codec);
+        assertThat(session).contains(entry("a-value", "ForgeRock OpenIG"));
+        // Modifying a session must not alter the cached claims
+        session.put("a-value", "modified");
+
+        assertThat(newJwtSession(request, codec)).contains(entry("a-value", "ForgeRock OpenIG"));
+        assertThat(invocations(signingHandler, "verify")).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldCacheEncodedClaims() throws Exception {
+        SigningHandler signingHandler = spy(SIGNING_HANDLER);
+        JwtSessionCodec codec = JwtSessionCodec.rsa(keyPair, signingHandler, false, 10);
+        JwtCookieSession session = newJwtSession(new Request(), codec);
+        session.put("a-value", "ForgeRock OpenIG");
+        Response response = new Response(Status.OK);
+        session.save(response);
+
+        Request request = new Request();
+        setRequestCookie(request, SetCookieHeader.valueOf(response).getCookies().get(0).getValue());
+        assertThat(newJwtSession(request, codec)).contains(entry("a-value", "ForgeRock OpenIG"));
+        assertThat(invocations(signingHandler, "verify")).isEqualTo(0);
+    }
+
+    private static long invocations(final Object mock, final String method) {
+        return mockingDetails(mock).getInvocations()
+                                   .stream()
+                                   .filter(invocation -> invocation.getMethod().getName().equals(method))
+                                   .count();
+    }
+
     @Test(expectedExceptions = IOException.class,
           expectedExceptionsMessageRegExp = "JWT session is too large.*")
-    public void shouldFailIfSessionIsLargerThanFourThousandsKB() throws Exception {
+    public void shouldFailIfSessionIsLargerThanTheMaximumNumberOfChunks() throws Exception {
         Request request = new Request();
         JwtCookieSession session = newJwtSession(request);
-        session.put("more-than-4KB", generateMessageOf(5000));
+        session.put("too-many-chunks", generateMessageOf(MAX_CHUNKS * CHUNK_SIZE));
         session.save(new Response(Status.OK));
     }
 
+    @Test
+    public void shouldSplitLargeSessionAcrossChunkCookies() throws Exception {
+        JwtCookieSession session = newJwtSession(new Request());
+        session.put("more-than-4KB", generateMessageOf(5000));
+        Response response = new Response(Status.OK);
+        session.save(response);
+
+        List<Cookie> cookies = SetCookieHeader.valueOf(response).getCookies();
+        int chunks = cookies.size() - 1;
+        assertThat(chunks).isGreaterThan(1);
+        assertThat(cookies).extracting("name").containsExactlyElementsOf(cookieNames(true, chunks));
+        assertThat(cookies.get(0).getValue()).isEqualTo(CHUNKS_MANIFEST_PREFIX + chunks);
+        assertThat(cookies.get(1).getValue()).hasSize(CHUNK_SIZE);
+
+        Request request = new Request();
+        setRequestCookies(request, cookies);
+        session = newJwtSession(request);
+        assertThat(session.get("more-than-4KB")).isEqualTo(generateMessageOf(5000));
+
+        // Once shrunk, the session fits in a single cookie again and the chunks are expired
+        session.put("more-than-4KB", "small");
+        response = new Response(Status.OK);
+        session.save(response);
+        cookies = SetCookieHeader.valueOf(response).getCookies();
+        assertThat(cookies).extracting("name").containsExactlyElementsOf(cookieNames(true, chunks));
+        assertThat(decryptClaimsSet(cookies.get(0).getValue()).get("more-than-4KB").asString()).isEqualTo("small");
+        for (Cookie chunk : cookies.subList(1, cookies.size())) {
+            assertThat(chunk.getExpires().getTime()).isEqualTo(0L);
+        }
+    }
+
+    @Test
+    public void shouldNotReemitUnchangedManifest() throws Exception {
+        JwtCookieSession session = newJwtSession(new Request());
+        session.put("more-than-4KB", generateMessageOf(5000));
+        Response response = new Response(Status.OK);
+        session.save(response);
+
+        List<Cookie> cookies = SetCookieHeader.valueOf(response).getCookies();
+        Request request = new Request();
+        setRequestCookies(request, cookies);
+        session = newJwtSession(request);
+        // Same size, different content
+        session.put("more-than-4KB", generateMessageOf(4999) + "B");
+        response = new Response(Status.OK);
+        session.save(response);
+
+        // Same number of chunks: every chunk is encrypted again, but the manifest is unchanged
+        assertThat(SetCookieHeader.valueOf(response).getCookies())
+                .extracting("name")
+                .containsExactlyElementsOf(cookieNames(false, cookies.size() - 1));
+    }
+
+    private static List<String> cookieNames(final boolean manifest, final int chunks) {
+        List<String> names = new ArrayList<>();
+        if (manifest) {
+            names.add(OPENIG_JWT_SESSION);
+        }
+        for (int i = 0; i < chunks; i++) {
+            names.add(OPENIG_JWT_SESSION + "." + i);
+        }
+        return names;
+    }
+
+    @Test
+    public void shouldDiscardSessionWithMissingChunks() throws Exception {
+        Request request = new Request();
+        request.getHeaders().add(new CookieHeader(asList(
+                new Cookie().setName(OPENIG_JWT_SESSION).setValue(CHUNKS_MANIFEST_PREFIX + "2"),
+                new Cookie().setName(OPENIG_JWT_SESSION + ".0").setValue("chunk"))));
+        JwtCookieSession session = newJwtSession(request);
+        assertThat(session).isEmpty();
+
+        Response response = new Response(Status.OK);
+        session.save(response);
+        assertThat(SetCookieHeader.valueOf(response).getCookies())
+                .extracting("name")
+                .containsExactly(OPENIG_JWT_SESSION, OPENIG_JWT_SESSION + ".0");
+    }
+
+    @Test
+    public void shouldCompressSession() throws Exception {
+        JwtSessionCodec codec = JwtSessionCodec.rsa(keyPair, SIGNING_HANDLER, true, 0);
+        JwtCookieSession session = newJwtSession(new Request(), codec);
+        session.put("more-than-4KB", generateMessageOf(5000));
+        Response response = new Response(Status.OK);
+        session.save(response);
+
+        // Compressed, the session fits in a single cookie
+        List<Cookie> cookies = SetCookieHeader.valueOf(response).getCookies();
+        assertThat(cookies).hasSize(1);
+        assertThat(decryptClaimsSet(cookies.get(0).getValue()).keys()).containsOnly(COMPRESSED_CLAIM);
+
+        Request request = new Request();
+        setRequestCookies(request, cookies);
+        assertThat(newJwtSession(request, codec).get("more-than-4KB")).isEqualTo(generateMessageOf(5000));
+        // Compressed sessions are always readable
+        assertThat(newJwtSession(request).get("more-than-4KB")).isEqualTo(generateMessageOf(5000));
+    }
+
     @Test
     public void shouldWarnTheUserAboutGettingCloseToTheThreshold() throws Exception {
         Request request = new Request();
@@ -374,6 +562,15 @@ public class JwtCookieSessionTest {
                                     SIGNING_HANDLER);
     }
 
+    private JwtCookieSession newJwtSession(final Request request, final JwtSessionCodec codec) {
+        return new JwtCookieSession(request,
+                                    codec,
+                                    OPENIG_JWT_SESSION,
+                                    null,
+                                    TimeService.SYSTEM,
+                                    duration(DEFAULT_SESSION_TIMEOUT));
+    }
+
     private JwtCookieSession newJwtSession(final Request request, String cookieName, String cookieDomain) {
         return new JwtCookieSession(request,
                                     keyPair,
@@ -384,6 +581,14 @@ public class JwtCookieSessionTest {
                                     SIGNING_HANDLER);
     }
 
+    private static void setRequestCookies(final Request request, final List<Cookie> cookies) {
+        List<Cookie> requestCookies = new ArrayList<>();
+        for (Cookie cookie : cookies) {
+            requestCookies.add(new Cookie().setName(cookie.getName()).setValue(cookie.getValue()));
+        }
+        request.getHeaders().add(new CookieHeader(requestCookies));
+    }
+
     private static void setRequestCookie(final Request request, final String value) {
         request.getHeaders().add(
                 new CookieHeader(singletonList(new Cookie().setValue(value).setName(OPENIG_JWT_SESSION))));
@@ -0,0 +1,58 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+package org.forgerock.openig.resolver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.openig.resolver.Resolver.UNRESOLVED;
+
+import org.forgerock.services.context.AttributesContext;
+import org.forgerock.services.context.ClientContext;
+import org.forgerock.services.context.RootContext;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ContextResolverTest {
+
+    private final ContextResolver resolver = new ContextResolver();
+
+    @Test
+    public void shouldGetCommonProperties() throws Exception {
+        RootContext root = new RootContext("root-id");
+        AttributesContext context = new AttributesContext(root);
+        assertThat(resolver.get(root, "id")).isEqualTo("root-id");
+        assertThat(resolver.get(root, "rootContext")).isEqualTo(true);
+        assertThat(resolver.get(context, "contextName")).isEqualTo("attributes");
+        assertThat(resolver.get(context, "parent")).isSameAs(root);
+        assertThat(resolver.get(context, "attributes")).isSameAs(context.getAttributes());
+    }
+
+    @Test
+    public void shouldGetClientProperties() throws Exception {
+        ClientContext context = ClientContext.buildExternalClientContext(new RootContext())
+                                             .remoteAddress("127.0.0.1")
+                                             .secure(true)
+                                             .build();
+        assertThat(resolver.get(context, "remoteAddress")).isEqualTo("127.0.0.1");
+        assertThat(resolver.get(context, "secure")).isEqualTo(true);
+    }
+
+    @Test
+    public void shouldNotResolvePropertiesOfOtherContexts() throws Exception {
+        assertThat(resolver.get(new RootContext(), "attributes")).isSameAs(UNRESOLVED);
+        assertThat(resolver.get(new RootContext(), "unknown")).isSameAs(UNRESOLVED);
+        assertThat(resolver.put(new RootContext(), "id", "other")).isSameAs(UNRESOLVED);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+package org.forgerock.openig.resolver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.openig.resolver.Resolver.UNRESOLVED;
+
+import org.forgerock.http.MutableUri;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class MutableUriResolverTest {
+
+    private static final String URI = "https://user@www.example.com:8443/a%20b?x=%31#frag";
+
+    @DataProvider
+    public static Object[][] properties() {
+        // @Checkstyle:off
+        return new Object[][] {
+                { "scheme", "https" },
+                { "host", "www.example.com" },
+                { "port", 8443 },
+                { "path", "/a b" },
+                { "rawPath", "/a%20b" },
+                { "query", "x=1" },
+                { "rawQuery", "x=%31" },
+                { "fragment", "frag" },
+                { "userInfo", "user" },
+                { "authority", "user@www.example.com:8443" }
+        };
+        // @Checkstyle:on
+    }
+
+    @Test(dataProvider = "properties")
+    public void shouldGetProperty(final String property, final Object expected) throws Exception {
+        assertThat(new MutableUriResolver().get(MutableUri.uri(URI), property)).isEqualTo(expected);
+    }
+
+    @Test
+    public void shouldNotResolveUnknownProperties() throws Exception {
+        MutableUriResolver resolver = new MutableUriResolver();
+        assertThat(resolver.get(MutableUri.uri(URI), "unknown")).isSameAs(UNRESOLVED);
+        assertThat(resolver.get(MutableUri.uri(URI), 42)).isSameAs(UNRESOLVED);
+        assertThat(resolver.put(MutableUri.uri(URI), "path", "/other")).isSameAs(UNRESOLVED);
+    }
+}
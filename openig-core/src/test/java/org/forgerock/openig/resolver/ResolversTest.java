@@ -0,0 +1,83 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+package org.forgerock.openig.resolver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.forgerock.http.protocol.Request;
+import org.forgerock.services.context.AttributesContext;
+import org.forgerock.services.context.ClientContext;
+import org.forgerock.services.context.RootContext;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ResolversTest {
+
+    @Test
+    public void shouldListResolversFromTheMostSpecificToTheBeanResolver() throws Exception {
+        assertThat(Resolvers.resolvers(new HashMap<>()))
+                .hasOnlyElementsOfTypes(MapResolver.class, BeanResolver.class)
+                .last().isSameAs(BeanResolver.INSTANCE);
+        assertThat(Resolvers.resolvers(new Request()))
+                .first().isInstanceOf(RequestResolver.class);
+    }
+
+    @Test
+    public void shouldListResolversOnlyOnce() throws Exception {
+        // HashMap implements Map, and so does its superclass AbstractMap
+        assertThat(Resolvers.resolvers(new HashMap<>())).doesNotHaveDuplicates().hasSize(2);
+    }
+
+    @Test
+    public void shouldShareResolversOfTheSameClass() throws Exception {
+        assertThat(Resolvers.resolvers(new Request()))
+                .containsExactlyElementsOf(Resolvers.resolvers(new Request()));
+    }
+
+    @Test
+    public void shouldUseArrayResolverForArrays() throws Exception {
+        assertThat(Resolvers.resolvers(new String[0])).hasOnlyElementsOfType(ArrayResolver.class).hasSize(1);
+        assertThat(Resolvers.get(new String[] {"a", "b"}, 1)).isEqualTo("b");
+    }
+
+    @Test
+    public void shouldResolveWithTheFirstMatchingResolver() throws Exception {
+        Request request = new Request().setMethod("GET").setUri("http://example.com:8080/path?a=b");
+        assertThat(Resolvers.get(request, "method")).isEqualTo("GET");
+        assertThat(Resolvers.get(request.getUri(), "path")).isEqualTo("/path");
+        assertThat(Resolvers.get(request.getUri(), "port")).isEqualTo(8080);
+
+        AttributesContext context = new AttributesContext(new RootContext());
+        context.getAttributes().put("foo", "bar");
+        Object attributes = Resolvers.get(context, "attributes");
+        assertThat(attributes).isSameAs(context.getAttributes());
+        assertThat(Resolvers.get(attributes, "foo")).isEqualTo("bar");
+    }
+
+    @Test
+    public void shouldFallbackToBeanResolution() throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        assertThat(Resolvers.put(map, "foo", "bar")).isNull();
+        assertThat(map).containsEntry("foo", "bar");
+        ClientContext client = ClientContext.buildExternalClientContext(new RootContext())
+                                            .remotePort(8080)
+                                            .build();
+        assertThat(Resolvers.get(client, "remotePort")).isEqualTo(8080);
+    }
+}
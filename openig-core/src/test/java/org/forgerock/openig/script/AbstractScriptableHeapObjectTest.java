@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.script;
@@ -22,16 +23,21 @@ import static org.forgerock.json.JsonValue.json;
 import static org.forgerock.json.JsonValue.object;
 import static org.forgerock.openig.el.Bindings.bindings;
 import static org.forgerock.openig.script.Script.GROOVY_MIME_TYPE;
+import static org.forgerock.util.time.Duration.duration;
 import static org.mockito.Mockito.mock;
 
 import java.io.File;
 import java.net.URL;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 
 import javax.script.ScriptException;
 
 import org.forgerock.http.Handler;
 import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.http.routing.Router;
 import org.forgerock.json.JsonValue;
 import org.forgerock.openig.config.Environment;
 import org.forgerock.openig.config.env.DefaultEnvironment;
@@ -40,6 +46,7 @@ import org.forgerock.openig.heap.HeapException;
 import org.forgerock.openig.heap.HeapImpl;
 import org.forgerock.openig.heap.Keys;
 import org.forgerock.openig.heap.Name;
+import org.forgerock.openig.http.EndpointRegistry;
 import org.forgerock.services.context.RootContext;
 import org.forgerock.util.promise.Promise;
 import org.testng.annotations.BeforeMethod;
@@ -49,12 +56,15 @@ import org.testng.annotations.Test;
 public class AbstractScriptableHeapObjectTest {
 
     private HeapImpl heap;
+    private Router router;
 
     @BeforeMethod
     public void setUp() throws Exception {
         heap = new HeapImpl(Name.of("heap"));
         heap.put(Keys.ENVIRONMENT_HEAP_KEY, getEnvironment());
         heap.put(Keys.CLIENT_HANDLER_HEAP_KEY, mock(Handler.class));
+        router = new Router();
+        heap.put(Keys.ENDPOINT_REGISTRY_HEAP_KEY, new EndpointRegistry(router, ""));
     }
 
     @Test
@@ -81,6 +91,79 @@ public class AbstractScriptableHeapObjectTest {
         scriptableObject.runScript(bindings(), new RootContext(), Integer.class).getOrThrow();
     }
 
+    @Test
+    public void shouldAdaptACompletedCompletionStage() throws Exception {
+        AbstractScriptableHeapObject<Integer> scriptableObject =
+                newScriptableObject("java.util.concurrent.CompletableFuture.completedFuture(42)");
+        assertThat(scriptableObject.runScript(bindings(), new RootContext(), Integer.class).get()).isEqualTo(42);
+    }
+
+    @Test
+    public void shouldNotBlockOnAPendingCompletionStage() throws Exception {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        AbstractScriptableHeapObject<Integer> scriptableObject = newScriptableObject("future.thenApply { it + 1 }");
+
+        Promise<Integer, ScriptException> promise = scriptableObject.runScript(bindings().bind("future", future),
+                                                                               new RootContext(),
+                                                                               Integer.class);
+        assertThat(promise.isDone()).isFalse();
+
+        future.complete(41);
+        assertThat(promise.get()).isEqualTo(42);
+    }
+
+    @Test(expectedExceptions = ScriptException.class)
+    public void shouldFailWhenTheCompletionStageFails() throws Exception {
+        AbstractScriptableHeapObject<Integer> scriptableObject = newScriptableObject(
+                "java.util.concurrent.CompletableFuture.supplyAsync { throw new IllegalStateException() }");
+        scriptableObject.runScript(bindings(), new RootContext(), Integer.class).getOrThrow();
+    }
+
+    @Test
+    public void shouldCallAClosureContinuation() throws Exception {
+        AbstractScriptableHeapObject<Integer> scriptableObject = newScriptableObject("return { -> 42 }");
+        assertThat(scriptableObject.runScript(bindings(), new RootContext(), Integer.class).get()).isEqualTo(42);
+    }
+
+    @Test(expectedExceptions = ScriptException.class)
+    public void shouldFailWhenThePromiseResultIsNotOfTheExpectedType() throws Exception {
+        AbstractScriptableHeapObject<Integer> scriptableObject =
+                newScriptableObject("org.forgerock.util.promise.Promises.newResultPromise('foo')");
+        scriptableObject.runScript(bindings(), new RootContext(), Integer.class).getOrThrow();
+    }
+
+    @Test
+    public void shouldCountBlockingExecutions() throws Exception {
+        AbstractScriptableHeapObject<Integer> scriptableObject = newScriptableObject("sleep(20)", "return 42");
+        scriptableObject.setBlockingThreshold(duration("1 millisecond"));
+
+        assertThat(scriptableObject.runScript(bindings(), new RootContext(), Integer.class).get()).isEqualTo(42);
+        assertThat(scriptableObject.getBlockingExecutionCount()).isEqualTo(1);
+
+        scriptableObject.setBlockingThreshold(duration("unlimited"));
+        scriptableObject.runScript(bindings(), new RootContext(), Integer.class).get();
+        assertThat(scriptableObject.getBlockingExecutionCount()).isEqualTo(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldExposeBlockingExecutionsAtTheMetricsEndpoint() throws Exception {
+        JsonValue config = json(object(field("type", GROOVY_MIME_TYPE),
+                                       field("source", "sleep(20)\nreturn 42"),
+                                       field("blockingThreshold", "1 millisecond")));
+        AbstractScriptableHeapObject<Number> scriptableObject =
+                (AbstractScriptableHeapObject<Number>) newScriptableHeaplet().create(Name.of("script"),
+                                                                                     config,
+                                                                                     heap);
+        scriptableObject.runScript(bindings(), new RootContext(), Number.class).get();
+
+        Response response = router.handle(new RootContext(), new Request().setMethod("GET").setUri("/script/metrics"))
+                                  .get();
+
+        assertThat(response.getStatus()).isEqualTo(Status.OK);
+        assertThat(json(response.getEntity().getJson()).get("executions.blocking").asLong()).isEqualTo(1L);
+    }
+
     @Test
     public void shouldGiveAccessToHeapPropertiesInScript() throws Exception {
         heap.init(json(object(field("properties", object(field("heapProperty", "myValue"))))));
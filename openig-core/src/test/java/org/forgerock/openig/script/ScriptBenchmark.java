@@ -0,0 +1,114 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.script;
+
+import static org.forgerock.openig.script.Script.GROOVY_MIME_TYPE;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.groovy.control.customizers.ImportCustomizer;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.openig.config.Environment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import groovy.lang.Binding;
+import groovy.util.GroovyScriptEngine;
+
+/**
+ * Compares the cost of running a Groovy script file with the current {@link Script} implementation (class compiled
+ * once, modification checks at most once per interval) and with the previous one
+ * ({@link GroovyScriptEngine#run(String, Binding)} on every call, that checks the files and creates the script
+ * through the engine).
+ * <p>
+ * Run it from the test classpath:
+ * <pre>
+ *     {@code java -cp <test classpath> org.forgerock.openig.script.ScriptBenchmark}
+ * </pre>
+ */
+@SuppressWarnings("javadoc")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ScriptBenchmark {
+
+    private static final String FILE = "TestFileBasedScript.groovy";
+
+    private Script fileScript;
+    private Script inlineScript;
+    private GroovyScriptEngine legacyEngine;
+    private Map<String, Object> bindings;
+
+    @Setup
+    public void setUp() throws Exception {
+        Environment environment = ScriptTest.getEnvironment();
+        fileScript = Script.fromFile(environment, GROOVY_MIME_TYPE, FILE);
+        inlineScript = Script.fromSource(environment, GROOVY_MIME_TYPE,
+                                         "request.method == 'GET' && request.uri.path.startsWith('/api')");
+
+        File directory = environment.getScriptDirectory("groovy");
+        legacyEngine = new GroovyScriptEngine(directory.getAbsolutePath());
+        legacyEngine.getConfig().addCompilationCustomizers(
+                new ImportCustomizer().addStarImports("org.forgerock.http.protocol"));
+        legacyEngine.loadScriptByName(FILE);
+
+        bindings = new HashMap<>();
+        bindings.put("request", new Request().setMethod("GET").setUri("http://localhost/api/users"));
+    }
+
+    @Benchmark
+    public Object runFile() throws Exception {
+        return fileScript.run(new HashMap<>(bindings));
+    }
+
+    @Benchmark
+    public Object legacyRunFile() throws Exception {
+        return legacyEngine.run(FILE, new Binding(new HashMap<>(bindings)));
+    }
+
+    @Benchmark
+    public Object runInline() throws Exception {
+        return inlineScript.run(new HashMap<>(bindings));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ScriptBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.script;
+
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.openig.script.Script.GROOVY_MIME_TYPE;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.script.ScriptException;
+
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.openig.config.Environment;
+import org.forgerock.openig.config.env.DefaultEnvironment;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ScriptTest {
+
+    @Test
+    public void shouldRunInlineScriptWithTheGivenBindings() throws Exception {
+        Script script = Script.fromSource(getEnvironment(), GROOVY_MIME_TYPE, "return value * 2");
+
+        assertThat(script.run(singletonMap("value", (Object) 1))).isEqualTo(2);
+        assertThat(script.run(singletonMap("value", (Object) 21))).isEqualTo(42);
+    }
+
+    @Test
+    public void shouldUseDefaultImportsInInlineScripts() throws Exception {
+        Script script = Script.fromSource(getEnvironment(), GROOVY_MIME_TYPE, "new Response(Status.OK)");
+
+        assertThat(((Response) script.run(new HashMap<String, Object>())).getStatus()).isEqualTo(Status.OK);
+    }
+
+    @Test
+    public void shouldRunFileScript() throws Exception {
+        Script script = Script.fromFile(getEnvironment(), GROOVY_MIME_TYPE, "TestFileBasedScript.groovy");
+
+        assertThat(((Response) script.run(new HashMap<String, Object>())).getStatus()).isEqualTo(Status.OK);
+    }
+
+    @Test
+    public void shouldRunConcurrentlyWithIsolatedBindings() throws Exception {
+        final Script script = Script.fromSource(getEnvironment(), GROOVY_MIME_TYPE,
+                                                "def result = []",
+                                                "for (int i = 0; i < 100; i++) { result << value }",
+                                                "result.unique()");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                final int value = i;
+                futures.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        Map<String, Object> bindings = new HashMap<>();
+                        bindings.put("value", value);
+                        return script.run(bindings);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertThat((List<?>) futures.get(i).get()).containsExactly(i);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expectedExceptions = ScriptException.class)
+    public void shouldFailToLoadInvalidInlineScript() throws Exception {
+        Script.fromSource(getEnvironment(), GROOVY_MIME_TYPE, "this is not groovy");
+    }
+
+    @Test(expectedExceptions = ScriptException.class)
+    public void shouldWrapScriptFailures() throws Exception {
+        Script.fromSource(getEnvironment(), GROOVY_MIME_TYPE, "throw new IllegalStateException()")
+              .run(new HashMap<String, Object>());
+    }
+
+    static Environment getEnvironment() throws Exception {
+        // The base directory holds the scripts/groovy directory
+        File groovy = new File(ScriptTest.class.getResource("/scripts/groovy").toURI());
+        return new DefaultEnvironment(groovy.getParentFile().getParentFile());
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.session;
+
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.util.time.Duration.duration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.Test;
+
+import com.google.common.base.Ticker;
+
+@SuppressWarnings("javadoc")
+public class InMemorySessionStoreTest {
+
+    @Test
+    public void shouldExpireInactiveSessions() throws Exception {
+        final AtomicLong nanos = new AtomicLong();
+        InMemorySessionStore store = new InMemorySessionStore(10, duration("1 minute"), new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        });
+        store.store("id", singletonMap("a-value", (Object) "OpenIG"));
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(50));
+        assertThat(store.load("id")).containsEntry("a-value", "OpenIG");
+
+        // The previous access has extended the session lifetime
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(50));
+        assertThat(store.load("id")).isNotNull();
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        assertThat(store.load("id")).isNull();
+    }
+
+    @Test
+    public void shouldDeleteSessions() throws Exception {
+        InMemorySessionStore store = new InMemorySessionStore(10, duration("1 minute"));
+        store.store("id", singletonMap("a-value", (Object) "OpenIG"));
+        store.delete("id");
+        assertThat(store.load("id")).isNull();
+    }
+}
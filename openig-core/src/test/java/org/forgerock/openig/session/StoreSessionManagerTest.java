@@ -0,0 +1,204 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.session;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.forgerock.openig.session.StoreSessionManager.OPENIG_SESSION;
+import static org.forgerock.util.time.Duration.duration;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.forgerock.http.header.CookieHeader;
+import org.forgerock.http.header.SetCookieHeader;
+import org.forgerock.http.protocol.Cookie;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.http.session.Session;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+@SuppressWarnings("javadoc")
+public class StoreSessionManagerTest {
+
+    private SessionStore store;
+    private Cache<String, Map<String, Object>> nearCache;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        store = spy(new InMemorySessionStore(100, duration("30 minutes")));
+        nearCache = CacheBuilder.newBuilder().maximumSize(10).expireAfterWrite(1, TimeUnit.MINUTES).build();
+    }
+
+    @Test
+    public void shouldStoreSessionContentAndIssueAnIdentifier() throws Exception {
+        StoreSessionManager manager = new StoreSessionManager(store, OPENIG_SESSION, null, null);
+        Session session = manager.load(new Request());
+        session.put("a-value", "OpenIG");
+        Response response = new Response(Status.OK);
+        manager.save(session, response);
+
+        Cookie cookie = SetCookieHeader.valueOf(response).getCookies().get(0);
+        assertThat(cookie.getName()).isEqualTo(OPENIG_SESSION);
+        assertThat(cookie.isHttpOnly()).isTrue();
+        assertThat(store.load(cookie.getValue())).containsOnly(entry("a-value", "OpenIG"));
+
+        session = manager.load(requestWithSession(cookie.getValue()));
+        assertThat(session).containsOnly(entry("a-value", "OpenIG"));
+    }
+
+    @Test
+    public void shouldNotAccessTheStoreForAnUnusedSession() throws Exception {
+        StoreSessionManager manager = new StoreSessionManager(store, OPENIG_SESSION, null, null);
+        Response response = new Response(Status.OK);
+        manager.save(manager.load(requestWithSession("id")), response);
+
+        verify(store, never()).load(anyString());
+        assertThat(response.getHeaders().get("Set-Cookie")).isNull();
+    }
+
+    @Test
+    public void shouldWriteModificationsOnceWhenSaved() throws Exception {
+        store.store("id", singletonMap("a-value", "OpenIG"));
+        StoreSessionManager manager = new StoreSessionManager(store, OPENIG_SESSION, null, null);
+
+        Session session = manager.load(requestWithSession("id"));
+        session.put("b-value", "b");
+        session.put("c-value", "c");
+        session.keySet().remove("a-value");
+        Response response = new Response(Status.OK);
+        manager.save(session, response);
+
+        // Existing session: no new cookie
+        assertThat(response.getHeaders().get("Set-Cookie")).isNull();
+        verify(store, times(2)).store(anyString(), anyMap());
+        assertThat(store.load("id")).containsOnly(entry("b-value", "b"), entry("c-value", "c"));
+    }
+
+    @Test
+    public void shouldNotWriteAnUnmodifiedSession() throws Exception {
+        store.store("id", singletonMap("a-value", "OpenIG"));
+        StoreSessionManager manager = new StoreSessionManager(store, OPENIG_SESSION, null, null);
+
+        Session session = manager.load(requestWithSession("id"));
+        assertThat(session.get("a-value")).isEqualTo("OpenIG");
+        manager.save(session, new Response(Status.OK));
+
+        verify(store, times(1)).store(anyString(), anyMap());
+    }
+
+    @Test
+    public void shouldDeleteEmptiedSession() throws Exception {
+        store.store("id", singletonMap("a-value", "OpenIG"));
+        StoreSessionManager manager = new StoreSessionManager(store, OPENIG_SESSION, null, null);
+
+        Session session = manager.load(requestWithSession("id"));
+        session.clear();
+        Response response = new Response(Status.OK);
+        manager.save(session, response);
+
+        assertThat(store.load("id")).isNull();
+        assertThat(SetCookieHeader.valueOf(response).getCookies().get(0).getExpires().getTime()).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldNotReuseAnUnknownIdentifier() throws Exception {
+        StoreSessionManager manager = new StoreSessionManager(store, OPENIG_SESSION, null, null);
+        Session session = manager.load(requestWithSession("forged"));
+        session.put("a-value", "OpenIG");
+        Response response = new Response(Status.OK);
+        manager.save(session, response);
+
+        String id = SetCookieHeader.valueOf(response).getCookies().get(0).getValue();
+        assertThat(id).isNotEqualTo("forged");
+        assertThat(store.load("forged")).isNull();
+        assertThat(store.load(id)).containsOnly(entry("a-value", "OpenIG"));
+    }
+
+    @Test
+    public void shouldReadSessionsFromTheNearCache() throws Exception {
+        store.store("id", singletonMap("a-value", "OpenIG"));
+        StoreSessionManager manager = new StoreSessionManager(store, OPENIG_SESSION, null, nearCache);
+
+        Session session = manager.load(requestWithSession("id"));
+        assertThat(session).containsOnly(entry("a-value", "OpenIG"));
+        // Local modifications must not alter the cached copy
+        session.put("a-value", "modified");
+
+        assertThat(manager.load(requestWithSession("id"))).containsOnly(entry("a-value", "OpenIG"));
+        verify(store, times(1)).load("id");
+    }
+
+    @Test
+    public void shouldInvalidateTheNearCache() throws Exception {
+        SessionStore notifyingStore = spy(new InMemorySessionStore(100, duration("30 minutes")));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+        StoreSessionManager manager = new StoreSessionManager(notifyingStore, OPENIG_SESSION, null, nearCache);
+        verify(notifyingStore).addInvalidationListener(listener.capture());
+
+        notifyingStore.store("id", singletonMap("a-value", "OpenIG"));
+        assertThat(manager.load(requestWithSession("id"))).containsOnly(entry("a-value", "OpenIG"));
+
+        // Modified by another instance
+        notifyingStore.store("id", singletonMap("a-value", "modified"));
+        listener.getValue().accept("id");
+
+        assertThat(manager.load(requestWithSession("id"))).containsOnly(entry("a-value", "modified"));
+    }
+
+    @Test
+    public void shouldStartANewSessionWhenTheStoreFails() throws Exception {
+        doThrow(new IOException("unreachable")).when(store).load(any());
+        StoreSessionManager manager = new StoreSessionManager(store, OPENIG_SESSION, null, null);
+        Session session = manager.load(requestWithSession("id"));
+        assertThat(session).isEmpty();
+
+        session.put("a-value", "OpenIG");
+        Response response = new Response(Status.OK);
+        manager.save(session, response);
+        assertThat(SetCookieHeader.valueOf(response).getCookies().get(0).getValue()).isNotEqualTo("id");
+    }
+
+    private static Map<String, Object> singletonMap(final String key, final Object value) {
+        return Collections.<String, Object>singletonMap(key, value);
+    }
+
+    private static Request requestWithSession(final String id) {
+        Request request = new Request();
+        request.getHeaders().add(new CookieHeader(singletonList(new Cookie().setName(OPENIG_SESSION).setValue(id))));
+        return request;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.text;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.forgerock.util.time.Duration.duration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.Executor;
+
+import org.forgerock.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class IndexedSeparatedValuesFileTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    private File file;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        file = File.createTempFile("users", ".csv");
+        write("username,password,email\n"
+                      + "joe,secret,joe@example.com\n"
+                      + "jane,other,jane@example.com\n"
+                      + "joe,duplicate,joe2@example.com\n");
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Test
+    public void shouldFindRecordsWithTheIndex() throws Exception {
+        IndexedSeparatedValuesFile values = indexed(IndexedSeparatedValuesFile.DEFAULT_MEMORY_LIMIT,
+                                                    duration("unlimited"));
+
+        assertThat(values.getRecord("username", "jane")).containsOnly(entry("username", "jane"),
+                                                                      entry("password", "other"),
+                                                                      entry("email", "jane@example.com"));
+        // Same as a file scan: the first matching record wins
+        assertThat(values.getRecord("username", "joe")).contains(entry("password", "secret"));
+        assertThat(values.getRecord("username", "jack")).isNull();
+        assertThat(values.getHitCount()).isEqualTo(2);
+        assertThat(values.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldFindRecordsOnNonIndexedFields() throws Exception {
+        IndexedSeparatedValuesFile values = indexed(IndexedSeparatedValuesFile.DEFAULT_MEMORY_LIMIT,
+                                                    duration("unlimited"));
+
+        assertThat(values.getRecord("email", "jane@example.com")).contains(entry("username", "jane"));
+        assertThat(values.getRecord("unknown", "jane")).isNull();
+    }
+
+    @Test
+    public void shouldNotReadTheFileAgainWhenUnmodified() throws Exception {
+        IndexedSeparatedValuesFile values = indexed(IndexedSeparatedValuesFile.DEFAULT_MEMORY_LIMIT,
+                                                    duration("unlimited"));
+        assertThat(values.getRecord("username", "jane")).isNotNull();
+
+        Files.delete(file.toPath());
+        assertThat(values.getRecord("username", "jane")).isNotNull();
+    }
+
+    @Test
+    public void shouldReloadTheModifiedFile() throws Exception {
+        IndexedSeparatedValuesFile values = indexed(IndexedSeparatedValuesFile.DEFAULT_MEMORY_LIMIT,
+                                                    duration("0 seconds"));
+        assertThat(values.getRecord("username", "jack")).isNull();
+
+        write("username,password,email\n"
+                      + "jack,new,jack@example.com\n");
+        assertThat(file.setLastModified(file.lastModified() + 2000L)).isTrue();
+
+        // The reload is triggered by a lookup, and is performed synchronously by the direct executor
+        values.getRecord("username", "jack");
+        assertThat(values.getRecord("username", "jack")).contains(entry("password", "new"));
+        assertThat(values.getRecord("username", "jane")).isNull();
+    }
+
+    @Test
+    public void shouldKeepThePreviousContentWhenTheReloadFails() throws Exception {
+        IndexedSeparatedValuesFile values = indexed(IndexedSeparatedValuesFile.DEFAULT_MEMORY_LIMIT,
+                                                    duration("0 seconds"));
+        assertThat(values.getRecord("username", "jane")).isNotNull();
+
+        Files.delete(file.toPath());
+        values.getRecord("username", "jane");
+        assertThat(values.getRecord("username", "jane")).isNotNull();
+    }
+
+    @Test
+    public void shouldReadTheFileWhenExceedingTheMemoryLimit() throws Exception {
+        IndexedSeparatedValuesFile values = indexed(10L, duration("unlimited"));
+
+        assertThat(values.getRecord("username", "jane")).contains(entry("password", "other"));
+        // Not served from memory
+        assertThat(values.getHitCount()).isEqualTo(0);
+        assertThat(values.getMissCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldAccountTheIndexesInTheMemoryEstimate() throws Exception {
+        IndexedSeparatedValuesFile values = indexed(IndexedSeparatedValuesFile.DEFAULT_MEMORY_LIMIT,
+                                                    duration("unlimited"));
+        values.getRecord("username", "jane");
+
+        // 9 values of 77 characters in total (48 bytes each, plus 2 bytes per character), and 2 index entries
+        assertThat(values.getMetrics().getGauges().get("memory.estimated").getValue())
+                .isEqualTo(9L * 48 + 2 * 77 + 2 * 56);
+        assertThat(values.getMetrics().getCounters().get("lookups.hits").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReadTheFileWhenTheIndexesExceedTheMemoryLimit() throws Exception {
+        // Enough for the records (586 bytes), not for their index (112 bytes)
+        IndexedSeparatedValuesFile values = indexed(600L, duration("unlimited"));
+
+        assertThat(values.getRecord("username", "jane")).contains(entry("password", "other"));
+        assertThat(values.getHitCount()).isEqualTo(0);
+        assertThat(values.getMetrics().getGauges().get("memory.estimated").getValue()).isEqualTo(0L);
+    }
+
+    private IndexedSeparatedValuesFile indexed(final long memoryLimit, final Duration checkInterval) {
+        return new IndexedSeparatedValuesFile(file,
+                                              UTF_8,
+                                              Separators.COMMA.getSeparator(),
+                                              true,
+                                              singletonList("username"),
+                                              memoryLimit,
+                                              checkInterval,
+                                              DIRECT);
+    }
+
+    private void write(final String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.filter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.http.protocol.Response.newResponsePromise;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.forgerock.http.Handler;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.openidentityplatform.openig.icap.IcapClient;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ICAPFilterTest {
+
+	private ServerSocket server;
+	private Handler next;
+	private ICAPFilter filter;
+
+	@BeforeMethod
+	public void setUp() throws Exception {
+		server = new ServerSocket(0);
+		next = mock(Handler.class);
+		when(next.handle(any(Context.class), any(Request.class))).thenReturn(newResponsePromise(new Response(Status.OK)));
+		filter = new ICAPFilter();
+		filter.service = "avscan";
+		filter.icap = IcapClient.builder("localhost", server.getPort()).ioThreads(1).build();
+	}
+
+	@AfterMethod
+	public void tearDown() throws Exception {
+		filter.icap.close();
+		server.close();
+	}
+
+	@Test
+	public void shouldReplaceTheResponseWithTheBlockPage() throws Exception {
+		String http = "HTTP/1.1 403 Forbidden\r\nContent-Type: text/plain\r\n\r\n";
+		answerOnce("ICAP/1.0 200 OK\r\nEncapsulated: res-hdr=0, res-body=" + http.length() + "\r\n\r\n"
+				+ http + "7\r\nblocked\r\n0\r\n\r\n");
+
+		Response response = filter.filter(new RootContext(), upload("virus"), next).get();
+
+		assertThat(response.getStatus()).isEqualTo(Status.FORBIDDEN);
+		assertThat(response.getEntity().getString()).isEqualTo("blocked");
+		verify(next, never()).handle(any(Context.class), any(Request.class));
+	}
+
+	@Test
+	public void shouldForwardTheWholeRequestWhenAllowed() throws Exception {
+		answerOnce("ICAP/1.0 204 No Content\r\nEncapsulated: null-body=0\r\n\r\n");
+
+		Request request = upload("clean");
+		Response response = filter.filter(new RootContext(), request, next).get();
+
+		assertThat(response.getStatus()).isEqualTo(Status.OK);
+		assertThat(request.getEntity().getString()).isEqualTo("clean");
+		verify(next).handle(any(Context.class), any(Request.class));
+	}
+
+	@Test
+	public void shouldForwardTheRequestWhenTheServerIsUnavailable() throws Exception {
+		server.close();
+
+		Response response = filter.filter(new RootContext(), upload("clean"), next).get();
+
+		assertThat(response.getStatus()).isEqualTo(Status.OK);
+	}
+
+	/** Answers the first request, read up to its last chunk, with the given response. */
+	private void answerOnce(final String response) {
+		Thread thread = new Thread(() -> {
+			try (Socket socket = server.accept()) {
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+				String line;
+				while ((line = in.readLine()) != null && !line.startsWith("0")) {
+					// skip the request
+				}
+				in.readLine();
+				OutputStream out = socket.getOutputStream();
+				out.write(response.getBytes(UTF_8));
+				out.flush();
+				// Wait for the client to close the connection
+				in.read();
+			} catch (IOException e) {
+				// ignored
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static Request upload(String content) throws Exception {
+		Request request = new Request().setMethod("POST").setUri("http://example.com/upload");
+		request.setEntity(content);
+		return request;
+	}
+}
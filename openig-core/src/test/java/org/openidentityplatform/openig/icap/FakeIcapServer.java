@@ -0,0 +1,193 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.icap;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A minimal blocking ICAP server, answering the REQMOD requests with a configurable response.
+ */
+final class FakeIcapServer implements Closeable {
+
+	static final String NO_CONTENT = "ICAP/1.0 204 No Content\r\nEncapsulated: null-body=0\r\n\r\n";
+
+	private final ServerSocket serverSocket;
+	private final AtomicInteger connections = new AtomicInteger();
+	private final List<String> heads = new CopyOnWriteArrayList<>();
+	private final List<byte[]> bodies = new CopyOnWriteArrayList<>();
+
+	volatile boolean continueAfterPreview = true;
+	volatile boolean closeAfterResponse;
+	volatile Function<byte[], String> responder = body -> NO_CONTENT;
+
+	FakeIcapServer() throws IOException {
+		serverSocket = new ServerSocket(0);
+		Thread acceptor = new Thread(() -> {
+			while (!serverSocket.isClosed()) {
+				try {
+					final Socket socket = serverSocket.accept();
+					connections.incrementAndGet();
+					Thread worker = new Thread(() -> serve(socket));
+					worker.setDaemon(true);
+					worker.start();
+				} catch (IOException e) {
+					return;
+				}
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	int getConnections() {
+		return connections.get();
+	}
+
+	List<String> getHeads() {
+		return heads;
+	}
+
+	List<byte[]> getBodies() {
+		return bodies;
+	}
+
+	static String blockPage(int status, String reason, String page) {
+		String http = "HTTP/1.1 " + status + " " + reason + "\r\nContent-Type: text/plain\r\n\r\n";
+		return "ICAP/1.0 200 OK\r\n"
+				+ "Encapsulated: res-hdr=0, res-body=" + http.length() + "\r\n\r\n"
+				+ http
+				+ Integer.toHexString(page.length()) + "\r\n" + page + "\r\n"
+				+ "0\r\n\r\n";
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+	}
+
+	private void serve(Socket socket) {
+		try (Socket s = socket) {
+			InputStream in = new BufferedInputStream(s.getInputStream());
+			OutputStream out = s.getOutputStream();
+			String head;
+			while ((head = readHead(in)) != null) {
+				heads.add(head);
+				int offset = head.indexOf("req-body=");
+				boolean hasBody = offset >= 0;
+				if (!hasBody) {
+					offset = head.indexOf("null-body=");
+				}
+				int start = head.indexOf('=', offset) + 1;
+				int end = start;
+				while (end < head.length() && Character.isDigit(head.charAt(end))) {
+					end++;
+				}
+				readFully(in, Integer.parseInt(head.substring(start, end)));
+
+				ByteArrayOutputStream body = new ByteArrayOutputStream();
+				if (hasBody) {
+					boolean ieof = readChunks(in, body);
+					if (!ieof && continueAfterPreview) {
+						out.write("ICAP/1.0 100 Continue\r\n\r\n".getBytes(ISO_8859_1));
+						out.flush();
+						readChunks(in, body);
+					}
+				}
+				bodies.add(body.toByteArray());
+				out.write(responder.apply(body.toByteArray()).getBytes(ISO_8859_1));
+				out.flush();
+				if (closeAfterResponse) {
+					return;
+				}
+			}
+		} catch (IOException e) {
+			// Connection closed by the client
+		}
+	}
+
+	private static String readHead(InputStream in) throws IOException {
+		StringBuilder head = new StringBuilder();
+		String line;
+		while ((line = readLine(in)) != null) {
+			if (line.isEmpty()) {
+				return head.toString();
+			}
+			head.append(line).append("\r\n");
+		}
+		return null;
+	}
+
+	/** Returns whether the last chunk was flagged with {@code ieof}. */
+	private static boolean readChunks(InputStream in, ByteArrayOutputStream body) throws IOException {
+		String line;
+		while ((line = readLine(in)) != null) {
+			int separator = line.indexOf(';');
+			int size = Integer.parseInt((separator >= 0 ? line.substring(0, separator) : line).trim(), 16);
+			if (size == 0) {
+				readLine(in);
+				return line.contains("ieof");
+			}
+			body.write(readFully(in, size));
+			readLine(in);
+		}
+		throw new IOException("Unexpected end of stream");
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int c;
+		while ((c = in.read()) >= 0) {
+			if (c == '\n') {
+				byte[] bytes = line.toByteArray();
+				int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+				return new String(bytes, 0, length, ISO_8859_1);
+			}
+			line.write(c);
+		}
+		return null;
+	}
+
+	private static byte[] readFully(InputStream in, int length) throws IOException {
+		byte[] bytes = new byte[length];
+		int total = 0;
+		while (total < length) {
+			int read = in.read(bytes, total, length - total);
+			if (read < 0) {
+				throw new IOException("Unexpected end of stream");
+			}
+			total += read;
+		}
+		return bytes;
+	}
+}
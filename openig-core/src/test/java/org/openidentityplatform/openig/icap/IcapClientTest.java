@@ -0,0 +1,213 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.icap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.http.protocol.Request;
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class IcapClientTest {
+
+	private FakeIcapServer server;
+	private IcapClient client;
+
+	@BeforeMethod
+	public void setUp() throws Exception {
+		server = new FakeIcapServer();
+		client = IcapClient.builder("localhost", server.getPort()).previewSize(1024).ioThreads(2).build();
+	}
+
+	@AfterMethod
+	public void tearDown() throws Exception {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void shouldOnlySendThePreviewWhenTheServerAllowsTheContent() throws Exception {
+		server.continueAfterPreview = false;
+
+		IcapResponse response = client.reqmod("avscan", upload(), new ByteArrayInputStream(new byte[10000]))
+				.getOrThrow(5, SECONDS);
+
+		assertThat(response.getStatus()).isEqualTo(204);
+		assertThat(server.getHeads().get(0)).startsWith("REQMOD icap://localhost:" + server.getPort() + "/avscan ICAP/1.0")
+				.contains("Allow: 204", "Preview: 1024", "Encapsulated: req-hdr=0, req-body=");
+		assertThat(server.getBodies().get(0)).hasSize(1024);
+	}
+
+	@Test
+	public void shouldSendTheWholeSmallBodyInThePreview() throws Exception {
+		client.reqmod("avscan", upload(), new ByteArrayInputStream("hello".getBytes(UTF_8))).getOrThrow(5, SECONDS);
+
+		assertThat(server.getHeads().get(0)).contains("Preview: 5");
+		assertThat(new String(server.getBodies().get(0), UTF_8)).isEqualTo("hello");
+	}
+
+	@Test
+	public void shouldSendTheRestOfTheBodyWhenTheServerAsksForIt() throws Exception {
+		byte[] body = new byte[10000];
+		Arrays.fill(body, (byte) 'x');
+		server.responder = received -> FakeIcapServer.blockPage(403, "Forbidden", "blocked " + received.length);
+
+		IcapResponse response = client.reqmod("avscan", upload(), new ByteArrayInputStream(body))
+				.getOrThrow(5, SECONDS);
+
+		assertThat(server.getBodies().get(0)).isEqualTo(body);
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.isHttpResponse()).isTrue();
+		assertThat(response.getHttpStatus()).isEqualTo(403);
+		assertThat(response.getHttpReason()).isEqualTo("Forbidden");
+		assertThat(response.getHttpHeaders()).containsKey("Content-Type");
+		assertThat(new String(response.getHttpBody(), UTF_8)).isEqualTo("blocked 10000");
+	}
+
+	@Test
+	public void shouldReadTheRestOfTheBodyOutsideOfTheIoThreads() throws Exception {
+		final List<String> readers = new CopyOnWriteArrayList<>();
+		InputStream body = new ByteArrayInputStream(new byte[10000]) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				readers.add(Thread.currentThread().getName());
+				return super.read(b, off, len);
+			}
+		};
+
+		client.reqmod("avscan", upload(), body).getOrThrow(5, SECONDS);
+
+		assertThat(server.getBodies().get(0)).hasSize(10000);
+		// The first reads are the preview, by the calling thread
+		assertThat(readers.stream().noneMatch(name -> name.startsWith("icap-localhost:"))).isTrue();
+		assertThat(readers.stream().anyMatch(name -> name.startsWith("icap-body-localhost:"))).isTrue();
+	}
+
+	@Test
+	public void shouldNotCountBodyReadFailuresAsServerFailures() throws Exception {
+		try (IcapClient breaking = IcapClient.builder("localhost", server.getPort())
+				.previewSize(1024)
+				.circuitBreaker(1, 30000L)
+				.build()) {
+			InputStream body = new SequenceInputStream(new ByteArrayInputStream(new byte[2048]), new InputStream() {
+				@Override
+				public int read() throws IOException {
+					throw new IOException("Connection reset by the user-agent");
+				}
+			});
+			try {
+				breaking.reqmod("avscan", upload(), body).getOrThrow(5, SECONDS);
+				fail("The exchange should have failed");
+			} catch (IcapException e) {
+				// expected
+			}
+
+			assertThat(breaking.getMetrics().counter("errors").getCount()).isEqualTo(0);
+			assertThat(breaking.getMetrics().counter("errors.body").getCount()).isEqualTo(1);
+			assertThat(breaking.getMetrics().getGauges().get("circuit.open").getValue()).isEqualTo(false);
+			assertThat(breaking.reqmod("avscan", upload(), new ByteArrayInputStream(new byte[10]))
+					.getOrThrow(5, SECONDS).getStatus()).isEqualTo(204);
+		}
+	}
+
+	@Test
+	public void shouldReuseTheConnections() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			assertThat(client.reqmod("avscan", upload(), new ByteArrayInputStream(new byte[10]))
+					.getOrThrow(5, SECONDS).getStatus()).isEqualTo(204);
+		}
+
+		assertThat(server.getConnections()).isEqualTo(1);
+		assertThat(client.getMetrics().counter("connections.opened").getCount()).isEqualTo(1);
+		assertThat(client.getMetrics().timer("latency").getCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void shouldRetryWhenThePooledConnectionHasBeenClosed() throws Exception {
+		server.closeAfterResponse = true;
+		for (int i = 0; i < 2; i++) {
+			assertThat(client.reqmod("avscan", upload(), new ByteArrayInputStream(new byte[10]))
+					.getOrThrow(5, SECONDS).getStatus()).isEqualTo(204);
+		}
+
+		assertThat(server.getConnections()).isEqualTo(2);
+		assertThat(client.getMetrics().counter("errors").getCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void shouldStopSendingRequestsToAFailingServer() throws Exception {
+		int port;
+		try (ServerSocket unused = new ServerSocket(0)) {
+			port = unused.getLocalPort();
+		}
+		final AtomicLong now = new AtomicLong(1000L);
+		TimeService time = new TimeService() {
+			@Override
+			public long now() {
+				return now.get();
+			}
+
+			@Override
+			public long since(long past) {
+				return now.get() - past;
+			}
+		};
+		try (IcapClient failing = IcapClient.builder("localhost", port).circuitBreaker(2, 30000L).time(time).build()) {
+			for (int i = 0; i < 3; i++) {
+				try {
+					failing.reqmod("avscan", upload(), new ByteArrayInputStream(new byte[10])).getOrThrow(5, SECONDS);
+					fail("The exchange should have failed");
+				} catch (IcapException e) {
+					// expected
+				}
+			}
+			assertThat(failing.getMetrics().counter("errors").getCount()).isEqualTo(2);
+			assertThat(failing.getMetrics().counter("short-circuited").getCount()).isEqualTo(1);
+
+			// A trial request is allowed once the circuit has been open long enough
+			now.addAndGet(30000L);
+			try {
+				failing.reqmod("avscan", upload(), new ByteArrayInputStream(new byte[10])).getOrThrow(5, SECONDS);
+				fail("The exchange should have failed");
+			} catch (IcapException e) {
+				// expected
+			}
+			assertThat(failing.getMetrics().counter("errors").getCount()).isEqualTo(3);
+		}
+	}
+
+	private static Request upload() throws Exception {
+		Request request = new Request().setMethod("POST").setUri("http://example.com/upload");
+		request.getHeaders().put("Content-Type", "application/octet-stream");
+		return request;
+	}
+}
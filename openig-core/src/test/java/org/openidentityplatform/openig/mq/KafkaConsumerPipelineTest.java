@@ -0,0 +1,234 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.mq;
+
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.consumer.RetriableCommitFailedException;
+import org.apache.kafka.common.TopicPartition;
+import org.forgerock.http.Handler;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.PromiseImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KafkaConsumerPipelineTest {
+
+	static final String TOPIC="testTopic";
+	static final TopicPartition PARTITION=new TopicPartition(TOPIC, 0);
+
+	MockConsumer<String, byte[]> consumer;
+	/** The pending route responses, in the order of the requests. */
+	final List<PromiseImpl<Response, NeverThrowsException>> responses=new CopyOnWriteArrayList<>();
+	final List<String> keys=new CopyOnWriteArrayList<>();
+	final Handler handler=(context, request) -> {
+		final PromiseImpl<Response, NeverThrowsException> response=PromiseImpl.create();
+		keys.add(request.getHeaders().getFirst("kafka-key")+"@"+request.getHeaders().getFirst("kafka-offset"));
+		responses.add(response);
+		return response;
+	};
+	KafkaConsumerPipeline pipeline;
+	Thread thread;
+
+	@Before
+	public void setUp() {
+		consumer=new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		consumer.updateBeginningOffsets(singletonMap(PARTITION, 0L));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		pipeline.close();
+		thread.join(5000);
+	}
+
+	@Test
+	public void shouldCommitOnlyTheProcessedRecords() throws Exception {
+		start(10, false);
+		addRecords("a", "b", "c");
+		await(() -> responses.size()==3);
+
+		complete(1);
+		complete(2);
+		Thread.sleep(300);
+		assertThat(committed()).isEqualTo(-1L);
+
+		complete(0);
+		await(() -> committed()==3L);
+		assertThat(pipeline.getInFlight()).isEqualTo(0);
+	}
+
+	@Test
+	public void shouldPauseThePartitionsWhenSaturated() throws Exception {
+		start(2, false);
+		addRecords("a", "b", "c");
+		await(() -> !paused().isEmpty());
+		// The last record is polled again once resumed
+		assertThat(responses).hasSize(2);
+		assertThat(consumer.position(PARTITION)).isEqualTo(2L);
+
+		// Resumed once half of the records are processed
+		complete(0);
+		complete(1);
+		await(() -> paused().isEmpty());
+		addRecords("a", "b", "c");
+		await(() -> responses.size()==3);
+		assertThat(keys).containsExactly("a@0", "b@1", "c@2");
+		complete(2);
+		await(() -> committed()==3L);
+	}
+
+	@Test
+	public void shouldCommitAgainAfterAFailedCommit() throws Exception {
+		final AtomicInteger commits=new AtomicInteger();
+		consumer=new MockConsumer<String, byte[]>(OffsetResetStrategy.EARLIEST) {
+			@Override
+			public synchronized void commitAsync(Map<TopicPartition, OffsetAndMetadata> offsets,
+					OffsetCommitCallback callback) {
+				if (commits.getAndIncrement()==0) {
+					callback.onComplete(offsets, new RetriableCommitFailedException("unavailable"));
+				} else {
+					super.commitAsync(offsets, callback);
+				}
+			}
+		};
+		consumer.updateBeginningOffsets(singletonMap(PARTITION, 0L));
+		start(10, false);
+		addRecords("a");
+		await(() -> responses.size()==1);
+
+		complete(0);
+		await(() -> committed()==1L);
+		assertThat(commits.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void shouldProcessTheRecordsOfAKeyInOrder() throws Exception {
+		start(10, true);
+		addRecords("a", "a", "b");
+		await(() -> responses.size()==2);
+		assertThat(keys).containsExactly("a@0", "b@2");
+
+		complete(0);
+		await(() -> responses.size()==3);
+		assertThat(keys).containsExactly("a@0", "b@2", "a@1");
+	}
+
+	@Test
+	public void shouldStopWithoutCommittingTheRejectedRecords() throws Exception {
+		final AtomicInteger closed=new AtomicInteger();
+		consumer=new MockConsumer<String, byte[]>(OffsetResetStrategy.EARLIEST) {
+			@Override
+			public synchronized void close() {
+				// Keep the committed offsets readable
+				closed.incrementAndGet();
+			}
+		};
+		consumer.updateBeginningOffsets(singletonMap(PARTITION, 0L));
+		final AtomicInteger calls=new AtomicInteger();
+		start(10, false, task -> {
+			if (calls.getAndIncrement()==1) {
+				throw new RejectedExecutionException("shut down");
+			}
+			task.run();
+			complete(responses.size()-1);
+		});
+		addRecords("a", "b", "c");
+
+		thread.join(5000);
+		assertThat(thread.isAlive()).isFalse();
+		assertThat(closed.get()).isEqualTo(1);
+		assertThat(committed()).isEqualTo(1L);
+		assertThat(pipeline.getInFlight()).isEqualTo(0);
+	}
+
+	private void start(int maxInFlight, boolean orderByKey) {
+		start(maxInFlight, orderByKey, Runnable::run);
+	}
+
+	private void start(int maxInFlight, boolean orderByKey, Executor executor) {
+		consumer.schedulePollTask(() -> consumer.rebalance(singletonList(PARTITION)));
+		pipeline=new KafkaConsumerPipeline(consumer,
+				singletonList(TOPIC),
+				record -> {
+					final Request request=new Request();
+					request.getHeaders().add("kafka-key", record.key());
+					request.getHeaders().add("kafka-offset", ""+record.offset());
+					return request;
+				},
+				() -> handler,
+				executor,
+				maxInFlight,
+				orderByKey);
+		thread=new Thread(pipeline);
+		thread.start();
+	}
+
+	private void addRecords(String... keys) {
+		consumer.schedulePollTask(() -> {
+			for (int i=0; i<keys.length; i++) {
+				consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, i, keys[i], "body".getBytes(StandardCharsets.UTF_8)));
+			}
+		});
+	}
+
+	private void complete(int index) {
+		responses.get(index).handleResult(new Response(Status.OK));
+	}
+
+	private long committed() {
+		final OffsetAndMetadata offset=consumer.committed(singleton(PARTITION)).get(PARTITION);
+		return offset==null?-1L:offset.offset();
+	}
+
+	private Set<TopicPartition> paused() {
+		return consumer.paused();
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		final long deadline=System.nanoTime()+TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			if (System.nanoTime()>deadline) {
+				throw new AssertionError("Condition not met in time");
+			}
+			Thread.sleep(10);
+		}
+	}
+}
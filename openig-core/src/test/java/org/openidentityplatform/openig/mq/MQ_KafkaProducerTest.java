@@ -0,0 +1,146 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.mq;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.producer.BufferExhaustedException;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MQ_KafkaProducerTest {
+
+	MockProducer<String, byte[]> producer;
+	MQ_Kafka handler;
+
+	@Before
+	public void setUp() {
+		producer=new MockProducer<>(false, new StringSerializer(), new ByteArraySerializer());
+		handler=new MQ_Kafka();
+		handler.name="test";
+		handler.topic="testTopic";
+		handler.producer=producer;
+	}
+
+	@Test
+	public void shouldCompleteTheResponseFromTheProducerCallback() throws Exception {
+		final Promise<Response, NeverThrowsException> promise=handler.handle(new RootContext(), request());
+		assertThat(promise.isDone()).isFalse();
+
+		producer.completeNext();
+		final Response response=promise.get();
+		assertThat(response.getStatus()).isEqualTo(Status.ACCEPTED);
+		assertThat(response.getHeaders().getFirst("correlation-id")).isEqualTo("42");
+		assertThat(response.getHeaders().getFirst("kafka-offset")).isNotNull();
+
+		final ProducerRecord<String, byte[]> record=producer.history().get(0);
+		assertThat(record.key()).isEqualTo("42");
+		assertThat(new String(record.value(), "UTF-8")).isEqualTo("test body");
+		final Header header=record.headers().lastHeader("header");
+		assertThat(new String(header.value(), "UTF-8")).isEqualTo("value");
+	}
+
+	@Test
+	public void shouldCompleteTheResponseOffTheProducerThread() throws Exception {
+		final List<Runnable> completions=new ArrayList<>();
+		handler.executor=completions::add;
+		final Promise<Response, NeverThrowsException> promise=handler.handle(new RootContext(), request());
+
+		// As the producer I/O thread does
+		final Thread sender=new Thread(producer::completeNext);
+		sender.start();
+		sender.join();
+		assertThat(promise.isDone()).isFalse();
+		assertThat(completions).hasSize(1);
+
+		completions.get(0).run();
+		assertThat(promise.get().getStatus()).isEqualTo(Status.ACCEPTED);
+	}
+
+	@Test
+	public void shouldReturnAnErrorWhenTheRecordIsNotProduced() throws Exception {
+		final Promise<Response, NeverThrowsException> promise=handler.handle(new RootContext(), request());
+		producer.errorNext(new KafkaException("broker failure"));
+
+		assertThat(promise.get().getStatus()).isEqualTo(Status.INTERNAL_SERVER_ERROR);
+	}
+
+	@Test
+	public void shouldReturnAcceptedOnceBufferedInFireAndForgetMode() throws Exception {
+		handler.fireAndForget=true;
+
+		final Promise<Response, NeverThrowsException> promise=handler.handle(new RootContext(), request());
+
+		assertThat(promise.isDone()).isTrue();
+		final Response response=promise.get();
+		assertThat(response.getStatus()).isEqualTo(Status.ACCEPTED);
+		assertThat(response.getHeaders().getFirst("kafka-offset")).isNull();
+		assertThat(producer.history()).hasSize(1);
+		// The broker failure is only logged
+		producer.errorNext(new KafkaException("broker failure"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void shouldReturnServiceUnavailableWhenTheBufferIsExhausted() throws Exception {
+		final Producer<String, byte[]> saturated=mock(Producer.class);
+		when(saturated.send(any(ProducerRecord.class), any(Callback.class))).thenAnswer(invocation -> {
+			// As KafkaProducer does when the memory cannot be allocated within max.block.ms
+			invocation.getArgument(1, Callback.class).onCompletion(null, new BufferExhaustedException("buffer.memory exhausted"));
+			return mock(Future.class);
+		});
+		handler.producer=saturated;
+
+		for (boolean fireAndForget : new boolean[] {false, true}) {
+			handler.fireAndForget=fireAndForget;
+			final Response response=handler.handle(new RootContext(), request()).get();
+			assertThat(response.getStatus()).isEqualTo(Status.SERVICE_UNAVAILABLE);
+			assertThat(response.getHeaders().getFirst("Retry-After")).isEqualTo("1");
+		}
+	}
+
+	private static Request request() throws Exception {
+		final Request request=new Request();
+		request.setMethod("PUT");
+		request.setUri("/uri");
+		request.setEntity("test body");
+		request.getHeaders().add("header", "value");
+		request.getHeaders().add("correlation-id", "42");
+		return request;
+	}
+}
@@ -0,0 +1,244 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.websocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.http.protocol.Response.newResponsePromise;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.forgerock.http.Handler;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.PromiseImpl;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+@SuppressWarnings("javadoc")
+public class AuthorizationsTest {
+
+    private static final Status SWITCHING_PROTOCOLS = Status.valueOf(101);
+    private static final long TTL = 180000L;
+    private static final long TIMEOUT = 5000L;
+
+    private Handler handler;
+    private ScheduledExecutorService scheduler;
+    private MetricRegistry metrics;
+    private Authorizations authorizations;
+    private Context context;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        handler = mock(Handler.class);
+        scheduler = mock(ScheduledExecutorService.class);
+        doReturn(mock(ScheduledFuture.class)).when(scheduler)
+                .schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        metrics = new MetricRegistry();
+        authorizations = new Authorizations(() -> handler, scheduler, TTL, TIMEOUT, metrics);
+        context = new RootContext();
+        respond(SWITCHING_PROTOCOLS);
+    }
+
+    @Test
+    public void shouldShareTheRefreshOfTheSameUser() throws Exception {
+        Principal first = principal("Bearer token");
+        Principal second = principal("Bearer token");
+
+        assertThat(first.authorize()).isEqualTo(SWITCHING_PROTOCOLS);
+        assertThat(second.authorize()).isEqualTo(SWITCHING_PROTOCOLS);
+
+        // Every handshake runs the route
+        verify(handler, times(2)).handle(any(Context.class), any(Request.class));
+        assertThat(second.decision).isSameAs(first.decision);
+        assertThat(metrics.getGauges().get("websocket.authorizations.shared").getValue()).isEqualTo(1);
+        verifyRefreshesScheduled(1);
+    }
+
+    @Test
+    public void shouldRunTheRouteAtEachHandshake() throws Exception {
+        principal("Bearer token").authorize();
+        respond(Status.FORBIDDEN);
+
+        assertThat(principal("Bearer token").authorize()).isEqualTo(Status.FORBIDDEN);
+    }
+
+    @Test
+    public void shouldNotShareTheDecisionOfAnonymousUsers() throws Exception {
+        principal(null).authorize();
+        principal(null).authorize();
+
+        verify(handler, times(2)).handle(any(Context.class), any(Request.class));
+        assertThat(authorizations.decisions).isEmpty();
+    }
+
+    @Test
+    public void shouldNotShareDenials() throws Exception {
+        respond(Status.FORBIDDEN);
+        Principal principal = principal("Bearer token");
+
+        assertThat(principal.authorize()).isEqualTo(Status.FORBIDDEN);
+
+        assertThat(principal.decision).isNull();
+        assertThat(authorizations.decisions).isEmpty();
+    }
+
+    @Test
+    public void shouldReauthorizeInTheBackgroundWithAJitter() throws Exception {
+        Principal principal = principal("Bearer token");
+        principal.authorize();
+        authorizations.subscribe(principal, status -> { });
+
+        ArgumentCaptor<Long> delay = ArgumentCaptor.forClass(Long.class);
+        verify(scheduler).schedule(any(Runnable.class), delay.capture(), eq(TimeUnit.MILLISECONDS));
+        assertThat(delay.getValue()).isBetween((long) (TTL * 0.9), (long) (TTL * 1.1));
+
+        lastScheduled().run();
+
+        verify(handler, times(2)).handle(any(Context.class), any(Request.class));
+        assertThat(metrics.timer("websocket.authorizations.refreshes").getCount()).isEqualTo(1);
+        verify(scheduler).schedule(any(Runnable.class), eq(TIMEOUT), eq(TimeUnit.MILLISECONDS));
+        verifyRefreshesScheduled(2);
+    }
+
+    @Test
+    public void shouldKeepTheLastKnownGoodDecisionOnErrors() throws Exception {
+        Principal principal = principal("Bearer token");
+        principal.authorize();
+        List<Status> revoked = subscribe(principal);
+
+        respond(Status.INTERNAL_SERVER_ERROR);
+        lastScheduled().run();
+        when(handler.handle(any(Context.class), any(Request.class))).thenThrow(new IllegalStateException("boom"));
+        lastScheduled().run();
+
+        assertThat(principal.authorize()).isEqualTo(SWITCHING_PROTOCOLS);
+        assertThat(revoked).isEmpty();
+        assertThat(metrics.counter("websocket.authorizations.failed").getCount()).isEqualTo(2);
+        verifyRefreshesScheduled(3);
+    }
+
+    @Test
+    public void shouldRescheduleTheRefreshesThatTimeOut() throws Exception {
+        Principal principal = principal("Bearer token");
+        principal.authorize();
+        List<Status> revoked = subscribe(principal);
+
+        PromiseImpl<Response, NeverThrowsException> pending = PromiseImpl.create();
+        when(handler.handle(any(Context.class), any(Request.class))).thenReturn(pending);
+        lastScheduled().run();
+        // The timeout of the refresh
+        lastScheduled().run();
+
+        assertThat(metrics.counter("websocket.authorizations.failed").getCount()).isEqualTo(1);
+        assertThat(metrics.timer("websocket.authorizations.refreshes").getCount()).isEqualTo(1);
+        verifyRefreshesScheduled(2);
+
+        // A late response is ignored
+        pending.handleResult(new Response(Status.UNAUTHORIZED));
+        assertThat(revoked).isEmpty();
+        assertThat(principal.authorize()).isEqualTo(SWITCHING_PROTOCOLS);
+        verifyRefreshesScheduled(2);
+    }
+
+    @Test
+    public void shouldNotifyAllTheConnectionsOnDenial() throws Exception {
+        Principal first = principal("Bearer token");
+        Principal second = principal("Bearer token");
+        first.authorize();
+        second.authorize();
+        List<Status> revoked = new ArrayList<>();
+        authorizations.subscribe(first, revoked::add);
+        authorizations.subscribe(second, revoked::add);
+
+        respond(Status.UNAUTHORIZED);
+        lastScheduled().run();
+
+        assertThat(revoked).containsExactly(Status.UNAUTHORIZED, Status.UNAUTHORIZED);
+        assertThat(first.authorize()).isEqualTo(Status.UNAUTHORIZED);
+        assertThat(authorizations.decisions).isEmpty();
+        assertThat(metrics.counter("websocket.authorizations.denied").getCount()).isEqualTo(1);
+        // Not refreshed anymore
+        verifyRefreshesScheduled(1);
+    }
+
+    @Test
+    public void shouldDropTheDecisionOfClosedConnections() throws Exception {
+        Principal principal = principal("Bearer token");
+        principal.authorize();
+        Consumer<Status> listener = status -> { };
+        authorizations.subscribe(principal, listener);
+        authorizations.unsubscribe(principal, listener);
+
+        lastScheduled().run();
+
+        verify(handler, times(1)).handle(any(Context.class), any(Request.class));
+        assertThat(authorizations.decisions).isEmpty();
+    }
+
+    private List<Status> subscribe(final Principal principal) {
+        final List<Status> revoked = new ArrayList<>();
+        authorizations.subscribe(principal, revoked::add);
+        return revoked;
+    }
+
+    private Principal principal(final String authorization) throws Exception {
+        Request request = new Request().setMethod("GET").setUri("ws://localhost/chat");
+        if (authorization != null) {
+            request.getHeaders().put("Authorization", authorization);
+        }
+        return new Principal(context, request, authorizations);
+    }
+
+    private void respond(final Status status) {
+        when(handler.handle(any(Context.class), any(Request.class)))
+                .thenAnswer(invocation -> newResponsePromise(new Response(status)));
+    }
+
+    private void verifyRefreshesScheduled(final int count) {
+        verify(scheduler, times(count))
+                .schedule(any(Runnable.class), longThat(delay -> delay != TIMEOUT), eq(TimeUnit.MILLISECONDS));
+    }
+
+    private Runnable lastScheduled() {
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler, atLeastOnce())
+                .schedule(task.capture(), anyLong(), eq(TimeUnit.MILLISECONDS));
+        return task.getValue();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.openidentityplatform.openig.websocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.InOrder;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+
+@SuppressWarnings("javadoc")
+public class WebSocketRelayTest {
+
+    private Session source;
+    private Session target;
+    private RemoteEndpoint.Async async;
+    private RemoteEndpoint.Basic basic;
+    private List<SendHandler> handlers;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        source = mock(Session.class);
+        target = mock(Session.class);
+        async = mock(RemoteEndpoint.Async.class);
+        basic = mock(RemoteEndpoint.Basic.class);
+        when(target.getAsyncRemote()).thenReturn(async);
+        when(target.getBasicRemote()).thenReturn(basic);
+        handlers = new ArrayList<>();
+        doAnswer(invocation -> {
+            synchronized (handlers) {
+                handlers.add(invocation.getArgument(1));
+            }
+            return null;
+        }).when(async).sendText(anyString(), any(SendHandler.class));
+        doAnswer(invocation -> {
+            synchronized (handlers) {
+                handlers.add(invocation.getArgument(1));
+            }
+            return null;
+        }).when(async).sendBinary(any(ByteBuffer.class), any(SendHandler.class));
+    }
+
+    @Test
+    public void shouldSendMessagesAsynchronouslyOneAtATime() throws Exception {
+        WebSocketRelay relay = new WebSocketRelay("test", source, target, 1024);
+
+        relay.onText("first", true);
+        relay.onText("second", true);
+
+        verify(async).sendText(eq("first"), any(SendHandler.class));
+        verify(async, never()).sendText(eq("second"), any(SendHandler.class));
+        assertThat(relay.getQueuedBytes()).isEqualTo(11);
+
+        complete(0);
+        verify(async).sendText(eq("second"), any(SendHandler.class));
+        complete(1);
+
+        assertThat(relay.getQueuedBytes()).isEqualTo(0);
+        assertThat(relay.getMessageCount()).isEqualTo(2);
+        assertThat(relay.getByteCount()).isEqualTo(11);
+    }
+
+    @Test
+    public void shouldCountTheEncodedBytesOfTextMessages() throws Exception {
+        WebSocketRelay relay = new WebSocketRelay("test", source, target, 1024);
+        String text = "a\u00e9\u20ac\ud83d\ude00";
+
+        relay.onText(text, true);
+
+        assertThat(relay.getQueuedBytes()).isEqualTo(10);
+        assertThat(relay.getByteCount()).isEqualTo(text.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    public void shouldCopyBinaryMessages() throws Exception {
+        WebSocketRelay relay = new WebSocketRelay("test", source, target, 1024);
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+
+        relay.onBinary(buffer, true);
+        // The container reuses its buffer
+        buffer.put(0, (byte) 9);
+
+        verify(async).sendBinary(eq(ByteBuffer.wrap(new byte[] { 1, 2, 3 })), any(SendHandler.class));
+        assertThat(relay.getByteCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldWaitForTheTargetWhenTheWindowIsFull() throws Exception {
+        final WebSocketRelay relay = new WebSocketRelay("test", source, target, 10);
+        relay.onText("0123456789", true);
+
+        final CountDownLatch sent = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                relay.onText("next", true);
+                sent.countDown();
+            } catch (IOException | InterruptedException e) {
+                // not counted down
+            }
+        });
+        producer.start();
+
+        assertThat(sent.await(200, TimeUnit.MILLISECONDS)).isFalse();
+        complete(0);
+        assertThat(sent.await(5, TimeUnit.SECONDS)).isTrue();
+        verify(async).sendText(eq("next"), any(SendHandler.class));
+        producer.join();
+    }
+
+    @Test
+    public void shouldStreamFragmentsAfterTheQueuedMessages() throws Exception {
+        final WebSocketRelay relay = new WebSocketRelay("test", source, target, 1024);
+        relay.onText("whole", true);
+
+        Thread producer = new Thread(() -> {
+            try {
+                relay.onText("frag", false);
+                relay.onText("ment", true);
+            } catch (IOException | InterruptedException e) {
+                fail("unexpected", e);
+            }
+        });
+        producer.start();
+        Thread.sleep(100);
+        verify(basic, never()).sendText(anyString(), anyBoolean());
+
+        complete(0);
+        producer.join(5000);
+
+        InOrder order = inOrder(async, basic);
+        order.verify(async).sendText(eq("whole"), any(SendHandler.class));
+        order.verify(basic).sendText("frag", false);
+        order.verify(basic).sendText("ment", true);
+        assertThat(relay.getMessageCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldCloseBothSessionsWhenASendFails() throws Exception {
+        WebSocketRelay relay = new WebSocketRelay("test", source, target, 1024);
+        relay.onText("first", true);
+
+        handler(0).onResult(new SendResult(new IOException("broken pipe")));
+
+        verify(target).close(any(CloseReason.class));
+        verify(source).close(any(CloseReason.class));
+        try {
+            relay.onText("second", true);
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertThat(e).hasMessage("broken pipe");
+        }
+    }
+
+    @Test
+    public void shouldUnblockTheSourceWhenClosed() throws Exception {
+        final WebSocketRelay relay = new WebSocketRelay("test", source, target, 1);
+        relay.onText("first", true);
+
+        final CountDownLatch failed = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                relay.onText("second", true);
+            } catch (IOException e) {
+                failed.countDown();
+            } catch (InterruptedException e) {
+                // not counted down
+            }
+        });
+        producer.start();
+        relay.close();
+
+        assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+        producer.join();
+    }
+
+    private void complete(final int index) {
+        handler(index).onResult(new SendResult());
+    }
+
+    private SendHandler handler(final int index) {
+        synchronized (handlers) {
+            return handlers.get(index);
+        }
+    }
+}
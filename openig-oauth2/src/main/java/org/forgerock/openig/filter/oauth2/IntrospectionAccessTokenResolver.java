@@ -0,0 +1,212 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.filter.oauth2;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.forgerock.json.JsonValueFunctions.uri;
+import static org.forgerock.openig.heap.Keys.CLIENT_HANDLER_HEAP_KEY;
+import static org.forgerock.openig.heap.Keys.TIME_SERVICE_HEAP_KEY;
+import static org.forgerock.openig.util.JsonValues.requiredHeapObject;
+import static org.forgerock.util.Utils.closeSilently;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.http.Handler;
+import org.forgerock.http.oauth2.AccessTokenException;
+import org.forgerock.http.oauth2.AccessTokenInfo;
+import org.forgerock.http.oauth2.AccessTokenResolver;
+import org.forgerock.http.protocol.Form;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Responses;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.json.JsonValue;
+import org.forgerock.openig.heap.GenericHeaplet;
+import org.forgerock.openig.heap.HeapException;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.Function;
+import org.forgerock.util.encode.Base64;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.TimeService;
+
+/**
+ * Resolves opaque access tokens with an OAuth 2.0 Token Introspection endpoint (RFC 7662).
+ * <p>
+ * The token is accepted if the endpoint reports it as {@literal active}, and if the returned {@literal exp},
+ * {@literal iss} and {@literal aud} members are valid. The scopes are read from the {@literal scope} member.
+ *
+ * <pre>
+ * {@code
+ * {
+ *     "name": "IntrospectionResolver",
+ *     "type": "IntrospectionAccessTokenResolver",
+ *     "config": {
+ *         "introspectionEndpoint": "https://as.example.com/oauth2/introspect",
+ *         "clientId": "resource-server",
+ *         "clientSecret": "password",
+ *         "issuer": "https://as.example.com/oauth2",
+ *         "audience": [ "https://api.example.com" ],
+ *         "providerHandler": "ClientHandler"
+ *     }
+ * }
+ * }
+ * </pre>
+ *
+ * {@literal introspectionEndpoint} is the only mandatory attribute. When {@literal clientId} is set, the resource
+ * server authenticates to the endpoint with HTTP Basic authentication. When {@literal issuer} or {@literal audience}
+ * are not set, the corresponding members are not checked.
+ * <p>
+ * Like any other resolver, the resolved tokens are cached by the {@literal OAuth2ResourceServerFilter} according to its
+ * {@literal cacheExpiration}, and never beyond their expiration time.
+ */
+public class IntrospectionAccessTokenResolver implements AccessTokenResolver {
+
+    private final Handler handler;
+    private final URI introspectionEndpoint;
+    private final String authorization;
+    private final TimeService time;
+    private final String issuer;
+    private final Set<String> audiences;
+
+    /**
+     * Builds a new resolver.
+     *
+     * @param handler
+     *         the handler used to call the introspection endpoint
+     * @param introspectionEndpoint
+     *         the introspection endpoint
+     * @param clientId
+     *         the client ID of the resource server, {@code null} if it does not authenticate
+     * @param clientSecret
+     *         the client secret of the resource server
+     * @param time
+     *         the time service
+     * @param issuer
+     *         the expected issuer, {@code null} to accept any issuer
+     * @param audiences
+     *         the accepted audiences, empty to accept any audience
+     */
+    IntrospectionAccessTokenResolver(final Handler handler,
+                                     final URI introspectionEndpoint,
+                                     final String clientId,
+                                     final String clientSecret,
+                                     final TimeService time,
+                                     final String issuer,
+                                     final Collection<String> audiences) {
+        this.handler = handler;
+        this.introspectionEndpoint = introspectionEndpoint;
+        this.authorization = clientId == null
+                ? null
+                : "Basic " + Base64.encode((clientId + ":" + clientSecret).getBytes(UTF_8));
+        this.time = time;
+        this.issuer = issuer;
+        this.audiences = new LinkedHashSet<>(audiences);
+    }
+
+    @Override
+    public Promise<AccessTokenInfo, AccessTokenException> resolve(final Context context, final String token) {
+        final Request request = new Request().setMethod("POST").setUri(introspectionEndpoint);
+        Form form = new Form();
+        form.add("token", token);
+        form.add("token_type_hint", "access_token");
+        form.toRequestEntity(request);
+        if (authorization != null) {
+            request.getHeaders().put("Authorization", authorization);
+        }
+        return handler.handle(context, request)
+                      .then(new Function<Response, AccessTokenInfo, AccessTokenException>() {
+                                @Override
+                                public AccessTokenInfo apply(final Response response) throws AccessTokenException {
+                                    try {
+                                        return validate(introspection(response), token);
+                                    } finally {
+                                        closeSilently(response);
+                                    }
+                                }
+                            },
+                            Responses.<AccessTokenInfo, AccessTokenException>noopExceptionFunction());
+    }
+
+    private static JsonValue introspection(final Response response) throws AccessTokenException {
+        if (!Status.OK.equals(response.getStatus())) {
+            throw new AccessTokenException(format("Unable to introspect the access token [status=%d]",
+                                                  response.getStatus().getCode()));
+        }
+        try {
+            return new JsonValue(response.getEntity().getJson()).expect(Map.class);
+        } catch (Exception e) {
+            throw new AccessTokenException("Received a malformed introspection response", e);
+        }
+    }
+
+    private AccessTokenInfo validate(final JsonValue introspection, final String token)
+            throws AccessTokenException {
+        if (!introspection.get("active").defaultTo(false).asBoolean()) {
+            throw new AccessTokenException("The access token is not active");
+        }
+        long expiresAt = AccessTokenInfo.NEVER_EXPIRES;
+        if (introspection.isDefined("exp")) {
+            expiresAt = TimeUnit.SECONDS.toMillis(introspection.get("exp").asLong());
+            if (time.now() >= expiresAt) {
+                throw new AccessTokenException("The access token has expired");
+            }
+        }
+        if (issuer != null && !issuer.equals(introspection.get("iss").asString())) {
+            throw new AccessTokenException("Unexpected access token issuer " + introspection.get("iss"));
+        }
+        if (!audiences.isEmpty()) {
+            List<String> audience = JwtAccessTokenResolver.audiences(introspection.get("aud"));
+            if (Collections.disjoint(audiences, audience)) {
+                throw new AccessTokenException("Unexpected access token audience " + audience);
+            }
+        }
+        return new AccessTokenInfo(introspection,
+                                   token,
+                                   JwtAccessTokenResolver.scopes(introspection.get("scope")),
+                                   expiresAt);
+    }
+
+    /**
+     * Creates and initializes an introspection access token resolver in a heap environment.
+     */
+    public static class Heaplet extends GenericHeaplet {
+        @Override
+        public Object create() throws HeapException {
+            Handler handler = config.get("providerHandler")
+                                    .defaultTo(CLIENT_HANDLER_HEAP_KEY)
+                                    .as(requiredHeapObject(heap, Handler.class));
+            TimeService time = heap.get(TIME_SERVICE_HEAP_KEY, TimeService.class);
+            JsonValue evaluated = config.as(evaluatedWithHeapProperties());
+            List<String> audiences = JwtAccessTokenResolver.audiences(evaluated.get("audience"));
+            return new IntrospectionAccessTokenResolver(handler,
+                                                        evaluated.get("introspectionEndpoint").required().as(uri()),
+                                                        evaluated.get("clientId").asString(),
+                                                        evaluated.get("clientSecret").asString(),
+                                                        time,
+                                                        evaluated.get("issuer").asString(),
+                                                        audiences);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.filter.oauth2;
+
+import static java.lang.String.format;
+import static org.forgerock.util.Utils.closeSilently;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.forgerock.http.Handler;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.jose.jwk.JWK;
+import org.forgerock.json.jose.jwk.JWKSet;
+import org.forgerock.json.jose.jwk.KeyUse;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.util.Function;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.time.Duration;
+import org.forgerock.util.time.TimeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps in memory the signature verification keys published in a JSON Web Key Set document.
+ * <p>
+ * The document is fetched on the first lookup, and then on a lookup of an unknown key ID (the keys may have been
+ * rotated), at most once per minimum refresh interval. It can also be refreshed periodically in the background.
+ * Concurrent lookups share a single fetch of the document, a lookup of an unknown key ID during a fetch waits for it,
+ * and the previous keys are kept when it fails.
+ */
+class JwkSetCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwkSetCache.class);
+
+    private final Handler handler;
+    private final URI jwksUri;
+    private final TimeService time;
+    private final long minRefreshInterval;
+
+    private final AtomicReference<Promise<Void, NeverThrowsException>> refreshing = new AtomicReference<>();
+
+    /** Keys by key ID, replaced atomically on each refresh. */
+    private volatile Map<String, JWK> keys = Collections.emptyMap();
+    private volatile List<JWK> allKeys = Collections.emptyList();
+    /** When the last fetch has completed. */
+    private volatile long lastRefresh;
+    /** Whether a fetch of the document has completed at least once (successfully or not). */
+    private volatile boolean fetched;
+
+    /**
+     * Builds a new cache of the keys published at the given URI.
+     *
+     * @param handler
+     *         the handler used to fetch the JWK Set document
+     * @param jwksUri
+     *         the URI of the JWK Set document
+     * @param time
+     *         the time service
+     * @param minRefreshInterval
+     *         the minimum interval between two fetches triggered by unknown key IDs
+     */
+    JwkSetCache(final Handler handler, final URI jwksUri, final TimeService time, final Duration minRefreshInterval) {
+        this.handler = handler;
+        this.jwksUri = jwksUri;
+        this.time = time;
+        this.minRefreshInterval = minRefreshInterval.to(TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the verification keys matching the given key ID, or all the verification keys if the key ID is
+     * {@code null}. The returned list is empty when no key matches, even after a refresh.
+     *
+     * @param kid
+     *         the key ID, may be {@code null}
+     * @return the matching verification keys
+     */
+    Promise<List<JWK>, NeverThrowsException> find(final String kid) {
+        List<JWK> found = lookup(kid);
+        if (!found.isEmpty()) {
+            return newResultPromise(found);
+        }
+        Promise<Void, NeverThrowsException> inProgress = refreshing.get();
+        if (inProgress == null) {
+            if (fetched && time.now() - lastRefresh < minRefreshInterval) {
+                return newResultPromise(found);
+            }
+            inProgress = refresh();
+        }
+        return inProgress.then(new Function<Void, List<JWK>, NeverThrowsException>() {
+            @Override
+            public List<JWK> apply(final Void value) {
+                return lookup(kid);
+            }
+        });
+    }
+
+    /**
+     * Schedules a periodic refresh of the keys.
+     *
+     * @param executor
+     *         the executor running the refreshes
+     * @param interval
+     *         the interval between two refreshes
+     * @return the scheduled refreshes, to be cancelled when the keys are not used anymore
+     */
+    ScheduledFuture<?> scheduleRefresh(final ScheduledExecutorService executor, final Duration interval) {
+        long millis = interval.to(TimeUnit.MILLISECONDS);
+        return executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fetches the JWK Set document again, unless a fetch is already in progress.
+     *
+     * @return a promise completed once the keys have been refreshed, or the fetch has failed
+     */
+    Promise<Void, NeverThrowsException> refresh() {
+        final PromiseImpl<Void, NeverThrowsException> promise = PromiseImpl.create();
+        Promise<Void, NeverThrowsException> inProgress = refreshing.get();
+        while (inProgress == null) {
+            if (refreshing.compareAndSet(null, promise)) {
+                fetch().thenAlways(new Runnable() {
+                    @Override
+                    public void run() {
+                        // A lookup sees either the fetch in progress, or its outcome
+                        lastRefresh = time.now();
+                        fetched = true;
+                        refreshing.set(null);
+                        promise.handleResult(null);
+                    }
+                });
+                return promise;
+            }
+            inProgress = refreshing.get();
+        }
+        return inProgress;
+    }
+
+    private List<JWK> lookup(final String kid) {
+        if (kid == null) {
+            return allKeys;
+        }
+        JWK jwk = keys.get(kid);
+        return jwk != null ? Collections.singletonList(jwk) : Collections.<JWK>emptyList();
+    }
+
+    private Promise<Void, NeverThrowsException> fetch() {
+        Request request = new Request().setMethod("GET").setUri(jwksUri);
+        return handler.handle(new RootContext(), request)
+                      .then(new Function<Response, Void, NeverThrowsException>() {
+                          @Override
+                          public Void apply(final Response response) {
+                              try {
+                                  if (!response.getStatus().isSuccessful()) {
+                                      throw new IOException(format("Unexpected status %s", response.getStatus()));
+                                  }
+                                  update(JWKSet.parse(new JsonValue(response.getEntity().getJson())));
+                              } catch (IOException | RuntimeException e) {
+                                  logger.warn("Cannot fetch the JWK Set {}, the previous keys are still used",
+                                              jwksUri,
+                                              e);
+                              } finally {
+                                  closeSilently(response);
+                              }
+                              return null;
+                          }
+                      });
+    }
+
+    private void update(final JWKSet jwkSet) {
+        Map<String, JWK> byKid = new HashMap<>();
+        List<JWK> all = new ArrayList<>();
+        for (JWK jwk : jwkSet.getJWKsAsList()) {
+            if (KeyUse.ENC.equals(jwk.getUse())) {
+                continue;
+            }
+            all.add(jwk);
+            if (jwk.getKeyId() != null) {
+                byKid.put(jwk.getKeyId(), jwk);
+            }
+        }
+        keys = byKid;
+        allKeys = Collections.unmodifiableList(all);
+        logger.debug("JWK Set {} loaded with {} verification keys", jwksUri, all.size());
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.filter.oauth2;
+
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.JsonValueFunctions.duration;
+import static org.forgerock.json.JsonValueFunctions.uri;
+import static org.forgerock.openig.heap.Keys.CLIENT_HANDLER_HEAP_KEY;
+import static org.forgerock.openig.heap.Keys.SCHEDULED_EXECUTOR_SERVICE_HEAP_KEY;
+import static org.forgerock.openig.heap.Keys.TIME_SERVICE_HEAP_KEY;
+import static org.forgerock.openig.util.JsonValues.requiredHeapObject;
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.http.Handler;
+import org.forgerock.http.oauth2.AccessTokenException;
+import org.forgerock.http.oauth2.AccessTokenInfo;
+import org.forgerock.http.oauth2.AccessTokenResolver;
+import org.forgerock.http.protocol.Responses;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.jose.common.JwtReconstruction;
+import org.forgerock.json.jose.jwk.EcJWK;
+import org.forgerock.json.jose.jwk.JWK;
+import org.forgerock.json.jose.jwk.RsaJWK;
+import org.forgerock.json.jose.jws.JwsAlgorithm;
+import org.forgerock.json.jose.jws.SignedJwt;
+import org.forgerock.json.jose.jws.SigningManager;
+import org.forgerock.json.jose.jws.handlers.SigningHandler;
+import org.forgerock.json.jose.jwt.JwtClaimsSet;
+import org.forgerock.openig.heap.GenericHeaplet;
+import org.forgerock.openig.heap.HeapException;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.Function;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.Duration;
+import org.forgerock.util.time.TimeService;
+
+/**
+ * Resolves signed JWT access tokens locally, verifying their signature with the keys published by the authorization
+ * server in a JSON Web Key Set document.
+ * <p>
+ * The token is accepted if its signature (RSA or ECDSA) is verified by one of the published keys, and if its
+ * {@literal exp}, {@literal nbf}, {@literal iss} and {@literal aud} claims are valid. The scopes are read from the
+ * {@literal scope} (space-delimited string) or {@literal scp} (array) claim.
+ *
+ * <pre>
+ * {@code
+ * {
+ *     "name": "JwtResolver",
+ *     "type": "JwtAccessTokenResolver",
+ *     "config": {
+ *         "jwksUri": "https://as.example.com/oauth2/jwks",
+ *         "issuer": "https://as.example.com/oauth2",
+ *         "audience": [ "https://api.example.com" ],
+ *         "skew": "30 seconds",
+ *         "refreshInterval": "1 hour",
+ *         "minRefreshInterval": "30 seconds",
+ *         "providerHandler": "ClientHandler"
+ *     }
+ * }
+ * }
+ * </pre>
+ *
+ * {@literal jwksUri} is the only mandatory attribute. When {@literal issuer} or {@literal audience} are not set, the
+ * corresponding claims are not checked.
+ * <p>
+ * The keys are fetched on the first use, and refreshed in the background every {@literal refreshInterval}
+ * (default to 1 hour, use {@literal zero} to disable). A token signed by an unknown key ID also triggers a refresh,
+ * at most once every {@literal minRefreshInterval} (default to 30 seconds).
+ * <p>
+ * {@literal skew} is the tolerated clock skew with the authorization server when checking the {@literal exp} and
+ * {@literal nbf} claims (default to 30 seconds).
+ */
+public class JwtAccessTokenResolver implements AccessTokenResolver {
+
+    private static final JwtReconstruction JWT_DECODER = new JwtReconstruction();
+
+    private final JwkSetCache keys;
+    private final TimeService time;
+    private final String issuer;
+    private final Set<String> audiences;
+    private final long skew;
+    private final SigningManager signingManager = new SigningManager();
+
+    /**
+     * Builds a new resolver.
+     *
+     * @param keys
+     *         the keys verifying the signatures
+     * @param time
+     *         the time service
+     * @param issuer
+     *         the expected issuer, {@code null} to accept any issuer
+     * @param audiences
+     *         the accepted audiences, empty to accept any audience
+     * @param skew
+     *         the tolerated clock skew
+     */
+    JwtAccessTokenResolver(final JwkSetCache keys,
+                           final TimeService time,
+                           final String issuer,
+                           final Collection<String> audiences,
+                           final Duration skew) {
+        this.keys = keys;
+        this.time = time;
+        this.issuer = issuer;
+        this.audiences = new LinkedHashSet<>(audiences);
+        this.skew = skew.to(TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Promise<AccessTokenInfo, AccessTokenException> resolve(final Context context, final String token) {
+        final SignedJwt jwt;
+        try {
+            jwt = JWT_DECODER.reconstructJwt(token, SignedJwt.class);
+        } catch (RuntimeException e) {
+            return newExceptionPromise(new AccessTokenException("The access token is not a signed JWT", e));
+        }
+        final JwsAlgorithm algorithm = jwt.getHeader().getAlgorithm();
+        if (algorithm == null || !isSupported(algorithm)) {
+            return newExceptionPromise(new AccessTokenException("Unsupported access token signing algorithm "
+                                                                        + algorithm));
+        }
+        return keys.find(jwt.getHeader().getKeyId())
+                   .then(new Function<List<JWK>, AccessTokenInfo, AccessTokenException>() {
+                             @Override
+                             public AccessTokenInfo apply(final List<JWK> jwks) throws AccessTokenException {
+                                 verifySignature(jwt, algorithm, jwks);
+                                 return validate(jwt.getClaimsSet(), token);
+                             }
+                         },
+                         Responses.<AccessTokenInfo, AccessTokenException>noopExceptionFunction());
+    }
+
+    private static boolean isSupported(final JwsAlgorithm algorithm) {
+        // HMAC would let a public key be used as a shared secret, and none is not signed at all
+        switch (algorithm.getAlgorithmType()) {
+        case RSA:
+        case ECDSA:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private void verifySignature(final SignedJwt jwt, final JwsAlgorithm algorithm, final List<JWK> jwks)
+            throws AccessTokenException {
+        if (jwks.isEmpty()) {
+            throw new AccessTokenException("No key found to verify the access token signature");
+        }
+        for (JWK jwk : jwks) {
+            if (jwk.getAlgorithm() != null && !jwk.getAlgorithm().equals(algorithm.name())) {
+                continue;
+            }
+            SigningHandler handler = verificationHandler(algorithm, jwk);
+            if (handler != null && jwt.verify(handler)) {
+                return;
+            }
+        }
+        throw new AccessTokenException("Invalid access token signature");
+    }
+
+    private SigningHandler verificationHandler(final JwsAlgorithm algorithm, final JWK jwk) {
+        switch (algorithm.getAlgorithmType()) {
+        case RSA:
+            return (jwk instanceof RsaJWK) ? signingManager.newRsaSigningHandler(((RsaJWK) jwk).toRSAPublicKey())
+                                           : null;
+        case ECDSA:
+            return (jwk instanceof EcJWK) ? signingManager.newEcdsaVerificationHandler(((EcJWK) jwk).toECPublicKey())
+                                          : null;
+        default:
+            return null;
+        }
+    }
+
+    private AccessTokenInfo validate(final JwtClaimsSet claims, final String token) throws AccessTokenException {
+        long now = time.now();
+        Date expiration = claims.getExpirationTime();
+        if (expiration == null) {
+            throw new AccessTokenException("The access token has no expiration time");
+        }
+        if (now - skew >= expiration.getTime()) {
+            throw new AccessTokenException("The access token has expired");
+        }
+        Date notBefore = claims.getNotBeforeTime();
+        if (notBefore != null && now + skew < notBefore.getTime()) {
+            throw new AccessTokenException("The access token is not valid yet");
+        }
+        if (issuer != null && !issuer.equals(claims.getIssuer())) {
+            throw new AccessTokenException("Unexpected access token issuer " + claims.getIssuer());
+        }
+        if (!audiences.isEmpty()) {
+            List<String> audience = claims.getAudience();
+            if (audience == null || Collections.disjoint(audiences, audience)) {
+                throw new AccessTokenException("Unexpected access token audience " + audience);
+            }
+        }
+        return new AccessTokenInfo(rawInfo(claims), token, scopes(claims), expiration.getTime());
+    }
+
+    private static JsonValue rawInfo(final JwtClaimsSet claims) {
+        JsonValue info = json(object());
+        for (String key : claims.keys()) {
+            info.put(key, claims.get(key).getObject());
+        }
+        return info;
+    }
+
+    static Set<String> scopes(final JsonValue scope) {
+        Set<String> scopes = new LinkedHashSet<>();
+        if (scope.isString()) {
+            for (String value : scope.asString().split(" ")) {
+                if (!value.isEmpty()) {
+                    scopes.add(value);
+                }
+            }
+        } else if (scope.isList()) {
+            scopes.addAll(scope.asList(String.class));
+        }
+        return scopes;
+    }
+
+    static List<String> audiences(final JsonValue audience) {
+        if (audience.isString()) {
+            return Collections.singletonList(audience.asString());
+        }
+        return audience.defaultTo(Collections.emptyList()).asList(String.class);
+    }
+
+    private static Set<String> scopes(final JwtClaimsSet claims) {
+        Set<String> scopes = scopes(claims.get("scope"));
+        if (scopes.isEmpty()) {
+            scopes = scopes(claims.get("scp"));
+        }
+        return scopes;
+    }
+
+    /**
+     * Creates and initializes a JWT access token resolver in a heap environment.
+     */
+    public static class Heaplet extends GenericHeaplet {
+
+        private ScheduledFuture<?> refresh;
+
+        @Override
+        public Object create() throws HeapException {
+            Handler handler = config.get("providerHandler")
+                                    .defaultTo(CLIENT_HANDLER_HEAP_KEY)
+                                    .as(requiredHeapObject(heap, Handler.class));
+            TimeService time = heap.get(TIME_SERVICE_HEAP_KEY, TimeService.class);
+            JsonValue evaluated = config.as(evaluatedWithHeapProperties());
+            URI jwksUri = evaluated.get("jwksUri").required().as(uri());
+            String issuer = evaluated.get("issuer").asString();
+            List<String> audiences = audiences(evaluated.get("audience"));
+            Duration skew = evaluated.get("skew").defaultTo("30 seconds").as(duration());
+            Duration minRefreshInterval = evaluated.get("minRefreshInterval").defaultTo("30 seconds").as(duration());
+            Duration refreshInterval = evaluated.get("refreshInterval").defaultTo("1 hour").as(duration());
+
+            JwkSetCache keys = new JwkSetCache(handler, jwksUri, time, minRefreshInterval);
+            if (!refreshInterval.isZero() && !refreshInterval.isUnlimited()) {
+                ScheduledExecutorService executor = config.get("executor")
+                                                          .defaultTo(SCHEDULED_EXECUTOR_SERVICE_HEAP_KEY)
+                                                          .as(requiredHeapObject(heap,
+                                                                                 ScheduledExecutorService.class));
+                refresh = keys.scheduleRefresh(executor, refreshInterval);
+            }
+            return new JwtAccessTokenResolver(keys, time, issuer, audiences, skew);
+        }
+
+        @Override
+        public void destroy() {
+            if (refresh != null) {
+                refresh.cancel(false);
+            }
+            super.destroy();
+        }
+    }
+}
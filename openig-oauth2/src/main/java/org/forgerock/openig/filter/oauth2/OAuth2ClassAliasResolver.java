@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2016 ForgeRock AS.
- * Portions copyright 2025 3A Systems LLC.
+ * Portions copyright 2025-2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.filter.oauth2;
@@ -33,7 +33,9 @@ public class OAuth2ClassAliasResolver implements ClassAliasResolver {
 
     static {
         ALIASES.put("ClientRegistration", ClientRegistration.class);
+        ALIASES.put("IntrospectionAccessTokenResolver", IntrospectionAccessTokenResolver.class);
         ALIASES.put("Issuer", Issuer.class);
+        ALIASES.put("JwtAccessTokenResolver", JwtAccessTokenResolver.class);
         ALIASES.put("OAuth2ClientFilter", OAuth2ClientFilter.class);
         ALIASES.put("OAuth2ResourceServerFilter", OAuth2ResourceServerFilterHeaplet.class);
         ALIASES.put("OAuth2RSFilter", OAuth2ResourceServerFilterHeaplet.class);
@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2016 ForgeRock AS.
- * Portions copyright 2025 3A Systems LLC.
+ * Portions copyright 2025-2026 3A Systems LLC.
  */
 
 package org.forgerock.openig.filter.oauth2;
@@ -103,6 +103,11 @@ import org.slf4j.LoggerFactory;
  * access token validation against the {@literal tokenInfoEndpoint} URL.
  * It is usually a reference to some {@link org.forgerock.openig.handler.ClientHandler}.
  * <p>
+ * The optional {@literal accessTokenResolver} attribute replaces the {@literal tokenInfoEndpoint} validation with
+ * another {@link AccessTokenResolver}, such as a {@link JwtAccessTokenResolver} (local validation of signed JWT
+ * access tokens), an {@link IntrospectionAccessTokenResolver} (RFC 7662) or a {@link ScriptableAccessTokenResolver}.
+ * The resolved tokens are cached in the same way.
+ * <p>
  * The {@literal requireHttps} optional attribute control if this filter only accepts requests targeting the HTTPS
  * scheme. By default, it is enabled (only URI starting with {@literal https://...} will be accepted,
  * an Exception is thrown otherwise).
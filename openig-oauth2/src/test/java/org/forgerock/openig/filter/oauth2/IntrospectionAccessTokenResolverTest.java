@@ -0,0 +1,114 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.filter.oauth2;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.http.protocol.Response.newResponsePromise;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.object;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.util.Map;
+
+import org.forgerock.http.Handler;
+import org.forgerock.http.oauth2.AccessTokenException;
+import org.forgerock.http.oauth2.AccessTokenInfo;
+import org.forgerock.http.protocol.Form;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.util.time.TimeService;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class IntrospectionAccessTokenResolverTest {
+
+    private static final String TOKEN = "1fc0e143-f248-4e50-9c13-1d710360cec9";
+    private static final long NOW = 1_800_000_000_000L;
+
+    private Handler handler;
+    private IntrospectionAccessTokenResolver resolver;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        handler = mock(Handler.class);
+        TimeService time = mock(TimeService.class);
+        when(time.now()).thenReturn(NOW);
+        resolver = new IntrospectionAccessTokenResolver(handler,
+                                                        URI.create("https://as.example.com/oauth2/introspect"),
+                                                        "rs",
+                                                        "secret",
+                                                        time,
+                                                        "https://as.example.com/oauth2",
+                                                        singletonList("https://api.example.com"));
+    }
+
+    @Test
+    public void shouldResolveAnActiveToken() throws Exception {
+        respond(object(field("active", true),
+                       field("scope", "read write"),
+                       field("iss", "https://as.example.com/oauth2"),
+                       field("aud", "https://api.example.com"),
+                       field("exp", NOW / 1000 + 300)));
+
+        AccessTokenInfo info = resolver.resolve(new RootContext(), TOKEN).getOrThrow();
+
+        assertThat(info.getScopes()).containsOnly("read", "write");
+        assertThat(info.getExpiresAt()).isEqualTo(NOW + 300_000L);
+
+        ArgumentCaptor<Request> request = ArgumentCaptor.forClass(Request.class);
+        verify(handler).handle(any(Context.class), request.capture());
+        assertThat(request.getValue().getMethod()).isEqualTo("POST");
+        assertThat(request.getValue().getHeaders().getFirst("Authorization")).isEqualTo("Basic cnM6c2VjcmV0");
+        assertThat(new Form().fromRequestEntity(request.getValue()).getFirst("token")).isEqualTo(TOKEN);
+    }
+
+    @Test(expectedExceptions = AccessTokenException.class, expectedExceptionsMessageRegExp = ".*not active")
+    public void shouldRejectAnInactiveToken() throws Exception {
+        respond(object(field("active", false)));
+        resolver.resolve(new RootContext(), TOKEN).getOrThrow();
+    }
+
+    @Test(expectedExceptions = AccessTokenException.class, expectedExceptionsMessageRegExp = ".*audience.*")
+    public void shouldRejectAnotherAudience() throws Exception {
+        respond(object(field("active", true),
+                       field("iss", "https://as.example.com/oauth2"),
+                       field("aud", "https://other.example.com")));
+        resolver.resolve(new RootContext(), TOKEN).getOrThrow();
+    }
+
+    @Test(expectedExceptions = AccessTokenException.class, expectedExceptionsMessageRegExp = ".*status=500.*")
+    public void shouldFailOnServerErrors() throws Exception {
+        when(handler.handle(any(Context.class), any(Request.class)))
+                .thenReturn(newResponsePromise(new Response(Status.INTERNAL_SERVER_ERROR)));
+        resolver.resolve(new RootContext(), TOKEN).getOrThrow();
+    }
+
+    private void respond(final Map<String, Object> introspection) {
+        when(handler.handle(any(Context.class), any(Request.class)))
+                .thenReturn(newResponsePromise(new Response(Status.OK).setEntity(introspection)));
+    }
+}
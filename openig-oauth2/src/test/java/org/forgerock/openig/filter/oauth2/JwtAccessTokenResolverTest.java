@@ -0,0 +1,286 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 3A Systems LLC.
+ */
+
+package org.forgerock.openig.filter.oauth2;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.http.protocol.Response.newResponsePromise;
+import static org.forgerock.json.JsonValue.array;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.object;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.net.URI;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.http.Handler;
+import org.forgerock.http.oauth2.AccessTokenException;
+import org.forgerock.http.oauth2.AccessTokenInfo;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.json.jose.builders.JwtBuilderFactory;
+import org.forgerock.json.jose.builders.JwtClaimsSetBuilder;
+import org.forgerock.json.jose.jws.JwsAlgorithm;
+import org.forgerock.json.jose.jws.SigningManager;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.time.Duration;
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class JwtAccessTokenResolverTest {
+
+    private static final String ISSUER = "https://as.example.com/oauth2";
+    private static final String AUDIENCE = "https://api.example.com";
+    private static final long NOW = 1_800_000_000_000L;
+
+    private KeyPair keyPair;
+    private KeyPair otherKeyPair;
+
+    private Handler handler;
+    private TimeService time;
+    private JwkSetCache keys;
+    private JwtAccessTokenResolver resolver;
+
+    @BeforeClass
+    public void generateKeys() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+        otherKeyPair = generator.generateKeyPair();
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        handler = mock(Handler.class);
+        time = mock(TimeService.class);
+        when(time.now()).thenReturn(NOW);
+        publish("k1", keyPair);
+        keys = new JwkSetCache(handler,
+                               URI.create("https://as.example.com/oauth2/jwks"),
+                               time,
+                               Duration.duration("30 seconds"));
+        resolver = new JwtAccessTokenResolver(keys,
+                                              time,
+                                              ISSUER,
+                                              singletonList(AUDIENCE),
+                                              Duration.duration("30 seconds"));
+    }
+
+    @Test
+    public void shouldResolveAValidToken() throws Exception {
+        String token = sign("k1", keyPair, claims());
+
+        AccessTokenInfo info = resolver.resolve(new RootContext(), token).getOrThrow();
+
+        assertThat(info.getToken()).isEqualTo(token);
+        assertThat(info.getScopes()).containsOnly("read", "write");
+        assertThat(info.getExpiresAt()).isEqualTo(NOW + TimeUnit.MINUTES.toMillis(5));
+        assertThat(info.getInfo()).containsEntry("sub", "alice");
+    }
+
+    @Test
+    public void shouldFetchTheKeysOnlyOnce() throws Exception {
+        resolver.resolve(new RootContext(), sign("k1", keyPair, claims())).getOrThrow();
+        resolver.resolve(new RootContext(), sign("k1", keyPair, claims())).getOrThrow();
+
+        verify(handler, times(1)).handle(any(Context.class), any(Request.class));
+    }
+
+    @Test
+    public void shouldRefreshTheKeysOnAnUnknownKeyId() throws Exception {
+        resolver.resolve(new RootContext(), sign("k1", keyPair, claims())).getOrThrow();
+
+        // The keys have been rotated
+        publish("k2", otherKeyPair);
+        when(time.now()).thenReturn(NOW + TimeUnit.MINUTES.toMillis(1));
+        AccessTokenInfo info = resolver.resolve(new RootContext(), sign("k2", otherKeyPair, claims())).getOrThrow();
+
+        assertThat(info.getInfo()).containsEntry("sub", "alice");
+        verify(handler, times(2)).handle(any(Context.class), any(Request.class));
+    }
+
+    @Test
+    public void shouldRateLimitTheRefreshesOnUnknownKeyIds() throws Exception {
+        resolver.resolve(new RootContext(), sign("k1", keyPair, claims())).getOrThrow();
+
+        for (int i = 0; i < 3; i++) {
+            assertRejected(sign("unknown", otherKeyPair, claims()), "No key found");
+        }
+
+        verify(handler, times(1)).handle(any(Context.class), any(Request.class));
+    }
+
+    @Test
+    public void shouldWaitForTheKeysBeingFetched() throws Exception {
+        resolver.resolve(new RootContext(), sign("k1", keyPair, claims())).getOrThrow();
+        final PromiseImpl<Response, NeverThrowsException> response = PromiseImpl.create();
+        when(handler.handle(any(Context.class), any(Request.class))).thenReturn(response);
+        when(time.now()).thenReturn(NOW + TimeUnit.MINUTES.toMillis(1));
+
+        // A background refresh is fetching the rotated keys
+        keys.refresh();
+        Promise<AccessTokenInfo, AccessTokenException> resolved =
+                resolver.resolve(new RootContext(), sign("k2", otherKeyPair, claims()));
+        assertThat(resolved.isDone()).isFalse();
+
+        response.handleResult(new Response(Status.OK).setEntity(jwks("k2", otherKeyPair)));
+
+        assertThat(resolved.getOrThrow().getInfo()).containsEntry("sub", "alice");
+    }
+
+    @Test
+    public void shouldRejectAnInvalidSignature() throws Exception {
+        assertRejected(sign("k1", otherKeyPair, claims()), "Invalid access token signature");
+    }
+
+    @Test
+    public void shouldRejectAnExpiredToken() throws Exception {
+        Map<String, Object> claims = claims();
+        claims.put("exp", new Date(NOW - TimeUnit.MINUTES.toMillis(1)));
+        assertRejected(sign("k1", keyPair, claims), "expired");
+    }
+
+    @Test
+    public void shouldTolerateTheClockSkew() throws Exception {
+        Map<String, Object> claims = claims();
+        claims.put("exp", new Date(NOW - TimeUnit.SECONDS.toMillis(10)));
+        claims.put("nbf", new Date(NOW + TimeUnit.SECONDS.toMillis(10)));
+
+        assertThat(resolver.resolve(new RootContext(), sign("k1", keyPair, claims)).getOrThrow()).isNotNull();
+    }
+
+    @Test
+    public void shouldRejectATokenNotValidYet() throws Exception {
+        Map<String, Object> claims = claims();
+        claims.put("nbf", new Date(NOW + TimeUnit.MINUTES.toMillis(1)));
+        assertRejected(sign("k1", keyPair, claims), "not valid yet");
+    }
+
+    @Test
+    public void shouldRejectAnotherIssuer() throws Exception {
+        Map<String, Object> claims = claims();
+        claims.put("iss", "https://evil.example.com");
+        assertRejected(sign("k1", keyPair, claims), "issuer");
+    }
+
+    @Test
+    public void shouldRejectAnotherAudience() throws Exception {
+        Map<String, Object> claims = claims();
+        claims.put("aud", singletonList("https://other.example.com"));
+        assertRejected(sign("k1", keyPair, claims), "audience");
+    }
+
+    @Test
+    public void shouldRejectHmacSignedTokens() throws Exception {
+        String token = new JwtBuilderFactory().jws(new SigningManager().newHmacSigningHandler(new byte[32]))
+                                              .headers().alg(JwsAlgorithm.HS256).done()
+                                              .claims(new JwtClaimsSetBuilder().claims(claims()).build())
+                                              .build();
+        assertRejected(token, "Unsupported");
+    }
+
+    @Test
+    public void shouldRejectMalformedTokens() throws Exception {
+        assertRejected("1fc0e143-f248-4e50-9c13-1d710360cec9", "not a signed JWT");
+    }
+
+    @Test
+    public void shouldReadTheScopesFromTheScpClaim() throws Exception {
+        Map<String, Object> claims = claims();
+        claims.remove("scope");
+        claims.put("scp", asList("read", "admin"));
+
+        AccessTokenInfo info = resolver.resolve(new RootContext(), sign("k1", keyPair, claims)).getOrThrow();
+
+        assertThat(info.getScopes()).containsOnly("read", "admin");
+    }
+
+    private void assertRejected(final String token, final String message) throws Exception {
+        try {
+            resolver.resolve(new RootContext(), token).getOrThrow();
+            throw new AssertionError("AccessTokenException expected");
+        } catch (AccessTokenException e) {
+            assertThat(e.getMessage()).contains(message);
+        }
+    }
+
+    private static Map<String, Object> claims() {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("iss", ISSUER);
+        claims.put("aud", singletonList(AUDIENCE));
+        claims.put("sub", "alice");
+        claims.put("scope", "read write");
+        claims.put("exp", new Date(NOW + TimeUnit.MINUTES.toMillis(5)));
+        return claims;
+    }
+
+    private static String sign(final String kid, final KeyPair keyPair, final Map<String, Object> claims) {
+        return new JwtBuilderFactory().jws(new SigningManager().newRsaSigningHandler(keyPair.getPrivate()))
+                                      .headers().alg(JwsAlgorithm.RS256).kid(kid).done()
+                                      .claims(new JwtClaimsSetBuilder().claims(claims).build())
+                                      .build();
+    }
+
+    private void publish(final String kid, final KeyPair keyPair) {
+        final Object jwks = jwks(kid, keyPair);
+        doAnswer(invocation -> newResponsePromise(new Response(Status.OK).setEntity(jwks)))
+                .when(handler).handle(any(Context.class), any(Request.class));
+    }
+
+    private static Object jwks(final String kid, final KeyPair keyPair) {
+        RSAPublicKey key = (RSAPublicKey) keyPair.getPublic();
+        return object(field("keys", array(object(field("kty", "RSA"),
+                                                 field("use", "sig"),
+                                                 field("kid", kid),
+                                                 field("alg", "RS256"),
+                                                 field("n", base64Url(key.getModulus())),
+                                                 field("e", base64Url(key.getPublicExponent()))))));
+    }
+
+    private static String base64Url(final BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            // Unsigned big-endian representation
+            byte[] unsigned = new byte[bytes.length - 1];
+            System.arraycopy(bytes, 1, unsigned, 0, unsigned.length);
+            bytes = unsigned;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}